@@ -0,0 +1,19 @@
+#!/usr/bin/env bash
+# Compare building and serializing upstream contexts as ChatContext and as per-message maps.
+#
+# Usage: scripts/context-benchmark.sh [extra JMH options]
+#
+# Runs ChatContextBenchmark (src/test) for 50- and 500-message contexts with the gc profiler:
+#   avgt              - microseconds per operation
+#   gc.alloc.rate.norm - bytes allocated per operation
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+./mvnw -q -B test-compile
+CLASSPATH_FILE=$(mktemp)
+trap 'rm -f "$CLASSPATH_FILE"' EXIT
+./mvnw -q -B dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile="$CLASSPATH_FILE"
+
+java -cp "target/test-classes:target/classes:$(cat "$CLASSPATH_FILE")" \
+  org.openjdk.jmh.Main ChatContextBenchmark -prof gc "$@"
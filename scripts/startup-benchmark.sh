@@ -0,0 +1,45 @@
+#!/usr/bin/env bash
+# Compare startup time and time-to-first-request of the standard and fast-start images.
+#
+# Usage: scripts/startup-benchmark.sh [runs]
+#
+# Builds both images, then starts each one `runs` times (default 5) and reports:
+#   started  - "Started Main in X seconds" from the application log
+#   ready    - wall time from `docker run` until /actuator/health/readiness returns 200
+#   first    - duration of the first GET /chat/conversations once ready
+#
+# The containers use the host network so the application finds PostgreSQL on localhost:5432,
+# as configured in application.yml. Pass JAVA_OPTS to override settings for both modes.
+set -euo pipefail
+
+RUNS=${1:-5}
+PORT=8080
+cd "$(dirname "$0")/.."
+
+now_ms() { date +%s%3N; }
+
+for mode in standard fast-start; do
+  docker build -q --build-arg MODE="$mode" -t "llm-comparison-backend:$mode" . > /dev/null
+done
+
+printf '%-12s %4s %10s %10s %10s\n' mode run started_s ready_ms first_ms
+for mode in standard fast-start; do
+  for run in $(seq 1 "$RUNS"); do
+    start=$(now_ms)
+    container=$(docker run -d --network host -e JAVA_OPTS="${JAVA_OPTS:-}" "llm-comparison-backend:$mode")
+    until curl -sf -o /dev/null "http://localhost:$PORT/actuator/health/readiness"; do
+      if [ $(( $(now_ms) - start )) -gt 120000 ]; then
+        echo "$mode run $run did not become ready" >&2
+        docker logs "$container" | tail -20 >&2
+        docker rm -f "$container" > /dev/null
+        exit 1
+      fi
+      sleep 0.05
+    done
+    ready=$(( $(now_ms) - start ))
+    first=$(curl -s -o /dev/null -w '%{time_total}' "http://localhost:$PORT/chat/conversations" | awk '{ printf "%d", $1 * 1000 }')
+    started=$(docker logs "$container" 2>&1 | sed -n 's/.*Started Main in \([0-9.]*\) seconds.*/\1/p')
+    docker rm -f "$container" > /dev/null
+    printf '%-12s %4d %10s %10d %10d\n' "$mode" "$run" "${started:-?}" "$ready" "$first"
+  done
+done
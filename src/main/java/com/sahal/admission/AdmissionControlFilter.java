@@ -0,0 +1,88 @@
+package com.sahal.admission;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Applies {@link AdmissionController} to POST /chat/ask and turns rejections into fast
+ * 429/503 responses with a Retry-After header.
+ *
+ * Clients are keyed on their remote address. The X-Client-Id header is only trusted from the
+ * proxies listed in app.admission.trusted-proxies, otherwise a client could pick a new id per request.
+ */
+@Component
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private static final String CLIENT_ID_HEADER = "X-Client-Id";
+
+    private final AdmissionController admissionController;
+
+    @Value("${app.admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.admission.trusted-proxies:}")
+    private List<String> trustedProxies;
+
+    public AdmissionControlFilter(AdmissionController admissionController) {
+        this.admissionController = admissionController;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !"POST".equals(request.getMethod()) || !"/chat/ask".equals(request.getServletPath());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        AdmissionController.Decision decision;
+        try {
+            decision = admissionController.admit(clientId(request), request.getParameter("sessionId"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, 1, "Server is shutting down");
+            return;
+        }
+
+        switch (decision.outcome()) {
+            case RATE_LIMITED -> reject(response, HttpStatus.TOO_MANY_REQUESTS, decision.retryAfterSeconds(),
+                    "Too many requests. Please slow down and retry later.");
+            case OVERLOADED -> reject(response, HttpStatus.SERVICE_UNAVAILABLE, decision.retryAfterSeconds(),
+                    "Server is busy. Please retry shortly.");
+            case ADMITTED -> {
+                try {
+                    filterChain.doFilter(request, response);
+                } finally {
+                    admissionController.release();
+                }
+            }
+        }
+    }
+
+    private String clientId(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        String clientId = request.getHeader(CLIENT_ID_HEADER);
+        if (clientId == null || clientId.isBlank() || !trustedProxies.contains(remoteAddr)) {
+            return remoteAddr;
+        }
+        return clientId;
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, long retryAfterSeconds, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"" + message + "\"}");
+    }
+}
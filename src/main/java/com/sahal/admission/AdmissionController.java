@@ -0,0 +1,169 @@
+package com.sahal.admission;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether a chat request may run now.
+ *
+ * Requests first pass per-client and per-session token buckets (429 when exhausted), then
+ * wait for one of a fixed number of in-flight slots. Waiting is managed CoDel style: while
+ * queueing delay stays above the target for a whole interval the controller switches to
+ * dropping mode and rejects requests that cannot start immediately (503), instead of letting
+ * the queue and everyone's latency grow.
+ */
+@Component
+public class AdmissionController {
+
+    private final Map<String, TokenBucket> clientBuckets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> sessionBuckets = new ConcurrentHashMap<>();
+
+    private final Semaphore inFlight;
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    // CoDel state; races between updates only shift the switch by a request or two
+    private final AtomicLong firstAboveTargetNanos = new AtomicLong();
+    private volatile boolean dropping;
+
+    private final int maxInFlight;
+    private final int maxQueue;
+    private final long queueTargetNanos;
+    private final long queueIntervalNanos;
+    private final long maxQueueWaitNanos;
+    private final int clientRatePerMinute;
+    private final int clientBurst;
+    private final int sessionRatePerMinute;
+    private final int sessionBurst;
+
+    public AdmissionController(@Value("${app.admission.max-in-flight:32}") int maxInFlight,
+                               @Value("${app.admission.max-queue:64}") int maxQueue,
+                               @Value("${app.admission.queue-target-ms:100}") long queueTargetMs,
+                               @Value("${app.admission.queue-interval-ms:500}") long queueIntervalMs,
+                               @Value("${app.admission.max-queue-wait-ms:2000}") long maxQueueWaitMs,
+                               @Value("${app.admission.client-rate-per-minute:60}") int clientRatePerMinute,
+                               @Value("${app.admission.client-burst:10}") int clientBurst,
+                               @Value("${app.admission.session-rate-per-minute:20}") int sessionRatePerMinute,
+                               @Value("${app.admission.session-burst:5}") int sessionBurst) {
+        this.inFlight = new Semaphore(maxInFlight);
+        this.maxInFlight = maxInFlight;
+        this.maxQueue = maxQueue;
+        this.queueTargetNanos = TimeUnit.MILLISECONDS.toNanos(queueTargetMs);
+        this.queueIntervalNanos = TimeUnit.MILLISECONDS.toNanos(queueIntervalMs);
+        this.maxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMs);
+        this.clientRatePerMinute = clientRatePerMinute;
+        this.clientBurst = clientBurst;
+        this.sessionRatePerMinute = sessionRatePerMinute;
+        this.sessionBurst = sessionBurst;
+    }
+
+    /**
+     * Admit a request or explain why not. An admitted request must call {@link #release()} when done.
+     */
+    public Decision admit(String clientId, String sessionId) throws InterruptedException {
+        long now = System.nanoTime();
+
+        long clientWait = clientBuckets
+                .computeIfAbsent(clientId, id -> new TokenBucket(clientRatePerMinute, clientBurst))
+                .tryAcquire(now);
+        if (clientWait > 0) {
+            return Decision.rateLimited(clientWait);
+        }
+        if (sessionId != null && !sessionId.isBlank()) {
+            long sessionWait = sessionBuckets
+                    .computeIfAbsent(sessionId, id -> new TokenBucket(sessionRatePerMinute, sessionBurst))
+                    .tryAcquire(now);
+            if (sessionWait > 0) {
+                return Decision.rateLimited(sessionWait);
+            }
+        }
+
+        if (inFlight.tryAcquire()) {
+            onDequeued(0, now);
+            return Decision.ADMITTED;
+        }
+        if (dropping || waiting.get() >= maxQueue) {
+            return Decision.overloaded(queueIntervalNanos);
+        }
+
+        waiting.incrementAndGet();
+        try {
+            if (!inFlight.tryAcquire(maxQueueWaitNanos, TimeUnit.NANOSECONDS)) {
+                onDequeued(maxQueueWaitNanos, System.nanoTime());
+                return Decision.overloaded(queueIntervalNanos);
+            }
+        } finally {
+            waiting.decrementAndGet();
+        }
+        long dequeuedAt = System.nanoTime();
+        onDequeued(dequeuedAt - now, dequeuedAt);
+        return Decision.ADMITTED;
+    }
+
+    public void release() {
+        inFlight.release();
+    }
+
+    public int getInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    public boolean isDropping() {
+        return dropping;
+    }
+
+    private void onDequeued(long sojournNanos, long nowNanos) {
+        if (sojournNanos < queueTargetNanos) {
+            firstAboveTargetNanos.set(0);
+            dropping = false;
+            return;
+        }
+        long firstAbove = firstAboveTargetNanos.get();
+        if (firstAbove == 0) {
+            firstAboveTargetNanos.compareAndSet(0, nowNanos + queueIntervalNanos);
+        } else if (nowNanos >= firstAbove) {
+            dropping = true;
+        }
+    }
+
+    /**
+     * Forget buckets that have refilled completely so idle clients and sessions do not accumulate
+     */
+    @Scheduled(fixedDelayString = "${app.admission.sweep-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        clientBuckets.values().removeIf(bucket -> bucket.isIdle(now));
+        sessionBuckets.values().removeIf(bucket -> bucket.isIdle(now));
+    }
+
+    public record Decision(Outcome outcome, long retryAfterNanos) {
+        static final Decision ADMITTED = new Decision(Outcome.ADMITTED, 0);
+
+        static Decision rateLimited(long retryAfterNanos) {
+            return new Decision(Outcome.RATE_LIMITED, retryAfterNanos);
+        }
+
+        static Decision overloaded(long retryAfterNanos) {
+            return new Decision(Outcome.OVERLOADED, retryAfterNanos);
+        }
+
+        public long retryAfterSeconds() {
+            return Math.max(1, (retryAfterNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    public enum Outcome {
+        ADMITTED, RATE_LIMITED, OVERLOADED
+    }
+}
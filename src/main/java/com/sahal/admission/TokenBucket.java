@@ -0,0 +1,49 @@
+package com.sahal.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket implemented as a generic cell rate algorithm (GCRA).
+ *
+ * The whole bucket state is a single "theoretical arrival time" updated with CAS, so
+ * concurrent callers never block each other. A request is allowed when it would not push
+ * the arrival time further ahead of now than the burst allows.
+ */
+public class TokenBucket {
+
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+
+    public TokenBucket(int permitsPerMinute, int burst) {
+        this.emissionIntervalNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(1, permitsPerMinute);
+        this.burstToleranceNanos = emissionIntervalNanos * Math.max(0, burst - 1);
+    }
+
+    /**
+     * Try to take one permit. Returns 0 if granted, otherwise the nanoseconds until a permit frees up.
+     */
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = theoreticalArrival.get();
+            long base = current == Long.MIN_VALUE ? nowNanos : Math.max(current, nowNanos);
+            long next = base + emissionIntervalNanos;
+            long waitNanos = next - nowNanos - burstToleranceNanos - emissionIntervalNanos;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * True once the bucket has refilled completely and can be forgotten
+     */
+    public boolean isIdle(long nowNanos) {
+        long current = theoreticalArrival.get();
+        return current == Long.MIN_VALUE || current <= nowNanos;
+    }
+}
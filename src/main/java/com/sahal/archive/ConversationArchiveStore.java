@@ -0,0 +1,322 @@
+package com.sahal.archive;
+
+import com.sahal.entity.Message;
+import com.sahal.entity.MessageRole;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Cold-tier storage for archived conversations.
+ *
+ * Each archived conversation is written as one deflate-compressed record appended to the
+ * active segment file ({@code segment-00001.seg}, ...). A new segment is started once the
+ * active one passes the configured size. The location of every record is kept in a small
+ * append-only index file ({@code archive.idx}) of fixed-size entries that is replayed into
+ * memory on startup; the last entry for a conversation wins and a negative length marks a
+ * removed conversation. Reads go through a read-only memory mapping of the segment.
+ */
+@Component
+public class ConversationArchiveStore {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String INDEX_FILE = "archive.idx";
+    private static final int FORMAT_VERSION = 1;
+
+    // conversationId (8) + segment (4) + offset (8) + length (4)
+    private static final int INDEX_ENTRY_BYTES = 24;
+    private static final int TOMBSTONE = -1;
+
+    private final Path directory;
+    private final long segmentMaxBytes;
+
+    private final Map<Long, Entry> index = new ConcurrentHashMap<>();
+    private final Map<Integer, MappedSegment> mappedSegments = new ConcurrentHashMap<>();
+
+    private FileChannel indexChannel;
+    private FileChannel activeChannel;
+    private int activeSegment;
+
+    public ConversationArchiveStore(@Value("${app.archive.directory:data/archive}") String directory,
+                                    @Value("${app.archive.segment-max-bytes:67108864}") long segmentMaxBytes) {
+        this.directory = Paths.get(directory);
+        this.segmentMaxBytes = segmentMaxBytes;
+        loadIndex();
+    }
+
+    /**
+     * Append the messages of a conversation to the active segment and record their location.
+     * Any earlier record for the same conversation is superseded.
+     */
+    public synchronized void append(Long conversationId, List<Message> messages) {
+        try {
+            ensureOpenForWrite();
+            byte[] record = encode(messages);
+            if (activeChannel.size() > 0 && activeChannel.size() + record.length > segmentMaxBytes) {
+                rollSegment();
+            }
+
+            long offset = activeChannel.size();
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            while (buffer.hasRemaining()) {
+                activeChannel.write(buffer, offset + buffer.position());
+            }
+            activeChannel.force(false);
+
+            Entry entry = new Entry(activeSegment, offset, record.length);
+            writeIndexEntry(conversationId, entry);
+            index.put(conversationId, entry);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to archive conversation " + conversationId, e);
+        }
+    }
+
+    /**
+     * Read the archived messages of a conversation, if it is present in the archive.
+     * Returned messages are detached copies and are not managed by JPA.
+     */
+    public Optional<List<Message>> read(Long conversationId) {
+        Entry entry = index.get(conversationId);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        try {
+            ByteBuffer record = mapSegment(entry.segment(), entry.offset() + entry.length())
+                    .slice((int) entry.offset(), entry.length());
+            return Optional.of(decode(record));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read archived conversation " + conversationId, e);
+        }
+    }
+
+    public boolean contains(Long conversationId) {
+        return index.containsKey(conversationId);
+    }
+
+    /**
+     * Drop a conversation from the archive. The segment bytes stay in place; only the index
+     * stops pointing at them.
+     */
+    public synchronized void remove(Long conversationId) {
+        if (!index.containsKey(conversationId)) {
+            return;
+        }
+        try {
+            ensureOpenForWrite();
+            writeIndexEntry(conversationId, new Entry(0, 0, TOMBSTONE));
+            index.remove(conversationId);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to remove archived conversation " + conversationId, e);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        mappedSegments.clear();
+        if (activeChannel != null) {
+            activeChannel.close();
+            activeChannel = null;
+        }
+        if (indexChannel != null) {
+            indexChannel.close();
+            indexChannel = null;
+        }
+    }
+
+    private void loadIndex() {
+        Path indexPath = directory.resolve(INDEX_FILE);
+        if (!Files.exists(indexPath)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            // A partially written trailing entry (crash mid-append) is ignored
+            long entries = channel.size() / INDEX_ENTRY_BYTES;
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, entries * INDEX_ENTRY_BYTES);
+            for (long i = 0; i < entries; i++) {
+                long conversationId = buffer.getLong();
+                int segment = buffer.getInt();
+                long offset = buffer.getLong();
+                int length = buffer.getInt();
+                if (length == TOMBSTONE) {
+                    index.remove(conversationId);
+                } else {
+                    index.put(conversationId, new Entry(segment, offset, length));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load archive index from " + indexPath, e);
+        }
+    }
+
+    private void ensureOpenForWrite() throws IOException {
+        if (activeChannel != null) {
+            return;
+        }
+        Files.createDirectories(directory);
+        indexChannel = FileChannel.open(directory.resolve(INDEX_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        activeSegment = Math.max(1, latestSegmentNumber());
+        activeChannel = openSegmentForWrite(activeSegment);
+    }
+
+    private void rollSegment() throws IOException {
+        activeChannel.close();
+        activeSegment++;
+        activeChannel = openSegmentForWrite(activeSegment);
+    }
+
+    private FileChannel openSegmentForWrite(int segment) throws IOException {
+        return FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    private int latestSegmentNumber() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .mapToInt(name -> Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .max()
+                    .orElse(0);
+        }
+    }
+
+    private void writeIndexEntry(Long conversationId, Entry entry) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+        buffer.putLong(conversationId).putInt(entry.segment()).putLong(entry.offset()).putInt(entry.length());
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            indexChannel.write(buffer);
+        }
+        indexChannel.force(false);
+    }
+
+    private MappedByteBuffer mapSegment(int segment, long requiredBytes) throws IOException {
+        MappedSegment mapped = mappedSegments.get(segment);
+        if (mapped == null || mapped.size() < requiredBytes) {
+            // The active segment keeps growing, so remap it whenever a record lies past the current mapping
+            try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ)) {
+                mapped = new MappedSegment(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), channel.size());
+            }
+            mappedSegments.put(segment, mapped);
+        }
+        return mapped.buffer();
+    }
+
+    private Path segmentPath(int segment) {
+        return directory.resolve(String.format("%s%05d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private static byte[] encode(List<Message> messages) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater))) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeInt(messages.size());
+            for (Message message : messages) {
+                out.writeLong(message.getId() != null ? message.getId() : -1L);
+                out.writeByte(message.getRole().ordinal());
+                LocalDateTime createdAt = message.getCreatedAt();
+                out.writeLong(createdAt.toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(createdAt.getNano());
+                writeNullableString(out, message.getModelName());
+                writeNullableString(out, message.getContent());
+            }
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<Message> decode(ByteBuffer record) throws IOException {
+        Inflater inflater = new Inflater();
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(record.remaining() * 4);
+        try {
+            inflater.setInput(record);
+            byte[] chunk = new byte[8192];
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(chunk);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated archive record");
+                }
+                raw.write(chunk, 0, inflated);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt archive record", e);
+        } finally {
+            inflater.end();
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw.toByteArray()));
+        int version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported archive record version " + version);
+        }
+        int count = in.readInt();
+        MessageRole[] roles = MessageRole.values();
+        List<Message> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long id = in.readLong();
+            MessageRole role = roles[in.readByte()];
+            LocalDateTime createdAt = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+            String modelName = readNullableString(in);
+            String content = readNullableString(in);
+
+            Message message = new Message(role, content, modelName);
+            message.setId(id >= 0 ? id : null);
+            message.setCreatedAt(createdAt);
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private record Entry(int segment, long offset, int length) {}
+
+    private record MappedSegment(MappedByteBuffer buffer, long size) {}
+}
@@ -0,0 +1,376 @@
+package com.sahal.cache;
+
+import com.sahal.entity.MessageRole;
+import com.sahal.service.ChatContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Reuses model responses for prompts that are worded slightly differently.
+ *
+ * The last user message is normalized (lower case, contractions expanded, punctuation
+ * dropped) and fingerprinted with a 64-bit SimHash over its words and word pairs. Everything
+ * before it, and the model name, must match exactly; this is compared as a 64-bit hash.
+ *
+ * Fingerprints are indexed with banded LSH: 4 bands of 16 bits, each band value picking a
+ * bucket of 4 slots. Two fingerprints within 3 bits of each other always share at least one
+ * band, so every entry within the similarity threshold is found. Entries live in a fixed ring
+ * of primitive arrays and the oldest is overwritten, so memory stays bounded by the
+ * configured capacity.
+ *
+ * A sampled share of hits is checked against the stored prompt with word-set Jaccard
+ * similarity. Hits below the configured floor are counted as suspected false positives.
+ */
+@Component
+public class NearDuplicateCache {
+
+    private static final Logger log = LoggerFactory.getLogger(NearDuplicateCache.class);
+
+    private static final int BANDS = 4;
+    private static final int BAND_BITS = 16;
+    private static final int BAND_MASK = (1 << BAND_BITS) - 1;
+    private static final int WAYS = 4;
+    private static final int MAX_INDEXED_DISTANCE = BANDS - 1;
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final String[][] CONTRACTIONS = {
+            {"won't", "will not"}, {"can't", "can not"}, {"n't", " not"}, {"'re", " are"}, {"'s", " is"},
+            {"'m", " am"}, {"'ll", " will"}, {"'ve", " have"}, {"'d", " would"}
+    };
+
+    private final boolean enabled;
+    private final int capacity;
+    private final int maxDistance;
+    private final double maxTemperature;
+    private final long ttlNanos;
+    private final int maxResponseChars;
+    private final double sampleRate;
+    private final double falsePositiveJaccard;
+
+    // Slot storage; a slot is free when its response is null
+    private final long[] fingerprints;
+    private final long[] contextKeys;
+    private final long[] expiresAtNanos;
+    private final String[] prompts;
+    private final String[] responses;
+    // BANDS * 2^BAND_BITS buckets of WAYS slot numbers, stored as slot + 1 so 0 means empty
+    private final int[] buckets;
+    private int nextSlot;
+    private int size;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+    private final LongAdder inserts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder sampledHits = new LongAdder();
+    private final LongAdder suspectedFalsePositives = new LongAdder();
+
+    public NearDuplicateCache(@Value("${app.cache.near-duplicate.enabled:true}") boolean enabled,
+                              @Value("${app.cache.near-duplicate.capacity:4096}") int capacity,
+                              @Value("${app.cache.near-duplicate.min-similarity:0.95}") double minSimilarity,
+                              @Value("${app.cache.near-duplicate.max-temperature:0.3}") double maxTemperature,
+                              @Value("${app.cache.near-duplicate.ttl-minutes:60}") long ttlMinutes,
+                              @Value("${app.cache.near-duplicate.max-response-chars:16000}") int maxResponseChars,
+                              @Value("${app.cache.near-duplicate.sample-rate:0.05}") double sampleRate,
+                              @Value("${app.cache.near-duplicate.false-positive-jaccard:0.5}") double falsePositiveJaccard) {
+        this.maxDistance = (int) Math.floor((1.0 - minSimilarity) * 64 + 1e-9);
+        if (maxDistance > MAX_INDEXED_DISTANCE) {
+            throw new IllegalArgumentException("min-similarity " + minSimilarity + " allows " + maxDistance
+                    + " differing bits; the LSH bands only guarantee finding up to " + MAX_INDEXED_DISTANCE);
+        }
+        this.enabled = enabled;
+        this.capacity = Math.max(1, capacity);
+        this.maxTemperature = maxTemperature;
+        this.ttlNanos = TimeUnit.MINUTES.toNanos(ttlMinutes);
+        this.maxResponseChars = maxResponseChars;
+        this.sampleRate = sampleRate;
+        this.falsePositiveJaccard = falsePositiveJaccard;
+
+        this.fingerprints = new long[this.capacity];
+        this.contextKeys = new long[this.capacity];
+        this.expiresAtNanos = new long[this.capacity];
+        this.prompts = new String[this.capacity];
+        this.responses = new String[this.capacity];
+        this.buckets = new int[BANDS * (1 << BAND_BITS) * WAYS];
+    }
+
+    /**
+     * Whether a request at this temperature may use the cache. Higher temperatures ask for varied answers.
+     */
+    public boolean isEligible(double temperature) {
+        boolean eligible = enabled && temperature <= maxTemperature;
+        if (enabled && !eligible) {
+            bypassed.increment();
+        }
+        return eligible;
+    }
+
+    public Optional<String> get(String model, ChatContext messages) {
+        String prompt = lastUserPrompt(messages);
+        if (prompt == null) {
+            return Optional.empty();
+        }
+        lookups.increment();
+        long fingerprint = simHash(prompt);
+        long contextKey = contextKey(model, messages);
+
+        String response;
+        String cachedPrompt;
+        int distance;
+        synchronized (this) {
+            int slot = findNearest(fingerprint, contextKey, System.nanoTime());
+            if (slot < 0) {
+                return Optional.empty();
+            }
+            response = responses[slot];
+            cachedPrompt = prompts[slot];
+            distance = Long.bitCount(fingerprint ^ fingerprints[slot]);
+        }
+        hits.increment();
+        if (ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            samplePrecision(prompt, cachedPrompt, distance);
+        }
+        return Optional.of(response);
+    }
+
+    public void put(String model, ChatContext messages, String response) {
+        String prompt = lastUserPrompt(messages);
+        if (prompt == null || response == null || response.length() > maxResponseChars) {
+            return;
+        }
+        long fingerprint = simHash(prompt);
+        long contextKey = contextKey(model, messages);
+        long now = System.nanoTime();
+
+        synchronized (this) {
+            int existing = findNearest(fingerprint, contextKey, now);
+            if (existing >= 0 && fingerprints[existing] == fingerprint) {
+                responses[existing] = response;
+                expiresAtNanos[existing] = now + ttlNanos;
+                return;
+            }
+
+            int slot = nextSlot;
+            nextSlot = (nextSlot + 1) % capacity;
+            if (responses[slot] != null) {
+                unindex(slot);
+                evictions.increment();
+            } else {
+                size++;
+            }
+            fingerprints[slot] = fingerprint;
+            contextKeys[slot] = contextKey;
+            expiresAtNanos[slot] = now + ttlNanos;
+            prompts[slot] = prompt;
+            responses[slot] = response;
+            index(slot);
+        }
+        inserts.increment();
+    }
+
+    public Map<String, Object> getStats() {
+        long lookupCount = lookups.sum();
+        long hitCount = hits.sum();
+        long sampled = sampledHits.sum();
+        long suspected = suspectedFalsePositives.sum();
+        int entries;
+        synchronized (this) {
+            entries = size;
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("capacity", capacity);
+        stats.put("entries", entries);
+        stats.put("maxHammingDistance", maxDistance);
+        stats.put("lookups", lookupCount);
+        stats.put("hits", hitCount);
+        stats.put("misses", lookupCount - hitCount);
+        stats.put("hitRate", lookupCount == 0 ? 0.0 : (double) hitCount / lookupCount);
+        stats.put("bypassedByTemperature", bypassed.sum());
+        stats.put("inserts", inserts.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("sampledHits", sampled);
+        stats.put("suspectedFalsePositives", suspected);
+        stats.put("estimatedFalsePositiveRate", sampled == 0 ? 0.0 : (double) suspected / sampled);
+        return stats;
+    }
+
+    /**
+     * Slot of the closest live entry for the same context within the distance threshold, or -1
+     */
+    private int findNearest(long fingerprint, long contextKey, long now) {
+        int best = -1;
+        int bestDistance = maxDistance + 1;
+        for (int band = 0; band < BANDS; band++) {
+            int base = bucketBase(band, fingerprint);
+            for (int way = 0; way < WAYS; way++) {
+                int slot = buckets[base + way] - 1;
+                if (slot < 0) {
+                    break;
+                }
+                if (contextKeys[slot] != contextKey || expiresAtNanos[slot] - now < 0) {
+                    continue;
+                }
+                int distance = Long.bitCount(fingerprint ^ fingerprints[slot]);
+                if (distance < bestDistance) {
+                    best = slot;
+                    bestDistance = distance;
+                }
+            }
+        }
+        return best;
+    }
+
+    private void index(int slot) {
+        for (int band = 0; band < BANDS; band++) {
+            int base = bucketBase(band, fingerprints[slot]);
+            // Newest first; the oldest way falls off a full bucket
+            System.arraycopy(buckets, base, buckets, base + 1, WAYS - 1);
+            buckets[base] = slot + 1;
+        }
+    }
+
+    private void unindex(int slot) {
+        for (int band = 0; band < BANDS; band++) {
+            int base = bucketBase(band, fingerprints[slot]);
+            for (int way = 0; way < WAYS; way++) {
+                if (buckets[base + way] == slot + 1) {
+                    System.arraycopy(buckets, base + way + 1, buckets, base + way, WAYS - way - 1);
+                    buckets[base + WAYS - 1] = 0;
+                    break;
+                }
+            }
+        }
+    }
+
+    private static int bucketBase(int band, long fingerprint) {
+        int value = (int) (fingerprint >>> (band * BAND_BITS)) & BAND_MASK;
+        return ((band << BAND_BITS) | value) * WAYS;
+    }
+
+    private void samplePrecision(String prompt, String cachedPrompt, int distance) {
+        sampledHits.increment();
+        double jaccard = jaccard(prompt, cachedPrompt);
+        if (jaccard < falsePositiveJaccard) {
+            suspectedFalsePositives.increment();
+            log.debug("Suspected near-duplicate false positive (distance {}, jaccard {}): '{}' vs '{}'",
+                    distance, String.format("%.2f", jaccard), prompt, cachedPrompt);
+        }
+    }
+
+    /**
+     * Normalized text of the final user message, or null if the request does not end with a cacheable one
+     */
+    private static String lastUserPrompt(ChatContext messages) {
+        if (messages == null || messages.isEmpty()) {
+            return null;
+        }
+        ChatContext.Turn last = messages.last();
+        if (last.role() != MessageRole.USER || last.content() == null) {
+            return null;
+        }
+        String normalized = normalize(last.content());
+        return normalized.isEmpty() ? null : normalized;
+    }
+
+    /**
+     * Exact hash of the model and every message before the final user message
+     */
+    private static long contextKey(String model, ChatContext messages) {
+        long hash = hash64(model);
+        for (int i = 0; i < messages.size() - 1; i++) {
+            ChatContext.Turn message = messages.get(i);
+            hash = mix(hash * 31 + hash64(message.roleName()));
+            hash = mix(hash * 31 + hash64(message.content()));
+        }
+        return hash;
+    }
+
+    static String normalize(String text) {
+        String normalized = text.toLowerCase(Locale.ROOT).replace('’', '\'');
+        for (String[] contraction : CONTRACTIONS) {
+            normalized = normalized.replace(contraction[0], contraction[1]);
+        }
+        return NON_WORD.matcher(normalized).replaceAll(" ").trim();
+    }
+
+    /**
+     * SimHash over the words and adjacent word pairs of normalized text
+     */
+    static long simHash(String normalized) {
+        String[] words = normalized.split(" ");
+        int[] weights = new int[64];
+        for (int i = 0; i < words.length; i++) {
+            addFeature(weights, hash64(words[i]));
+            if (i + 1 < words.length) {
+                addFeature(weights, hash64(words[i] + ' ' + words[i + 1]));
+            }
+        }
+        long fingerprint = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    private static void addFeature(int[] weights, long featureHash) {
+        for (int bit = 0; bit < 64; bit++) {
+            weights[bit] += ((featureHash >>> bit) & 1) == 1 ? 1 : -1;
+        }
+    }
+
+    static double jaccard(String a, String b) {
+        Set<String> left = new HashSet<>(Arrays.asList(a.split(" ")));
+        Set<String> right = new HashSet<>(Arrays.asList(b.split(" ")));
+        int union = left.size();
+        int intersection = 0;
+        for (String word : right) {
+            if (left.contains(word)) {
+                intersection++;
+            } else {
+                union++;
+            }
+        }
+        return union == 0 ? 1.0 : (double) intersection / union;
+    }
+
+    // FNV-1a followed by the MurmurHash3 finalizer so nearby strings spread over all 64 bits
+    private static long hash64(String value) {
+        if (value == null) {
+            return 0;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,52 @@
+package com.sahal.configuration;
+
+import com.sahal.datasource.ReplicaRoutingDataSource;
+import com.sahal.persistence.LogConversationStore;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Refuses to start when a switch that selects configuration disagrees with the beans that exist.
+ *
+ * With spring.aot.enabled (the fast-start image) bean definitions come from the AOT build, so
+ * app.persistence.store and app.datasource.replicas.enabled took effect with the values they had
+ * at build time; setting them differently at runtime would otherwise be ignored without a word.
+ * The image takes the deployment's values in the AOT_PROPERTIES build argument.
+ */
+@Component
+public class BuildTimeSwitchCheck implements SmartInitializingSingleton {
+
+    private final ApplicationContext context;
+
+    @Value("${app.persistence.store:jpa}")
+    private String store;
+
+    @Value("${app.datasource.replicas.enabled:false}")
+    private boolean replicasEnabled;
+
+    public BuildTimeSwitchCheck(ApplicationContext context) {
+        this.context = context;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        List<String> mismatches = new ArrayList<>();
+        boolean embeddedStore = context.getBeanNamesForType(LogConversationStore.class).length > 0;
+        if (embeddedStore != "embedded".equals(store)) {
+            mismatches.add("app.persistence.store=" + store + " but the " + (embeddedStore ? "embedded" : "jpa") + " store is configured");
+        }
+        boolean replicaRouting = context.getBeanNamesForType(ReplicaRoutingDataSource.class).length > 0;
+        if (replicaRouting != replicasEnabled) {
+            mismatches.add("app.datasource.replicas.enabled=" + replicasEnabled + " but replica routing is " + (replicaRouting ? "configured" : "not configured"));
+        }
+        if (!mismatches.isEmpty()) {
+            throw new IllegalStateException("Configuration differs from the AOT build: " + String.join("; ", mismatches)
+                    + ". Rebuild the image with these properties in AOT_PROPERTIES, or run without -Dspring.aot.enabled=true");
+        }
+    }
+}
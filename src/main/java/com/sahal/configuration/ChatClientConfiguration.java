@@ -4,6 +4,7 @@ import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.openai.OpenAiChatModel;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
@@ -11,6 +12,8 @@ import org.springframework.http.client.ClientHttpRequestExecution;
 import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.context.annotation.Primary;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sahal.upstream.ApiKeyPool;
+import com.sahal.upstream.RecordReplayInterceptor;
 
 import java.io.IOException;
 
@@ -19,9 +22,15 @@ public class ChatClientConfiguration {
 
     @Bean
     @Primary
-    public RestTemplate restTemplate() {
+    public RestTemplate restTemplate(RecordReplayInterceptor recordReplayInterceptor, ApiKeyPool apiKeyPool) {
         RestTemplate restTemplate = new RestTemplate();
         restTemplate.getInterceptors().add(new OpenRouterInterceptor());
+        if (recordReplayInterceptor.isActive()) {
+            // Replay answers before a key is taken; recordings still see the pool's retries
+            restTemplate.getInterceptors().add(recordReplayInterceptor);
+        }
+        // Last, a retry on another key re-executes the request past any later interceptor
+        restTemplate.getInterceptors().add(apiKeyPool);
         return restTemplate;
     }
 
@@ -30,7 +39,9 @@ public class ChatClientConfiguration {
         return new ObjectMapper();
     }
 
+    // Not used by the request paths; created on first injection so it stays off the startup path
     @Bean
+    @Lazy
     public ChatClient chatClient(OpenAiChatModel openAiChatModel) {
         return ChatClient.builder(openAiChatModel)
                 .defaultSystem("You are a helpful AI assistant.")
@@ -0,0 +1,131 @@
+package com.sahal.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes finished spans as one JSON object per line, to a file or to the application log.
+ *
+ * Lets traces be inspected without a collector: {@code jq 'select(.traceId == "...")'} on the
+ * file lists every span of a request with its parent, duration and attributes. Once the file
+ * reaches its size limit it is moved to {@code <file>.1}, replacing the previous one, so the
+ * spans on disk never take more than twice the limit.
+ */
+public class JsonLinesSpanExporter implements SpanExporter {
+
+    private static final Logger log = LoggerFactory.getLogger(JsonLinesSpanExporter.class);
+
+    private final ObjectMapper objectMapper;
+    private final Path file;
+    private final long maxFileBytes;
+    private OutputStream out;
+    private long fileBytes;
+
+    /**
+     * @param file span file, or null to write spans to the log at INFO
+     * @param maxFileBytes size at which the file is rotated
+     */
+    public JsonLinesSpanExporter(ObjectMapper objectMapper, Path file, long maxFileBytes) {
+        this.objectMapper = objectMapper;
+        this.file = file;
+        this.maxFileBytes = maxFileBytes;
+    }
+
+    @Override
+    public synchronized CompletableResultCode export(Collection<SpanData> spans) {
+        try {
+            for (SpanData span : spans) {
+                if (file == null) {
+                    log.info(objectMapper.writeValueAsString(toMap(span)));
+                    continue;
+                }
+                byte[] line = objectMapper.writeValueAsBytes(toMap(span));
+                if (fileBytes > 0 && fileBytes + line.length + 1 > maxFileBytes) {
+                    rotate();
+                }
+                OutputStream stream = out();
+                stream.write(line);
+                stream.write('\n');
+                fileBytes += line.length + 1;
+            }
+            if (out != null) {
+                out.flush();
+            }
+            return CompletableResultCode.ofSuccess();
+        } catch (IOException e) {
+            log.warn("Failed to export {} spans: {}", spans.size(), e.getMessage());
+            return CompletableResultCode.ofFailure();
+        }
+    }
+
+    private Map<String, Object> toMap(SpanData span) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("traceId", span.getTraceId());
+        result.put("spanId", span.getSpanId());
+        result.put("parentSpanId", span.getParentSpanContext().isValid() ? span.getParentSpanId() : null);
+        result.put("name", span.getName());
+        result.put("kind", span.getKind().name());
+        result.put("startEpochMicros", TimeUnit.NANOSECONDS.toMicros(span.getStartEpochNanos()));
+        result.put("durationMs", (span.getEndEpochNanos() - span.getStartEpochNanos()) / 1_000_000.0);
+        result.put("status", span.getStatus().getStatusCode().name());
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        span.getAttributes().forEach((key, value) -> attributes.put(key.getKey(), value));
+        result.put("attributes", attributes);
+        return result;
+    }
+
+    private OutputStream out() throws IOException {
+        if (out == null) {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            out = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+            fileBytes = Files.size(file);
+        }
+        return out;
+    }
+
+    private void rotate() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+        Files.move(file, file.resolveSibling(file.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        fileBytes = 0;
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public synchronized CompletableResultCode shutdown() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                return CompletableResultCode.ofFailure();
+            } finally {
+                out = null;
+            }
+        }
+        return CompletableResultCode.ofSuccess();
+    }
+}
@@ -0,0 +1,24 @@
+package com.sahal.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Runs the db/migration scripts on startup. The switch is read when the strategy runs rather than
+ * through spring.flyway.enabled, whose condition an AOT build fixes at build time; the image's
+ * CDS training run has no database and turns migration off with it.
+ */
+@Configuration
+public class SchemaMigrationConfiguration {
+
+    @Bean
+    public FlywayMigrationStrategy flywayMigrationStrategy(@Value("${app.flyway.migrate-on-start:true}") boolean migrateOnStart) {
+        return flyway -> {
+            if (migrateOnStart) {
+                flyway.migrate();
+            }
+        };
+    }
+}
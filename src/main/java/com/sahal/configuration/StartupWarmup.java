@@ -0,0 +1,115 @@
+package com.sahal.configuration;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sahal.persistence.ConversationStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Warms up a new instance before it is reported ready.
+ *
+ * Spring Boot switches readiness to ACCEPTING_TRAFFIC right after the ApplicationReadyEvent
+ * listeners return, so running here keeps /actuator/health/readiness at 503 until the warm-up
+ * is done or times out. The warm-up opens a keep-alive connection to OpenRouter (DNS and TLS),
+ * runs the JSON paths of a chat request and response, and runs the conversation queries so their
+ * Hibernate query plans are built. Failures are logged and never block startup.
+ */
+@Component
+public class StartupWarmup {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupWarmup.class);
+
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final ConversationStore conversationStore;
+
+    @Value("${app.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.warmup.iterations:200}")
+    private int iterations;
+
+    @Value("${app.warmup.timeout-ms:10000}")
+    private long timeoutMs;
+
+    @Value("${spring.ai.openai.base-url}")
+    private String baseUrl;
+
+    public StartupWarmup(RestTemplate restTemplate, ObjectMapper objectMapper, ConversationStore conversationStore) {
+        this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
+        this.conversationStore = conversationStore;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        CompletableFuture<Void> upstream = CompletableFuture.runAsync(this::openUpstreamConnection,
+                runnable -> Thread.ofVirtual().name("warmup-upstream").start(runnable));
+        try {
+            warmJson();
+            warmQueries();
+            upstream.get(Math.max(0, timeoutMs - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Warm-up timed out after {} ms, accepting traffic anyway", timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | JsonProcessingException | RuntimeException e) {
+            log.warn("Warm-up failed, accepting traffic anyway: {}", e.getMessage());
+        }
+        log.info("Warm-up finished in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * The model list needs no API key and costs no tokens; the connection stays in the keep-alive cache
+     */
+    private void openUpstreamConnection() {
+        try {
+            restTemplate.getForEntity(baseUrl + "/models", String.class);
+        } catch (RuntimeException e) {
+            log.warn("Could not reach {} during warm-up: {}", baseUrl, e.getMessage());
+        }
+    }
+
+    private void warmJson() throws JsonProcessingException {
+        Map<String, Object> request = Map.of(
+                "model", "warmup",
+                "messages", List.of(Map.of("role", "user", "content", "warm-up")),
+                "max_tokens", 1000,
+                "temperature", 0.7,
+                "stream", false);
+        String response = "{\"id\":\"warmup\",\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\"ok\"},"
+                + "\"finish_reason\":\"stop\"}],\"usage\":{\"prompt_tokens\":1,\"completion_tokens\":1,\"total_tokens\":2}}";
+        for (int i = 0; i < iterations; i++) {
+            objectMapper.writeValueAsString(request);
+            JsonNode root = objectMapper.readTree(response);
+            objectMapper.writeValueAsString(Map.of(
+                    "answer", root.path("choices").get(0).path("message").path("content").asText(),
+                    "sessionId", "warmup",
+                    "modelResponses", List.of(Map.of("model", "warmup", "success", true))));
+        }
+    }
+
+    private void warmQueries() {
+        conversationStore.findStampBySessionId("warmup");
+        conversationStore.findViewBySessionId("warmup");
+        conversationStore.getListingVersionStamp();
+    }
+}
@@ -0,0 +1,34 @@
+package com.sahal.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+
+/**
+ * Local span export. Spring Boot wires every SpanExporter bean into the OpenTelemetry tracer,
+ * so an OTLP exporter can be added next to this one once a collector is available.
+ *
+ * The exporter is picked when the bean is created rather than with a condition, so an AOT
+ * build does not fix it at build time.
+ */
+@Configuration
+public class TracingConfiguration {
+
+    @Bean
+    public SpanExporter jsonLinesSpanExporter(ObjectMapper objectMapper,
+                                              @Value("${app.tracing.exporter:none}") String exporter,
+                                              @Value("${app.tracing.file:data/traces/spans.jsonl}") String file,
+                                              @Value("${app.tracing.max-file-mb:64}") int maxFileMb) {
+        return switch (exporter) {
+            case "file" -> new JsonLinesSpanExporter(objectMapper, Paths.get(file), maxFileMb * 1024L * 1024L);
+            case "log" -> new JsonLinesSpanExporter(objectMapper, null, 0);
+            // An empty composite is the no-op exporter
+            case "none" -> SpanExporter.composite();
+            default -> throw new IllegalArgumentException("Unknown app.tracing.exporter: " + exporter);
+        };
+    }
+}
@@ -1,15 +1,32 @@
 package com.sahal.controller;
 
+import com.sahal.datasource.ReplicaRoutingDataSource;
+import com.sahal.diagnostics.RequestDiagnostics;
+import com.sahal.dto.AskResponse;
+import com.sahal.dto.ComparisonResponse;
+import com.sahal.dto.ErrorResponse;
+import com.sahal.dto.MessageDto;
 import com.sahal.entity.Conversation;
 import com.sahal.entity.Message;
 import com.sahal.entity.MessageRole;
+import com.sahal.service.ChatContext;
+import com.sahal.service.ContextPacker;
 import com.sahal.service.ConversationService;
+import com.sahal.service.IdempotencyService;
+import com.sahal.service.ModelCallService;
+import com.sahal.service.ModelHealthStats;
+import com.sahal.service.ModelRouter;
+import com.sahal.upstream.ApiKeyPool;
+import io.micrometer.observation.annotation.Observed;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.*;
 import java.time.LocalDateTime;
@@ -19,33 +36,104 @@ import java.time.LocalDateTime;
 @CrossOrigin("*")
 public class ChatController {
 
-    @Value("${spring.ai.openai.api-key}")
-    private String apiKey;
-
-    @Value("${spring.ai.openai.base-url}")
-    private String baseUrl;
-
-    private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper;
     private final ConversationService conversationService;
+    private final ModelCallService modelCallService;
+    private final ContextPacker contextPacker;
+    private final IdempotencyService idempotencyService;
+    private final ModelRouter modelRouter;
+    private final ModelHealthStats modelHealthStats;
+    private final ApiKeyPool apiKeyPool;
+    private final ObjectProvider<ReplicaRoutingDataSource> replicaRouting;
+    private final RequestDiagnostics requestDiagnostics;
+
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
 
-    // Free models available on OpenRouter
-    private static final String[] FREE_MODELS = {
-        "deepseek/deepseek-chat-v3.1:free",
-        "x-ai/grok-4-fast:free", 
-        "google/gemma-3-27b-it:free"
-    };
+    @Value("${app.comparison.threaded:false}")
+    private boolean threadedComparisonByDefault;
 
-    public ChatController(RestTemplate restTemplate, ObjectMapper objectMapper, ConversationService conversationService) {
-        this.restTemplate = restTemplate;
-        this.objectMapper = objectMapper;
+    public ChatController(ConversationService conversationService, ModelCallService modelCallService,
+                          ContextPacker contextPacker, IdempotencyService idempotencyService,
+                          ModelRouter modelRouter, ModelHealthStats modelHealthStats, ApiKeyPool apiKeyPool,
+                          ObjectProvider<ReplicaRoutingDataSource> replicaRouting, RequestDiagnostics requestDiagnostics) {
         this.conversationService = conversationService;
+        this.modelCallService = modelCallService;
+        this.contextPacker = contextPacker;
+        this.idempotencyService = idempotencyService;
+        this.modelRouter = modelRouter;
+        this.modelHealthStats = modelHealthStats;
+        this.apiKeyPool = apiKeyPool;
+        this.replicaRouting = replicaRouting;
+        this.requestDiagnostics = requestDiagnostics;
     }
 
     @PostMapping("/ask")
-    public Map<String, Object> ask(@RequestParam String question,
-                                  @RequestParam(value = "model", defaultValue = "all") String model,
-                                  @RequestParam(value = "sessionId", required = false) String sessionId) {
+    @Observed(name = "chat.ask", contextualName = "ChatController.ask")
+    public ResponseEntity<Object> ask(@RequestParam String question,
+                                                   @RequestParam(value = "model", defaultValue = "all") String model,
+                                                   @RequestParam(value = "sessionId", required = false) String sessionId,
+                                                   @RequestParam(value = "temperature", required = false) Double temperature,
+                                                   @RequestParam(value = "threaded", required = false) Boolean threaded,
+                                                   @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                                   HttpServletResponse response) {
+        RequestDiagnostics.RequestTrace trace = requestDiagnostics.begin("/chat/ask", model, sessionId);
+        try {
+            return handleAsk(question, model, sessionId, temperature, threaded, idempotencyKey);
+        } finally {
+            endTrace(trace, response);
+        }
+    }
+
+    /**
+     * Report the request's phase timings in a Server-Timing header before the body is written
+     */
+    private void endTrace(RequestDiagnostics.RequestTrace trace, HttpServletResponse response) {
+        String serverTiming = requestDiagnostics.serverTiming(trace);
+        if (serverTiming != null) {
+            response.setHeader("Server-Timing", serverTiming);
+        }
+        requestDiagnostics.end(trace);
+    }
+
+    private ResponseEntity<Object> handleAsk(String question, String model, String sessionId, Double temperature,
+                                             Boolean threaded, String idempotencyKey) {
+        if (temperature != null && (temperature < 0 || temperature > 2)) {
+            return ResponseEntity.badRequest().body(new ErrorResponse("temperature must be between 0 and 2"));
+        }
+        double effectiveTemperature = temperature != null ? temperature : ModelCallService.DEFAULT_TEMPERATURE;
+        boolean effectiveThreaded = threaded != null ? threaded : threadedComparisonByDefault;
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return ResponseEntity.ok(answer(question, model, sessionId, effectiveTemperature, effectiveThreaded));
+        }
+        if (idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            return ResponseEntity.badRequest().body(new ErrorResponse("Idempotency-Key must be at most " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters"));
+        }
+        
+        // Retries with the same key wait for or replay the first response instead of calling the models again
+        // Optional parameters only take part when given, so existing keys keep their hash
+        List<String> hashParts = new ArrayList<>(Arrays.asList(question, model, sessionId));
+        if (temperature != null) {
+            hashParts.add(temperature.toString());
+        }
+        if (threaded != null) {
+            hashParts.add("threaded=" + threaded);
+        }
+        String requestHash = IdempotencyService.hashRequest(hashParts.toArray(String[]::new));
+        IdempotencyService.Result result = idempotencyService.execute(idempotencyKey, requestHash,
+                () -> answer(question, model, sessionId, effectiveTemperature, effectiveThreaded));
+        return switch (result.status()) {
+            case EXECUTED -> ResponseEntity.ok(result.response());
+            case REPLAYED -> ResponseEntity.ok().header("Idempotent-Replayed", "true").body(result.response());
+            case MISMATCH -> ResponseEntity.unprocessableEntity()
+                    .body(new ErrorResponse("Idempotency-Key was already used for a different request"));
+            case IN_PROGRESS -> ResponseEntity.status(HttpStatus.CONFLICT).header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(new ErrorResponse("A request with this Idempotency-Key is still in progress"));
+        };
+    }
+
+    /**
+     * An {@link AskResponse}, a {@link ComparisonResponse} for model=all, or an {@link ErrorResponse}
+     */
+    private Object answer(String question, String model, String sessionId, double temperature, boolean threaded) {
         try {
             // Generate session ID if not provided
             if (sessionId == null || sessionId.trim().isEmpty()) {
@@ -53,56 +141,78 @@ public class ChatController {
             }
             
             if ("all".equals(model.toLowerCase())) {
-                return getComparisonResponse(question, sessionId);
+                return getComparisonResponse(question, sessionId, temperature, threaded);
+            } else if (modelRouter.isRoutedAlias(model)) {
+                // Route to the healthy model with the best current latency score
+                ModelRouter.Selection selection = modelRouter.choose(model);
+                String response = getResponseWithModel(selection.model(), question, sessionId, temperature);
+                return new AskResponse(selection.model(), response, selection.toRouting());
             } else {
-                String modelName = switch (model.toLowerCase()) {
-                    case "deepseek" -> FREE_MODELS[0];
-                    case "grok" -> FREE_MODELS[1];
-                    case "gemma" -> FREE_MODELS[2];
-                    default -> throw new IllegalArgumentException("Unsupported model: " + model + ". Available: deepseek, grok, gemma, all");
-                };
+                String modelName = modelCallService.resolveModel(model);
                 
-                String response = getResponseWithModel(modelName, question, sessionId);
-                return Map.of("model", modelName, "response", response);
+                String response = getResponseWithModel(modelName, question, sessionId, temperature);
+                return new AskResponse(modelName, response);
             }
         } catch (Exception e) {
-            return Map.of("error", "Error: " + e.getMessage() + ". Please try again or contact support.");
+            return new ErrorResponse("Error: " + e.getMessage() + ". Please try again or contact support.");
         }
     }
 
     @GetMapping("/history/{sessionId}")
-    public List<Map<String, Object>> getConversationHistory(@PathVariable String sessionId,
-                                                           @RequestParam(value = "includeSummary", defaultValue = "false") boolean includeSummary) {
-        List<Message> messages = conversationService.getConversationHistory(sessionId);
-        List<Map<String, Object>> result = messages.stream()
-                .map(msg -> {
-                    Map<String, Object> messageMap = new HashMap<>();
-                    messageMap.put("role", msg.getRole().name().toLowerCase());
-                    messageMap.put("content", msg.getContent());
-                    messageMap.put("timestamp", msg.getCreatedAt().toString());
-                    messageMap.put("model", msg.getModelName());
-                    return messageMap;
-                })
-                .toList();
-        
-        // Add summary if requested
-        if (includeSummary) {
-            try {
-                Conversation conversation = conversationService.getOrCreateConversation(sessionId);
-                if (conversation.getSummary() != null) {
-                    Map<String, Object> summaryMap = new HashMap<>();
-                    summaryMap.put("role", "system");
-                    summaryMap.put("content", "Past conversation summary: " + conversation.getSummary());
-                    summaryMap.put("timestamp", "summary");
-                    summaryMap.put("model", "system");
-                    result.add(0, summaryMap); // Add at the beginning
+    public List<MessageDto> getConversationHistory(@PathVariable String sessionId,
+                                                           @RequestParam(value = "includeSummary", defaultValue = "false") boolean includeSummary,
+                                                           WebRequest webRequest, HttpServletResponse response) {
+        RequestDiagnostics.RequestTrace trace = requestDiagnostics.begin("/chat/history", null, sessionId);
+        try {
+            if (isNotModified(webRequest, sessionId)) {
+                return null;
+            }
+            List<Message> messages;
+            try (RequestDiagnostics.Scope phase = requestDiagnostics.phase("history")) {
+                messages = conversationService.getConversationHistory(sessionId);
+            }
+            List<MessageDto> result = new ArrayList<>(messages.size() + 1);
+            
+            // Add summary if requested
+            if (includeSummary) {
+                try (RequestDiagnostics.Scope phase = requestDiagnostics.phase("summary")) {
+                    conversationService.getConversationSummary(sessionId).ifPresent(summary -> result.add(MessageDto.summary(summary)));
                 }
-            } catch (Exception e) {
-                // Ignore errors when adding summary
             }
+            
+            for (Message msg : messages) {
+                result.add(MessageDto.of(msg));
+            }
+            
+            return result;
+        } finally {
+            endTrace(trace, response);
+        }
+    }
+
+    /**
+     * Cursor-paginated history for clients that only render part of a long chat
+     */
+    @GetMapping("/history/{sessionId}/page")
+    public Object getConversationHistoryPage(@PathVariable String sessionId,
+                                                          @RequestParam(value = "before", required = false) Long before,
+                                                          @RequestParam(value = "after", required = false) Long after,
+                                                          @RequestParam(value = "limit", defaultValue = "50") int limit,
+                                                          WebRequest webRequest, HttpServletResponse response) {
+        if (before != null && after != null) {
+            return new ErrorResponse("Use either before or after, not both");
+        }
+        RequestDiagnostics.RequestTrace trace = requestDiagnostics.begin("/chat/history/page", null, sessionId);
+        try {
+            if (isNotModified(webRequest, sessionId)) {
+                return null;
+            }
+            try (RequestDiagnostics.Scope phase = requestDiagnostics.phase("history")) {
+                return conversationService.getConversationHistoryPage(sessionId, before, after, limit);
+            }
+        } finally {
+            endTrace(trace, response);
         }
-        
-        return result;
     }
 
     @DeleteMapping("/history/{sessionId}")
@@ -112,15 +222,79 @@ public class ChatController {
     }
 
     @GetMapping("/conversations")
-    public List<Map<String, Object>> getAllConversations() {
+    public List<Map<String, Object>> getAllConversations(WebRequest webRequest) {
+        if (isNotModified(webRequest, Optional.of(conversationService.getListingVersionStamp()))) {
+            return null;
+        }
         return conversationService.getAllConversations();
     }
 
     @GetMapping("/conversations/{sessionId}")
-    public Map<String, Object> getConversationDetails(@PathVariable String sessionId) {
+    public Object getConversationDetails(@PathVariable String sessionId, WebRequest webRequest) {
+        if (isNotModified(webRequest, conversationService.getVersionStamp(sessionId))) {
+            return null;
+        }
         return conversationService.getConversationDetails(sessionId);
     }
 
+    private boolean isNotModified(WebRequest webRequest, String sessionId) {
+        try (RequestDiagnostics.Scope phase = requestDiagnostics.phase("stamp")) {
+            return isNotModified(webRequest, conversationService.getVersionStamp(sessionId));
+        }
+    }
+
+    /**
+     * Set a strong ETag from the version stamp and answer 304 if the client already has it.
+     * Polling clients are answered from the stamp alone, without loading any messages.
+     * The JSON, Smile and CBOR bodies share the stamp, so caches must key them on Accept.
+     */
+    private boolean isNotModified(WebRequest webRequest, Optional<String> versionStamp) {
+        if (webRequest instanceof ServletWebRequest servletRequest && servletRequest.getResponse() != null) {
+            servletRequest.getResponse().addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        return versionStamp.isPresent() && webRequest.checkNotModified("\"" + versionStamp.get() + "\"");
+    }
+
+    @GetMapping("/search")
+    public Map<String, Object> searchConversations(@RequestParam("q") String query,
+                                                   @RequestParam(value = "cursor", required = false) String cursor,
+                                                   @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        if (query == null || query.trim().isEmpty()) {
+            return Map.of("error", "Search query must not be empty");
+        }
+        try {
+            return conversationService.searchMessages(query.trim(), cursor, limit);
+        } catch (IllegalArgumentException e) {
+            return Map.of("error", e.getMessage());
+        }
+    }
+
+    @GetMapping("/models/health")
+    public Map<String, Object> getModelHealth() {
+        return modelHealthStats.toMap();
+    }
+
+    @GetMapping("/upstream/keys")
+    public Map<String, Object> getUpstreamKeys() {
+        return apiKeyPool.toMap();
+    }
+
+    @GetMapping("/datasource/replicas")
+    public Map<String, Object> getReplicaRouting() {
+        ReplicaRoutingDataSource routing = replicaRouting.getIfAvailable();
+        return routing != null ? routing.toMap() : Map.of("enabled", false);
+    }
+
+    @GetMapping("/cache/stats")
+    public Map<String, Object> getCacheStats() {
+        return modelCallService.getCacheStats();
+    }
+
+    @GetMapping("/cache/prompt")
+    public Map<String, Object> getPromptCacheStats() {
+        return modelCallService.getPromptCacheStats();
+    }
+
     @DeleteMapping("/conversations/{sessionId}")
     public String deleteConversation(@PathVariable String sessionId) {
         conversationService.deleteConversation(sessionId);
@@ -128,7 +302,7 @@ public class ChatController {
     }
 
 
-    private Map<String, Object> getComparisonResponse(String question, String sessionId) {
+    private ComparisonResponse getComparisonResponse(String question, String sessionId, double temperature, boolean threaded) {
         try {
             // Get or create conversation
             Conversation conversation = conversationService.getOrCreateConversation(sessionId);
@@ -136,42 +310,66 @@ public class ChatController {
             // Add user message to conversation
             conversationService.addMessage(conversation, MessageRole.USER, question, null);
             
-            // Get conversation history for context (comparison mode - user messages only)
-            List<Map<String, String>> contextMessages = conversationService.getConversationContextForComparison(sessionId);
+            // Get conversation history for context: user messages only, or each model's own thread
+            ChatContext contextMessages;
+            Map<String, ChatContext> threads;
+            try (RequestDiagnostics.Scope phase = requestDiagnostics.phase("context")) {
+                contextMessages = threaded ? ChatContext.empty() : conversationService.getConversationContextForComparison(sessionId);
+                threads = threaded
+                    ? conversationService.getThreadedContextForComparison(sessionId, ModelCallService.FREE_MODELS)
+                    : Map.of();
+            }
             
-            Map<String, Object> responses = new HashMap<>();
-            List<Map<String, Object>> modelResponses = new ArrayList<>();
+            Map<String, String> responses = new HashMap<>();
+            List<ComparisonResponse.ModelResponse> modelResponses = new ArrayList<>();
             
-            // Call all models in parallel
-            for (String model : FREE_MODELS) {
+            // Fit the history into each model's token budget; models sharing a budget share the packed context
+            Map<Integer, ContextPacker.PackedContext> packedByBudget = new HashMap<>();
+            
+            // Call the models one after another; each answer is stored before the next call
+            for (String model : ModelCallService.FREE_MODELS) {
+                int budget = contextPacker.budgetFor(modelCallService.aliasOf(model));
+                ContextPacker.PackedContext context;
+                long contextStart = System.nanoTime();
+                try (RequestDiagnostics.Scope phase = requestDiagnostics.phase("context")) {
+                    context = threaded
+                        ? contextPacker.pack(threads.get(model), budget)
+                        : packedByBudget.computeIfAbsent(budget, b -> contextPacker.pack(contextMessages, b));
+                }
+                long upstreamStart = System.nanoTime();
+                String response;
                 try {
-                    String response = callModel(model, contextMessages);
-                    responses.put(model, response);
-                    modelResponses.add(Map.of("model", model, "response", response, "status", "success"));
-                    
-                    // Add AI response to conversation
-                    conversationService.addMessage(conversation, MessageRole.ASSISTANT, response, model);
+                    response = modelCallService.callModel(model, context.messages(), temperature);
                 } catch (Exception e) {
                     String errorMsg = "Error: " + e.getMessage();
                     responses.put(model, errorMsg);
-                    modelResponses.add(Map.of("model", model, "response", errorMsg, "status", "error"));
+                    modelResponses.add(new ComparisonResponse.ModelResponse(model, errorMsg, "error", context.toStats(),
+                        ComparisonResponse.Timing.ofNanos(upstreamStart - contextStart, System.nanoTime() - upstreamStart, 0)));
+                    continue;
+                }
+                responses.put(model, response);
+                
+                // Add AI response to conversation; the answer is returned even if storing it fails
+                String status = "success";
+                long persistStart = System.nanoTime();
+                try {
+                    conversationService.addMessage(conversation, MessageRole.ASSISTANT, response, model);
+                } catch (Exception e) {
+                    status = "persist-error";
                 }
+                long persistEnd = System.nanoTime();
+                modelResponses.add(new ComparisonResponse.ModelResponse(model, response, status, context.toStats(),
+                    ComparisonResponse.Timing.ofNanos(upstreamStart - contextStart, persistStart - upstreamStart, persistEnd - persistStart)));
             }
             
-            return Map.of(
-                "question", question,
-                "sessionId", sessionId,
-                "responses", responses,
-                "modelResponses", modelResponses,
-                "timestamp", LocalDateTime.now().toString()
-            );
+            return new ComparisonResponse(question, sessionId, responses, modelResponses, threaded, LocalDateTime.now().toString());
             
         } catch (Exception e) {
             throw new RuntimeException("Failed to get comparison response: " + e.getMessage(), e);
         }
     }
     
-    private String getResponseWithModel(String model, String question, String sessionId) {
+    private String getResponseWithModel(String model, String question, String sessionId, double temperature) {
         try {
             // Get or create conversation
             Conversation conversation = conversationService.getOrCreateConversation(sessionId);
@@ -180,9 +378,12 @@ public class ChatController {
             conversationService.addMessage(conversation, MessageRole.USER, question, null);
             
             // Get conversation history for context (single model mode - with summarization)
-            List<Map<String, String>> messages = conversationService.getConversationContextForSingleModel(sessionId, question);
+            ChatContext messages;
+            try (RequestDiagnostics.Scope phase = requestDiagnostics.phase("context")) {
+                messages = conversationService.getConversationContextForSingleModel(sessionId, question);
+            }
             
-            String response = callModel(model, messages);
+            String response = modelCallService.callModel(model, messages, temperature);
             
             // Add AI response to conversation
             conversationService.addMessage(conversation, MessageRole.ASSISTANT, response, model);
@@ -193,46 +394,4 @@ public class ChatController {
             throw new RuntimeException("Failed to get response from model " + model + ": " + e.getMessage(), e);
         }
     }
-    
-    private String callModel(String model, List<Map<String, String>> messages) throws Exception {
-        // Create the request payload
-        Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("model", model);
-        requestBody.put("messages", messages);
-        requestBody.put("max_tokens", 1000);
-        requestBody.put("temperature", 0.7);
-        requestBody.put("stream", false);
-
-        // Set up headers
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.set("Authorization", "Bearer " + apiKey);
-        headers.set("HTTP-Referer", "http://localhost:8080");
-        headers.set("X-Title", "AI Demo");
-
-        // Create the request entity
-        HttpEntity<Map<String, Object>> requestEntity = new HttpEntity<>(requestBody, headers);
-
-        // Make the API call
-        ResponseEntity<String> response = restTemplate.postForEntity(
-            baseUrl + "/chat/completions", 
-            requestEntity, 
-            String.class
-        );
-
-        // Parse the response
-        JsonNode jsonResponse = objectMapper.readTree(response.getBody());
-        JsonNode choices = jsonResponse.get("choices");
-        
-        String aiResponse = "No response content found from model " + model;
-        if (choices != null && choices.isArray() && choices.size() > 0) {
-            JsonNode firstChoice = choices.get(0);
-            JsonNode message = firstChoice.get("message");
-            if (message != null && message.has("content")) {
-                aiResponse = message.get("content").asText();
-            }
-        }
-        
-        return aiResponse;
-    }
 }
@@ -0,0 +1,105 @@
+package com.sahal.controller;
+
+import com.sahal.entity.EvaluationJob;
+import com.sahal.entity.EvaluationResult;
+import com.sahal.service.EvaluationJobService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.*;
+
+@RestController
+@ConditionalOnProperty(name = "app.persistence.store", havingValue = "jpa", matchIfMissing = true)
+@RequestMapping("/chat/jobs")
+@CrossOrigin("*")
+public class EvaluationJobController {
+
+    private final EvaluationJobService evaluationJobService;
+
+    public EvaluationJobController(EvaluationJobService evaluationJobService) {
+        this.evaluationJobService = evaluationJobService;
+    }
+
+    public record EvaluationJobRequest(List<String> prompts, List<String> models, Integer concurrency) {}
+
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> submitJob(@RequestBody EvaluationJobRequest request) {
+        try {
+            EvaluationJob job = evaluationJobService.submitJob(request.prompts(), request.models(), request.concurrency());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(convertToJobStatus(job));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<Map<String, Object>> getJob(@PathVariable Long jobId) {
+        return evaluationJobService.getJob(jobId)
+                .map(job -> ResponseEntity.ok(convertToJobStatus(job)))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Job not found")));
+    }
+
+    /**
+     * Results in completion order. Pass the returned nextAfter to fetch results that finished since.
+     */
+    @GetMapping("/{jobId}/results")
+    public ResponseEntity<Map<String, Object>> getResults(@PathVariable Long jobId,
+                                                          @RequestParam(value = "after", defaultValue = "0") long after,
+                                                          @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        Optional<EvaluationJob> job = evaluationJobService.getJob(jobId);
+        if (job.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Job not found"));
+        }
+
+        List<EvaluationResult> results = evaluationJobService.getResults(jobId, after, limit);
+        List<Map<String, Object>> resultMaps = results.stream()
+                .map(result -> {
+                    Map<String, Object> resultMap = new HashMap<>();
+                    resultMap.put("id", result.getId());
+                    resultMap.put("promptIndex", result.getPromptIndex());
+                    resultMap.put("prompt", job.get().getPrompts().get(result.getPromptIndex()));
+                    resultMap.put("model", result.getModelName());
+                    resultMap.put("status", result.isSuccess() ? "success" : "error");
+                    resultMap.put("response", result.getResponse());
+                    resultMap.put("latencyMs", result.getLatencyMs());
+                    resultMap.put("timestamp", result.getCreatedAt().toString());
+                    return resultMap;
+                })
+                .toList();
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("jobId", jobId);
+        response.put("status", job.get().getStatus().name().toLowerCase());
+        response.put("results", resultMaps);
+        response.put("nextAfter", results.isEmpty() ? after : results.get(results.size() - 1).getId());
+        return ResponseEntity.ok(response);
+    }
+
+    @DeleteMapping("/{jobId}")
+    public ResponseEntity<Map<String, Object>> cancelJob(@PathVariable Long jobId) {
+        if (evaluationJobService.cancelJob(jobId) > 0) {
+            return ResponseEntity.ok(Map.of("jobId", jobId, "status", "cancelled"));
+        }
+        return evaluationJobService.getJob(jobId)
+                .map(job -> ResponseEntity.status(HttpStatus.CONFLICT).body(Map.<String, Object>of(
+                        "error", "Job already finished", "status", job.getStatus().name().toLowerCase())))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Job not found")));
+    }
+
+    private Map<String, Object> convertToJobStatus(EvaluationJob job) {
+        Map<String, Object> status = new HashMap<>();
+        status.put("jobId", job.getId());
+        status.put("status", job.getStatus().name().toLowerCase());
+        status.put("models", job.getModels());
+        status.put("promptCount", job.getPrompts().size());
+        status.put("concurrency", job.getConcurrency());
+        status.put("totalTasks", job.getTotalTasks());
+        status.put("completedTasks", job.getCompletedTasks());
+        status.put("failedTasks", job.getFailedTasks());
+        status.put("createdAt", job.getCreatedAt().toString());
+        status.put("completedAt", job.getCompletedAt() != null ? job.getCompletedAt().toString() : null);
+        return status;
+    }
+}
@@ -0,0 +1,75 @@
+package com.sahal.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Replaces the auto-configured data source with primary/replica routing when
+ * app.datasource.replicas.enabled is set.
+ *
+ * The primary pool is built from spring.datasource as before. Each replica in
+ * app.datasource.replicas.urls gets its own pool with the primary's credentials unless
+ * app.datasource.replicas.username/password are given.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.replicas.enabled", havingValue = "true")
+public class ReadReplicaConfiguration {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                             DataSourceProperties properties,
+                                                             ReadYourWrites readYourWrites,
+                                                             @Value("${app.datasource.replicas.urls}") String urls,
+                                                             @Value("${app.datasource.replicas.username:}") String username,
+                                                             @Value("${app.datasource.replicas.password:}") String password,
+                                                             @Value("${app.datasource.replicas.pool-size:10}") int poolSize,
+                                                             @Value("${app.datasource.replicas.connection-timeout-ms:1000}") long connectionTimeoutMs,
+                                                             @Value("${app.datasource.replicas.max-lag-ms:1000}") long maxLagMs) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String url : urls.split(",")) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + (replicas.size() + 1));
+            replica.setJdbcUrl(url.trim());
+            replica.setDriverClassName(properties.determineDriverClassName());
+            replica.setUsername(username.isBlank() ? properties.determineUsername() : username);
+            replica.setPassword(password.isBlank() ? properties.determinePassword() : password);
+            replica.setMaximumPoolSize(poolSize);
+            replica.setReadOnly(true);
+            // A replica that is down must not hold reads for the default 30 seconds before they fall back
+            replica.setConnectionTimeout(connectionTimeoutMs);
+            // Start without connecting, the lag check brings the replica into rotation
+            replica.setInitializationFailTimeout(-1);
+            replicas.put(replica.getPoolName(), replica);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, readYourWrites, maxLagMs);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        // Defers the physical connection until the first statement, when the read-only flag is known
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
@@ -0,0 +1,82 @@
+package com.sahal.datasource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps reads of a session on the primary for a while after the session wrote.
+ *
+ * A replica may not have replayed a write yet, so a client that reloads its history right
+ * after asking would miss its own messages. Writers call {@link #recordWrite}; session-scoped
+ * reads open a {@link #forSession} scope, and the routing data source sends them to the
+ * primary while the session's window is open. The window should cover the replica lag guard
+ * plus one lag check interval.
+ *
+ * Windows are kept in memory on the node that handled the write. With several application nodes
+ * the guarantee only holds when a session's requests stay on one node (sticky sessions on the
+ * load balancer); a read served by another node may go to a replica that has not caught up.
+ */
+@Component
+public class ReadYourWrites {
+
+    private static final ThreadLocal<String> CURRENT_SESSION = new ThreadLocal<>();
+
+    private final Map<String, Long> pinnedUntil = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final long windowNanos;
+
+    public ReadYourWrites(@Value("${app.datasource.replicas.enabled:false}") boolean enabled,
+                          @Value("${app.datasource.replicas.read-your-writes-ms:5000}") long windowMs) {
+        this.enabled = enabled;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+    }
+
+    public void recordWrite(String sessionId) {
+        if (enabled && sessionId != null) {
+            pinnedUntil.put(sessionId, System.nanoTime() + windowNanos);
+        }
+    }
+
+    /**
+     * Marks the reads on this thread as belonging to a session until the scope is closed
+     */
+    public Scope forSession(String sessionId) {
+        String previous = CURRENT_SESSION.get();
+        CURRENT_SESSION.set(sessionId);
+        return () -> {
+            if (previous == null) {
+                CURRENT_SESSION.remove();
+            } else {
+                CURRENT_SESSION.set(previous);
+            }
+        };
+    }
+
+    /**
+     * True if the session of the current read wrote recently enough that a replica may lag behind it
+     */
+    public boolean currentSessionRequiresPrimary() {
+        String sessionId = CURRENT_SESSION.get();
+        if (sessionId == null) {
+            return false;
+        }
+        Long until = pinnedUntil.get(sessionId);
+        return until != null && until - System.nanoTime() > 0;
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replicas.read-your-writes-ms:5000}")
+    public void sweep() {
+        long now = System.nanoTime();
+        pinnedUntil.values().removeIf(until -> until - now <= 0);
+    }
+
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
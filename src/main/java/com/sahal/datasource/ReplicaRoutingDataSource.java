@@ -0,0 +1,172 @@
+package com.sahal.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends read-only transactions to a healthy replica and everything else to the primary.
+ *
+ * Must sit behind a LazyConnectionDataSourceProxy: the transaction's read-only flag is only
+ * known once the transaction has started, after Hibernate asked for its connection.
+ *
+ * Reads fall back to the primary when:
+ * <ul>
+ *   <li>the session being read wrote within its read-your-writes window</li>
+ *   <li>no replica is healthy. The periodic check takes a replica out when it cannot be queried or
+ *       its replay lag exceeds {@code max-lag-ms}, and puts it back once it catches up</li>
+ *   <li>the chosen replica refuses a connection, which also marks it down until the next check</li>
+ * </ul>
+ * Healthy replicas are used in turn.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    // Zero when the replica has replayed everything it received; NULL on a server that is not a standby
+    private static final String LAG_QUERY = "select case when pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0 "
+            + "else coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()) * 1000, 0) end";
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final ReadYourWrites readYourWrites;
+    private final long maxLagMs;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong primaryReads = new AtomicLong();
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas,
+                                    ReadYourWrites readYourWrites, long maxLagMs) {
+        this.primary = primary;
+        this.replicas = replicas.entrySet().stream().map(e -> new Replica(e.getKey(), e.getValue())).toList();
+        this.readYourWrites = readYourWrites;
+        this.maxLagMs = maxLagMs;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return primary.getConnection();
+        }
+        if (!readYourWrites.currentSessionRequiresPrimary()) {
+            for (int attempt = 0; attempt < replicas.size(); attempt++) {
+                Replica replica = replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+                if (!replica.healthy) {
+                    continue;
+                }
+                try {
+                    Connection connection = replica.dataSource.getConnection();
+                    replica.reads.incrementAndGet();
+                    return connection;
+                } catch (SQLException e) {
+                    replica.markDown("connection failed: " + e.getMessage());
+                }
+            }
+        }
+        primaryReads.incrementAndGet();
+        return primary.getConnection();
+    }
+
+    /**
+     * Connections for explicit credentials always come from the primary; replica credentials are configured per pool
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replicas.check-interval-ms:1000}")
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(1);
+                try (ResultSet lag = statement.executeQuery(LAG_QUERY)) {
+                    replica.lagMs = lag.next() ? lag.getDouble(1) : 0;
+                }
+                if (replica.lagMs > maxLagMs) {
+                    replica.markDown("lag " + Math.round(replica.lagMs) + "ms over " + maxLagMs + "ms");
+                } else if (!replica.healthy) {
+                    log.info("Replica {} is back, lag {}ms", replica.name, Math.round(replica.lagMs));
+                    replica.healthy = true;
+                    replica.reason = null;
+                }
+            } catch (SQLException e) {
+                replica.markDown("check failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The replica pools by name, for pool diagnostics
+     */
+    public Map<String, DataSource> replicaDataSources() {
+        Map<String, DataSource> result = new LinkedHashMap<>();
+        for (Replica replica : replicas) {
+            result.put(replica.name, replica.dataSource);
+        }
+        return result;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("primaryReads", primaryReads.get());
+        Map<String, Object> replicaStats = new LinkedHashMap<>();
+        for (Replica replica : replicas) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("healthy", replica.healthy);
+            entry.put("lagMs", Math.round(replica.lagMs));
+            entry.put("reads", replica.reads.get());
+            entry.put("reason", replica.reason);
+            replicaStats.put(replica.name, entry);
+        }
+        result.put("replicas", replicaStats);
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private static class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private final AtomicLong reads = new AtomicLong();
+        // Down until the first check has measured its lag
+        private volatile boolean healthy;
+        private volatile double lagMs;
+        private volatile String reason = "not checked yet";
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        void markDown(String why) {
+            if (healthy) {
+                log.warn("Replica {} taken out of rotation: {}", name, why);
+            }
+            healthy = false;
+            reason = why;
+        }
+    }
+}
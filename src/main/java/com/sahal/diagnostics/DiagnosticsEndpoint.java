@@ -0,0 +1,97 @@
+package com.sahal.diagnostics;
+
+import com.sahal.admission.AdmissionController;
+import com.sahal.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Actuator endpoint for {@link RequestDiagnostics}, the connection pools and the admission queue.
+ *
+ * Like every actuator endpoint besides health it is not exposed over HTTP by default. To read it,
+ * add {@code diagnostics} to {@code management.endpoints.web.exposure.include} and serve the
+ * actuator on an internal {@code management.server.port} that clients cannot reach.
+ */
+@Component
+@Endpoint(id = "diagnostics")
+public class DiagnosticsEndpoint {
+
+    private final RequestDiagnostics requestDiagnostics;
+    private final AdmissionController admissionController;
+    private final ObjectProvider<DataSource> dataSources;
+    private final ObjectProvider<ReplicaRoutingDataSource> replicaRouting;
+
+    public DiagnosticsEndpoint(RequestDiagnostics requestDiagnostics, AdmissionController admissionController,
+                                 ObjectProvider<DataSource> dataSources,
+                                 ObjectProvider<ReplicaRoutingDataSource> replicaRouting) {
+        this.requestDiagnostics = requestDiagnostics;
+        this.admissionController = admissionController;
+        this.dataSources = dataSources;
+        this.replicaRouting = replicaRouting;
+    }
+
+    /**
+     * What the service is waiting on right now: requests by phase, upstream calls, summarization,
+     * connection pools and the admission queue
+     */
+    @ReadOperation
+    public Map<String, Object> diagnostics() {
+        Map<String, Object> result = requestDiagnostics.toMap();
+
+        Map<String, Object> admission = new LinkedHashMap<>();
+        admission.put("inFlight", admissionController.getInFlight());
+        admission.put("waiting", admissionController.getWaiting());
+        admission.put("dropping", admissionController.isDropping());
+        result.put("admission", admission);
+
+        Map<String, Object> pools = new LinkedHashMap<>();
+        // The same pool can be reachable through several beans, like the proxy in front of it
+        Set<HikariDataSource> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        dataSources.orderedStream()
+                .map(DiagnosticsEndpoint::unwrapHikari)
+                .filter(pool -> pool != null && seen.add(pool))
+                .forEach(pool -> pools.put(pool.getPoolName(), poolStats(pool)));
+        ReplicaRoutingDataSource routing = replicaRouting.getIfAvailable();
+        if (routing != null) {
+            routing.replicaDataSources().forEach((name, pool) -> pools.put(name, poolStats(pool)));
+        }
+        result.put("connectionPools", pools);
+        return result;
+    }
+
+    private static HikariDataSource unwrapHikari(DataSource dataSource) {
+        try {
+            return dataSource.isWrapperFor(HikariDataSource.class) ? dataSource.unwrap(HikariDataSource.class) : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    private static Map<String, Object> poolStats(DataSource dataSource) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        HikariPoolMXBean pool = dataSource instanceof HikariDataSource hikari ? hikari.getHikariPoolMXBean() : null;
+        if (pool == null) {
+            // Not a Hikari pool, or one that has not opened a connection yet
+            stats.put("started", false);
+            return stats;
+        }
+        stats.put("started", true);
+        stats.put("active", pool.getActiveConnections());
+        stats.put("idle", pool.getIdleConnections());
+        stats.put("total", pool.getTotalConnections());
+        stats.put("waiting", pool.getThreadsAwaitingConnection());
+        return stats;
+    }
+}
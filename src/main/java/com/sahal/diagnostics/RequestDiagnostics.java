@@ -0,0 +1,310 @@
+package com.sahal.diagnostics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Live view of what the service is doing: in-flight requests and their phases, upstream calls
+ * per model, the summarization backlog, and the most recent slow requests.
+ *
+ * Recording is cheap enough to leave on: a request costs one map insert and removal plus a
+ * nanoTime per phase change, all on the request's own thread. Slow requests are written to a
+ * fixed ring with a single atomic increment and overwrite the oldest entry, so writers never
+ * wait for each other or for a reader. Snapshots are only assembled when the endpoint is read.
+ *
+ * The same per-request phase totals are returned to clients as a Server-Timing header, which
+ * keeps requests traced when app.diagnostics.server-timing is on even if the live view is off.
+ *
+ * Session ids are the only credential for a conversation's history, so snapshots list a salted
+ * hash of them instead. The salt is drawn per process: requests of one session share a hash
+ * within a snapshot and across snapshots, but the hash cannot be matched against a guessed id.
+ */
+@Component
+public class RequestDiagnostics {
+
+    private static final ThreadLocal<RequestTrace> CURRENT = new ThreadLocal<>();
+    private static final Scope NO_SCOPE = () -> { };
+    private static final byte[] SESSION_SALT = newSalt();
+
+    private final boolean enabled;
+    private final boolean serverTiming;
+    private final long slowThresholdNanos;
+    private final AtomicLong ids = new AtomicLong();
+    private final Map<Long, RequestTrace> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> modelInFlight = new ConcurrentHashMap<>();
+    private final Set<Long> summarizationPending = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger summarizationRunning = new AtomicInteger();
+    private final AtomicReferenceArray<SlowRequest> slowRequests;
+    private final AtomicLong slowSequence = new AtomicLong();
+
+    public RequestDiagnostics(@Value("${app.diagnostics.enabled:true}") boolean enabled,
+                              @Value("${app.diagnostics.slow-request-ms:2000}") long slowRequestMs,
+                              @Value("${app.diagnostics.slow-buffer-size:128}") int slowBufferSize,
+                              @Value("${app.diagnostics.server-timing:false}") boolean serverTiming) {
+        this.enabled = enabled;
+        this.serverTiming = serverTiming;
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowRequestMs);
+        this.slowRequests = new AtomicReferenceArray<>(Math.max(1, slowBufferSize));
+    }
+
+    /**
+     * Start tracking a request on the current thread; {@link #end} must follow in a finally block
+     */
+    public RequestTrace begin(String endpoint, String model, String sessionId) {
+        if (!enabled && !serverTiming) {
+            return null;
+        }
+        RequestTrace trace = new RequestTrace(ids.incrementAndGet(), endpoint, model, sessionId);
+        if (enabled) {
+            inFlight.put(trace.id, trace);
+        }
+        CURRENT.set(trace);
+        return trace;
+    }
+
+    public void end(RequestTrace trace) {
+        if (trace == null) {
+            return;
+        }
+        CURRENT.remove();
+        inFlight.remove(trace.id);
+        long elapsed = trace.finish();
+        if (enabled && elapsed >= slowThresholdNanos) {
+            long sequence = slowSequence.getAndIncrement();
+            slowRequests.set((int) (sequence % slowRequests.length()), new SlowRequest(sequence, trace.toMap(System.nanoTime())));
+        }
+    }
+
+    /**
+     * The request being tracked on this thread, or null
+     */
+    public RequestTrace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Server-Timing header value for a request that is still running, or null when not reported
+     */
+    public String serverTiming(RequestTrace trace) {
+        return serverTiming && trace != null ? trace.serverTiming(System.nanoTime()) : null;
+    }
+
+    /**
+     * Attribute time to a phase of the current request until the scope closes; phases nest
+     */
+    public Scope phase(String name) {
+        RequestTrace trace = CURRENT.get();
+        if (trace == null) {
+            return NO_SCOPE;
+        }
+        String previous = trace.enter(name);
+        return () -> trace.enter(previous);
+    }
+
+    /**
+     * Count an upstream call to a model as in flight until the scope closes
+     */
+    public Scope modelCall(String model) {
+        if (!enabled) {
+            return NO_SCOPE;
+        }
+        AtomicInteger counter = modelInFlight.computeIfAbsent(model, m -> new AtomicInteger());
+        counter.incrementAndGet();
+        return counter::decrementAndGet;
+    }
+
+    /**
+     * A conversation is due for summarization; it stays in the backlog until {@link #summarizationDone}
+     */
+    public void summarizationPending(Long conversationId) {
+        if (enabled) {
+            summarizationPending.add(conversationId);
+        }
+    }
+
+    public Scope summarizationRunning() {
+        if (!enabled) {
+            return NO_SCOPE;
+        }
+        summarizationRunning.incrementAndGet();
+        return summarizationRunning::decrementAndGet;
+    }
+
+    public void summarizationDone(Long conversationId) {
+        summarizationPending.remove(conversationId);
+    }
+
+    public Map<String, Object> toMap() {
+        long now = System.nanoTime();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("inFlight", inFlight.values().stream()
+                .sorted(Comparator.comparingLong(trace -> trace.id))
+                .map(trace -> trace.toMap(now))
+                .toList());
+
+        Map<String, Object> models = new LinkedHashMap<>();
+        modelInFlight.forEach((model, count) -> models.put(model, count.get()));
+        result.put("modelInFlight", models);
+
+        Map<String, Object> summarization = new LinkedHashMap<>();
+        summarization.put("pending", summarizationPending.size());
+        summarization.put("running", summarizationRunning.get());
+        result.put("summarization", summarization);
+
+        List<SlowRequest> slow = new ArrayList<>();
+        for (int i = 0; i < slowRequests.length(); i++) {
+            SlowRequest entry = slowRequests.get(i);
+            if (entry != null) {
+                slow.add(entry);
+            }
+        }
+        slow.sort(Comparator.comparingLong(SlowRequest::sequence).reversed());
+        result.put("slowThresholdMs", TimeUnit.NANOSECONDS.toMillis(slowThresholdNanos));
+        result.put("slowRequests", slow.stream().map(SlowRequest::details).toList());
+        return result;
+    }
+
+    private static byte[] newSalt() {
+        byte[] salt = new byte[16];
+        new SecureRandom().nextBytes(salt);
+        return salt;
+    }
+
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private record SlowRequest(long sequence, Map<String, Object> details) {}
+
+    /**
+     * One tracked request. Phase changes happen on the request's thread; readers only see
+     * volatile fields and copies of the phase totals.
+     */
+    public static class RequestTrace {
+        private final long id;
+        private final String endpoint;
+        private final String model;
+        private final String sessionId;
+        private final Instant startedAt = Instant.now();
+        private final long startNanos = System.nanoTime();
+        // Written by the request thread only; readers copy it under its lock
+        private final Map<String, Long> phaseNanos = Collections.synchronizedMap(new LinkedHashMap<>());
+        private volatile String phase = "handler";
+        private volatile long phaseStartNanos = startNanos;
+        private volatile long endNanos;
+
+        RequestTrace(long id, String endpoint, String model, String sessionId) {
+            this.id = id;
+            this.endpoint = endpoint;
+            this.model = model;
+            this.sessionId = sessionId;
+        }
+
+        String enter(String next) {
+            long now = System.nanoTime();
+            String previous = phase;
+            phaseNanos.merge(previous, now - phaseStartNanos, Long::sum);
+            phase = next;
+            phaseStartNanos = now;
+            return previous;
+        }
+
+        long finish() {
+            enter(phase);
+            endNanos = System.nanoTime();
+            return endNanos - startNanos;
+        }
+
+        /**
+         * Time spent in each completed phase, in the order the phases were first entered
+         */
+        public Map<String, Long> phaseNanos() {
+            synchronized (phaseNanos) {
+                return new LinkedHashMap<>(phaseNanos);
+            }
+        }
+
+        /**
+         * Completed phases plus the running one in Server-Timing syntax, e.g.
+         * {@code conversation;dur=1.204, upstream.deepseek;dur=812.530, total;dur=820.118}
+         */
+        String serverTiming(long now) {
+            Map<String, Long> phases = phaseNanos();
+            if (endNanos == 0) {
+                phases.merge(phase, now - phaseStartNanos, Long::sum);
+            }
+            StringBuilder header = new StringBuilder(32 * (phases.size() + 1));
+            phases.forEach((name, nanos) -> appendMetric(header, name, nanos).append(", "));
+            return appendMetric(header, "total", (endNanos != 0 ? endNanos : now) - startNanos).toString();
+        }
+
+        private static String sessionHash(String sessionId) {
+            if (sessionId == null) {
+                return null;
+            }
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update(SESSION_SALT);
+                digest.update(sessionId.getBytes(StandardCharsets.UTF_8));
+                return HexFormat.of().formatHex(digest.digest(), 0, 8);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static StringBuilder appendMetric(StringBuilder header, String name, long nanos) {
+            // Milliseconds with microsecond precision, without exponent notation for small values
+            long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+            long fraction = micros % 1000;
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                // Model ids may carry '/' or ':', which are not allowed in metric names
+                header.append(Character.isLetterOrDigit(c) || c == '.' || c == '-' || c == '_' ? c : '_');
+            }
+            header.append(";dur=").append(micros / 1000).append('.');
+            if (fraction < 100) {
+                header.append(fraction < 10 ? "00" : "0");
+            }
+            return header.append(fraction);
+        }
+
+        Map<String, Object> toMap(long now) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("id", id);
+            map.put("endpoint", endpoint);
+            map.put("model", model);
+            map.put("session", sessionHash(sessionId));
+            map.put("startedAt", startedAt.toString());
+            map.put("elapsedMs", TimeUnit.NANOSECONDS.toMillis((endNanos != 0 ? endNanos : now) - startNanos));
+            if (endNanos == 0) {
+                map.put("phase", phase);
+                map.put("phaseElapsedMs", TimeUnit.NANOSECONDS.toMillis(now - phaseStartNanos));
+            }
+            Map<String, Long> phases = new LinkedHashMap<>();
+            phaseNanos().forEach((name, nanos) -> phases.put(name, TimeUnit.NANOSECONDS.toMillis(nanos)));
+            map.put("phasesMs", phases);
+            return map;
+        }
+    }
+}
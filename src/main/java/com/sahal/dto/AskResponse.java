@@ -0,0 +1,23 @@
+package com.sahal.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Answer of a single model to /chat/ask. Routing details are only present for routed aliases.
+ */
+public record AskResponse(String model,
+                          String response,
+                          @JsonInclude(JsonInclude.Include.NON_NULL) Routing routing) {
+
+    public AskResponse(String model, String response) {
+        this(model, response, null);
+    }
+
+    /**
+     * Why the router picked the model
+     *
+     * @param reason best-score, explore, or all-unhealthy
+     * @param score  the model's latency score, lower is better
+     */
+    public record Routing(String alias, String reason, long score) {}
+}
@@ -0,0 +1,36 @@
+package com.sahal.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers of all models to /chat/ask with model=all
+ */
+public record ComparisonResponse(String question,
+                                 String sessionId,
+                                 Map<String, String> responses,
+                                 List<ModelResponse> modelResponses,
+                                 boolean threaded,
+                                 String timestamp) {
+
+    public record ModelResponse(String model, String response, String status, ContextStats context, Timing timing) {}
+
+    /**
+     * How the history was fitted into this model's token budget
+     */
+    public record ContextStats(int messages, int compacted, int dropped, int estimatedTokens, int trimmedTokens) {}
+
+    /**
+     * Time this model's answer spent in each step, in milliseconds
+     */
+    public record Timing(double contextMs, double upstreamMs, double persistMs) {
+
+        public static Timing ofNanos(long contextNanos, long upstreamNanos, long persistNanos) {
+            return new Timing(millis(contextNanos), millis(upstreamNanos), millis(persistNanos));
+        }
+
+        private static double millis(long nanos) {
+            return Math.round(nanos / 1_000.0) / 1_000.0;
+        }
+    }
+}
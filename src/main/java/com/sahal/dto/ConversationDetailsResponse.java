@@ -0,0 +1,12 @@
+package com.sahal.dto;
+
+import java.util.List;
+
+public record ConversationDetailsResponse(String sessionId,
+                                          String createdAt,
+                                          int messageCount,
+                                          String summary,
+                                          boolean archived,
+                                          List<MessageDto> messages,
+                                          List<String> models) {
+}
@@ -0,0 +1,4 @@
+package com.sahal.dto;
+
+public record ErrorResponse(String error) {
+}
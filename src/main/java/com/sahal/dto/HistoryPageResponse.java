@@ -0,0 +1,14 @@
+package com.sahal.dto;
+
+import java.util.List;
+
+/**
+ * One page of history in chronological order, with the cursors for the neighbouring pages
+ */
+public record HistoryPageResponse(String sessionId,
+                                  String summary,
+                                  List<MessageDto> messages,
+                                  boolean hasMore,
+                                  Long nextBefore,
+                                  Long nextAfter) {
+}
@@ -0,0 +1,30 @@
+package com.sahal.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.sahal.entity.Message;
+
+/**
+ * A stored message as returned by the history and details endpoints. The id is only sent
+ * where clients page by it.
+ */
+public record MessageDto(@JsonInclude(JsonInclude.Include.NON_NULL) Long id,
+                         String role,
+                         String content,
+                         String timestamp,
+                         String model) {
+
+    public static MessageDto of(Message msg) {
+        return new MessageDto(null, msg.getRole().name().toLowerCase(), msg.getContent(), msg.getCreatedAt().toString(), msg.getModelName());
+    }
+
+    public static MessageDto withId(Message msg) {
+        return new MessageDto(msg.getId(), msg.getRole().name().toLowerCase(), msg.getContent(), msg.getCreatedAt().toString(), msg.getModelName());
+    }
+
+    /**
+     * The conversation summary shown in front of the history
+     */
+    public static MessageDto summary(String summary) {
+        return new MessageDto(null, "system", "Past conversation summary: " + summary, "summary", "system");
+    }
+}
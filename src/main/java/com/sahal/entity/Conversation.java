@@ -21,6 +21,21 @@ public class Conversation {
     @Column(name = "summary", columnDefinition = "TEXT")
     private String summary;
     
+    // Archived conversations keep only this row; their messages live in the cold-tier archive
+    @Column(name = "archived", nullable = false, columnDefinition = "BOOLEAN DEFAULT FALSE")
+    private boolean archived;
+    
+    @Column(name = "archived_at")
+    private LocalDateTime archivedAt;
+    
+    // Version stamp parts behind the history/details ETags. last_message_id is only ever
+    // advanced by ConversationRepository.advanceLastMessageId so a stale entity cannot move it back.
+    @Column(name = "last_message_id", insertable = false, updatable = false)
+    private Long lastMessageId;
+    
+    @Column(name = "summary_hash", nullable = false, columnDefinition = "INTEGER DEFAULT 0")
+    private int summaryHash;
+    
     @OneToMany(mappedBy = "conversation", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Message> messages = new ArrayList<>();
     
@@ -45,7 +60,21 @@ public class Conversation {
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     
     public String getSummary() { return summary; }
-    public void setSummary(String summary) { this.summary = summary; }
+    public void setSummary(String summary) {
+        this.summary = summary;
+        this.summaryHash = summary == null ? 0 : summary.hashCode();
+    }
+    
+    public boolean isArchived() { return archived; }
+    public void setArchived(boolean archived) { this.archived = archived; }
+    
+    public LocalDateTime getArchivedAt() { return archivedAt; }
+    public void setArchivedAt(LocalDateTime archivedAt) { this.archivedAt = archivedAt; }
+    
+    public Long getLastMessageId() { return lastMessageId; }
+    public void setLastMessageId(Long lastMessageId) { this.lastMessageId = lastMessageId; }
+    
+    public int getSummaryHash() { return summaryHash; }
     
     public List<Message> getMessages() { return messages; }
     public void setMessages(List<Message> messages) { this.messages = messages; }
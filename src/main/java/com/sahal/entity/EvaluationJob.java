@@ -0,0 +1,106 @@
+package com.sahal.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Entity
+@Table(name = "evaluation_jobs")
+public class EvaluationJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "status", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private EvaluationJobStatus status;
+    
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "evaluation_job_prompts", joinColumns = @JoinColumn(name = "job_id"))
+    @OrderColumn(name = "prompt_index")
+    @Column(name = "prompt", columnDefinition = "TEXT")
+    private List<String> prompts = new ArrayList<>();
+    
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "evaluation_job_models", joinColumns = @JoinColumn(name = "job_id"))
+    @OrderColumn(name = "model_index")
+    @Column(name = "model_name")
+    private List<String> models = new ArrayList<>();
+    
+    @Column(name = "concurrency", nullable = false)
+    private int concurrency;
+    
+    @Column(name = "total_tasks", nullable = false)
+    private int totalTasks;
+    
+    @Column(name = "completed_tasks", nullable = false)
+    private int completedTasks;
+    
+    @Column(name = "failed_tasks", nullable = false)
+    private int failedTasks;
+    
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+    
+    // Node currently running the job and until when its claim is valid
+    @Column(name = "lease_owner")
+    private String leaseOwner;
+    
+    @Column(name = "lease_until")
+    private LocalDateTime leaseUntil;
+    
+    // Constructors
+    public EvaluationJob() {
+        this.createdAt = LocalDateTime.now();
+        this.status = EvaluationJobStatus.PENDING;
+    }
+    
+    public EvaluationJob(List<String> prompts, List<String> models, int concurrency) {
+        this();
+        this.prompts = new ArrayList<>(prompts);
+        this.models = new ArrayList<>(models);
+        this.concurrency = concurrency;
+        this.totalTasks = prompts.size() * models.size();
+    }
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public EvaluationJobStatus getStatus() { return status; }
+    public void setStatus(EvaluationJobStatus status) { this.status = status; }
+    
+    public List<String> getPrompts() { return prompts; }
+    public void setPrompts(List<String> prompts) { this.prompts = prompts; }
+    
+    public List<String> getModels() { return models; }
+    public void setModels(List<String> models) { this.models = models; }
+    
+    public int getConcurrency() { return concurrency; }
+    public void setConcurrency(int concurrency) { this.concurrency = concurrency; }
+    
+    public int getTotalTasks() { return totalTasks; }
+    public void setTotalTasks(int totalTasks) { this.totalTasks = totalTasks; }
+    
+    public int getCompletedTasks() { return completedTasks; }
+    public void setCompletedTasks(int completedTasks) { this.completedTasks = completedTasks; }
+    
+    public int getFailedTasks() { return failedTasks; }
+    public void setFailedTasks(int failedTasks) { this.failedTasks = failedTasks; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    
+    public LocalDateTime getCompletedAt() { return completedAt; }
+    public void setCompletedAt(LocalDateTime completedAt) { this.completedAt = completedAt; }
+    
+    public String getLeaseOwner() { return leaseOwner; }
+    public void setLeaseOwner(String leaseOwner) { this.leaseOwner = leaseOwner; }
+    
+    public LocalDateTime getLeaseUntil() { return leaseUntil; }
+    public void setLeaseUntil(LocalDateTime leaseUntil) { this.leaseUntil = leaseUntil; }
+}
@@ -0,0 +1,5 @@
+package com.sahal.entity;
+
+public enum EvaluationJobStatus {
+    PENDING, RUNNING, COMPLETED, CANCELLED
+}
@@ -0,0 +1,74 @@
+package com.sahal.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "evaluation_results",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"job_id", "prompt_index", "model_name"}))
+public class EvaluationResult {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "job_id", nullable = false)
+    private Long jobId;
+    
+    @Column(name = "prompt_index", nullable = false)
+    private int promptIndex;
+    
+    @Column(name = "model_name", nullable = false)
+    private String modelName;
+    
+    @Column(name = "success", nullable = false)
+    private boolean success;
+    
+    @Column(name = "response", columnDefinition = "TEXT")
+    private String response;
+    
+    @Column(name = "latency_ms")
+    private long latencyMs;
+    
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    // Constructors
+    public EvaluationResult() {
+        this.createdAt = LocalDateTime.now();
+    }
+    
+    public EvaluationResult(Long jobId, int promptIndex, String modelName, boolean success, String response, long latencyMs) {
+        this();
+        this.jobId = jobId;
+        this.promptIndex = promptIndex;
+        this.modelName = modelName;
+        this.success = success;
+        this.response = response;
+        this.latencyMs = latencyMs;
+    }
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public Long getJobId() { return jobId; }
+    public void setJobId(Long jobId) { this.jobId = jobId; }
+    
+    public int getPromptIndex() { return promptIndex; }
+    public void setPromptIndex(int promptIndex) { this.promptIndex = promptIndex; }
+    
+    public String getModelName() { return modelName; }
+    public void setModelName(String modelName) { this.modelName = modelName; }
+    
+    public boolean isSuccess() { return success; }
+    public void setSuccess(boolean success) { this.success = success; }
+    
+    public String getResponse() { return response; }
+    public void setResponse(String response) { this.response = response; }
+    
+    public long getLatencyMs() { return latencyMs; }
+    public void setLatencyMs(long latencyMs) { this.latencyMs = latencyMs; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
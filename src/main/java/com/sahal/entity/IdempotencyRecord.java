@@ -0,0 +1,66 @@
+package com.sahal.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "idempotency_records")
+public class IdempotencyRecord {
+    @Id
+    @Column(name = "idempotency_key", nullable = false)
+    private String key;
+    
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+    
+    // False while the first request with this key is still running
+    @Column(name = "completed", nullable = false)
+    private boolean completed;
+    
+    @Column(name = "response", columnDefinition = "TEXT")
+    private String response;
+    
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    // A retry may take over an unfinished claim once this has passed
+    @Column(name = "in_progress_until")
+    private LocalDateTime inProgressUntil;
+    
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+    
+    // Constructors
+    public IdempotencyRecord() {
+        this.createdAt = LocalDateTime.now();
+    }
+    
+    public IdempotencyRecord(String key, String requestHash, LocalDateTime expiresAt) {
+        this();
+        this.key = key;
+        this.requestHash = requestHash;
+        this.expiresAt = expiresAt;
+    }
+    
+    // Getters and Setters
+    public String getKey() { return key; }
+    public void setKey(String key) { this.key = key; }
+    
+    public String getRequestHash() { return requestHash; }
+    public void setRequestHash(String requestHash) { this.requestHash = requestHash; }
+    
+    public boolean isCompleted() { return completed; }
+    public void setCompleted(boolean completed) { this.completed = completed; }
+    
+    public String getResponse() { return response; }
+    public void setResponse(String response) { this.response = response; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    
+    public LocalDateTime getInProgressUntil() { return inProgressUntil; }
+    public void setInProgressUntil(LocalDateTime inProgressUntil) { this.inProgressUntil = inProgressUntil; }
+    
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(LocalDateTime expiresAt) { this.expiresAt = expiresAt; }
+}
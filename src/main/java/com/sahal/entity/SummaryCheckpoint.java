@@ -0,0 +1,57 @@
+package com.sahal.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A conversation summary together with the id of the last message it covers.
+ * Context for the next turn is the latest checkpoint plus the messages after it.
+ */
+@Entity
+@Table(name = "summary_checkpoints",
+       indexes = @Index(name = "idx_summary_checkpoints_conversation", columnList = "conversation_id, covers_up_to_message_id"))
+public class SummaryCheckpoint {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "conversation_id", nullable = false)
+    private Long conversationId;
+    
+    @Column(name = "covers_up_to_message_id", nullable = false)
+    private Long coversUpToMessageId;
+    
+    @Column(name = "summary", columnDefinition = "TEXT", nullable = false)
+    private String summary;
+    
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    // Constructors
+    public SummaryCheckpoint() {
+        this.createdAt = LocalDateTime.now();
+    }
+    
+    public SummaryCheckpoint(Long conversationId, Long coversUpToMessageId, String summary) {
+        this();
+        this.conversationId = conversationId;
+        this.coversUpToMessageId = coversUpToMessageId;
+        this.summary = summary;
+    }
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public Long getConversationId() { return conversationId; }
+    public void setConversationId(Long conversationId) { this.conversationId = conversationId; }
+    
+    public Long getCoversUpToMessageId() { return coversUpToMessageId; }
+    public void setCoversUpToMessageId(Long coversUpToMessageId) { this.coversUpToMessageId = coversUpToMessageId; }
+    
+    public String getSummary() { return summary; }
+    public void setSummary(String summary) { this.summary = summary; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
@@ -0,0 +1,116 @@
+package com.sahal.persistence;
+
+import com.sahal.entity.Conversation;
+import com.sahal.entity.Message;
+import com.sahal.entity.SummaryCheckpoint;
+import com.sahal.repository.ConversationStampView;
+import com.sahal.repository.ConversationView;
+import com.sahal.repository.MessageSearchHit;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Storage for conversations, their messages and summary checkpoints, as used by
+ * ConversationService. Chosen with app.persistence.store:
+ * <ul>
+ *   <li>{@code jpa} (default): {@link JpaConversationStore}, the PostgreSQL tables through JPA</li>
+ *   <li>{@code embedded}: {@link LogConversationStore}, an append-only log of memory-mapped
+ *       segment files on local disk, for single-node deployments</li>
+ * </ul>
+ * Both are held to the same behaviour by ConversationStoreContractTest.
+ *
+ * Conversations returned by a store are detached copies for the embedded store; changes only
+ * take effect through {@link #save}. Messages are ordered by id, which follows creation order.
+ */
+public interface ConversationStore {
+
+    Optional<Conversation> findBySessionId(String sessionId);
+
+    Optional<Conversation> findById(Long id);
+
+    List<Conversation> findAll();
+
+    Optional<ConversationView> findViewBySessionId(String sessionId);
+
+    Optional<ConversationStampView> findStampBySessionId(String sessionId);
+
+    /**
+     * Version stamp over all conversations; changes whenever any conversation is added, removed or written to
+     */
+    String getListingVersionStamp();
+
+    /**
+     * Create a conversation or store its summary and archive state. Creating a second
+     * conversation for a session fails with a DataIntegrityViolationException.
+     */
+    Conversation save(Conversation conversation);
+
+    /**
+     * Remove a conversation with its messages and checkpoints
+     */
+    void delete(Conversation conversation);
+
+    /**
+     * Conversations that are not archived, were created before the cutoff and have had no message since, by id
+     */
+    List<Long> findIdleConversationIds(LocalDateTime cutoff, Long afterId, int limit);
+
+    /**
+     * Store a new message, assigning its id, and advance the conversation's last message id
+     */
+    Message appendMessage(Conversation conversation, Message message);
+
+    /**
+     * All messages of a conversation, oldest first
+     */
+    List<Message> findMessages(Long conversationId);
+
+    /**
+     * Messages with an id above afterId, oldest first
+     */
+    List<Message> findMessagesAfter(Long conversationId, long afterId);
+
+    /**
+     * The newest {@code limit} messages with an id above afterId, oldest first
+     */
+    List<Message> findLatestMessagesAfter(Long conversationId, long afterId, int limit);
+
+    /**
+     * The oldest {@code limit} messages with an id above afterId, oldest first
+     */
+    List<Message> findOldestMessagesAfter(Long conversationId, long afterId, int limit);
+
+    /**
+     * Up to {@code limit} messages older than beforeId, or the newest ones if beforeId is null, newest first
+     */
+    List<Message> findPageBefore(Long conversationId, Long beforeId, int limit);
+
+    /**
+     * Up to {@code limit} messages newer than afterId, oldest first
+     */
+    List<Message> findPageAfter(Long conversationId, long afterId, int limit);
+
+    /**
+     * Remove messages that were moved elsewhere, like the cold-tier archive
+     */
+    void deleteMessages(Conversation conversation, List<Message> messages);
+
+    /**
+     * Ranked search over message content, ordered by (rank, id) descending and paged with a keyset on that pair
+     */
+    List<MessageSearchHit> search(String query, float afterRank, long afterId, int limit);
+
+    Optional<SummaryCheckpoint> findLatestCheckpoint(Long conversationId);
+
+    List<SummaryCheckpoint> findCheckpoints(Long conversationId);
+
+    SummaryCheckpoint saveCheckpoint(SummaryCheckpoint checkpoint);
+
+    /**
+     * Try to take the cross-node lock for a conversation, held until the current transaction ends.
+     * A store that cannot be shared between nodes always grants it.
+     */
+    boolean tryClusterLock(long conversationId);
+}
@@ -0,0 +1,63 @@
+package com.sahal.persistence;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Keeps conversations in the embedded log store when app.persistence.store is {@code embedded}.
+ *
+ * No database is configured in this mode (see {@link EmbeddedStoreEnvironmentPostProcessor}):
+ * idempotency records stay in memory and evaluation jobs, which need the job tables, are not
+ * available. The log store does its own locking, so the transaction manager only keeps the
+ * transaction semantics callers rely on, the read-only flag and after-commit callbacks.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.persistence.store", havingValue = "embedded")
+public class EmbeddedStoreConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public LogConversationStore logConversationStore(
+            @Value("${app.persistence.embedded.directory:./data/store}") String directory,
+            @Value("${app.persistence.embedded.segment-size-mb:64}") int segmentSizeMb,
+            @Value("${app.persistence.embedded.sync:false}") boolean sync,
+            @Value("${app.persistence.embedded.compaction-garbage-ratio:0.5}") double compactionGarbageRatio) throws IOException {
+        return new LogConversationStore(Path.of(directory), segmentSizeMb * 1024 * 1024, sync, compactionGarbageRatio);
+    }
+
+    @Bean
+    public PlatformTransactionManager transactionManager() {
+        return new ResourcelessTransactionManager();
+    }
+
+    /**
+     * Transactions without a resource: synchronizations run on commit and rollback, nothing else happens
+     */
+    static class ResourcelessTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
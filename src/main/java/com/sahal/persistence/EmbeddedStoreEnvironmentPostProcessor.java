@@ -0,0 +1,49 @@
+package com.sahal.persistence;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.flyway.FlywayAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Leaves the database out entirely when app.persistence.store is {@code embedded}.
+ *
+ * Adds the DataSource, JPA and Flyway auto-configurations to spring.autoconfigure.exclude, so an
+ * embedded node starts without PostgreSQL, a connection pool or an entity manager. Beans that
+ * need the database are only defined for the jpa store or take their repository as optional.
+ */
+public class EmbeddedStoreEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    static final List<String> DATABASE_AUTO_CONFIGURATIONS = List.of(
+            DataSourceAutoConfiguration.class.getName(),
+            DataSourceTransactionManagerAutoConfiguration.class.getName(),
+            HibernateJpaAutoConfiguration.class.getName(),
+            JpaRepositoriesAutoConfiguration.class.getName(),
+            FlywayAutoConfiguration.class.getName());
+
+    private static final String EXCLUDE = "spring.autoconfigure.exclude";
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if (!"embedded".equals(environment.getProperty("app.persistence.store"))) {
+            return;
+        }
+        List<String> excluded = new ArrayList<>(Binder.get(environment)
+                .bind(EXCLUDE, Bindable.listOf(String.class))
+                .orElse(List.of()));
+        DATABASE_AUTO_CONFIGURATIONS.stream().filter(name -> !excluded.contains(name)).forEach(excluded::add);
+        environment.getPropertySources().addFirst(
+                new MapPropertySource("embeddedStoreExclusions", Map.of(EXCLUDE, String.join(",", excluded))));
+    }
+}
@@ -0,0 +1,165 @@
+package com.sahal.persistence;
+
+import com.sahal.entity.Conversation;
+import com.sahal.entity.Message;
+import com.sahal.entity.SummaryCheckpoint;
+import com.sahal.repository.ConversationRepository;
+import com.sahal.repository.ConversationStampView;
+import com.sahal.repository.ConversationView;
+import com.sahal.repository.MessageRepository;
+import com.sahal.repository.MessageSearchHit;
+import com.sahal.repository.SummaryCheckpointRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The conversation tables in PostgreSQL, through the Spring Data repositories
+ */
+@Component
+@ConditionalOnProperty(name = "app.persistence.store", havingValue = "jpa", matchIfMissing = true)
+public class JpaConversationStore implements ConversationStore {
+
+    private final ConversationRepository conversationRepository;
+    private final MessageRepository messageRepository;
+    private final SummaryCheckpointRepository checkpointRepository;
+
+    public JpaConversationStore(ConversationRepository conversationRepository, MessageRepository messageRepository,
+                                SummaryCheckpointRepository checkpointRepository) {
+        this.conversationRepository = conversationRepository;
+        this.messageRepository = messageRepository;
+        this.checkpointRepository = checkpointRepository;
+    }
+
+    @Override
+    public Optional<Conversation> findBySessionId(String sessionId) {
+        return conversationRepository.findBySessionId(sessionId);
+    }
+
+    @Override
+    public Optional<Conversation> findById(Long id) {
+        return conversationRepository.findById(id);
+    }
+
+    @Override
+    public List<Conversation> findAll() {
+        return conversationRepository.findAll();
+    }
+
+    @Override
+    public Optional<ConversationView> findViewBySessionId(String sessionId) {
+        return conversationRepository.findViewBySessionId(sessionId);
+    }
+
+    @Override
+    public Optional<ConversationStampView> findStampBySessionId(String sessionId) {
+        return conversationRepository.findStampBySessionId(sessionId);
+    }
+
+    @Override
+    public String getListingVersionStamp() {
+        return conversationRepository.findListingStamp().toVersionStamp();
+    }
+
+    @Override
+    public Conversation save(Conversation conversation) {
+        return conversationRepository.save(conversation);
+    }
+
+    @Override
+    public void delete(Conversation conversation) {
+        checkpointRepository.deleteByConversationId(conversation.getId());
+        conversationRepository.delete(conversation);
+    }
+
+    @Override
+    public List<Long> findIdleConversationIds(LocalDateTime cutoff, Long afterId, int limit) {
+        return conversationRepository.findIdleConversationIds(cutoff, afterId, PageRequest.of(0, limit));
+    }
+
+    @Override
+    public Message appendMessage(Conversation conversation, Message message) {
+        conversation.addMessage(message);
+        messageRepository.save(message);
+        conversationRepository.advanceLastMessageId(conversation.getId(), message.getId());
+        conversation.setLastMessageId(message.getId());
+        return message;
+    }
+
+    @Override
+    public List<Message> findMessages(Long conversationId) {
+        return messageRepository.findByConversationIdOrderByCreatedAtAsc(conversationId);
+    }
+
+    @Override
+    public List<Message> findMessagesAfter(Long conversationId, long afterId) {
+        return messageRepository.findByConversationIdAndIdGreaterThanOrderByIdAsc(conversationId, afterId);
+    }
+
+    @Override
+    public List<Message> findLatestMessagesAfter(Long conversationId, long afterId, int limit) {
+        List<Message> newestFirst = new ArrayList<>(messageRepository.findByConversationIdAndIdGreaterThanOrderByIdDesc(
+            conversationId, afterId, PageRequest.of(0, limit)));
+        Collections.reverse(newestFirst);
+        return newestFirst;
+    }
+
+    @Override
+    public List<Message> findOldestMessagesAfter(Long conversationId, long afterId, int limit) {
+        return messageRepository.findByConversationIdAndIdGreaterThanOrderByIdAsc(conversationId, afterId, PageRequest.of(0, limit));
+    }
+
+    @Override
+    public List<Message> findPageBefore(Long conversationId, Long beforeId, int limit) {
+        if (beforeId == null) {
+            return messageRepository.findByConversationIdOrderByCreatedAtDescIdDesc(conversationId, PageRequest.of(0, limit));
+        }
+        return messageRepository.findCreatedAt(conversationId, beforeId)
+                .map(createdAt -> messageRepository.findPageBefore(conversationId, createdAt, beforeId, PageRequest.of(0, limit)))
+                .orElse(List.of());
+    }
+
+    @Override
+    public List<Message> findPageAfter(Long conversationId, long afterId, int limit) {
+        return messageRepository.findCreatedAt(conversationId, afterId)
+                .map(createdAt -> messageRepository.findPageAfter(conversationId, createdAt, afterId, PageRequest.of(0, limit)))
+                .orElse(List.of());
+    }
+
+    @Override
+    public void deleteMessages(Conversation conversation, List<Message> messages) {
+        messageRepository.deleteAllInBatch(messages);
+        conversation.getMessages().clear();
+    }
+
+    @Override
+    public List<MessageSearchHit> search(String query, float afterRank, long afterId, int limit) {
+        return messageRepository.search(query, afterRank, afterId, limit);
+    }
+
+    @Override
+    public Optional<SummaryCheckpoint> findLatestCheckpoint(Long conversationId) {
+        return checkpointRepository.findFirstByConversationIdOrderByCoversUpToMessageIdDesc(conversationId);
+    }
+
+    @Override
+    public List<SummaryCheckpoint> findCheckpoints(Long conversationId) {
+        return checkpointRepository.findByConversationId(conversationId);
+    }
+
+    @Override
+    public SummaryCheckpoint saveCheckpoint(SummaryCheckpoint checkpoint) {
+        return checkpointRepository.save(checkpoint);
+    }
+
+    @Override
+    public boolean tryClusterLock(long conversationId) {
+        return conversationRepository.tryAdvisoryXactLock(conversationId);
+    }
+}
@@ -0,0 +1,992 @@
+package com.sahal.persistence;
+
+import com.sahal.entity.Conversation;
+import com.sahal.entity.Message;
+import com.sahal.entity.MessageRole;
+import com.sahal.entity.SummaryCheckpoint;
+import com.sahal.repository.ConversationRepository;
+import com.sahal.repository.ConversationStampView;
+import com.sahal.repository.ConversationView;
+import com.sahal.repository.MessageSearchHit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.util.HtmlUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Embedded conversation store: an append-only log of memory-mapped segment files with the
+ * index in memory.
+ *
+ * Every change is one record appended to the active segment, a copy into the page cache with
+ * no network round trip and, unless app.persistence.embedded.sync is set, no fsync. A process
+ * crash loses nothing that was written; a power loss can lose the last writes. The index maps
+ * each session to its conversation and each conversation to the log addresses of its messages
+ * and checkpoints. It is rebuilt at startup by replaying the segments in order, with later
+ * records overriding earlier ones and a checksum on every record so a torn write at the end is
+ * cut off.
+ *
+ * Deleted conversations, archived messages and superseded conversation and checkpoint records
+ * leave garbage behind. {@link #compact} copies the live records of a sealed segment with
+ * enough garbage to the end of the log, forces the copies to disk and deletes the segment.
+ * Deletion records are only dropped from the oldest segment, as older segments could still
+ * hold what they delete.
+ *
+ * Search scans message content and matches words by prefix, without stemming; it is meant for
+ * the modest history of a single node.
+ */
+public class LogConversationStore implements ConversationStore, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(LogConversationStore.class);
+
+    static final byte CONVERSATION = 1;
+    static final byte MESSAGE = 2;
+    static final byte MESSAGES_DELETED = 3;
+    static final byte CONVERSATION_DELETED = 4;
+    static final byte CHECKPOINT = 5;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.log");
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+    private static final MessageRole[] ROLES = MessageRole.values();
+    private static final int SNIPPET_WORDS = 25;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean sync;
+    private final double compactionGarbageRatio;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<Integer, LogSegment> segments = new TreeMap<>();
+    private final TreeMap<Long, ConversationEntry> conversations = new TreeMap<>();
+    private final Map<String, ConversationEntry> bySession = new HashMap<>();
+    private LogSegment active;
+    // Shared by conversations, messages and checkpoints, so ids also order messages across conversations
+    private long nextId = 1;
+
+    public LogConversationStore(Path directory, int segmentSize, boolean sync, double compactionGarbageRatio) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.sync = sync;
+        this.compactionGarbageRatio = compactionGarbageRatio;
+        Files.createDirectories(directory);
+        replay();
+    }
+
+    // ---- conversations ----
+
+    @Override
+    public Optional<Conversation> findBySessionId(String sessionId) {
+        return read(() -> Optional.ofNullable(bySession.get(sessionId)).map(ConversationEntry::toConversation));
+    }
+
+    @Override
+    public Optional<Conversation> findById(Long id) {
+        return read(() -> Optional.ofNullable(conversations.get(id)).map(ConversationEntry::toConversation));
+    }
+
+    @Override
+    public List<Conversation> findAll() {
+        return read(() -> conversations.values().stream().map(ConversationEntry::toConversation).toList());
+    }
+
+    @Override
+    public Optional<ConversationView> findViewBySessionId(String sessionId) {
+        return read(() -> Optional.ofNullable(bySession.get(sessionId))
+                .map(entry -> new View(entry.id, entry.sessionId, entry.summary, entry.archived)));
+    }
+
+    @Override
+    public Optional<ConversationStampView> findStampBySessionId(String sessionId) {
+        return read(() -> Optional.ofNullable(bySession.get(sessionId))
+                .map(entry -> new Stamp(entry.id, entry.lastMessageId == 0 ? null : entry.lastMessageId, summaryHash(entry.summary), entry.archived)));
+    }
+
+    @Override
+    public String getListingVersionStamp() {
+        return read(() -> {
+            long maxLastMessageId = 0;
+            long summaryHashSum = 0;
+            long archivedCount = 0;
+            for (ConversationEntry entry : conversations.values()) {
+                maxLastMessageId = Math.max(maxLastMessageId, entry.lastMessageId);
+                summaryHashSum += summaryHash(entry.summary);
+                archivedCount += entry.archived ? 1 : 0;
+            }
+            long maxId = conversations.isEmpty() ? 0 : conversations.lastKey();
+            return new ListingStamp(conversations.size(), maxId, maxLastMessageId, summaryHashSum, archivedCount).toVersionStamp();
+        });
+    }
+
+    @Override
+    public Conversation save(Conversation conversation) {
+        return write(() -> {
+            ConversationEntry existing;
+            if (conversation.getId() == null) {
+                if (bySession.containsKey(conversation.getSessionId())) {
+                    throw new DataIntegrityViolationException(
+                        "duplicate key value violates unique constraint on conversations.session_id: " + conversation.getSessionId());
+                }
+                conversation.setId(nextId++);
+                existing = null;
+            } else {
+                existing = requireConversation(conversation.getId());
+            }
+            long lastMessageId = existing != null ? existing.lastMessageId : 0;
+            appendAndApply(CONVERSATION, body(out -> {
+                out.writeLong(conversation.getId());
+                out.writeLong(lastMessageId);
+                writeTime(out, conversation.getCreatedAt());
+                out.writeBoolean(conversation.isArchived());
+                writeTime(out, conversation.getArchivedAt());
+                writeString(out, conversation.getSessionId());
+                writeString(out, conversation.getSummary());
+            }));
+            conversation.setLastMessageId(lastMessageId == 0 ? null : lastMessageId);
+            return conversation;
+        });
+    }
+
+    @Override
+    public void delete(Conversation conversation) {
+        write(() -> {
+            if (conversations.containsKey(conversation.getId())) {
+                appendAndApply(CONVERSATION_DELETED, body(out -> out.writeLong(conversation.getId())));
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public List<Long> findIdleConversationIds(LocalDateTime cutoff, Long afterId, int limit) {
+        return read(() -> conversations.tailMap(afterId, false).values().stream()
+                .filter(entry -> !entry.archived && entry.createdAt.isBefore(cutoff))
+                .filter(entry -> entry.lastMessageAt == null || entry.lastMessageAt.isBefore(cutoff))
+                .limit(limit)
+                .map(entry -> entry.id)
+                .toList());
+    }
+
+    // ---- messages ----
+
+    @Override
+    public Message appendMessage(Conversation conversation, Message message) {
+        return write(() -> {
+            requireConversation(conversation.getId());
+            message.setId(nextId++);
+            message.setConversation(conversation);
+            appendAndApply(MESSAGE, body(out -> {
+                out.writeLong(message.getId());
+                out.writeLong(conversation.getId());
+                writeTime(out, message.getCreatedAt());
+                out.writeByte(message.getRole().ordinal());
+                writeString(out, message.getModelName());
+                writeString(out, message.getContent());
+            }));
+            conversation.setLastMessageId(message.getId());
+            return message;
+        });
+    }
+
+    @Override
+    public List<Message> findMessages(Long conversationId) {
+        return read(() -> {
+            ConversationEntry entry = conversations.get(conversationId);
+            return entry == null ? List.of() : readMessages(entry, 0, entry.messageCount, false);
+        });
+    }
+
+    @Override
+    public List<Message> findMessagesAfter(Long conversationId, long afterId) {
+        return read(() -> {
+            ConversationEntry entry = conversations.get(conversationId);
+            return entry == null ? List.of() : readMessages(entry, entry.firstIndexAbove(afterId), entry.messageCount, false);
+        });
+    }
+
+    @Override
+    public List<Message> findLatestMessagesAfter(Long conversationId, long afterId, int limit) {
+        return read(() -> {
+            ConversationEntry entry = conversations.get(conversationId);
+            if (entry == null) {
+                return List.of();
+            }
+            int from = Math.max(entry.firstIndexAbove(afterId), entry.messageCount - limit);
+            return readMessages(entry, from, entry.messageCount, false);
+        });
+    }
+
+    @Override
+    public List<Message> findOldestMessagesAfter(Long conversationId, long afterId, int limit) {
+        return read(() -> {
+            ConversationEntry entry = conversations.get(conversationId);
+            if (entry == null) {
+                return List.of();
+            }
+            int from = entry.firstIndexAbove(afterId);
+            return readMessages(entry, from, Math.min(entry.messageCount, from + limit), false);
+        });
+    }
+
+    @Override
+    public List<Message> findPageBefore(Long conversationId, Long beforeId, int limit) {
+        return read(() -> {
+            ConversationEntry entry = conversations.get(conversationId);
+            if (entry == null) {
+                return List.of();
+            }
+            int end = entry.messageCount;
+            if (beforeId != null) {
+                end = entry.indexOf(beforeId);
+                if (end < 0) {
+                    return List.of();
+                }
+            }
+            return readMessages(entry, Math.max(0, end - limit), end, true);
+        });
+    }
+
+    @Override
+    public List<Message> findPageAfter(Long conversationId, long afterId, int limit) {
+        return read(() -> {
+            ConversationEntry entry = conversations.get(conversationId);
+            int index = entry == null ? -1 : entry.indexOf(afterId);
+            if (index < 0) {
+                return List.of();
+            }
+            return readMessages(entry, index + 1, Math.min(entry.messageCount, index + 1 + limit), false);
+        });
+    }
+
+    @Override
+    public void deleteMessages(Conversation conversation, List<Message> messages) {
+        write(() -> {
+            ConversationEntry entry = conversations.get(conversation.getId());
+            long[] ids = messages.stream().mapToLong(Message::getId).filter(id -> entry != null && entry.indexOf(id) >= 0).toArray();
+            if (ids.length > 0) {
+                appendAndApply(MESSAGES_DELETED, body(out -> {
+                    out.writeLong(conversation.getId());
+                    out.writeInt(ids.length);
+                    for (long id : ids) {
+                        out.writeLong(id);
+                    }
+                }));
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public List<MessageSearchHit> search(String query, float afterRank, long afterId, int limit) {
+        List<String> terms = new ArrayList<>();
+        List<String> excluded = new ArrayList<>();
+        for (String token : query.toLowerCase(Locale.ROOT).split("\\s+")) {
+            boolean negated = token.startsWith("-");
+            Matcher word = WORD.matcher(token);
+            while (word.find()) {
+                (negated ? excluded : terms).add(word.group());
+            }
+        }
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        return read(() -> {
+            List<Hit> hits = new ArrayList<>();
+            for (ConversationEntry entry : conversations.values()) {
+                for (int i = 0; i < entry.messageCount; i++) {
+                    Message message = readMessage(entry.messageAddresses[i]);
+                    float rank = rank(message.getContent(), terms, excluded);
+                    if (rank > 0 && (rank < afterRank || (rank == afterRank && message.getId() < afterId))) {
+                        hits.add(new Hit(message.getId(), entry.sessionId, message.getRole().name(), message.getModelName(),
+                                message.getCreatedAt(), rank, message.getContent()));
+                    }
+                }
+            }
+            return hits.stream()
+                    .sorted(Comparator.comparing(Hit::getRank).thenComparing(Hit::getId).reversed())
+                    .limit(limit)
+                    .map(hit -> (MessageSearchHit) hit.withSnippet(snippet(hit.snippet(), terms)))
+                    .toList();
+        });
+    }
+
+    // ---- checkpoints ----
+
+    @Override
+    public Optional<SummaryCheckpoint> findLatestCheckpoint(Long conversationId) {
+        return read(() -> {
+            ConversationEntry entry = conversations.get(conversationId);
+            return entry == null ? Optional.empty() : entry.checkpoints.values().stream()
+                    .max(Comparator.comparingLong((CheckpointEntry checkpoint) -> checkpoint.coversUpToMessageId)
+                            .thenComparingLong(checkpoint -> checkpoint.id))
+                    .map(checkpoint -> readCheckpoint(checkpoint.address));
+        });
+    }
+
+    @Override
+    public List<SummaryCheckpoint> findCheckpoints(Long conversationId) {
+        return read(() -> {
+            ConversationEntry entry = conversations.get(conversationId);
+            return entry == null ? List.of() : entry.checkpoints.values().stream()
+                    .map(checkpoint -> readCheckpoint(checkpoint.address))
+                    .toList();
+        });
+    }
+
+    @Override
+    public SummaryCheckpoint saveCheckpoint(SummaryCheckpoint checkpoint) {
+        return write(() -> {
+            requireConversation(checkpoint.getConversationId());
+            if (checkpoint.getId() == null) {
+                checkpoint.setId(nextId++);
+            }
+            appendAndApply(CHECKPOINT, body(out -> {
+                out.writeLong(checkpoint.getId());
+                out.writeLong(checkpoint.getConversationId());
+                out.writeLong(checkpoint.getCoversUpToMessageId());
+                writeTime(out, checkpoint.getCreatedAt());
+                writeString(out, checkpoint.getSummary());
+            }));
+            return checkpoint;
+        });
+    }
+
+    @Override
+    public boolean tryClusterLock(long conversationId) {
+        // The log belongs to a single process, the node-local session lock is enough
+        return true;
+    }
+
+    // ---- compaction ----
+
+    /**
+     * Rewrite sealed segments whose garbage reached the configured share
+     */
+    @Scheduled(fixedDelayString = "${app.persistence.embedded.compaction-interval-ms:60000}")
+    public void compact() {
+        List<Integer> candidates = read(() -> segments.values().stream()
+                .filter(segment -> segment != active)
+                .filter(segment -> garbageRatio(segment) >= compactionGarbageRatio)
+                .map(segment -> segment.number)
+                .toList());
+        for (Integer number : candidates) {
+            // One segment per lock hold, so writers only wait for a single segment's copy
+            write(() -> {
+                LogSegment segment = segments.get(number);
+                if (segment != null) {
+                    relocate(segment);
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Sizes and garbage of the segments, for diagnostics
+     */
+    public Map<String, Object> toMap() {
+        return read(() -> {
+            Map<String, Object> result = new java.util.LinkedHashMap<>();
+            result.put("directory", directory.toString());
+            result.put("conversations", conversations.size());
+            List<Map<String, Object>> segmentStats = new ArrayList<>();
+            for (LogSegment segment : segments.values()) {
+                Map<String, Object> stats = new java.util.LinkedHashMap<>();
+                stats.put("number", segment.number);
+                stats.put("usedBytes", segment.writePosition - LogSegment.HEADER_SIZE);
+                stats.put("liveBytes", segment.liveBytes);
+                stats.put("active", segment == active);
+                segmentStats.add(stats);
+            }
+            result.put("segments", segmentStats);
+            return result;
+        });
+    }
+
+    private void relocate(LogSegment segment) {
+        boolean oldest = segments.firstKey() == segment.number;
+        int position = LogSegment.HEADER_SIZE;
+        int moved = 0;
+        while (position < segment.writePosition) {
+            int size = segment.recordSize(position);
+            long address = address(segment.number, position);
+            byte type = segment.type(position);
+            if (isLive(type, segment.body(position), address, oldest)) {
+                // Applying the copy is what replay would do with it: it replaces the older address
+                byte[] record = segment.copyRecord(position);
+                long copied = appendRecord(record);
+                apply(type, segmentOf(copied).body(positionOf(copied)), copied, record.length);
+                moved++;
+            }
+            position += size;
+        }
+        // The copies must be on disk before the only other copy goes, or a power loss would lose
+        // old conversations rather than just the last writes
+        active.force();
+        segments.remove(segment.number);
+        try {
+            segment.delete();
+        } catch (IOException e) {
+            log.warn("Could not delete compacted segment {}: {}", segment.number, e.getMessage());
+        }
+        log.info("Compacted log segment {}, moved {} live records", segment.number, moved);
+    }
+
+    private boolean isLive(byte type, ByteBuffer body, long address, boolean oldest) {
+        switch (type) {
+            case CONVERSATION -> {
+                ConversationEntry entry = conversations.get(body.getLong(0));
+                return entry != null && entry.address == address;
+            }
+            case MESSAGE -> {
+                ConversationEntry entry = conversations.get(body.getLong(8));
+                int index = entry == null ? -1 : entry.indexOf(body.getLong(0));
+                return index >= 0 && entry.messageAddresses[index] == address;
+            }
+            case CHECKPOINT -> {
+                ConversationEntry entry = conversations.get(body.getLong(8));
+                CheckpointEntry checkpoint = entry == null ? null : entry.checkpoints.get(body.getLong(0));
+                return checkpoint != null && checkpoint.address == address;
+            }
+            default -> {
+                // Deletions must outlive every older segment that may hold what they delete
+                return !oldest;
+            }
+        }
+    }
+
+    private static double garbageRatio(LogSegment segment) {
+        int used = segment.writePosition - LogSegment.HEADER_SIZE;
+        return used == 0 ? 0 : 1 - (double) segment.liveBytes / used;
+    }
+
+    // ---- log and index ----
+
+    private void replay() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> SEGMENT_NAME.matcher(path.getFileName().toString()).matches()).toList();
+        }
+        TreeMap<Integer, Path> ordered = new TreeMap<>();
+        for (Path file : files) {
+            Matcher name = SEGMENT_NAME.matcher(file.getFileName().toString());
+            name.matches();
+            ordered.put(Integer.parseInt(name.group(1)), file);
+        }
+
+        int records = 0;
+        for (Map.Entry<Integer, Path> file : ordered.entrySet()) {
+            LogSegment segment = LogSegment.open(file.getValue(), file.getKey());
+            if (segment == null) {
+                // Crashed while creating the segment
+                Files.delete(file.getValue());
+                continue;
+            }
+            segments.put(segment.number, segment);
+            nextId = Math.max(nextId, segment.headerNextId());
+            int position = LogSegment.HEADER_SIZE;
+            int size;
+            while ((size = segment.validRecordSize(position)) > 0) {
+                apply(segment.type(position), segment.body(position), address(segment.number, position), size);
+                position += size;
+                records++;
+            }
+            segment.writePosition = position;
+            if (file.getKey().equals(ordered.lastKey())) {
+                if (segment.clearFrom(position)) {
+                    log.warn("Log segment {} ends in an incomplete record at {}, discarded it", segment.number, position);
+                }
+            } else if (position + LogSegment.RECORD_OVERHEAD <= segment.capacity() && segment.validRecordSize(position) < 0
+                    && segment.recordSize(position) != LogSegment.RECORD_OVERHEAD) {
+                log.warn("Log segment {} has an unreadable record at {}, records after it are lost", segment.number, position);
+            }
+        }
+
+        // Entries only created by messages or checkpoints whose conversation record never made it
+        conversations.values().removeIf(entry -> entry.address < 0);
+
+        active = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        if (active == null) {
+            active = LogSegment.create(directory, 1, segmentSize, nextId);
+            segments.put(active.number, active);
+        }
+        log.info("Opened conversation log in {}: {} segments, {} records, {} conversations",
+                directory, segments.size(), records, conversations.size());
+    }
+
+    private void appendAndApply(byte type, byte[] body) {
+        byte[] record = LogSegment.frame(type, body);
+        long address = appendRecord(record);
+        apply(type, ByteBuffer.wrap(body), address, record.length);
+    }
+
+    private long appendRecord(byte[] record) {
+        if (active.remaining() < record.length) {
+            try {
+                LogSegment next = LogSegment.create(directory, active.number + 1,
+                        Math.max(segmentSize, LogSegment.HEADER_SIZE + record.length), nextId);
+                active.force();
+                segments.put(next.number, next);
+                active = next;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not start a new log segment", e);
+            }
+        }
+        return address(active.number, active.append(record, sync));
+    }
+
+    /**
+     * Apply one record to the index. Replay, live writes and compaction all go through here.
+     */
+    private void apply(byte type, ByteBuffer body, long address, int size) {
+        switch (type) {
+            case CONVERSATION -> {
+                long id = body.getLong(0);
+                ConversationEntry entry = entryFor(id);
+                release(entry.address);
+                entry.address = address;
+                entry.lastMessageId = Math.max(entry.lastMessageId, body.getLong(8));
+                ByteBuffer fields = body.duplicate().position(16);
+                entry.createdAt = readTime(fields);
+                entry.archived = fields.get() != 0;
+                entry.archivedAt = readTime(fields);
+                String sessionId = readString(fields);
+                entry.summary = readString(fields);
+                if (!sessionId.equals(entry.sessionId)) {
+                    entry.sessionId = sessionId;
+                    bySession.put(sessionId, entry);
+                }
+                nextId = Math.max(nextId, id + 1);
+            }
+            case MESSAGE -> {
+                long id = body.getLong(0);
+                ConversationEntry entry = entryFor(body.getLong(8));
+                LocalDateTime createdAt = readTime(body.duplicate().position(16));
+                release(entry.putMessage(id, address));
+                entry.lastMessageId = Math.max(entry.lastMessageId, id);
+                if (entry.lastMessageAt == null || createdAt.isAfter(entry.lastMessageAt)) {
+                    entry.lastMessageAt = createdAt;
+                }
+                nextId = Math.max(nextId, id + 1);
+            }
+            case MESSAGES_DELETED -> {
+                ConversationEntry entry = conversations.get(body.getLong(0));
+                if (entry != null) {
+                    int count = body.getInt(8);
+                    for (int i = 0; i < count; i++) {
+                        release(entry.removeMessage(body.getLong(12 + i * 8)));
+                    }
+                    entry.lastMessageAt = null;
+                    for (int i = 0; i < entry.messageCount; i++) {
+                        LocalDateTime createdAt = readTime(segmentOf(entry.messageAddresses[i]).body(positionOf(entry.messageAddresses[i])).position(16));
+                        if (entry.lastMessageAt == null || createdAt.isAfter(entry.lastMessageAt)) {
+                            entry.lastMessageAt = createdAt;
+                        }
+                    }
+                }
+            }
+            case CONVERSATION_DELETED -> {
+                ConversationEntry entry = conversations.remove(body.getLong(0));
+                if (entry != null) {
+                    bySession.remove(entry.sessionId, entry);
+                    release(entry.address);
+                    for (int i = 0; i < entry.messageCount; i++) {
+                        release(entry.messageAddresses[i]);
+                    }
+                    entry.checkpoints.values().forEach(checkpoint -> release(checkpoint.address));
+                }
+            }
+            case CHECKPOINT -> {
+                long id = body.getLong(0);
+                ConversationEntry entry = entryFor(body.getLong(8));
+                CheckpointEntry previous = entry.checkpoints.put(id, new CheckpointEntry(id, body.getLong(16), address));
+                if (previous != null) {
+                    release(previous.address);
+                }
+                nextId = Math.max(nextId, id + 1);
+            }
+            default -> throw new IllegalStateException("Unknown log record type " + type + " at " + Long.toHexString(address));
+        }
+        // Counted until released; deletion records never are, compaction decides on those
+        segmentOf(address).liveBytes += size;
+    }
+
+    private ConversationEntry entryFor(long id) {
+        return conversations.computeIfAbsent(id, ConversationEntry::new);
+    }
+
+    private ConversationEntry requireConversation(Long id) {
+        ConversationEntry entry = id == null ? null : conversations.get(id);
+        if (entry == null) {
+            throw new IllegalStateException("Conversation " + id + " does not exist");
+        }
+        return entry;
+    }
+
+    /**
+     * Count a record that the index no longer points to as garbage
+     */
+    private void release(long address) {
+        if (address < 0) {
+            return;
+        }
+        LogSegment segment = segments.get((int) (address >>> 32));
+        if (segment != null) {
+            segment.liveBytes -= segment.recordSize(positionOf(address));
+        }
+    }
+
+    private List<Message> readMessages(ConversationEntry entry, int from, int to, boolean newestFirst) {
+        List<Message> messages = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            messages.add(readMessage(entry.messageAddresses[newestFirst ? to - 1 - (i - from) : i]));
+        }
+        return messages;
+    }
+
+    private Message readMessage(long address) {
+        ByteBuffer body = segmentOf(address).body(positionOf(address));
+        Message message = new Message();
+        message.setId(body.getLong());
+        body.getLong();
+        message.setCreatedAt(readTime(body));
+        message.setRole(ROLES[body.get()]);
+        message.setModelName(readString(body));
+        message.setContent(readString(body));
+        return message;
+    }
+
+    private SummaryCheckpoint readCheckpoint(long address) {
+        ByteBuffer body = segmentOf(address).body(positionOf(address));
+        SummaryCheckpoint checkpoint = new SummaryCheckpoint();
+        checkpoint.setId(body.getLong());
+        checkpoint.setConversationId(body.getLong());
+        checkpoint.setCoversUpToMessageId(body.getLong());
+        checkpoint.setCreatedAt(readTime(body));
+        checkpoint.setSummary(readString(body));
+        return checkpoint;
+    }
+
+    private LogSegment segmentOf(long address) {
+        return segments.get((int) (address >>> 32));
+    }
+
+    private static int positionOf(long address) {
+        return (int) address;
+    }
+
+    private static long address(int segment, int position) {
+        return ((long) segment << 32) | position;
+    }
+
+    // ---- search ----
+
+    private static float rank(String content, List<String> terms, List<String> excluded) {
+        if (content == null) {
+            return 0;
+        }
+        int[] counts = new int[terms.size()];
+        int words = 0;
+        Matcher word = WORD.matcher(content.toLowerCase(Locale.ROOT));
+        while (word.find()) {
+            words++;
+            String token = word.group();
+            for (String term : excluded) {
+                if (token.startsWith(term)) {
+                    return 0;
+                }
+            }
+            for (int i = 0; i < counts.length; i++) {
+                if (token.startsWith(terms.get(i))) {
+                    counts[i]++;
+                }
+            }
+        }
+        int total = 0;
+        for (int count : counts) {
+            if (count == 0) {
+                return 0;
+            }
+            total += count;
+        }
+        // Term frequency, damped for long messages
+        return (float) (total / Math.sqrt(words));
+    }
+
+    // Escaped like the ts_headline snippets of the JPA store, so only the <mark> tags are markup
+    private static String snippet(String content, List<String> terms) {
+        List<int[]> words = new ArrayList<>();
+        int first = -1;
+        Matcher word = WORD.matcher(content);
+        while (word.find()) {
+            String token = word.group().toLowerCase(Locale.ROOT);
+            boolean match = terms.stream().anyMatch(token::startsWith);
+            if (match && first < 0) {
+                first = words.size();
+            }
+            words.add(new int[] {word.start(), word.end(), match ? 1 : 0});
+        }
+        int from = Math.max(0, first - SNIPPET_WORDS / 3);
+        int to = Math.min(words.size(), from + SNIPPET_WORDS);
+        StringBuilder snippet = new StringBuilder();
+        int cursor = words.isEmpty() ? 0 : words.get(from)[0];
+        for (int i = from; i < to; i++) {
+            int[] span = words.get(i);
+            snippet.append(HtmlUtils.htmlEscape(content.substring(cursor, span[0])));
+            if (span[2] == 1) {
+                snippet.append("<mark>").append(HtmlUtils.htmlEscape(content.substring(span[0], span[1]))).append("</mark>");
+            } else {
+                snippet.append(HtmlUtils.htmlEscape(content.substring(span[0], span[1])));
+            }
+            cursor = span[1];
+        }
+        return snippet.toString();
+    }
+
+    // ---- encoding ----
+
+    private interface BodyWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] body(BodyWriter writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        if (time == null) {
+            out.writeLong(Long.MIN_VALUE);
+            out.writeInt(0);
+            return;
+        }
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    private static LocalDateTime readTime(ByteBuffer in) {
+        long seconds = in.getLong();
+        int nanos = in.getInt();
+        return seconds == Long.MIN_VALUE ? null : LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+
+    private static int summaryHash(String summary) {
+        return summary == null ? 0 : summary.hashCode();
+    }
+
+    // ---- locking ----
+
+    private <T> T read(java.util.function.Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private <T> T write(java.util.function.Supplier<T> action) {
+        lock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            active.force();
+            for (LogSegment segment : segments.values()) {
+                segment.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---- index entries ----
+
+    private static final class ConversationEntry {
+        private final long id;
+        private String sessionId;
+        private LocalDateTime createdAt;
+        private String summary;
+        private boolean archived;
+        private LocalDateTime archivedAt;
+        private long lastMessageId;
+        private LocalDateTime lastMessageAt;
+        // Address of the latest conversation record; -1 while only messages have been seen during replay
+        private long address = -1;
+        // Sorted by id, parallel to the addresses
+        private long[] messageIds = new long[8];
+        private long[] messageAddresses = new long[8];
+        private int messageCount;
+        private final Map<Long, CheckpointEntry> checkpoints = new HashMap<>(4);
+
+        ConversationEntry(long id) {
+            this.id = id;
+        }
+
+        Conversation toConversation() {
+            Conversation conversation = new Conversation(sessionId);
+            conversation.setId(id);
+            conversation.setCreatedAt(createdAt);
+            conversation.setSummary(summary);
+            conversation.setArchived(archived);
+            conversation.setArchivedAt(archivedAt);
+            conversation.setLastMessageId(lastMessageId == 0 ? null : lastMessageId);
+            return conversation;
+        }
+
+        int indexOf(long messageId) {
+            int index = Arrays.binarySearch(messageIds, 0, messageCount, messageId);
+            return index >= 0 ? index : -1;
+        }
+
+        int firstIndexAbove(long messageId) {
+            int index = Arrays.binarySearch(messageIds, 0, messageCount, messageId);
+            return index >= 0 ? index + 1 : -index - 1;
+        }
+
+        /**
+         * Add or move a message; returns the address it replaced, or -1
+         */
+        long putMessage(long messageId, long address) {
+            if (messageCount == 0 || messageId > messageIds[messageCount - 1]) {
+                ensureCapacity();
+                messageIds[messageCount] = messageId;
+                messageAddresses[messageCount++] = address;
+                return -1;
+            }
+            int index = Arrays.binarySearch(messageIds, 0, messageCount, messageId);
+            if (index >= 0) {
+                long previous = messageAddresses[index];
+                messageAddresses[index] = address;
+                return previous;
+            }
+            // A message copied forward by compaction, replayed after newer ones
+            int insertAt = -index - 1;
+            ensureCapacity();
+            System.arraycopy(messageIds, insertAt, messageIds, insertAt + 1, messageCount - insertAt);
+            System.arraycopy(messageAddresses, insertAt, messageAddresses, insertAt + 1, messageCount - insertAt);
+            messageIds[insertAt] = messageId;
+            messageAddresses[insertAt] = address;
+            messageCount++;
+            return -1;
+        }
+
+        /**
+         * Remove a message; returns its address, or -1 if it was not there
+         */
+        long removeMessage(long messageId) {
+            int index = indexOf(messageId);
+            if (index < 0) {
+                return -1;
+            }
+            long address = messageAddresses[index];
+            System.arraycopy(messageIds, index + 1, messageIds, index, messageCount - index - 1);
+            System.arraycopy(messageAddresses, index + 1, messageAddresses, index, messageCount - index - 1);
+            messageCount--;
+            return address;
+        }
+
+        private void ensureCapacity() {
+            if (messageCount == messageIds.length) {
+                messageIds = Arrays.copyOf(messageIds, messageCount * 2);
+                messageAddresses = Arrays.copyOf(messageAddresses, messageCount * 2);
+            }
+        }
+    }
+
+    private record CheckpointEntry(long id, long coversUpToMessageId, long address) {}
+
+    private record View(Long id, String sessionId, String summary, boolean archived) implements ConversationView {
+        public Long getId() { return id; }
+        public String getSessionId() { return sessionId; }
+        public String getSummary() { return summary; }
+        public boolean isArchived() { return archived; }
+    }
+
+    private record Stamp(Long id, Long lastMessageId, int summaryHash, boolean archived) implements ConversationStampView {
+        public Long getId() { return id; }
+        public Long getLastMessageId() { return lastMessageId; }
+        public int getSummaryHash() { return summaryHash; }
+        public boolean isArchived() { return archived; }
+    }
+
+    private record ListingStamp(long conversations, long maxId, long maxLastMessageId, long summaryHashSum,
+                                long archivedCount) implements ConversationRepository.ListingStampView {
+        public long getConversations() { return conversations; }
+        public long getMaxId() { return maxId; }
+        public long getMaxLastMessageId() { return maxLastMessageId; }
+        public long getSummaryHashSum() { return summaryHashSum; }
+        public long getArchivedCount() { return archivedCount; }
+    }
+
+    private record Hit(Long id, String sessionId, String role, String modelName, LocalDateTime createdAt,
+                       Float rank, String snippet) implements MessageSearchHit {
+        public Long getId() { return id; }
+        public String getSessionId() { return sessionId; }
+        public String getRole() { return role; }
+        public String getModelName() { return modelName; }
+        public LocalDateTime getCreatedAt() { return createdAt; }
+        public Float getRank() { return rank; }
+        public String getSnippet() { return snippet; }
+
+        Hit withSnippet(String snippet) {
+            return new Hit(id, sessionId, role, modelName, createdAt, rank, snippet);
+        }
+    }
+}
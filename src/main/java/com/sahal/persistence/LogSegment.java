@@ -0,0 +1,186 @@
+package com.sahal.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * One memory-mapped file of the embedded log.
+ *
+ * Layout: a header (magic, version, the id sequence when the segment was created) followed by
+ * records of {@code [int length][byte type][length bytes body][int crc32c(type, body)]}. The
+ * file is mapped at its full size up front, so the unwritten tail reads as zeros and a zero
+ * length marks the end. Only the owning store writes, under its lock.
+ */
+final class LogSegment implements Closeable {
+
+    static final int HEADER_SIZE = 24;
+    static final int RECORD_OVERHEAD = 9;
+
+    private static final int MAGIC = 0x534C4F47;
+    private static final int VERSION = 1;
+
+    final int number;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    // End of the valid records; also the next write position while the segment is active
+    int writePosition;
+    // Bytes of records the index still points to; the rest is garbage for compaction
+    long liveBytes;
+
+    private LogSegment(int number, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.number = number;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.writePosition = HEADER_SIZE;
+    }
+
+    static Path pathFor(Path directory, int number) {
+        return directory.resolve(String.format("segment-%08d.log", number));
+    }
+
+    static LogSegment create(Path directory, int number, int capacity, long nextId) throws IOException {
+        Path path = pathFor(directory, number);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        LogSegment segment = new LogSegment(number, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+        segment.buffer.putInt(0, MAGIC).putInt(4, VERSION).putLong(8, nextId);
+        return segment;
+    }
+
+    /**
+     * Open an existing segment; null if it is too short to hold a header, i.e. its creation never completed
+     */
+    static LogSegment open(Path path, int number) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            channel.close();
+            return null;
+        }
+        LogSegment segment = new LogSegment(number, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        if (segment.buffer.getInt(0) != MAGIC || segment.buffer.getInt(4) != VERSION) {
+            segment.close();
+            throw new IOException("Not a log segment or unsupported version: " + path);
+        }
+        return segment;
+    }
+
+    long headerNextId() {
+        return buffer.getLong(8);
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    int remaining() {
+        return buffer.capacity() - writePosition;
+    }
+
+    /**
+     * Frame a record body with its length, type and checksum
+     */
+    static byte[] frame(byte type, byte[] body) {
+        CRC32C crc = new CRC32C();
+        crc.update(type);
+        crc.update(body);
+        return ByteBuffer.allocate(body.length + RECORD_OVERHEAD)
+                .putInt(body.length).put(type).put(body).putInt((int) crc.getValue())
+                .array();
+    }
+
+    /**
+     * Write a framed record at the end; the caller checked that it fits
+     */
+    int append(byte[] record, boolean sync) {
+        int position = writePosition;
+        buffer.put(position, record);
+        writePosition += record.length;
+        if (sync) {
+            buffer.force(position, record.length);
+        }
+        return position;
+    }
+
+    /**
+     * Size of the valid record at a position, or -1 at the end of the records or at a torn write
+     */
+    int validRecordSize(int position) {
+        if (position + RECORD_OVERHEAD > buffer.capacity()) {
+            return -1;
+        }
+        int length = buffer.getInt(position);
+        if (length <= 0 || length > buffer.capacity() - position - RECORD_OVERHEAD) {
+            return -1;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(position + 4, length + 1));
+        return (int) crc.getValue() == buffer.getInt(position + 5 + length) ? length + RECORD_OVERHEAD : -1;
+    }
+
+    int recordSize(int position) {
+        return buffer.getInt(position) + RECORD_OVERHEAD;
+    }
+
+    byte type(int position) {
+        return buffer.get(position + 4);
+    }
+
+    /**
+     * The body of a record as an independent buffer, safe to read alongside other readers
+     */
+    ByteBuffer body(int position) {
+        return buffer.slice(position + 5, buffer.getInt(position));
+    }
+
+    byte[] copyRecord(int position) {
+        byte[] record = new byte[recordSize(position)];
+        buffer.get(position, record);
+        return record;
+    }
+
+    /**
+     * Clear whatever a torn write left after the last valid record, so that later appends
+     * cannot end up followed by leftover bytes. Returns whether there was anything to clear.
+     */
+    boolean clearFrom(int position) {
+        int end = buffer.capacity();
+        int dirty = -1;
+        for (int at = position; at < end && dirty < 0; at++) {
+            if (buffer.get(at) != 0) {
+                dirty = at;
+            }
+        }
+        if (dirty < 0) {
+            return false;
+        }
+        byte[] zeros = new byte[Math.min(64 * 1024, end - position)];
+        for (int at = position; at < end; at += zeros.length) {
+            buffer.put(at, zeros, 0, Math.min(zeros.length, end - at));
+        }
+        return true;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The mapping itself is released when the buffer is collected
+        channel.close();
+    }
+}
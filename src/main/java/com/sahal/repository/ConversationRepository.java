@@ -1,11 +1,61 @@
 package com.sahal.repository;
 
 import com.sahal.entity.Conversation;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ConversationRepository extends JpaRepository<Conversation, Long> {
     Optional<Conversation> findBySessionId(String sessionId);
+    
+    Optional<ConversationView> findViewBySessionId(String sessionId);
+    
+    Optional<ConversationStampView> findStampBySessionId(String sessionId);
+    
+    // Aggregate over all conversation stamps; changes whenever any conversation is added, removed or written to
+    @Query("select count(c) as conversations, coalesce(max(c.id), 0) as maxId, " +
+           "coalesce(max(c.lastMessageId), 0) as maxLastMessageId, coalesce(sum(c.summaryHash), 0) as summaryHashSum, " +
+           "coalesce(sum(case when c.archived = true then 1 else 0 end), 0) as archivedCount " +
+           "from Conversation c")
+    ListingStampView findListingStamp();
+    
+    interface ListingStampView {
+        long getConversations();
+        long getMaxId();
+        long getMaxLastMessageId();
+        long getSummaryHashSum();
+        long getArchivedCount();
+        
+        default String toVersionStamp() {
+            return getConversations() + "-" + getMaxId() + "-" + getMaxLastMessageId()
+                    + "-" + Long.toHexString(getSummaryHashSum()) + "-" + getArchivedCount();
+        }
+    }
+    
+    @Transactional
+    @Modifying
+    @Query("update Conversation c set c.lastMessageId = :messageId " +
+           "where c.id = :id and (c.lastMessageId is null or c.lastMessageId < :messageId)")
+    int advanceLastMessageId(@Param("id") Long id, @Param("messageId") Long messageId);
+    
+    // Conversations that are not archived yet and have had no message since the cutoff
+    @Query("select c.id from Conversation c where c.archived = false and c.id > :afterId and c.createdAt < :cutoff " +
+           "and not exists (select m.id from Message m where m.conversation = c and m.createdAt >= :cutoff) " +
+           "order by c.id")
+    List<Long> findIdleConversationIds(@Param("cutoff") LocalDateTime cutoff, @Param("afterId") Long afterId, Pageable pageable);
+    
+    @Query("select c.summary from Conversation c where c.id = :id")
+    String findSummaryById(@Param("id") Long id);
+    
+    // Postgres transaction-scoped advisory lock, released when the current transaction ends
+    @Query(value = "select pg_try_advisory_xact_lock(:key)", nativeQuery = true)
+    boolean tryAdvisoryXactLock(@Param("key") long key);
 }
@@ -0,0 +1,16 @@
+package com.sahal.repository;
+
+/**
+ * The few columns that make up a conversation's version stamp
+ */
+public interface ConversationStampView {
+    Long getId();
+    Long getLastMessageId();
+    int getSummaryHash();
+    boolean isArchived();
+    
+    default String toVersionStamp() {
+        return getId() + "-" + (getLastMessageId() != null ? getLastMessageId() : 0)
+                + "-" + Integer.toHexString(getSummaryHash()) + (isArchived() ? "-a" : "");
+    }
+}
@@ -0,0 +1,11 @@
+package com.sahal.repository;
+
+/**
+ * Lightweight projection of a conversation row, read without touching its messages
+ */
+public interface ConversationView {
+    Long getId();
+    String getSessionId();
+    String getSummary();
+    boolean isArchived();
+}
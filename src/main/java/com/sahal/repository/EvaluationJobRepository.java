@@ -0,0 +1,50 @@
+package com.sahal.repository;
+
+import com.sahal.entity.EvaluationJob;
+import com.sahal.entity.EvaluationJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface EvaluationJobRepository extends JpaRepository<EvaluationJob, Long> {
+    
+    @Query("select j.id from EvaluationJob j where j.status in :statuses and (j.leaseUntil is null or j.leaseUntil < :now) order by j.id")
+    List<Long> findClaimableJobIds(@Param("statuses") Collection<EvaluationJobStatus> statuses, @Param("now") LocalDateTime now);
+    
+    // Claim or renew the lease on a job; returns 0 if another node holds a live lease
+    @Transactional
+    @Modifying
+    @Query("update EvaluationJob j set j.leaseOwner = :owner, j.leaseUntil = :until, j.status = com.sahal.entity.EvaluationJobStatus.RUNNING " +
+           "where j.id = :id and j.status in (com.sahal.entity.EvaluationJobStatus.PENDING, com.sahal.entity.EvaluationJobStatus.RUNNING) " +
+           "and (j.leaseUntil is null or j.leaseUntil < :now or j.leaseOwner = :owner)")
+    int claim(@Param("id") Long id, @Param("owner") String owner, @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+    
+    @Transactional
+    @Modifying
+    @Query("update EvaluationJob j set j.completedTasks = j.completedTasks + 1, " +
+           "j.failedTasks = j.failedTasks + (case when :failed = true then 1 else 0 end) where j.id = :id")
+    void recordTaskCompleted(@Param("id") Long id, @Param("failed") boolean failed);
+    
+    @Transactional
+    @Modifying
+    @Query("update EvaluationJob j set j.status = :status, j.completedAt = :completedAt, j.leaseOwner = null, j.leaseUntil = null " +
+           "where j.id = :id and j.status = com.sahal.entity.EvaluationJobStatus.RUNNING")
+    int finish(@Param("id") Long id, @Param("status") EvaluationJobStatus status, @Param("completedAt") LocalDateTime completedAt);
+    
+    // Cancel only a job that has not finished; counters are left to recordTaskCompleted
+    @Transactional
+    @Modifying
+    @Query("update EvaluationJob j set j.status = com.sahal.entity.EvaluationJobStatus.CANCELLED, j.completedAt = :now " +
+           "where j.id = :id and j.status in (com.sahal.entity.EvaluationJobStatus.PENDING, com.sahal.entity.EvaluationJobStatus.RUNNING)")
+    int cancel(@Param("id") Long id, @Param("now") LocalDateTime now);
+    
+    @Query("select j.status from EvaluationJob j where j.id = :id")
+    EvaluationJobStatus findStatusById(@Param("id") Long id);
+}
@@ -0,0 +1,19 @@
+package com.sahal.repository;
+
+import com.sahal.entity.EvaluationResult;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+
+@Repository
+public interface EvaluationResultRepository extends JpaRepository<EvaluationResult, Long> {
+    
+    List<EvaluationResult> findByJobIdAndIdGreaterThanOrderByIdAsc(Long jobId, Long afterId, Pageable pageable);
+    
+    // Checkpoint of a job: the (prompt, model) pairs that already have a result
+    @Query("select r.promptIndex, r.modelName from EvaluationResult r where r.jobId = :jobId")
+    List<Object[]> findCompletedTasks(@Param("jobId") Long jobId);
+}
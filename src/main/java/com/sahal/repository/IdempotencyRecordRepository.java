@@ -0,0 +1,46 @@
+package com.sahal.repository;
+
+import com.sahal.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+    
+    // Claim a key with a plain INSERT, taking over the row only if it has expired or is unfinished past its
+    // in-progress lease (the node running it died); returns 0 if the key is held
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = """
+            INSERT INTO idempotency_records (idempotency_key, request_hash, completed, created_at, in_progress_until, expires_at)
+            VALUES (:key, :requestHash, false, :now, :leaseUntil, :expiresAt)
+            ON CONFLICT (idempotency_key) DO UPDATE
+                SET request_hash = EXCLUDED.request_hash, completed = false, response = NULL,
+                    created_at = EXCLUDED.created_at, in_progress_until = EXCLUDED.in_progress_until,
+                    expires_at = EXCLUDED.expires_at
+                WHERE idempotency_records.expires_at <= :now
+                   OR (NOT idempotency_records.completed
+                       AND (idempotency_records.in_progress_until IS NULL OR idempotency_records.in_progress_until <= :now))
+            """, nativeQuery = true)
+    int claim(@Param("key") String key,
+              @Param("requestHash") String requestHash,
+              @Param("now") LocalDateTime now,
+              @Param("leaseUntil") LocalDateTime leaseUntil,
+              @Param("expiresAt") LocalDateTime expiresAt);
+    
+    // Drop a claim whose request failed, unless another request has taken the key over since
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.key = :key and r.completed = false and r.inProgressUntil = :leaseUntil")
+    int release(@Param("key") String key, @Param("leaseUntil") LocalDateTime leaseUntil);
+    
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -1,11 +1,82 @@
 package com.sahal.repository;
 
 import com.sahal.entity.Message;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long> {
     List<Message> findByConversationIdOrderByCreatedAtAsc(Long conversationId);
+    
+    // Cursor pagination over the (conversation_id, created_at, id) index
+    List<Message> findByConversationIdOrderByCreatedAtDescIdDesc(Long conversationId, Pageable pageable);
+    
+    @Query("select m from Message m where m.conversation.id = :conversationId " +
+           "and (m.createdAt < :createdAt or (m.createdAt = :createdAt and m.id < :id)) " +
+           "order by m.createdAt desc, m.id desc")
+    List<Message> findPageBefore(@Param("conversationId") Long conversationId,
+                                 @Param("createdAt") LocalDateTime createdAt,
+                                 @Param("id") Long id,
+                                 Pageable pageable);
+    
+    @Query("select m from Message m where m.conversation.id = :conversationId " +
+           "and (m.createdAt > :createdAt or (m.createdAt = :createdAt and m.id > :id)) " +
+           "order by m.createdAt asc, m.id asc")
+    List<Message> findPageAfter(@Param("conversationId") Long conversationId,
+                                @Param("createdAt") LocalDateTime createdAt,
+                                @Param("id") Long id,
+                                Pageable pageable);
+    
+    // Newest messages after a summary checkpoint, over the (conversation_id, id) index
+    List<Message> findByConversationIdAndIdGreaterThanOrderByIdDesc(Long conversationId, Long afterId, Pageable pageable);
+    
+    // Messages after the last one a cached comparison thread has seen, oldest first
+    List<Message> findByConversationIdAndIdGreaterThanOrderByIdAsc(Long conversationId, Long afterId);
+    
+    // Oldest messages after a summary checkpoint, folded into the summary a batch at a time
+    List<Message> findByConversationIdAndIdGreaterThanOrderByIdAsc(Long conversationId, Long afterId, Pageable pageable);
+    
+    @Query("select m.createdAt from Message m where m.id = :id and m.conversation.id = :conversationId")
+    Optional<LocalDateTime> findCreatedAt(@Param("conversationId") Long conversationId, @Param("id") Long id);
+    
+    /**
+     * Ranked full-text search over message content using the GIN-indexed search_vector column.
+     * Results are ordered by (rank, id) descending and paged with a keyset on that pair.
+     * Snippets are only highlighted for the rows of the requested page, and the message text is
+     * HTML-escaped before the <mark> tags go in so the snippet is safe to render as markup.
+     */
+    @Query(value = """
+            SELECT page.id AS id, c.session_id AS sessionId, m.role AS role, m.model_name AS modelName,
+                   m.created_at AS createdAt, page.rank AS rank,
+                   ts_headline('english',
+                               replace(replace(replace(replace(replace(m.content,
+                                   '&', '&amp;'), '<', '&lt;'), '>', '&gt;'), '"', '&quot;'), '''', '&#39;'),
+                               q.query,
+                               'StartSel=<mark>, StopSel=</mark>, MaxFragments=2, MaxWords=25, MinWords=8') AS snippet
+            FROM (
+                SELECT hits.id, hits.rank
+                FROM (
+                    SELECT m.id AS id, CAST(ts_rank_cd(m.search_vector, q.query) AS real) AS rank
+                    FROM messages m, websearch_to_tsquery('english', :query) AS q(query)
+                    WHERE m.search_vector @@ q.query
+                ) hits
+                WHERE (hits.rank, hits.id) < (CAST(:afterRank AS real), CAST(:afterId AS bigint))
+                ORDER BY hits.rank DESC, hits.id DESC
+                LIMIT :limit
+            ) page
+            JOIN messages m ON m.id = page.id
+            JOIN conversations c ON c.id = m.conversation_id
+            CROSS JOIN websearch_to_tsquery('english', :query) AS q(query)
+            ORDER BY page.rank DESC, page.id DESC
+            """, nativeQuery = true)
+    List<MessageSearchHit> search(@Param("query") String query,
+                                  @Param("afterRank") float afterRank,
+                                  @Param("afterId") long afterId,
+                                  @Param("limit") int limit);
 }
@@ -0,0 +1,16 @@
+package com.sahal.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection for a single full-text search hit, read without loading the conversation graph
+ */
+public interface MessageSearchHit {
+    Long getId();
+    String getSessionId();
+    String getRole();
+    String getModelName();
+    LocalDateTime getCreatedAt();
+    Float getRank();
+    String getSnippet();
+}
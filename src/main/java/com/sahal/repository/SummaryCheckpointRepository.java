@@ -0,0 +1,22 @@
+package com.sahal.repository;
+
+import com.sahal.entity.SummaryCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface SummaryCheckpointRepository extends JpaRepository<SummaryCheckpoint, Long> {
+    
+    Optional<SummaryCheckpoint> findFirstByConversationIdOrderByCoversUpToMessageIdDesc(Long conversationId);
+    
+    List<SummaryCheckpoint> findByConversationId(Long conversationId);
+    
+    @Modifying
+    @Query("delete from SummaryCheckpoint c where c.conversationId = :conversationId")
+    int deleteByConversationId(@Param("conversationId") Long conversationId);
+}
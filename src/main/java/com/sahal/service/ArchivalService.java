@@ -0,0 +1,68 @@
+package com.sahal.service;
+
+import com.sahal.persistence.ConversationStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Periodically moves conversations that have been idle for longer than the configured
+ * number of days into the cold-tier archive.
+ */
+@Service
+public class ArchivalService {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchivalService.class);
+
+    private final ConversationStore conversationStore;
+    private final ConversationService conversationService;
+
+    @Value("${app.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.archive.idle-days:7}")
+    private int idleDays;
+
+    @Value("${app.archive.batch-size:100}")
+    private int batchSize;
+
+    public ArchivalService(ConversationStore conversationStore, ConversationService conversationService) {
+        this.conversationStore = conversationStore;
+        this.conversationService = conversationService;
+    }
+
+    @Scheduled(initialDelayString = "${app.archive.initial-delay-ms:60000}",
+               fixedDelayString = "${app.archive.sweep-interval-ms:3600000}")
+    public void archiveIdleConversations() {
+        if (!enabled) {
+            return;
+        }
+
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(idleDays);
+        int archived = 0;
+        long afterId = 0;
+        List<Long> candidates;
+        // Walk candidates by id so conversations that are skipped or fail are not picked up again
+        while (!(candidates = conversationStore.findIdleConversationIds(cutoff, afterId, batchSize)).isEmpty()) {
+            for (Long conversationId : candidates) {
+                try {
+                    if (conversationService.archiveConversation(conversationId, cutoff)) {
+                        archived++;
+                    }
+                } catch (Exception e) {
+                    log.warn("Failed to archive conversation {}: {}", conversationId, e.getMessage());
+                }
+                afterId = conversationId;
+            }
+        }
+
+        if (archived > 0) {
+            log.info("Archived {} conversations idle since {}", archived, cutoff);
+        }
+    }
+}
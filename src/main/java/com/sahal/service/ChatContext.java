@@ -0,0 +1,309 @@
+package com.sahal.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.sahal.entity.Message;
+import com.sahal.entity.MessageRole;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable list of chat turns as they are sent upstream.
+ *
+ * A turn holds its role as a {@link MessageRole}, the message content by reference, and for
+ * assistant turns a shared instance of the model name. Contexts serialize themselves to the
+ * OpenAI-style messages array, writing pre-encoded keys and role names straight to the
+ * generator, so no per-message maps are built on the way to the request body.
+ *
+ * Appending does not copy: contexts derived from one another share a backing array, and the
+ * first append to the longest of them fills the next free slot in place. Only an append to a
+ * context that is no longer the longest, or to a full array, copies the turns it holds. This
+ * keeps the per-turn extension of cached comparison threads O(1).
+ */
+public final class ChatContext implements Iterable<ChatContext.Turn>, JsonSerializable {
+
+    private static final ChatContext EMPTY = new ChatContext(new Buffer(new Turn[0], 0), 0);
+    private static final SerializedString ROLE = new SerializedString("role");
+    private static final SerializedString CONTENT = new SerializedString("content");
+    private static final SerializedString TYPE = new SerializedString("type");
+    private static final SerializedString TEXT = new SerializedString("text");
+    private static final SerializedString CACHE_CONTROL = new SerializedString("cache_control");
+    private static final SerializedString EPHEMERAL = new SerializedString("ephemeral");
+    private static final SerializedString[] ROLE_NAMES = Arrays.stream(MessageRole.values())
+            .map(role -> new SerializedString(role.name().toLowerCase(Locale.ROOT)))
+            .toArray(SerializedString[]::new);
+    // Model names repeat on every assistant message read; turns share one instance per name
+    private static final int MAX_MODEL_NAMES = 256;
+    private static final Map<String, String> MODEL_NAMES = new ConcurrentHashMap<>();
+
+    private final Buffer buffer;
+    private final int size;
+
+    private ChatContext(Buffer buffer, int size) {
+        this.buffer = buffer;
+        this.size = size;
+    }
+
+    /**
+     * One message of the context
+     */
+    public record Turn(MessageRole role, String content, String modelName) {
+
+        public Turn(MessageRole role, String content) {
+            this(role, content, null);
+        }
+
+        public static Turn of(Message message) {
+            return new Turn(message.getRole(), message.getContent(), sharedModelName(message.getModelName()));
+        }
+
+        /**
+         * Role name as used in the upstream request, e.g. {@code user}
+         */
+        public String roleName() {
+            return ROLE_NAMES[role.ordinal()].getValue();
+        }
+    }
+
+    public static ChatContext empty() {
+        return EMPTY;
+    }
+
+    public static ChatContext of(MessageRole role, String content) {
+        return builder(1).add(role, content).build();
+    }
+
+    public static Builder builder(int expectedSize) {
+        return new Builder(expectedSize);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public Turn get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return buffer.turns[index];
+    }
+
+    /**
+     * The last turn, or null for an empty context
+     */
+    public Turn last() {
+        return size == 0 ? null : buffer.turns[size - 1];
+    }
+
+    /**
+     * The first turns of this context, sharing its storage
+     */
+    public ChatContext prefix(int length) {
+        if (length < 0 || length > size) {
+            throw new IndexOutOfBoundsException("Prefix " + length + " out of bounds for size " + size);
+        }
+        return length == size ? this : new ChatContext(buffer, length);
+    }
+
+    public ChatContext append(MessageRole role, String content) {
+        return append(new Turn(role, content));
+    }
+
+    public ChatContext append(Turn turn) {
+        Buffer current = buffer;
+        synchronized (current) {
+            if (current.used == size && size < current.turns.length) {
+                current.turns[size] = turn;
+                current.used++;
+                return new ChatContext(current, size + 1);
+            }
+        }
+        Turn[] grown = new Turn[Math.max(8, size * 2)];
+        System.arraycopy(current.turns, 0, grown, 0, size);
+        grown[size] = turn;
+        return new ChatContext(new Buffer(grown, size + 1), size + 1);
+    }
+
+    @Override
+    public Iterator<Turn> iterator() {
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Turn next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return buffer.turns[next++];
+            }
+        };
+    }
+
+    @Override
+    public void serialize(JsonGenerator generator, SerializerProvider serializers) throws IOException {
+        writeMessages(generator, -1, -1);
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator generator, SerializerProvider serializers, TypeSerializer typeSerializer) throws IOException {
+        serialize(generator, serializers);
+    }
+
+    /**
+     * This context with the content of the given turns written as a text part carrying an
+     * ephemeral cache_control breakpoint; a negative index marks nothing
+     */
+    public JsonSerializable withCacheBreakpoints(int first, int second) {
+        return new JsonSerializable.Base() {
+            @Override
+            public void serialize(JsonGenerator generator, SerializerProvider serializers) throws IOException {
+                writeMessages(generator, first, second);
+            }
+
+            @Override
+            public void serializeWithType(JsonGenerator generator, SerializerProvider serializers, TypeSerializer typeSerializer) throws IOException {
+                serialize(generator, serializers);
+            }
+        };
+    }
+
+    private void writeMessages(JsonGenerator generator, int firstBreakpoint, int secondBreakpoint) throws IOException {
+        Turn[] turns = buffer.turns;
+        generator.writeStartArray(this, size);
+        for (int i = 0; i < size; i++) {
+            Turn turn = turns[i];
+            generator.writeStartObject();
+            generator.writeFieldName(ROLE);
+            generator.writeString(ROLE_NAMES[turn.role().ordinal()]);
+            generator.writeFieldName(CONTENT);
+            if (i == firstBreakpoint || i == secondBreakpoint) {
+                generator.writeStartArray();
+                generator.writeStartObject();
+                generator.writeFieldName(TYPE);
+                generator.writeString(TEXT);
+                generator.writeFieldName(TEXT);
+                generator.writeString(turn.content());
+                generator.writeFieldName(CACHE_CONTROL);
+                generator.writeStartObject();
+                generator.writeFieldName(TYPE);
+                generator.writeString(EPHEMERAL);
+                generator.writeEndObject();
+                generator.writeEndObject();
+                generator.writeEndArray();
+            } else {
+                generator.writeString(turn.content());
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ChatContext context) || context.size != size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (!buffer.turns[i].equals(context.buffer.turns[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < size; i++) {
+            hash = 31 * hash + buffer.turns[i].hashCode();
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(Arrays.copyOf(buffer.turns, size));
+    }
+
+    private static String sharedModelName(String name) {
+        if (name == null) {
+            return null;
+        }
+        String shared = MODEL_NAMES.get(name);
+        if (shared != null) {
+            return shared;
+        }
+        return MODEL_NAMES.size() < MAX_MODEL_NAMES ? MODEL_NAMES.computeIfAbsent(name, n -> n) : name;
+    }
+
+    /**
+     * Backing array of one or more contexts; slots below {@code used} are never written again
+     */
+    private static final class Buffer {
+        private final Turn[] turns;
+        private int used;
+
+        Buffer(Turn[] turns, int used) {
+            this.turns = turns;
+            this.used = used;
+        }
+    }
+
+    /**
+     * Collects turns into a context; the array is handed over on build, so a builder is used once
+     */
+    public static final class Builder {
+        private Turn[] turns;
+        private int size;
+
+        private Builder(int expectedSize) {
+            this.turns = new Turn[Math.max(1, expectedSize)];
+        }
+
+        public Builder add(MessageRole role, String content) {
+            return add(new Turn(role, content));
+        }
+
+        public Builder add(Message message) {
+            return add(Turn.of(message));
+        }
+
+        public Builder add(Turn turn) {
+            if (turns == null) {
+                throw new IllegalStateException("Context already built");
+            }
+            if (size == turns.length) {
+                turns = Arrays.copyOf(turns, size * 2);
+            }
+            turns[size++] = turn;
+            return this;
+        }
+
+        public ChatContext build() {
+            Turn[] built = turns;
+            turns = null;
+            return size == 0 ? EMPTY : new ChatContext(new Buffer(built, size), size);
+        }
+    }
+}
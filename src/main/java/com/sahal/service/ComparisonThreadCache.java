@@ -0,0 +1,134 @@
+package com.sahal.service;
+
+import com.sahal.entity.Message;
+import com.sahal.entity.MessageRole;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongFunction;
+
+/**
+ * Per-model conversation threads for threaded comparison mode, kept between turns.
+ *
+ * A model's thread is every user message plus that model's own assistant replies, matched on
+ * {@link Message#getModelName()}. All threads of a conversation are built from one ordered
+ * read of the messages, partitioned in a single pass. Later turns only read the messages near
+ * and after the last one seen and append the new ones, so a turn costs one small range query
+ * however many models are compared. Threads are immutable {@link ChatContext}s, so appending to
+ * them and handing out snapshots does not copy the turns already held. Conversations are kept in
+ * LRU order up to {@code thread-cache-size}; callers evict a conversation whenever its messages
+ * are removed or renumbered.
+ *
+ * Message ids are assigned on insert but become visible on commit, so a concurrent request can
+ * commit a message with an id below the last one seen. Each read therefore starts
+ * {@code thread-overlap-messages} messages back; a message found in that window that was not seen
+ * before rebuilds the conversation's threads from the start.
+ *
+ * The cache is local to each node. Threads are rebuilt from the database when a session's
+ * requests move between nodes, and an eviction on one node does not reach the others.
+ */
+@Component
+public class ComparisonThreadCache {
+
+    private final Map<Long, Threads> threadsByConversation;
+    private final int overlapMessages;
+
+    public ComparisonThreadCache(@Value("${app.comparison.thread-cache-size:1024}") int maxConversations,
+                                 @Value("${app.comparison.thread-overlap-messages:8}") int overlapMessages) {
+        this.overlapMessages = overlapMessages;
+        this.threadsByConversation = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Threads> eldest) {
+                return size() > maxConversations;
+            }
+        };
+    }
+
+    /**
+     * Threads of the given models, brought up to date with the messages committed since the last read.
+     *
+     * @param messagesAfter messages of the conversation with an id above the argument, in id order
+     */
+    public Map<String, ChatContext> threads(Long conversationId, List<String> models,
+                                            LongFunction<List<Message>> messagesAfter) {
+        Threads threads;
+        synchronized (threadsByConversation) {
+            threads = threadsByConversation.get(conversationId);
+            if (threads == null || !threads.byModel.keySet().equals(Set.copyOf(models))) {
+                threads = new Threads(models);
+                threadsByConversation.put(conversationId, threads);
+            }
+        }
+        // Per conversation, so concurrent turns of one session do not append the same messages twice
+        synchronized (threads) {
+            if (!threads.append(messagesAfter.apply(threads.readAfter()))) {
+                // A message committed late, below ones already appended; rebuild in id order
+                threads.clear();
+                threads.append(messagesAfter.apply(0L));
+            }
+            return new LinkedHashMap<>(threads.byModel);
+        }
+    }
+
+    public void evict(Long conversationId) {
+        synchronized (threadsByConversation) {
+            threadsByConversation.remove(conversationId);
+        }
+    }
+
+    private class Threads {
+        private final Map<String, ChatContext> byModel = new LinkedHashMap<>();
+        // Ids of the newest messages appended, oldest first
+        private final ArrayDeque<Long> recentIds = new ArrayDeque<>();
+        private long lastMessageId;
+
+        Threads(List<String> models) {
+            models.forEach(model -> byModel.put(model, ChatContext.empty()));
+        }
+
+        /**
+         * Id to read after: the oldest remembered message, or 0 while every message seen is remembered
+         */
+        long readAfter() {
+            return recentIds.size() > overlapMessages ? recentIds.getFirst() : 0L;
+        }
+
+        /**
+         * Appends the messages not seen yet; false if one has an id below the newest message seen
+         */
+        boolean append(List<Message> messages) {
+            for (Message msg : messages) {
+                if (msg.getId() <= lastMessageId) {
+                    if (recentIds.contains(msg.getId())) {
+                        continue;
+                    }
+                    return false;
+                }
+                ChatContext.Turn turn = ChatContext.Turn.of(msg);
+                if (msg.getRole() == MessageRole.USER) {
+                    // The same turn is shared by every thread
+                    byModel.replaceAll((model, thread) -> thread.append(turn));
+                } else if (msg.getModelName() != null) {
+                    byModel.computeIfPresent(msg.getModelName(), (model, thread) -> thread.append(turn));
+                }
+                lastMessageId = msg.getId();
+                recentIds.addLast(lastMessageId);
+                if (recentIds.size() > overlapMessages + 1) {
+                    recentIds.removeFirst();
+                }
+            }
+            return true;
+        }
+
+        void clear() {
+            byModel.replaceAll((model, thread) -> ChatContext.empty());
+            recentIds.clear();
+            lastMessageId = 0L;
+        }
+    }
+}
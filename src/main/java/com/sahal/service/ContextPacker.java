@@ -0,0 +1,122 @@
+package com.sahal.service;
+
+import com.sahal.dto.ComparisonResponse;
+import io.micrometer.observation.annotation.Observed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fits conversation context into a token budget before it is sent upstream.
+ *
+ * Messages are taken newest first. The newest turns are kept verbatim, older turns are kept
+ * verbatim while they fit, then shortened, and once even the shortened form no longer fits
+ * that turn and everything older is dropped. The current question is always kept.
+ */
+@Component
+public class ContextPacker {
+
+    // Rough per-message overhead for role and message framing in the upstream request
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+    private static final String COMPACTED_SUFFIX = " …";
+
+    private final Environment environment;
+
+    @Value("${app.context.comparison.token-budget:4000}")
+    private int defaultTokenBudget;
+
+    @Value("${app.context.comparison.verbatim-turns:2}")
+    private int verbatimTurns;
+
+    @Value("${app.context.comparison.compact-chars:200}")
+    private int compactChars;
+
+    public ContextPacker(Environment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * Token budget for a model alias, e.g. app.context.comparison.budgets.gemma
+     */
+    public int budgetFor(String modelAlias) {
+        return environment.getProperty("app.context.comparison.budgets." + modelAlias, Integer.class, defaultTokenBudget);
+    }
+
+    /**
+     * Cheap local token estimate: about four characters per token plus message framing
+     */
+    public static int estimateTokens(String content) {
+        return (content == null ? 0 : (content.length() + 3) / 4) + MESSAGE_OVERHEAD_TOKENS;
+    }
+
+    @Observed(name = "context.pack", contextualName = "packContext")
+    public PackedContext pack(ChatContext messages, int tokenBudget) {
+        List<ChatContext.Turn> packed = new ArrayList<>();
+        int originalTokens = 0;
+        for (ChatContext.Turn message : messages) {
+            originalTokens += estimateTokens(message.content());
+        }
+
+        int usedTokens = 0;
+        int compacted = 0;
+        int index = messages.size() - 1;
+        for (; index >= 0; index--) {
+            ChatContext.Turn message = messages.get(index);
+            String content = message.content();
+            int tokens = estimateTokens(content);
+            boolean newest = index == messages.size() - 1;
+
+            if (newest || usedTokens + tokens <= tokenBudget) {
+                packed.add(message);
+                usedTokens += tokens;
+                continue;
+            }
+
+            boolean verbatimOnly = messages.size() - 1 - index < verbatimTurns;
+            if (!verbatimOnly && content != null && content.length() > compactChars) {
+                String shortened = content.substring(0, compactChars) + COMPACTED_SUFFIX;
+                int shortenedTokens = estimateTokens(shortened);
+                if (usedTokens + shortenedTokens <= tokenBudget) {
+                    packed.add(new ChatContext.Turn(message.role(), shortened, message.modelName()));
+                    usedTokens += shortenedTokens;
+                    compacted++;
+                    continue;
+                }
+            }
+            break;
+        }
+
+        // Everything fit as it was, so the context is passed on without building a new one
+        if (compacted == 0 && index < 0) {
+            return new PackedContext(messages, messages.size(), 0, 0, originalTokens, usedTokens);
+        }
+        ChatContext.Builder context = ChatContext.builder(packed.size());
+        for (int i = packed.size() - 1; i >= 0; i--) {
+            context.add(packed.get(i));
+        }
+        return new PackedContext(context.build(), messages.size(), compacted, index + 1, originalTokens, usedTokens);
+    }
+
+    /**
+     * Packed context plus how much of the original history was trimmed to produce it
+     */
+    public record PackedContext(ChatContext messages,
+                                int originalMessages,
+                                int compactedMessages,
+                                int droppedMessages,
+                                int originalTokens,
+                                int estimatedTokens) {
+
+        public int trimmedTokens() {
+            return originalTokens - estimatedTokens;
+        }
+
+        public ComparisonResponse.ContextStats toStats() {
+            return new ComparisonResponse.ContextStats(
+                messages.size(), compactedMessages, droppedMessages, estimatedTokens, trimmedTokens());
+        }
+    }
+}
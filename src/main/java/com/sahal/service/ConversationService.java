@@ -1,20 +1,41 @@
 package com.sahal.service;
 
+import com.sahal.archive.ConversationArchiveStore;
+import com.sahal.datasource.ReadYourWrites;
+import com.sahal.diagnostics.RequestDiagnostics;
+import com.sahal.dto.ConversationDetailsResponse;
+import com.sahal.dto.ErrorResponse;
+import com.sahal.dto.HistoryPageResponse;
+import com.sahal.dto.MessageDto;
 import com.sahal.entity.Conversation;
 import com.sahal.entity.Message;
 import com.sahal.entity.MessageRole;
-import com.sahal.repository.ConversationRepository;
-import com.sahal.repository.MessageRepository;
+import com.sahal.entity.SummaryCheckpoint;
+import com.sahal.persistence.ConversationStore;
+import com.sahal.repository.ConversationStampView;
+import com.sahal.repository.ConversationView;
+import com.sahal.repository.MessageSearchHit;
+import io.micrometer.observation.annotation.Observed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 import org.springframework.dao.DataIntegrityViolationException;
 
 @Service
@@ -22,32 +43,61 @@ import org.springframework.dao.DataIntegrityViolationException;
 public class ConversationService {
     
     @Autowired
-    private ConversationRepository conversationRepository;
+    private ConversationStore conversationStore;
     
     @Autowired
-    private MessageRepository messageRepository;
+    private SummarizationService summarizationService;
     
     @Autowired
-    private SummarizationService summarizationService;
+    private ConversationArchiveStore archiveStore;
+    
+    @Autowired
+    private SessionLockService sessionLockService;
+    
+    @Autowired
+    private ComparisonThreadCache comparisonThreadCache;
+    
+    @Autowired
+    private ReadYourWrites readYourWrites;
+    
+    @Autowired
+    private RequestDiagnostics requestDiagnostics;
+    
+    @Value("${app.summarization.max-context-messages:50}")
+    private int maxContextMessages;
+    
+    @Value("${app.summarization.max-batches-per-request:2}")
+    private int maxBatchesPerRequest;
+    
+    private static final int MAX_SEARCH_PAGE_SIZE = 50;
+    private static final int MAX_HISTORY_PAGE_SIZE = 200;
     
     @Transactional(isolation = Isolation.READ_COMMITTED)
+    @Observed(name = "conversation.get-or-create", contextualName = "getOrCreateConversation")
     public Conversation getOrCreateConversation(String sessionId) {
-        return getOrCreateConversationWithRetry(sessionId, 3);
+        try (RequestDiagnostics.Scope phase = requestDiagnostics.phase("conversation")) {
+            return getOrCreateConversationWithRetry(sessionId, 3);
+        }
     }
     
     private Conversation getOrCreateConversationWithRetry(String sessionId, int maxRetries) {
         for (int attempt = 0; attempt < maxRetries; attempt++) {
             try {
                 // First, try to find existing conversation
-                Optional<Conversation> existingConversation = conversationRepository.findBySessionId(sessionId);
+                Optional<Conversation> existingConversation = conversationStore.findBySessionId(sessionId);
                 
                 if (existingConversation.isPresent()) {
-                    return existingConversation.get();
+                    Conversation conversation = existingConversation.get();
+                    if (conversation.isArchived()) {
+                        restoreArchivedConversation(conversation);
+                    }
+                    return conversation;
                 }
                 
                 // If not found, create a new one
                 Conversation newConversation = new Conversation(sessionId);
-                return conversationRepository.save(newConversation);
+                readYourWrites.recordWrite(sessionId);
+                return conversationStore.save(newConversation);
                 
             } catch (DataIntegrityViolationException e) {
                 // Handle unique constraint violation - conversation was created by another thread
@@ -56,7 +106,7 @@ public class ConversationService {
                     e.getMessage().contains("constraint") && e.getMessage().contains("SESSION_ID")) {
                     
                     // Try to find the conversation that was created by another thread
-                    Optional<Conversation> conversation = conversationRepository.findBySessionId(sessionId);
+                    Optional<Conversation> conversation = conversationStore.findBySessionId(sessionId);
                     if (conversation.isPresent()) {
                         return conversation.get();
                     }
@@ -88,14 +138,14 @@ public class ConversationService {
     
     private Conversation handleDuplicateSessions(String sessionId) {
         // Find all conversations with this sessionId
-        List<Conversation> duplicateConversations = conversationRepository.findAll().stream()
+        List<Conversation> duplicateConversations = conversationStore.findAll().stream()
                 .filter(conv -> sessionId.equals(conv.getSessionId()))
                 .toList();
         
         if (duplicateConversations.isEmpty()) {
             // No conversations found, create new one
             Conversation newConversation = new Conversation(sessionId);
-            return conversationRepository.save(newConversation);
+            return conversationStore.save(newConversation);
         }
         
         // Keep the most recent conversation (highest ID)
@@ -106,161 +156,446 @@ public class ConversationService {
         // Delete the older duplicates
         duplicateConversations.stream()
                 .filter(conv -> !conv.getId().equals(latestConversation.getId()))
-                .forEach(conversationRepository::delete);
+                .forEach(this::removeConversation);
         
         return latestConversation;
     }
     
     public void addMessage(Conversation conversation, MessageRole role, String content) {
-        Message message = new Message(role, content);
-        conversation.addMessage(message);
-        messageRepository.save(message);
+        addMessage(conversation, new Message(role, content));
     }
     
+    @Observed(name = "conversation.add-message", contextualName = "addMessage")
     public void addMessage(Conversation conversation, MessageRole role, String content, String modelName) {
-        Message message = new Message(role, content, modelName);
-        conversation.addMessage(message);
-        messageRepository.save(message);
+        addMessage(conversation, new Message(role, content, modelName));
+    }
+    
+    private void addMessage(Conversation conversation, Message message) {
+        try (RequestDiagnostics.Scope phase = requestDiagnostics.phase("persist")) {
+            appendMessage(conversation, message);
+        }
+    }
+    
+    private void appendMessage(Conversation conversation, Message message) {
+        readYourWrites.recordWrite(conversation.getSessionId());
+        conversationStore.appendMessage(conversation, message);
+    }
+    
+    /**
+     * Version stamp of a conversation for conditional requests; empty if the conversation does not exist
+     */
+    @Transactional(readOnly = true)
+    public Optional<String> getVersionStamp(String sessionId) {
+        return readForSession(sessionId, () ->
+            conversationStore.findStampBySessionId(sessionId).map(ConversationStampView::toVersionStamp));
+    }
+    
+    /**
+     * Version stamp of the conversation listing as a whole
+     */
+    @Transactional(readOnly = true)
+    public String getListingVersionStamp() {
+        return conversationStore.getListingVersionStamp();
+    }
+    
+    /**
+     * Move an idle conversation to the cold-tier archive, leaving only the conversation row.
+     * Returns false if the conversation is already archived or received a message after the cutoff.
+     */
+    public boolean archiveConversation(Long conversationId, LocalDateTime idleCutoff) {
+        Optional<Conversation> conversationOpt = conversationStore.findById(conversationId);
+        if (conversationOpt.isEmpty() || conversationOpt.get().isArchived()) {
+            return false;
+        }
+        
+        Conversation conversation = conversationOpt.get();
+        List<Message> messages = getConversationHistory(conversationId);
+        // Re-check idleness, a message may have arrived since the sweep selected this conversation
+        if (messages.stream().anyMatch(msg -> !msg.getCreatedAt().isBefore(idleCutoff))) {
+            return false;
+        }
+        
+        // Write the archive first so a failure here leaves the hot copy untouched
+        archiveStore.append(conversationId, messages);
+        comparisonThreadCache.evict(conversationId);
+        conversationStore.deleteMessages(conversation, messages);
+        conversation.setArchived(true);
+        conversation.setArchivedAt(LocalDateTime.now());
+        conversationStore.save(conversation);
+        return true;
+    }
+    
+    /**
+     * Bring an archived conversation back into the hot tables when it becomes active again.
+     * Fails, leaving the row archived, when this node has no archive record for it.
+     */
+    private void restoreArchivedConversation(Conversation conversation) {
+        List<Message> archivedMessages = readArchive(conversation.getId());
+        TreeMap<Long, Long> newIds = new TreeMap<>();
+        for (Message archived : archivedMessages) {
+            Message message = new Message(archived.getRole(), archived.getContent(), archived.getModelName());
+            message.setCreatedAt(archived.getCreatedAt());
+            appendMessage(conversation, message);
+            newIds.put(archived.getId(), message.getId());
+        }
+        // Restored messages get new ids, move each checkpoint watermark along with them
+        for (SummaryCheckpoint checkpoint : conversationStore.findCheckpoints(conversation.getId())) {
+            Map.Entry<Long, Long> lastCovered = newIds.floorEntry(checkpoint.getCoversUpToMessageId());
+            checkpoint.setCoversUpToMessageId(lastCovered != null ? lastCovered.getValue() : 0L);
+            conversationStore.saveCheckpoint(checkpoint);
+        }
+        // Cached comparison threads still refer to the archived message ids
+        comparisonThreadCache.evict(conversation.getId());
+        conversation.setArchived(false);
+        conversation.setArchivedAt(null);
+        conversationStore.save(conversation);
+        removeArchiveAfterCommit(conversation.getId());
+    }
+    
+    /**
+     * Messages of a conversation, read from the archive when the conversation is archived.
+     */
+    private List<Message> getMessages(Conversation conversation) {
+        if (conversation.isArchived()) {
+            return readArchive(conversation.getId());
+        }
+        return getConversationHistory(conversation.getId());
+    }
+    
+    /**
+     * Archived messages of a conversation. The archive files are local to the node that wrote them,
+     * so a missing record means another node archived the conversation, not that it is empty.
+     */
+    private List<Message> readArchive(Long conversationId) {
+        return archiveStore.read(conversationId)
+                .orElseThrow(() -> new IllegalStateException("No archive record for conversation " + conversationId
+                        + " in this node's archive directory"));
     }
     
     public List<Message> getConversationHistory(Long conversationId) {
-        return messageRepository.findByConversationIdOrderByCreatedAtAsc(conversationId);
+        return conversationStore.findMessages(conversationId);
     }
     
+    @Transactional(readOnly = true)
     public List<Message> getConversationHistory(String sessionId) {
+        return readForSession(sessionId, () -> readConversationHistory(sessionId));
+    }
+    
+    private List<Message> readConversationHistory(String sessionId) {
         try {
-            Optional<Conversation> conversation = conversationRepository.findBySessionId(sessionId);
+            Optional<Conversation> conversation = conversationStore.findBySessionId(sessionId);
             if (conversation.isPresent()) {
+                if (conversation.get().isArchived()) {
+                    return getMessages(conversation.get());
+                }
                 return getConversationHistory(conversation.get().getId());
             }
             return List.of();
         } catch (Exception e) {
-            // Handle case where multiple conversations exist with same sessionId
+            // Handle case where multiple conversations exist with same sessionId; a read may run on a replica, so only pick the latest
             if (e.getMessage().contains("Query did not return a unique result")) {
-                Conversation latestConversation = handleDuplicateSessions(sessionId);
-                return getConversationHistory(latestConversation.getId());
+                return conversationStore.findAll().stream()
+                        .filter(conv -> sessionId.equals(conv.getSessionId()))
+                        .max((c1, c2) -> Long.compare(c1.getId(), c2.getId()))
+                        .map(latest -> getConversationHistory(latest.getId()))
+                        .orElse(List.of());
             }
             throw e;
         }
     }
     
+    /**
+     * Summary of a conversation, read from a projection so no conversation is created or loaded
+     */
+    @Transactional(readOnly = true)
+    public Optional<String> getConversationSummary(String sessionId) {
+        return readForSession(sessionId, () ->
+            conversationStore.findViewBySessionId(sessionId).map(ConversationView::getSummary));
+    }
+    
+    /**
+     * Runs a read for one session; right after the session wrote, replica routing keeps it on the primary
+     */
+    private <T> T readForSession(String sessionId, Supplier<T> read) {
+        try (ReadYourWrites.Scope scope = readYourWrites.forSession(sessionId)) {
+            return read.get();
+        }
+    }
+    
+    /**
+     * One page of history in chronological order. Without a cursor the newest page is returned;
+     * {@code before} pages towards older messages and {@code after} towards newer ones.
+     */
+    @Transactional(readOnly = true)
+    public HistoryPageResponse getConversationHistoryPage(String sessionId, Long before, Long after, int limit) {
+        return readForSession(sessionId, () -> readConversationHistoryPage(sessionId, before, after, limit));
+    }
+    
+    private HistoryPageResponse readConversationHistoryPage(String sessionId, Long before, Long after, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_HISTORY_PAGE_SIZE));
+        Optional<ConversationView> conversation = conversationStore.findViewBySessionId(sessionId);
+        
+        if (conversation.isEmpty()) {
+            return new HistoryPageResponse(sessionId, null, List.of(), false, null, after);
+        }
+        
+        Long conversationId = conversation.get().getId();
+        // Fetch one extra row to learn whether another page exists
+        List<Message> messages;
+        if (conversation.get().isArchived()) {
+            messages = pageArchivedMessages(conversationId, before, after, pageSize + 1);
+        } else if (after != null) {
+            messages = conversationStore.findPageAfter(conversationId, after, pageSize + 1);
+        } else {
+            messages = conversationStore.findPageBefore(conversationId, before, pageSize + 1);
+        }
+        
+        boolean hasMore = messages.size() > pageSize;
+        List<Message> pageMessages = new ArrayList<>(messages.subList(0, Math.min(pageSize, messages.size())));
+        if (after == null) {
+            // Older-direction pages are fetched newest first
+            Collections.reverse(pageMessages);
+        }
+        
+        boolean olderExist = after != null || hasMore;
+        return new HistoryPageResponse(
+                sessionId,
+                conversation.get().getSummary(),
+                pageMessages.stream().map(MessageDto::withId).toList(),
+                hasMore,
+                olderExist && !pageMessages.isEmpty() ? pageMessages.get(0).getId() : null,
+                pageMessages.isEmpty() ? after : pageMessages.get(pageMessages.size() - 1).getId());
+    }
+    
+    private List<Message> pageArchivedMessages(Long conversationId, Long before, Long after, int count) {
+        List<Message> all = readArchive(conversationId);
+        if (after != null) {
+            return all.stream().filter(msg -> msg.getId() > after).limit(count).toList();
+        }
+        List<Message> older = before != null ? all.stream().filter(msg -> msg.getId() < before).toList() : all;
+        List<Message> newestFirst = new ArrayList<>(older.subList(Math.max(0, older.size() - count), older.size()));
+        Collections.reverse(newestFirst);
+        return newestFirst;
+    }
+    
     /**
      * Get conversation history with optional summarization for single model mode
-     * This method handles summarization logic for long conversations
+     * Context is the latest summary checkpoint plus the messages after it. Summarizing adds a new
+     * checkpoint; messages are never deleted, so the full history stays available.
      */
-    public List<Map<String, String>> getConversationContextForSingleModel(String sessionId, String currentUserMessage) {
+    @Observed(name = "context.assemble", contextualName = "getConversationContextForSingleModel")
+    public ChatContext getConversationContextForSingleModel(String sessionId, String currentUserMessage) {
         try {
-            Optional<Conversation> conversationOpt = conversationRepository.findBySessionId(sessionId);
+            Optional<Conversation> conversationOpt = conversationStore.findBySessionId(sessionId);
             if (conversationOpt.isEmpty()) {
                 // No conversation exists, just return current message
-                return List.of(Map.of("role", "user", "content", currentUserMessage));
+                return ChatContext.of(MessageRole.USER, currentUserMessage);
             }
             
             Conversation conversation = conversationOpt.get();
-            List<Message> allMessages = getConversationHistory(conversation.getId());
+            Optional<SummaryCheckpoint> checkpoint = conversationStore.findLatestCheckpoint(conversation.getId());
+            List<Message> tail = getMessagesAfterCheckpoint(conversation.getId(), checkpoint);
+            String summary = checkpoint.map(SummaryCheckpoint::getSummary).orElse(null);
             
             // Check if we need to summarize
-            if (summarizationService.shouldSummarize(allMessages)) {
-                // Perform summarization
-                SummarizationService.SummarizationResult result = summarizationService.summarizeConversation(allMessages);
-                
-                // Update conversation with new summary
-                conversation.setSummary(result.getSummary());
-                conversationRepository.save(conversation);
-                
-                // Delete old messages that were summarized (keep only recent ones)
-                List<Message> messagesToDelete = allMessages.subList(0, allMessages.size() - result.getRecentMessages().size());
-                messageRepository.deleteAll(messagesToDelete);
-                
-                // Build context with summary and recent messages
-                return summarizationService.buildContextWithSummary(
-                    result.getSummary(), 
-                    result.getRecentMessages(), 
-                    currentUserMessage
-                );
-            } else {
-                // No summarization needed, build context with all messages
-                List<Map<String, String>> context = new ArrayList<>();
-                for (Message msg : allMessages) {
-                    context.add(Map.of("role", msg.getRole().name().toLowerCase(), "content", msg.getContent()));
+            if (summarizationService.shouldSummarize(tail)) {
+                requestDiagnostics.summarizationPending(conversation.getId());
+                ReentrantLock sessionLock = sessionLockService.tryLock(sessionId);
+                if (sessionLock == null) {
+                    // Summarization already running for this session, answer from the current state instead of waiting
+                    return summarizationService.buildContextWithSummary(summary, tail, currentUserMessage);
+                }
+                try {
+                    if (!sessionLockService.tryClusterLock(conversation.getId())) {
+                        // Another node is summarizing this conversation
+                        return summarizationService.buildContextWithSummary(summary, tail, currentUserMessage);
+                    }
+                    
+                    // Re-read under the lock, a concurrent request may have just added a checkpoint
+                    checkpoint = conversationStore.findLatestCheckpoint(conversation.getId());
+                    tail = getMessagesAfterCheckpoint(conversation.getId(), checkpoint);
+                    summary = checkpoint.map(SummaryCheckpoint::getSummary).orElse(null);
+                    if (!summarizationService.shouldSummarize(tail)) {
+                        requestDiagnostics.summarizationDone(conversation.getId());
+                        return summarizationService.buildContextWithSummary(summary, tail, currentUserMessage);
+                    }
+                    
+                    // Fold the messages after the checkpoint into the summary oldest first, one bounded batch
+                    // at a time. The tail read above is capped at the newest messages, so summarizing it
+                    // directly would move the watermark past older messages that were never summarized.
+                    // Each batch is an upstream call made while the session waits, so a long backlog is
+                    // worked off a few batches per request and later turns continue from the watermark.
+                    long watermark = checkpoint.map(SummaryCheckpoint::getCoversUpToMessageId).orElse(0L);
+                    boolean summarized = false;
+                    try (RequestDiagnostics.Scope phase = requestDiagnostics.phase("summarization");
+                         RequestDiagnostics.Scope running = requestDiagnostics.summarizationRunning()) {
+                        List<Message> batch = conversationStore.findOldestMessagesAfter(conversation.getId(), watermark, maxContextMessages);
+                        for (int batches = 0; batches < maxBatchesPerRequest && summarizationService.shouldSummarize(batch); batches++) {
+                            SummarizationService.SummarizationResult result = summarizationService.summarizeConversation(summary, batch);
+                            List<Message> covered = batch.subList(0, batch.size() - result.getRecentMessages().size());
+                            if (covered.isEmpty()) {
+                                break;
+                            }
+                            watermark = covered.get(covered.size() - 1).getId();
+                            summary = result.getSummary();
+                            conversationStore.saveCheckpoint(new SummaryCheckpoint(conversation.getId(), watermark, summary));
+                            summarized = true;
+                            batch = conversationStore.findOldestMessagesAfter(conversation.getId(), watermark, maxContextMessages);
+                        }
+                    } finally {
+                        requestDiagnostics.summarizationDone(conversation.getId());
+                    }
+                    
+                    if (summarized) {
+                        conversation.setSummary(summary);
+                        conversationStore.save(conversation);
+                    }
+                    
+                    // Build context with summary and the messages after the new watermark
+                    return summarizationService.buildContextWithSummary(
+                        summary,
+                        conversationStore.findLatestMessagesAfter(conversation.getId(), watermark, maxContextMessages),
+                        currentUserMessage
+                    );
+                } finally {
+                    sessionLock.unlock();
                 }
-                context.add(Map.of("role", "user", "content", currentUserMessage));
-                return context;
+            } else {
+                return summarizationService.buildContextWithSummary(summary, tail, currentUserMessage);
             }
             
         } catch (Exception e) {
             // Fallback: just return current message
-            return List.of(Map.of("role", "user", "content", currentUserMessage));
+            return ChatContext.of(MessageRole.USER, currentUserMessage);
         }
     }
     
+    /**
+     * Messages after the checkpoint watermark in chronological order, read with a bounded range scan
+     */
+    private List<Message> getMessagesAfterCheckpoint(Long conversationId, Optional<SummaryCheckpoint> checkpoint) {
+        long watermark = checkpoint.map(SummaryCheckpoint::getCoversUpToMessageId).orElse(0L);
+        return conversationStore.findLatestMessagesAfter(conversationId, watermark, maxContextMessages);
+    }
+    
     /**
      * Get conversation history for comparison mode (user messages only, no summarization)
      * This maintains the existing behavior for fair model comparison
      */
-    public List<Map<String, String>> getConversationContextForComparison(String sessionId) {
+    @Observed(name = "context.assemble", contextualName = "getConversationContextForComparison")
+    public ChatContext getConversationContextForComparison(String sessionId) {
         try {
-            Optional<Conversation> conversation = conversationRepository.findBySessionId(sessionId);
+            Optional<Conversation> conversation = conversationStore.findBySessionId(sessionId);
             if (conversation.isEmpty()) {
-                return List.of();
+                return ChatContext.empty();
             }
             
             List<Message> history = getConversationHistory(conversation.get().getId());
-            List<Map<String, String>> contextMessages = new ArrayList<>();
+            ChatContext.Builder contextMessages = ChatContext.builder(history.size());
             
             // Only include user messages for comparison mode
             for (Message msg : history) {
                 if (msg.getRole() == MessageRole.USER) {
-                    contextMessages.add(Map.of("role", msg.getRole().name().toLowerCase(), "content", msg.getContent()));
+                    contextMessages.add(msg);
                 }
             }
             
-            return contextMessages;
+            return contextMessages.build();
             
         } catch (Exception e) {
-            return List.of();
+            return ChatContext.empty();
         }
     }
     
+    /**
+     * Per-model threads for threaded comparison mode: every user message plus only that model's
+     * own replies. Built from one ordered read and extended incrementally on later turns.
+     */
+    @Observed(name = "context.assemble", contextualName = "getThreadedContextForComparison")
+    public Map<String, ChatContext> getThreadedContextForComparison(String sessionId, List<String> models) {
+        Optional<Conversation> conversation = conversationStore.findBySessionId(sessionId);
+        if (conversation.isEmpty()) {
+            Map<String, ChatContext> empty = new HashMap<>();
+            models.forEach(model -> empty.put(model, ChatContext.empty()));
+            return empty;
+        }
+        Long conversationId = conversation.get().getId();
+        return comparisonThreadCache.threads(conversationId, models,
+            afterId -> conversationStore.findMessagesAfter(conversationId, afterId));
+    }
+    
     public void clearConversationHistory(String sessionId) {
         try {
-            Optional<Conversation> conversation = conversationRepository.findBySessionId(sessionId);
+            Optional<Conversation> conversation = conversationStore.findBySessionId(sessionId);
             if (conversation.isPresent()) {
-                conversationRepository.delete(conversation.get());
+                removeConversation(conversation.get());
             }
         } catch (Exception e) {
             // Handle case where multiple conversations exist with same sessionId
             if (e.getMessage().contains("Query did not return a unique result")) {
                 // Delete all conversations with this sessionId
-                List<Conversation> duplicateConversations = conversationRepository.findAll().stream()
+                List<Conversation> duplicateConversations = conversationStore.findAll().stream()
                         .filter(conv -> sessionId.equals(conv.getSessionId()))
                         .toList();
-                duplicateConversations.forEach(conversationRepository::delete);
+                duplicateConversations.forEach(this::removeConversation);
             } else {
                 throw e;
             }
         }
     }
     
+    private void removeConversation(Conversation conversation) {
+        readYourWrites.recordWrite(conversation.getSessionId());
+        comparisonThreadCache.evict(conversation.getId());
+        conversationStore.delete(conversation);
+        removeArchiveAfterCommit(conversation.getId());
+    }
+    
+    /**
+     * Drop the archive record of a conversation once the transaction commits. Until then the row
+     * may still say archived, and a rollback must find the archived messages where they were.
+     */
+    private void removeArchiveAfterCommit(Long conversationId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            archiveStore.remove(conversationId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                archiveStore.remove(conversationId);
+            }
+        });
+    }
+    
+    @Transactional(readOnly = true)
     public List<Map<String, Object>> getAllConversations() {
-        List<Conversation> conversations = conversationRepository.findAll();
+        List<Conversation> conversations = conversationStore.findAll();
         return conversations.stream()
                 .sorted((c1, c2) -> c2.getCreatedAt().compareTo(c1.getCreatedAt())) // Most recent first
                 .map(this::convertToConversationSummary)
                 .toList();
     }
     
-    public Map<String, Object> getConversationDetails(String sessionId) {
+    /**
+     * Details of a conversation, or an {@link ErrorResponse} if it does not exist or cannot be read
+     */
+    @Transactional(readOnly = true)
+    public Object getConversationDetails(String sessionId) {
+        return readForSession(sessionId, () -> readConversationDetails(sessionId));
+    }
+    
+    private Object readConversationDetails(String sessionId) {
         try {
-            Optional<Conversation> conversation = conversationRepository.findBySessionId(sessionId);
+            Optional<Conversation> conversation = conversationStore.findBySessionId(sessionId);
             if (conversation.isPresent()) {
                 return convertToConversationDetails(conversation.get());
             }
-            return Map.of("error", "Conversation not found");
+            return new ErrorResponse("Conversation not found");
         } catch (Exception e) {
             if (e.getMessage().contains("Query did not return a unique result")) {
                 // Handle duplicates by returning the most recent one
-                List<Conversation> duplicates = conversationRepository.findAll().stream()
+                List<Conversation> duplicates = conversationStore.findAll().stream()
                         .filter(conv -> sessionId.equals(conv.getSessionId()))
                         .sorted((c1, c2) -> c2.getCreatedAt().compareTo(c1.getCreatedAt()))
                         .toList();
@@ -268,43 +603,95 @@ public class ConversationService {
                     return convertToConversationDetails(duplicates.get(0));
                 }
             }
-            return Map.of("error", "Error retrieving conversation: " + e.getMessage());
+            return new ErrorResponse("Error retrieving conversation: " + e.getMessage());
         }
     }
     
     public void deleteConversation(String sessionId) {
         try {
-            Optional<Conversation> conversation = conversationRepository.findBySessionId(sessionId);
+            Optional<Conversation> conversation = conversationStore.findBySessionId(sessionId);
             if (conversation.isPresent()) {
-                conversationRepository.delete(conversation.get());
+                removeConversation(conversation.get());
             }
         } catch (Exception e) {
             if (e.getMessage().contains("Query did not return a unique result")) {
                 // Delete all conversations with this sessionId
-                List<Conversation> duplicateConversations = conversationRepository.findAll().stream()
+                List<Conversation> duplicateConversations = conversationStore.findAll().stream()
                         .filter(conv -> sessionId.equals(conv.getSessionId()))
                         .toList();
-                duplicateConversations.forEach(conversationRepository::delete);
+                duplicateConversations.forEach(this::removeConversation);
             } else {
                 throw e;
             }
         }
     }
     
+    /**
+     * Full-text search across message content, ranked and paged with an opaque keyset cursor.
+     * Only the matching rows are read; conversation message graphs are never loaded.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> searchMessages(String query, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_SEARCH_PAGE_SIZE));
+        
+        // First page starts above any possible (rank, id)
+        float afterRank = Float.MAX_VALUE;
+        long afterId = Long.MAX_VALUE;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+                afterRank = Float.intBitsToFloat(Integer.parseInt(parts[0]));
+                afterId = Long.parseLong(parts[1]);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid search cursor");
+            }
+        }
+        
+        List<MessageSearchHit> hits = conversationStore.search(query, afterRank, afterId, pageSize);
+        List<Map<String, Object>> results = hits.stream()
+                .map(hit -> {
+                    Map<String, Object> result = new HashMap<>();
+                    result.put("messageId", hit.getId());
+                    result.put("sessionId", hit.getSessionId());
+                    result.put("role", hit.getRole().toLowerCase());
+                    result.put("model", hit.getModelName());
+                    result.put("timestamp", hit.getCreatedAt().toString());
+                    result.put("rank", hit.getRank());
+                    result.put("snippet", hit.getSnippet());
+                    return result;
+                })
+                .toList();
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("query", query);
+        response.put("results", results);
+        if (hits.size() == pageSize) {
+            MessageSearchHit last = hits.get(hits.size() - 1);
+            String position = Float.floatToIntBits(last.getRank()) + ":" + last.getId();
+            response.put("nextCursor", Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(position.getBytes(StandardCharsets.UTF_8)));
+        } else {
+            response.put("nextCursor", null);
+        }
+        return response;
+    }
+    
     private Map<String, Object> convertToConversationSummary(Conversation conversation) {
+        List<Message> messages = getMessages(conversation);
         Map<String, Object> summary = new HashMap<>();
         summary.put("sessionId", conversation.getSessionId());
         summary.put("createdAt", conversation.getCreatedAt().toString());
-        summary.put("messageCount", conversation.getMessages().size());
+        summary.put("messageCount", messages.size());
         summary.put("hasSummary", conversation.getSummary() != null && !conversation.getSummary().trim().isEmpty());
+        summary.put("archived", conversation.isArchived());
         
         // Get the first user message as title (or first message if no user message)
         String title = "New Conversation";
-        if (!conversation.getMessages().isEmpty()) {
-            Message firstMessage = conversation.getMessages().stream()
+        if (!messages.isEmpty()) {
+            Message firstMessage = messages.stream()
                     .filter(msg -> msg.getRole() == MessageRole.USER)
                     .findFirst()
-                    .orElse(conversation.getMessages().get(0));
+                    .orElse(messages.get(0));
             title = firstMessage.getContent().length() > 50 
                 ? firstMessage.getContent().substring(0, 50) + "..." 
                 : firstMessage.getContent();
@@ -312,8 +699,8 @@ public class ConversationService {
         summary.put("title", title);
         
         // Get last message timestamp
-        if (!conversation.getMessages().isEmpty()) {
-            Message lastMessage = conversation.getMessages().stream()
+        if (!messages.isEmpty()) {
+            Message lastMessage = messages.stream()
                     .max((m1, m2) -> m1.getCreatedAt().compareTo(m2.getCreatedAt()))
                     .orElse(null);
             if (lastMessage != null) {
@@ -322,7 +709,7 @@ public class ConversationService {
         }
         
         // Get unique models used in this conversation
-        List<String> models = conversation.getMessages().stream()
+        List<String> models = messages.stream()
                 .filter(msg -> msg.getModelName() != null)
                 .map(Message::getModelName)
                 .distinct()
@@ -332,36 +719,30 @@ public class ConversationService {
         return summary;
     }
     
-    private Map<String, Object> convertToConversationDetails(Conversation conversation) {
-        Map<String, Object> details = new HashMap<>();
-        details.put("sessionId", conversation.getSessionId());
-        details.put("createdAt", conversation.getCreatedAt().toString());
-        details.put("messageCount", conversation.getMessages().size());
-        details.put("summary", conversation.getSummary());
+    private ConversationDetailsResponse convertToConversationDetails(Conversation conversation) {
+        List<Message> messages = getMessages(conversation);
         
         // Include all messages
-        List<Map<String, Object>> messages = conversation.getMessages().stream()
+        List<MessageDto> messageDtos = messages.stream()
                 .sorted((m1, m2) -> m1.getCreatedAt().compareTo(m2.getCreatedAt()))
-                .map(msg -> {
-                    Map<String, Object> messageMap = new HashMap<>();
-                    messageMap.put("role", msg.getRole().name().toLowerCase());
-                    messageMap.put("content", msg.getContent());
-                    messageMap.put("timestamp", msg.getCreatedAt().toString());
-                    messageMap.put("model", msg.getModelName());
-                    return messageMap;
-                })
+                .map(MessageDto::of)
                 .toList();
-        details.put("messages", messages);
         
         // Get unique models used in this conversation
-        List<String> models = conversation.getMessages().stream()
+        List<String> models = messages.stream()
                 .filter(msg -> msg.getModelName() != null)
                 .map(Message::getModelName)
                 .distinct()
                 .toList();
-        details.put("models", models);
         
-        return details;
+        return new ConversationDetailsResponse(
+                conversation.getSessionId(),
+                conversation.getCreatedAt().toString(),
+                messages.size(),
+                conversation.getSummary(),
+                conversation.isArchived(),
+                messageDtos,
+                models);
     }
     
 }
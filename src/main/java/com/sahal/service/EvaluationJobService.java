@@ -0,0 +1,288 @@
+package com.sahal.service;
+
+import com.sahal.entity.EvaluationJob;
+import com.sahal.entity.EvaluationJobStatus;
+import com.sahal.entity.EvaluationResult;
+import com.sahal.entity.MessageRole;
+import com.sahal.repository.EvaluationJobRepository;
+import com.sahal.repository.EvaluationResultRepository;
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs batch evaluation jobs: every prompt of a job against every model of the job.
+ *
+ * Jobs are picked up by a scheduled dispatcher which claims a time-limited lease on the job
+ * row, so only one node runs a job at a time and a job whose node died is resumed elsewhere
+ * once the lease runs out. Every finished task is stored as an {@link EvaluationResult},
+ * which is also the checkpoint: a resumed job skips tasks that already have a result.
+ * Jobs keep their prompts and results to themselves and create no conversations, so they
+ * stay out of the conversation listing, history and archive. Jobs live in the database, so
+ * they are only available with the jpa store.
+ */
+@Service
+@ConditionalOnProperty(name = "app.persistence.store", havingValue = "jpa", matchIfMissing = true)
+public class EvaluationJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(EvaluationJobService.class);
+    private static final int MAX_RETRIES_ON_RATE_LIMIT = 3;
+
+    private final EvaluationJobRepository jobRepository;
+    private final EvaluationResultRepository resultRepository;
+    private final ModelCallService modelCallService;
+    private final ObservationRegistry observationRegistry;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ExecutorService jobExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<Long, RunningJob> runningJobs = new ConcurrentHashMap<>();
+    private final Map<String, ModelRateLimiter> rateLimiters = new ConcurrentHashMap<>();
+
+    @Value("${app.jobs.default-concurrency:4}")
+    private int defaultConcurrency;
+
+    @Value("${app.jobs.max-concurrency:16}")
+    private int maxConcurrency;
+
+    @Value("${app.jobs.max-tasks:10000}")
+    private int maxTasks;
+
+    @Value("${app.jobs.rate-limit-per-minute:20}")
+    private int rateLimitPerMinute;
+
+    @Value("${app.jobs.lease-seconds:60}")
+    private int leaseSeconds;
+
+    public EvaluationJobService(EvaluationJobRepository jobRepository,
+                                EvaluationResultRepository resultRepository,
+                                ModelCallService modelCallService,
+                                ObservationRegistry observationRegistry) {
+        this.jobRepository = jobRepository;
+        this.resultRepository = resultRepository;
+        this.modelCallService = modelCallService;
+        this.observationRegistry = observationRegistry;
+    }
+
+    /**
+     * Create a job for the cross product of prompts and models. Models may be given as
+     * aliases (deepseek, grok, gemma, all) or full OpenRouter model names.
+     */
+    public EvaluationJob submitJob(List<String> prompts, List<String> models, Integer concurrency) {
+        if (prompts == null || prompts.isEmpty()) {
+            throw new IllegalArgumentException("At least one prompt is required");
+        }
+        if (prompts.stream().anyMatch(prompt -> prompt == null || prompt.trim().isEmpty())) {
+            throw new IllegalArgumentException("Prompts must not be empty");
+        }
+
+        Set<String> resolvedModels = new LinkedHashSet<>();
+        for (String model : (models == null || models.isEmpty()) ? List.of("all") : models) {
+            if ("all".equalsIgnoreCase(model)) {
+                resolvedModels.addAll(ModelCallService.FREE_MODELS);
+            } else if (ModelCallService.FREE_MODELS.contains(model)) {
+                resolvedModels.add(model);
+            } else {
+                resolvedModels.add(modelCallService.resolveModel(model));
+            }
+        }
+
+        if ((long) prompts.size() * resolvedModels.size() > maxTasks) {
+            throw new IllegalArgumentException("Job exceeds the maximum of " + maxTasks + " prompt/model pairs");
+        }
+
+        int jobConcurrency = concurrency == null ? defaultConcurrency : Math.max(1, Math.min(concurrency, maxConcurrency));
+        return jobRepository.save(new EvaluationJob(prompts, new ArrayList<>(resolvedModels), jobConcurrency));
+    }
+
+    public Optional<EvaluationJob> getJob(Long jobId) {
+        return jobRepository.findById(jobId);
+    }
+
+    public List<EvaluationResult> getResults(Long jobId, long afterId, int limit) {
+        return resultRepository.findByJobIdAndIdGreaterThanOrderByIdAsc(jobId, afterId, PageRequest.of(0, Math.max(1, Math.min(limit, 500))));
+    }
+
+    /**
+     * Cancel a pending or running job. Returns the number of jobs cancelled, 0 when the job does not
+     * exist or has already finished.
+     */
+    public int cancelJob(Long jobId) {
+        int cancelled = jobRepository.cancel(jobId, LocalDateTime.now());
+        if (cancelled > 0) {
+            RunningJob running = runningJobs.get(jobId);
+            if (running != null) {
+                running.cancelled = true;
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * Renew the leases of jobs running here and start any pending or orphaned jobs
+     */
+    @Scheduled(initialDelayString = "${app.jobs.initial-delay-ms:10000}",
+               fixedDelayString = "${app.jobs.poll-interval-ms:5000}")
+    public void dispatchJobs() {
+        LocalDateTime now = LocalDateTime.now();
+
+        runningJobs.forEach((jobId, running) -> {
+            if (jobRepository.claim(jobId, nodeId, now, now.plusSeconds(leaseSeconds)) == 0) {
+                // Cancelled, or the lease was lost to another node
+                running.cancelled = true;
+            }
+        });
+
+        List<Long> claimable = jobRepository.findClaimableJobIds(
+                List.of(EvaluationJobStatus.PENDING, EvaluationJobStatus.RUNNING), now);
+        for (Long jobId : claimable) {
+            if (runningJobs.containsKey(jobId)) {
+                continue;
+            }
+            if (jobRepository.claim(jobId, nodeId, now, now.plusSeconds(leaseSeconds)) == 1) {
+                RunningJob running = new RunningJob();
+                runningJobs.put(jobId, running);
+                jobExecutor.submit(() -> runJob(jobId, running));
+            }
+        }
+    }
+
+    private void runJob(Long jobId, RunningJob running) {
+        Observation observation = Observation.createNotStarted("evaluation.job", observationRegistry)
+                .contextualName("runJob")
+                .highCardinalityKeyValue("job.id", String.valueOf(jobId))
+                .start();
+        try (Observation.Scope scope = observation.openScope()) {
+            EvaluationJob job = jobRepository.findById(jobId).orElseThrow();
+            Set<String> completed = new HashSet<>();
+            for (Object[] task : resultRepository.findCompletedTasks(jobId)) {
+                completed.add(taskKey((Integer) task[0], (String) task[1]));
+            }
+            if (!completed.isEmpty()) {
+                log.info("Resuming evaluation job {} with {}/{} tasks already done", jobId, completed.size(), job.getTotalTasks());
+            }
+
+            Semaphore permits = new Semaphore(job.getConcurrency());
+            // Tasks carry the job's trace context, so their model calls are children of the job span
+            try (ExecutorService tasks = ContextExecutorService.wrap(Executors.newVirtualThreadPerTaskExecutor(),
+                    () -> ContextSnapshotFactory.builder().build().captureAll())) {
+                dispatch:
+                for (int promptIndex = 0; promptIndex < job.getPrompts().size(); promptIndex++) {
+                    final int index = promptIndex;
+                    for (String model : job.getModels()) {
+                        if (completed.contains(taskKey(index, model))) {
+                            continue;
+                        }
+                        permits.acquire();
+                        if (running.cancelled) {
+                            permits.release();
+                            break dispatch;
+                        }
+                        tasks.submit(() -> {
+                            try {
+                                runTask(job, index, model);
+                            } finally {
+                                permits.release();
+                            }
+                        });
+                    }
+                }
+            }
+
+            if (!running.cancelled) {
+                jobRepository.finish(jobId, EvaluationJobStatus.COMPLETED, LocalDateTime.now());
+                log.info("Evaluation job {} completed", jobId);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // Leave the job claimable; it resumes from its checkpoint once the lease expires
+            log.warn("Evaluation job {} stopped: {}", jobId, e.getMessage());
+            observation.error(e);
+        } finally {
+            runningJobs.remove(jobId);
+            observation.stop();
+        }
+    }
+
+    private void runTask(EvaluationJob job, int promptIndex, String model) {
+        ChatContext messages = ChatContext.of(MessageRole.USER, job.getPrompts().get(promptIndex));
+        long start = System.nanoTime();
+        boolean success;
+        String response;
+        try {
+            response = callWithRetry(model, messages);
+            success = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            response = "Error: " + e.getMessage();
+            success = false;
+        }
+        long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        try {
+            resultRepository.save(new EvaluationResult(job.getId(), promptIndex, model, success, response, latencyMs));
+        } catch (DataIntegrityViolationException e) {
+            // Already recorded by an earlier run of this job
+            return;
+        }
+        jobRepository.recordTaskCompleted(job.getId(), !success);
+    }
+
+    private String callWithRetry(String model, ChatContext messages) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            rateLimiters.computeIfAbsent(model, m -> new ModelRateLimiter(rateLimitPerMinute)).acquire();
+            try {
+                return modelCallService.callModel(model, messages);
+            } catch (HttpClientErrorException.TooManyRequests e) {
+                if (attempt >= MAX_RETRIES_ON_RATE_LIMIT) {
+                    throw e;
+                }
+                String retryAfter = e.getResponseHeaders() != null ? e.getResponseHeaders().getFirst("Retry-After") : null;
+                long backoffSeconds = retryAfter != null && retryAfter.matches("\\d+") ? Long.parseLong(retryAfter) : 1L << (attempt + 1);
+                TimeUnit.SECONDS.sleep(backoffSeconds);
+            }
+        }
+    }
+
+    private static String taskKey(int promptIndex, String model) {
+        return promptIndex + "|" + model;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runningJobs.values().forEach(running -> running.cancelled = true);
+        jobExecutor.shutdownNow();
+    }
+
+    private static class RunningJob {
+        private volatile boolean cancelled;
+    }
+}
@@ -0,0 +1,266 @@
+package com.sahal.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sahal.dto.ErrorResponse;
+import com.sahal.entity.IdempotencyRecord;
+import com.sahal.repository.IdempotencyRecordRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs a request at most once per idempotency key.
+ *
+ * The first request with a key runs normally. Concurrent requests with the same key on this
+ * node wait for its result; requests arriving later replay the stored response. Results are
+ * kept in a bounded in-memory map and in the idempotency_records table, which also lets other
+ * nodes see that a key is already taken. {@link ErrorResponse}s are not stored, so a retry after
+ * a failure runs again. An unfinished claim only holds the key for the in-progress lease, so a
+ * retry can take the key over when the node running the first request died. With the embedded store there is no database and only the in-memory map
+ * is used, which covers the single node that mode runs on until a restart.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+    private static final long DB_POLL_INTERVAL_MS = 250;
+
+    // Empty with the embedded store
+    private final Optional<IdempotencyRecordRepository> recordRepository;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    @Value("${app.idempotency.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    @Value("${app.idempotency.in-progress-lease-seconds:120}")
+    private long inProgressLeaseSeconds;
+
+    @Value("${app.idempotency.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${app.idempotency.wait-timeout-ms:60000}")
+    private long waitTimeoutMs;
+
+    public IdempotencyService(Optional<IdempotencyRecordRepository> recordRepository, ObjectMapper objectMapper) {
+        this.recordRepository = recordRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Hash of the request parameters, used to detect a key being reused for a different request
+     */
+    public static String hashRequest(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Result execute(String key, String requestHash, Supplier<?> action) {
+        while (true) {
+            Entry existing = entries.get(key);
+            if (existing != null) {
+                if (existing.expiresAtNanos - System.nanoTime() < 0) {
+                    entries.remove(key, existing);
+                    continue;
+                }
+                return awaitExisting(existing, requestHash);
+            }
+
+            Entry owned = new Entry(requestHash, System.nanoTime() + TimeUnit.MINUTES.toNanos(ttlMinutes));
+            if (entries.size() < maxEntries) {
+                if (entries.putIfAbsent(key, owned) != null) {
+                    continue;
+                }
+            }
+            try {
+                return executeOwned(key, requestHash, owned, action);
+            } catch (RuntimeException e) {
+                entries.remove(key, owned);
+                owned.result.completeExceptionally(e);
+                throw e;
+            }
+        }
+    }
+
+    private Result executeOwned(String key, String requestHash, Entry owned, Supplier<?> action) {
+        // Millisecond precision so the lease reads back equal from the timestamp column when releasing
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        LocalDateTime leaseUntil = now.plusSeconds(inProgressLeaseSeconds);
+        // The insert decides between nodes: for a live key only one of them inserts the row
+        IdempotencyRecordRepository records = recordRepository.orElse(null);
+        if (records != null && records.claim(key, requestHash, now, leaseUntil, now.plusMinutes(ttlMinutes)) == 0) {
+            Optional<IdempotencyRecord> stored = records.findById(key);
+            // An empty result means the first request failed and released the key in between
+            Result result = stored.isPresent() ? awaitStored(key, requestHash, stored.get()) : new Result(Status.IN_PROGRESS, null);
+            if (result.status() == Status.REPLAYED) {
+                owned.result.complete(result.response());
+            } else {
+                entries.remove(key, owned);
+                owned.result.complete(null);
+            }
+            return result;
+        }
+
+        Object response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            releaseClaim(key, leaseUntil);
+            throw e;
+        }
+        if (response instanceof ErrorResponse) {
+            // Let the client retry a failed request for real
+            entries.remove(key, owned);
+            releaseClaim(key, leaseUntil);
+        } else {
+            storeResponse(key, response);
+        }
+        owned.result.complete(response);
+        return new Result(Status.EXECUTED, response);
+    }
+
+    private void releaseClaim(String key, LocalDateTime leaseUntil) {
+        try {
+            recordRepository.ifPresent(repository -> repository.release(key, leaseUntil));
+        } catch (RuntimeException e) {
+            // The claim still lapses with its in-progress lease
+            log.warn("Failed to release idempotency key {}: {}", key, e.getMessage());
+        }
+    }
+
+    private Result awaitExisting(Entry existing, String requestHash) {
+        if (!existing.requestHash.equals(requestHash)) {
+            return new Result(Status.MISMATCH, null);
+        }
+        try {
+            Object response = existing.result.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+            return response != null ? new Result(Status.REPLAYED, response) : new Result(Status.IN_PROGRESS, null);
+        } catch (TimeoutException | ExecutionException e) {
+            return new Result(Status.IN_PROGRESS, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Result(Status.IN_PROGRESS, null);
+        }
+    }
+
+    /**
+     * Wait for a key claimed in the database, possibly by another node, to complete
+     */
+    private Result awaitStored(String key, String requestHash, IdempotencyRecord record) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitTimeoutMs);
+        while (true) {
+            if (!record.getRequestHash().equals(requestHash)) {
+                return new Result(Status.MISMATCH, null);
+            }
+            if (record.isCompleted()) {
+                return new Result(Status.REPLAYED, readResponse(record.getResponse()));
+            }
+            if (System.nanoTime() - deadline > 0) {
+                return new Result(Status.IN_PROGRESS, null);
+            }
+            try {
+                Thread.sleep(DB_POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new Result(Status.IN_PROGRESS, null);
+            }
+            Optional<IdempotencyRecord> latest = recordRepository.orElseThrow().findById(key);
+            if (latest.isEmpty()) {
+                // The first request failed and released the key
+                return new Result(Status.IN_PROGRESS, null);
+            }
+            record = latest.get();
+        }
+    }
+
+    private void storeResponse(String key, Object response) {
+        if (recordRepository.isEmpty()) {
+            return;
+        }
+        IdempotencyRecordRepository records = recordRepository.get();
+        try {
+            records.findById(key).ifPresent(record -> {
+                try {
+                    record.setResponse(objectMapper.writeValueAsString(response));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                record.setCompleted(true);
+                records.save(record);
+            });
+        } catch (RuntimeException e) {
+            // The in-memory copy still deduplicates retries on this node
+            log.warn("Failed to store idempotent response for key {}: {}", key, e.getMessage());
+        }
+    }
+
+    private Map<String, Object> readResponse(String json) {
+        try {
+            return objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {});
+        } catch (Exception e) {
+            throw new IllegalStateException("Stored idempotent response is unreadable", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.sweep-interval-ms:300000}")
+    public void evictExpired() {
+        long now = System.nanoTime();
+        entries.values().removeIf(entry -> entry.expiresAtNanos - now < 0 && entry.result.isDone());
+        recordRepository.ifPresent(repository -> repository.deleteExpired(LocalDateTime.now()));
+    }
+
+    public enum Status {
+        // Ran the request for the first time
+        EXECUTED,
+        // Returned the stored response of an earlier request
+        REPLAYED,
+        // The key was used before with different request parameters
+        MISMATCH,
+        // The first request with the key has not finished within the wait timeout
+        IN_PROGRESS
+    }
+
+    /**
+     * A response replayed from the database comes back as a JSON map, which serializes the same
+     * way as the object it was stored from
+     */
+    public record Result(Status status, Object response) {}
+
+    private static class Entry {
+        private final String requestHash;
+        private final long expiresAtNanos;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        Entry(String requestHash, long expiresAtNanos) {
+            this.requestHash = requestHash;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.sahal.service;
+
+import com.sahal.cache.NearDuplicateCache;
+import com.sahal.diagnostics.RequestDiagnostics;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.*;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls chat completion models on OpenRouter. Shared by the chat endpoints and batch evaluation jobs.
+ */
+@Service
+public class ModelCallService {
+
+    @Value("${spring.ai.openai.base-url}")
+    private String baseUrl;
+
+    public static final double DEFAULT_TEMPERATURE = 0.7;
+
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final NearDuplicateCache nearDuplicateCache;
+    private final ModelHealthStats healthStats;
+    private final ObservationRegistry observationRegistry;
+    private final RequestDiagnostics requestDiagnostics;
+    private final PromptCache promptCache;
+
+    // Free models available on OpenRouter
+    public static final List<String> FREE_MODELS = List.of(
+        "deepseek/deepseek-chat-v3.1:free",
+        "x-ai/grok-4-fast:free",
+        "google/gemma-3-27b-it:free"
+    );
+
+    public ModelCallService(RestTemplate restTemplate, ObjectMapper objectMapper, NearDuplicateCache nearDuplicateCache,
+                            ModelHealthStats healthStats, ObservationRegistry observationRegistry,
+                            RequestDiagnostics requestDiagnostics, PromptCache promptCache) {
+        this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
+        this.nearDuplicateCache = nearDuplicateCache;
+        this.healthStats = healthStats;
+        this.observationRegistry = observationRegistry;
+        this.requestDiagnostics = requestDiagnostics;
+        this.promptCache = promptCache;
+    }
+
+    /**
+     * Resolve a short model alias (deepseek, grok, gemma) to its OpenRouter model name
+     */
+    public String resolveModel(String alias) {
+        return switch (alias.toLowerCase()) {
+            case "deepseek" -> FREE_MODELS.get(0);
+            case "grok" -> FREE_MODELS.get(1);
+            case "gemma" -> FREE_MODELS.get(2);
+            default -> throw new IllegalArgumentException("Unsupported model: " + alias + ". Available: deepseek, grok, gemma, auto, all");
+        };
+    }
+
+    /**
+     * Short alias of a known model name, or the model name itself if it has no alias
+     */
+    public String aliasOf(String model) {
+        return switch (FREE_MODELS.indexOf(model)) {
+            case 0 -> "deepseek";
+            case 1 -> "grok";
+            case 2 -> "gemma";
+            default -> model;
+        };
+    }
+
+    public String callModel(String model, ChatContext messages) throws Exception {
+        return callModel(model, messages, DEFAULT_TEMPERATURE);
+    }
+
+    /**
+     * Call a model at the given temperature. Low-temperature requests may be answered from the
+     * near-duplicate cache when an earlier prompt with the same context was worded almost the same.
+     */
+    public String callModel(String model, ChatContext messages, double temperature) throws Exception {
+        // One span per attempt; retries by the caller show up as sibling spans
+        Observation observation = Observation.createNotStarted("llm.call", observationRegistry)
+                .contextualName("callModel " + aliasOf(model))
+                .lowCardinalityKeyValue("llm.model", model)
+                .highCardinalityKeyValue("llm.temperature", String.valueOf(temperature))
+                .highCardinalityKeyValue("llm.request.messages", String.valueOf(messages.size()))
+                .start();
+        try (Observation.Scope scope = observation.openScope();
+             RequestDiagnostics.Scope phase = requestDiagnostics.phase("upstream." + aliasOf(model));
+             RequestDiagnostics.Scope inFlight = requestDiagnostics.modelCall(model)) {
+            return doCallModel(model, messages, temperature, observation);
+        } catch (Exception e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.stop();
+        }
+    }
+
+    private String doCallModel(String model, ChatContext messages, double temperature, Observation observation) throws Exception {
+        boolean cacheable = nearDuplicateCache.isEligible(temperature);
+        if (cacheable) {
+            Optional<String> cached = nearDuplicateCache.get(model, messages);
+            observation.highCardinalityKeyValue("llm.cache", cached.isPresent() ? "hit" : "miss");
+            if (cached.isPresent()) {
+                return cached.get();
+            }
+        }
+
+        // Create the request payload
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", model);
+        requestBody.put("messages", promptCache.requestMessages(model, messages));
+        requestBody.put("max_tokens", 1000);
+        requestBody.put("temperature", temperature);
+        requestBody.put("stream", false);
+        // Asks OpenRouter for the detailed usage block, which carries the cached token count
+        requestBody.put("usage", Map.of("include", true));
+
+        // Set up headers
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("HTTP-Referer", "http://localhost:8080");
+        headers.set("X-Title", "AI Demo");
+
+        // Create the request entity, serialized here so the span can carry the payload size
+        byte[] payload = objectMapper.writeValueAsBytes(requestBody);
+        observation.highCardinalityKeyValue("llm.request.bytes", String.valueOf(payload.length));
+        HttpEntity<byte[]> requestEntity = new HttpEntity<>(payload, headers);
+
+        // Make the API call; latency and failures feed the auto routing
+        long start = System.nanoTime();
+        ResponseEntity<String> response;
+        try {
+            response = restTemplate.postForEntity(
+                baseUrl + "/chat/completions",
+                requestEntity,
+                String.class
+            );
+        } catch (RuntimeException e) {
+            healthStats.record(model, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), true);
+            throw e;
+        }
+        healthStats.record(model, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), false);
+
+        // Parse the response
+        JsonNode jsonResponse = objectMapper.readTree(response.getBody());
+        JsonNode choices = jsonResponse.get("choices");
+        recordResponse(observation, response.getBody(), jsonResponse);
+        promptCache.record(model, jsonResponse.get("usage"));
+
+        String aiResponse = "No response content found from model " + model;
+        if (choices != null && choices.isArray() && choices.size() > 0) {
+            JsonNode firstChoice = choices.get(0);
+            JsonNode message = firstChoice.get("message");
+            if (message != null && message.has("content")) {
+                aiResponse = message.get("content").asText();
+                if (cacheable) {
+                    nearDuplicateCache.put(model, messages, aiResponse);
+                }
+            }
+        }
+
+        return aiResponse;
+    }
+
+    /**
+     * Response size and the token counts reported in the usage block, as span attributes
+     */
+    static void recordResponse(Observation observation, String body, JsonNode jsonResponse) {
+        observation.highCardinalityKeyValue("llm.response.bytes", String.valueOf(body == null ? 0 : body.length()));
+        JsonNode usage = jsonResponse.get("usage");
+        if (usage != null) {
+            observation.highCardinalityKeyValue("llm.usage.prompt_tokens", usage.path("prompt_tokens").asText("0"));
+            observation.highCardinalityKeyValue("llm.usage.completion_tokens", usage.path("completion_tokens").asText("0"));
+            observation.highCardinalityKeyValue("llm.usage.cached_tokens", String.valueOf(PromptCache.cachedTokens(usage)));
+        }
+    }
+
+    public Map<String, Object> getCacheStats() {
+        return nearDuplicateCache.getStats();
+    }
+
+    public Map<String, Object> getPromptCacheStats() {
+        return promptCache.toMap();
+    }
+}
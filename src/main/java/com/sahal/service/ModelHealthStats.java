@@ -0,0 +1,85 @@
+package com.sahal.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live latency and error rate of each model, as exponentially weighted moving averages.
+ *
+ * Updated by every upstream model call. The averages are doubles stored as raw bits in
+ * AtomicLongs and updated with compare-and-set, so recording a call never blocks. Latency
+ * only counts successful calls; a failing model is penalised through its error rate instead.
+ */
+@Component
+public class ModelHealthStats {
+
+    private static final long EMPTY = Double.doubleToRawLongBits(Double.NaN);
+
+    private final Map<String, ModelStats> stats = new ConcurrentHashMap<>();
+
+    @Value("${app.routing.ewma-alpha:0.2}")
+    private double alpha;
+
+    public void record(String model, long latencyMs, boolean error) {
+        ModelStats modelStats = stats.computeIfAbsent(model, m -> new ModelStats());
+        if (!error) {
+            update(modelStats.latencyMs, latencyMs);
+        }
+        update(modelStats.errorRate, error ? 1.0 : 0.0);
+        modelStats.calls.incrementAndGet();
+        if (error) {
+            modelStats.errors.incrementAndGet();
+        }
+    }
+
+    public Snapshot snapshot(String model) {
+        ModelStats modelStats = stats.get(model);
+        if (modelStats == null) {
+            return new Snapshot(Double.NaN, 0.0, 0);
+        }
+        double errorRate = Double.longBitsToDouble(modelStats.errorRate.get());
+        return new Snapshot(Double.longBitsToDouble(modelStats.latencyMs.get()),
+                Double.isNaN(errorRate) ? 0.0 : errorRate, modelStats.calls.get());
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        stats.forEach((model, modelStats) -> {
+            Snapshot snapshot = snapshot(model);
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("latencyEwmaMs", Double.isNaN(snapshot.latencyMs()) ? null : Math.round(snapshot.latencyMs()));
+            entry.put("errorRateEwma", snapshot.errorRate());
+            entry.put("calls", snapshot.calls());
+            entry.put("errors", modelStats.errors.get());
+            result.put(model, entry);
+        });
+        return result;
+    }
+
+    private void update(AtomicLong average, double sample) {
+        long previous;
+        long next;
+        do {
+            previous = average.get();
+            double current = Double.longBitsToDouble(previous);
+            next = Double.doubleToRawLongBits(Double.isNaN(current) ? sample : current + alpha * (sample - current));
+        } while (!average.compareAndSet(previous, next));
+    }
+
+    /**
+     * @param latencyMs NaN until the model has had a successful call
+     */
+    public record Snapshot(double latencyMs, double errorRate, long calls) {}
+
+    private static class ModelStats {
+        private final AtomicLong latencyMs = new AtomicLong(EMPTY);
+        private final AtomicLong errorRate = new AtomicLong(EMPTY);
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+    }
+}
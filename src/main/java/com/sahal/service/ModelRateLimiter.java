@@ -0,0 +1,44 @@
+package com.sahal.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Spaces calls to a single model evenly so that a batch job stays within the model's
+ * requests-per-minute quota. Callers reserve the next free slot and sleep until it arrives.
+ * An idle limiter does not bank slots: after a pause the next call goes at once and the
+ * ones after it are spaced again.
+ */
+class ModelRateLimiter {
+
+    private final long intervalNanos;
+    private final LongSupplier nanoClock;
+    private long nextFreeSlot;
+
+    ModelRateLimiter(int permitsPerMinute) {
+        this(permitsPerMinute, System::nanoTime);
+    }
+
+    ModelRateLimiter(int permitsPerMinute, LongSupplier nanoClock) {
+        this.intervalNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(1, permitsPerMinute);
+        this.nanoClock = nanoClock;
+        this.nextFreeSlot = nanoClock.getAsLong();
+    }
+
+    void acquire() throws InterruptedException {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Take the next free slot and return how long the caller has to wait for it
+     */
+    synchronized long reserve() {
+        long now = nanoClock.getAsLong();
+        long slot = Math.max(nextFreeSlot, now);
+        nextFreeSlot = slot + intervalNanos;
+        return slot - now;
+    }
+}
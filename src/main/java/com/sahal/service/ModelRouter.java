@@ -0,0 +1,125 @@
+package com.sahal.service;
+
+import com.sahal.dto.AskResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks a model for {@code model=auto} and configured routing aliases.
+ *
+ * Each candidate is scored by its expected latency per successful answer: the latency EWMA
+ * divided by its success rate, then divided by the candidate's weight. The lowest score wins.
+ * Models whose error rate is above the health threshold are only used if no candidate is
+ * healthy. Models that have not been called yet score zero, so they are tried first; models that
+ * have been called but never answered score as if every call had failed after a long wait. A small
+ * share of requests picks a candidate at random by weight, so the estimates of models that are
+ * not currently winning stay fresh.
+ *
+ * Aliases other than auto are read from app.routing.aliases.&lt;name&gt; as
+ * {@code deepseek=2,grok=1}; a higher weight makes a model preferred at equal latency.
+ */
+@Component
+public class ModelRouter {
+
+    public static final String AUTO = "auto";
+    private static final String ALIAS_PREFIX = "app.routing.aliases.";
+    private static final double MIN_SUCCESS_RATE = 0.05;
+    // Latency assumed for a model that has been called but has no successful call yet
+    private static final double NO_SUCCESS_LATENCY_MS = 300_000;
+
+    private final ModelCallService modelCallService;
+    private final ModelHealthStats healthStats;
+    private final Environment environment;
+
+    private final Map<String, Map<String, Double>> candidatesByAlias = new ConcurrentHashMap<>();
+
+    @Value("${app.routing.exploration-rate:0.1}")
+    private double explorationRate;
+
+    @Value("${app.routing.max-error-rate:0.5}")
+    private double maxErrorRate;
+
+    public ModelRouter(ModelCallService modelCallService, ModelHealthStats healthStats, Environment environment) {
+        this.modelCallService = modelCallService;
+        this.healthStats = healthStats;
+        this.environment = environment;
+    }
+
+    public boolean isRoutedAlias(String alias) {
+        String name = alias.toLowerCase(Locale.ROOT);
+        return AUTO.equals(name) || environment.containsProperty(ALIAS_PREFIX + name);
+    }
+
+    public Selection choose(String alias) {
+        Map<String, Double> candidates = candidates(alias.toLowerCase(Locale.ROOT));
+
+        if (candidates.size() > 1 && ThreadLocalRandom.current().nextDouble() < explorationRate) {
+            double pick = ThreadLocalRandom.current().nextDouble() * candidates.values().stream().mapToDouble(Double::doubleValue).sum();
+            for (Map.Entry<String, Double> candidate : candidates.entrySet()) {
+                pick -= candidate.getValue();
+                if (pick < 0) {
+                    return new Selection(candidate.getKey(), alias, "explore", score(candidate.getKey(), candidate.getValue()));
+                }
+            }
+        }
+
+        String best = null;
+        double bestScore = Double.MAX_VALUE;
+        boolean bestHealthy = false;
+        for (Map.Entry<String, Double> candidate : candidates.entrySet()) {
+            boolean healthy = healthStats.snapshot(candidate.getKey()).errorRate() <= maxErrorRate;
+            double score = score(candidate.getKey(), candidate.getValue());
+            // A healthy model always beats an unhealthy one
+            if (best == null || (healthy && !bestHealthy) || (healthy == bestHealthy && score < bestScore)) {
+                best = candidate.getKey();
+                bestScore = score;
+                bestHealthy = healthy;
+            }
+        }
+        return new Selection(best, alias, bestHealthy ? "best-score" : "all-unhealthy", bestScore);
+    }
+
+    private double score(String model, double weight) {
+        ModelHealthStats.Snapshot snapshot = healthStats.snapshot(model);
+        if (Double.isNaN(snapshot.latencyMs())) {
+            return snapshot.calls() == 0 ? 0.0 : NO_SUCCESS_LATENCY_MS / MIN_SUCCESS_RATE / weight;
+        }
+        return snapshot.latencyMs() / Math.max(MIN_SUCCESS_RATE, 1.0 - snapshot.errorRate()) / weight;
+    }
+
+    private Map<String, Double> candidates(String alias) {
+        return candidatesByAlias.computeIfAbsent(alias, name -> {
+            Map<String, Double> candidates = new LinkedHashMap<>();
+            if (AUTO.equals(name)) {
+                ModelCallService.FREE_MODELS.forEach(model -> candidates.put(model, 1.0));
+                return candidates;
+            }
+            for (String part : environment.getRequiredProperty(ALIAS_PREFIX + name).split(",")) {
+                String[] modelAndWeight = part.trim().split("=");
+                double weight = modelAndWeight.length > 1 ? Double.parseDouble(modelAndWeight[1].trim()) : 1.0;
+                if (weight <= 0) {
+                    throw new IllegalArgumentException("Routing weight must be positive: " + part);
+                }
+                candidates.put(modelCallService.resolveModel(modelAndWeight[0].trim()), weight);
+            }
+            return candidates;
+        });
+    }
+
+    /**
+     * @param reason best-score, explore, or all-unhealthy when every candidate is over the error threshold
+     */
+    public record Selection(String model, String alias, String reason, double score) {
+
+        public AskResponse.Routing toRouting() {
+            return new AskResponse.Routing(alias, reason, Math.round(score));
+        }
+    }
+}
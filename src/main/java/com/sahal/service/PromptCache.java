@@ -0,0 +1,110 @@
+package com.sahal.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sahal.entity.MessageRole;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Provider-side prompt caching on OpenRouter.
+ *
+ * Providers cache the longest prompt prefix they have seen recently and bill and serve it
+ * faster, so contexts are laid out to only grow at the end between turns (see
+ * SummarizationService.buildContextWithSummary). OpenAI, DeepSeek and Grok models cache such
+ * prefixes on their own; models matching app.prompt-cache.cache-control-models (Anthropic,
+ * Gemini) only do when the request marks the cacheable prefix with cache_control breakpoints.
+ *
+ * Hit rates are taken from the cached token counts that come back in the usage block.
+ */
+@Component
+public class PromptCache {
+
+    private final List<String> cacheControlModels;
+    private final Map<String, ModelStats> stats = new ConcurrentHashMap<>();
+
+    public PromptCache(@Value("${app.prompt-cache.cache-control-models:anthropic/,google/gemini}") List<String> cacheControlModels) {
+        this.cacheControlModels = cacheControlModels;
+    }
+
+    /**
+     * Whether a model only caches prompt prefixes marked with cache_control
+     */
+    public boolean needsCacheControl(String model) {
+        return cacheControlModels.stream().anyMatch(prefix -> !prefix.isBlank() && model.startsWith(prefix.trim()));
+    }
+
+    /**
+     * Request messages for a model: the context as is, or with cache_control breakpoints at the
+     * end of the leading system messages and at the end of the history before the current question
+     */
+    public Object requestMessages(String model, ChatContext messages) {
+        if (messages.size() < 2 || !needsCacheControl(model)) {
+            return messages;
+        }
+        int systemEnd = -1;
+        while (systemEnd + 1 < messages.size() - 1 && messages.get(systemEnd + 1).role() == MessageRole.SYSTEM) {
+            systemEnd++;
+        }
+        return messages.withCacheBreakpoints(systemEnd, messages.size() - 2);
+    }
+
+    /**
+     * Count prompt and cached tokens from a response's usage block
+     */
+    public void record(String model, JsonNode usage) {
+        if (usage == null || !usage.has("prompt_tokens")) {
+            return;
+        }
+        long cached = cachedTokens(usage);
+        ModelStats modelStats = stats.computeIfAbsent(model, m -> new ModelStats());
+        modelStats.calls.increment();
+        modelStats.promptTokens.add(usage.path("prompt_tokens").asLong());
+        modelStats.cachedTokens.add(cached);
+        if (cached > 0) {
+            modelStats.hits.increment();
+        }
+    }
+
+    /**
+     * Cached prompt tokens as OpenRouter reports them, or as DeepSeek does when passed through
+     */
+    static long cachedTokens(JsonNode usage) {
+        JsonNode details = usage.path("prompt_tokens_details").path("cached_tokens");
+        return details.isNumber() ? details.asLong() : usage.path("prompt_cache_hit_tokens").asLong(0);
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> models = new LinkedHashMap<>();
+        stats.forEach((model, modelStats) -> {
+            long calls = modelStats.calls.sum();
+            long promptTokens = modelStats.promptTokens.sum();
+            long cachedTokens = modelStats.cachedTokens.sum();
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("calls", calls);
+            entry.put("callsWithCachedPrefix", modelStats.hits.sum());
+            entry.put("promptTokens", promptTokens);
+            entry.put("cachedTokens", cachedTokens);
+            // Share of prompt tokens served from the cache
+            entry.put("hitRate", promptTokens == 0 ? 0.0 : (double) cachedTokens / promptTokens);
+            entry.put("cacheControlHints", needsCacheControl(model));
+            models.put(model, entry);
+        });
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("cacheControlModels", cacheControlModels);
+        result.put("models", models);
+        return result;
+    }
+
+    private static class ModelStats {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder promptTokens = new LongAdder();
+        private final LongAdder cachedTokens = new LongAdder();
+    }
+}
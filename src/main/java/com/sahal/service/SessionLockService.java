@@ -0,0 +1,52 @@
+package com.sahal.service;
+
+import com.sahal.persistence.ConversationStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-session mutual exclusion for work that must not run twice at once, like summarization.
+ *
+ * Within a node, sessions hash onto a fixed set of striped locks. Across nodes, a Postgres
+ * transaction-scoped advisory lock keyed by the conversation id is taken as well; it is
+ * released automatically when the surrounding transaction ends. The embedded store is
+ * single-node and grants it without asking anyone. Both are try-locks, so
+ * callers can fall back to a non-blocking path instead of queueing.
+ */
+@Component
+public class SessionLockService {
+
+    private final ReentrantLock[] stripes;
+    private final ConversationStore conversationStore;
+
+    @Value("${app.locks.advisory-enabled:true}")
+    private boolean advisoryEnabled;
+
+    public SessionLockService(@Value("${app.locks.stripes:256}") int stripes, ConversationStore conversationStore) {
+        // Round up to a power of two so the stripe can be picked with a mask
+        this.stripes = new ReentrantLock[Integer.highestOneBit(Math.max(1, stripes - 1)) << 1];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.conversationStore = conversationStore;
+    }
+
+    /**
+     * Try to lock the session on this node. Returns the held lock, or null if it is busy.
+     */
+    public ReentrantLock tryLock(String sessionId) {
+        int hash = sessionId.hashCode();
+        ReentrantLock lock = stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+        return lock.tryLock() ? lock : null;
+    }
+
+    /**
+     * Try to take the cluster-wide lock for a conversation. Must be called inside a transaction;
+     * the lock is held until that transaction commits or rolls back.
+     */
+    public boolean tryClusterLock(Long conversationId) {
+        return !advisoryEnabled || conversationStore.tryClusterLock(conversationId);
+    }
+}
@@ -2,6 +2,9 @@ package com.sahal.service;
 
 import com.sahal.entity.Message;
 import com.sahal.entity.MessageRole;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.annotation.Observed;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
@@ -15,37 +18,51 @@ import java.util.stream.Collectors;
 @Service
 public class SummarizationService {
     
-    @Value("${spring.ai.openai.api-key}")
-    private String apiKey;
-
     @Value("${spring.ai.openai.base-url}")
     private String baseUrl;
     
     // Use a smaller, cheaper model for summarization
     private static final String SUMMARIZATION_MODEL = "deepseek/deepseek-chat-v3.1:free";
     private static final int MAX_SUMMARY_LENGTH = 100;
-    private static final int SUMMARIZATION_THRESHOLD = 5; // Summarize after 5 messages
     private static final int RECENT_MESSAGES_KEEP = 3; // Keep last 3 messages after summarization
+    // Fixed instructions ahead of the summary, so the prompt starts with the same tokens on every turn
+    private static final String SUMMARY_INSTRUCTIONS =
+        "The conversation so far is summarized below. Use it as memory and do not repeat it in your response.";
+    
+    // Summarize once this many messages follow the latest checkpoint. Between summaries the prompt
+    // only grows at the end, which keeps its prefix in the provider's prompt cache.
+    @Value("${app.summarization.batch-messages:20}")
+    private int batchMessages;
     
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
+    private final ObservationRegistry observationRegistry;
     
-    public SummarizationService(RestTemplate restTemplate, ObjectMapper objectMapper) {
+    public SummarizationService(RestTemplate restTemplate, ObjectMapper objectMapper, ObservationRegistry observationRegistry) {
         this.restTemplate = restTemplate;
         this.objectMapper = objectMapper;
+        this.observationRegistry = observationRegistry;
     }
     
     /**
      * Check if conversation needs summarization based on message count
      */
     public boolean shouldSummarize(List<Message> messages) {
-        return messages.size() > SUMMARIZATION_THRESHOLD;
+        return messages.size() > batchMessages;
     }
     
     /**
      * Summarize conversation history and return summary + recent messages
      */
     public SummarizationResult summarizeConversation(List<Message> messages) {
+        return summarizeConversation(null, messages);
+    }
+    
+    /**
+     * Summarize messages that follow an earlier summary; the new summary covers both
+     */
+    @Observed(name = "summarization", contextualName = "summarizeConversation")
+    public SummarizationResult summarizeConversation(String previousSummary, List<Message> messages) {
         if (messages.isEmpty()) {
             return new SummarizationResult("", messages);
         }
@@ -55,7 +72,7 @@ public class SummarizationService {
             List<Message> messagesToSummarize = messages.subList(0, Math.max(0, messages.size() - RECENT_MESSAGES_KEEP));
             List<Message> recentMessages = messages.subList(Math.max(0, messages.size() - RECENT_MESSAGES_KEEP), messages.size());
             
-            String summary = generateSummary(messagesToSummarize);
+            String summary = generateSummary(previousSummary, messagesToSummarize);
             
             return new SummarizationResult(summary, recentMessages);
             
@@ -69,15 +86,18 @@ public class SummarizationService {
     /**
      * Generate AI-powered summary using OpenRouter
      */
-    private String generateSummary(List<Message> messages) throws Exception {
+    private String generateSummary(String previousSummary, List<Message> messages) throws Exception {
         if (messages.isEmpty()) {
-            return "";
+            return previousSummary != null ? previousSummary : "";
         }
         
         // Build conversation text for summarization
         String conversationText = messages.stream()
                 .map(msg -> msg.getRole().name() + ": " + msg.getContent())
                 .collect(Collectors.joining("\n"));
+        if (previousSummary != null && !previousSummary.isBlank()) {
+            conversationText = "Summary of the earlier conversation: " + previousSummary + "\n" + conversationText;
+        }
         
         // Create summarization prompt
         String prompt = String.format(
@@ -91,9 +111,7 @@ public class SummarizationService {
         // Prepare API request
         Map<String, Object> requestBody = new HashMap<>();
         requestBody.put("model", SUMMARIZATION_MODEL);
-        requestBody.put("messages", List.of(
-            Map.of("role", "user", "content", prompt)
-        ));
+        requestBody.put("messages", ChatContext.of(MessageRole.USER, prompt));
         requestBody.put("max_tokens", 150);
         requestBody.put("temperature", 0.3);
         requestBody.put("stream", false);
@@ -101,20 +119,34 @@ public class SummarizationService {
         // Set up headers
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.set("Authorization", "Bearer " + apiKey);
         headers.set("HTTP-Referer", "http://localhost:8080");
         headers.set("X-Title", "AI Demo - Summarization");
         
         // Make API call
         HttpEntity<Map<String, Object>> requestEntity = new HttpEntity<>(requestBody, headers);
-        ResponseEntity<String> response = restTemplate.postForEntity(
-            baseUrl + "/chat/completions",
-            requestEntity,
-            String.class
-        );
-        
-        // Parse response
-        JsonNode jsonResponse = objectMapper.readTree(response.getBody());
+        Observation observation = Observation.createNotStarted("llm.call", observationRegistry)
+                .contextualName("generateSummary")
+                .lowCardinalityKeyValue("llm.model", SUMMARIZATION_MODEL)
+                .highCardinalityKeyValue("llm.request.messages", String.valueOf(messages.size()))
+                .start();
+        ResponseEntity<String> response;
+        JsonNode jsonResponse;
+        try (Observation.Scope scope = observation.openScope()) {
+            response = restTemplate.postForEntity(
+                baseUrl + "/chat/completions",
+                requestEntity,
+                String.class
+            );
+            
+            // Parse response
+            jsonResponse = objectMapper.readTree(response.getBody());
+            ModelCallService.recordResponse(observation, response.getBody(), jsonResponse);
+        } catch (Exception e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.stop();
+        }
         JsonNode choices = jsonResponse.get("choices");
         
         if (choices != null && choices.isArray() && choices.size() > 0) {
@@ -149,34 +181,32 @@ public class SummarizationService {
     }
     
     /**
-     * Build context for LLM with summary and recent messages
+     * Build context for LLM with summary and recent messages.
+     *
+     * The layout only ever grows at the end until the next summary: instructions, then the
+     * summary, then the messages after its checkpoint in order, then the question. Each turn's
+     * prompt therefore starts with the previous turn's, which the provider can serve from cache.
      */
-    public List<Map<String, String>> buildContextWithSummary(String summary, List<Message> recentMessages, String currentUserMessage) {
-        List<Map<String, String>> context = new ArrayList<>();
+    public ChatContext buildContextWithSummary(String summary, List<Message> recentMessages, String currentUserMessage) {
+        ChatContext.Builder context = ChatContext.builder(recentMessages.size() + 2);
         
         // Add system message with summary if available
         if (summary != null && !summary.trim().isEmpty()) {
-            context.add(Map.of(
-                "role", "system",
-                "content", "Past conversation summary: " + summary + ". Do not repeat this in your response, just use it as memory."
-            ));
+            context.add(MessageRole.SYSTEM, SUMMARY_INSTRUCTIONS + "\n\nPast conversation summary: " + summary);
         }
         
         // Add recent conversation history
         for (Message msg : recentMessages) {
-            context.add(Map.of(
-                "role", msg.getRole().name().toLowerCase(),
-                "content", msg.getContent()
-            ));
+            context.add(msg);
         }
         
-        // Add current user message
-        context.add(Map.of(
-            "role", "user",
-            "content", currentUserMessage
-        ));
+        // Add current user message, unless it was stored before the context was read
+        Message last = recentMessages.isEmpty() ? null : recentMessages.get(recentMessages.size() - 1);
+        if (last == null || last.getRole() != MessageRole.USER || !currentUserMessage.equals(last.getContent())) {
+            context.add(MessageRole.USER, currentUserMessage);
+        }
         
-        return context;
+        return context.build();
     }
     
     /**
@@ -0,0 +1,299 @@
+package com.sahal.upstream;
+
+import com.sahal.admission.TokenBucket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Spreads upstream calls over a pool of API keys, each with its own quota.
+ *
+ * Every key has a GCRA bucket sized from the rate limit headers of its own responses
+ * ({@code X-RateLimit-Limit}, or the OpenAI-style {@code x-ratelimit-limit-requests}); until a
+ * key has reported its limit, {@code requests-per-minute} is used, and 0 means unlimited. A
+ * request goes to the eligible key with the fewest calls in flight. A key that answers 429, or
+ * reports no remaining requests, cools down until its Retry-After or reset time. A 429 is
+ * retried once on every other key that has a permit free, so one exhausted key no longer
+ * stalls everybody.
+ *
+ * Sits on the shared RestTemplate and sets the Authorization header itself, so model calls and
+ * summary generation draw from the same pool. It must be the last interceptor: a retry
+ * re-executes the request and skips any interceptor installed after this one.
+ */
+@Component
+public class ApiKeyPool implements ClientHttpRequestInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(ApiKeyPool.class);
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    private final List<KeyState> keys = new ArrayList<>();
+    private final long defaultCooldownNanos;
+    private final long maxWaitNanos;
+
+    public ApiKeyPool(@Value("${app.upstream.keys:}") String keys,
+                      @Value("${spring.ai.openai.api-key}") String defaultKey,
+                      @Value("${app.upstream.key-pool.requests-per-minute:0}") int requestsPerMinute,
+                      @Value("${app.upstream.key-pool.cooldown-ms:30000}") long cooldownMs,
+                      @Value("${app.upstream.key-pool.max-wait-ms:5000}") long maxWaitMs) {
+        for (String key : keys.split(",")) {
+            if (!key.isBlank()) {
+                this.keys.add(new KeyState(this.keys.size() + 1, key.trim(), requestsPerMinute));
+            }
+        }
+        if (this.keys.isEmpty()) {
+            this.keys.add(new KeyState(1, defaultKey, requestsPerMinute));
+        }
+        this.defaultCooldownNanos = TimeUnit.MILLISECONDS.toNanos(cooldownMs);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        Set<KeyState> tried = new HashSet<>();
+        KeyState key = acquire(tried, maxWaitNanos);
+        if (key == null) {
+            throw new IOException("All " + keys.size() + " upstream API keys are rate limited");
+        }
+
+        while (true) {
+            tried.add(key);
+            request.getHeaders().setBearerAuth(key.secret);
+            key.requests.incrementAndGet();
+            key.inFlight.incrementAndGet();
+            ClientHttpResponse response;
+            try {
+                response = execution.execute(request, body);
+            } catch (IOException e) {
+                key.errors.incrementAndGet();
+                throw e;
+            } finally {
+                key.inFlight.decrementAndGet();
+            }
+
+            HttpStatusCode status = response.getStatusCode();
+            long now = System.nanoTime();
+            key.update(response.getHeaders(), now);
+            if (status.value() != HttpStatus.TOO_MANY_REQUESTS.value()) {
+                (status.isError() ? key.errors : key.successes).incrementAndGet();
+                return response;
+            }
+
+            key.rateLimited.incrementAndGet();
+            key.coolDown(now + cooldownNanos(response.getHeaders(), now));
+            // Retry only on a key that is free right now; otherwise the caller sees the 429
+            KeyState next = acquire(tried, 0);
+            if (next == null) {
+                return response;
+            }
+            log.debug("Upstream key {} rate limited, retrying on key {}", key.label, next.label);
+            response.close();
+            key = next;
+        }
+    }
+
+    /**
+     * The least loaded key that is not cooling down and has a permit, waiting up to maxWait for one
+     */
+    private KeyState acquire(Set<KeyState> excluded, long maxWait) {
+        long deadline = System.nanoTime() + maxWait;
+        while (true) {
+            long now = System.nanoTime();
+            long shortestWait = Long.MAX_VALUE;
+            List<KeyState> candidates = new ArrayList<>(keys);
+            candidates.removeAll(excluded);
+            candidates.sort(Comparator.comparingInt((KeyState k) -> k.inFlight.get()).thenComparingLong(k -> k.requests.get()));
+            for (KeyState candidate : candidates) {
+                long wait = candidate.tryAcquire(now);
+                if (wait == 0) {
+                    return candidate;
+                }
+                shortestWait = Math.min(shortestWait, wait);
+            }
+            if (shortestWait == Long.MAX_VALUE || now + shortestWait > deadline) {
+                return null;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(shortestWait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    private long cooldownNanos(HttpHeaders headers, long now) {
+        String retryAfter = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (retryAfter != null) {
+            try {
+                return TimeUnit.SECONDS.toNanos(Long.parseLong(retryAfter.trim()));
+            } catch (NumberFormatException e) {
+                // HTTP-date form, fall through to the reset header
+            }
+        }
+        long reset = resetNanos(headers);
+        return reset > 0 ? reset : defaultCooldownNanos;
+    }
+
+    /**
+     * Nanoseconds until the rate limit window resets, or -1 if the response does not say.
+     * Accepts epoch milliseconds or seconds, a number of seconds, or a duration such as 1m30s.
+     */
+    static long resetNanos(HttpHeaders headers) {
+        String value = header(headers, "x-ratelimit-reset", "x-ratelimit-reset-requests");
+        if (value == null) {
+            return -1;
+        }
+        try {
+            double number = Double.parseDouble(value);
+            if (number >= 1e12) {
+                return TimeUnit.MILLISECONDS.toNanos(Math.max(0, (long) number - Instant.now().toEpochMilli()));
+            }
+            if (number >= 1e9) {
+                return TimeUnit.SECONDS.toNanos(Math.max(0, (long) number - Instant.now().getEpochSecond()));
+            }
+            return (long) (number * 1e9);
+        } catch (NumberFormatException e) {
+            long nanos = 0;
+            Matcher part = DURATION_PART.matcher(value);
+            while (part.find()) {
+                double amount = Double.parseDouble(part.group(1));
+                nanos += (long) switch (part.group(2)) {
+                    case "h" -> amount * Duration.ofHours(1).toNanos();
+                    case "m" -> amount * Duration.ofMinutes(1).toNanos();
+                    case "s" -> amount * 1e9;
+                    default -> amount * 1e6;
+                };
+            }
+            return nanos > 0 ? nanos : -1;
+        }
+    }
+
+    private static String header(HttpHeaders headers, String... names) {
+        for (String name : names) {
+            String value = headers.getFirst(name);
+            if (value != null && !value.isBlank()) {
+                return value.trim();
+            }
+        }
+        return null;
+    }
+
+    private static int intHeader(HttpHeaders headers, String... names) {
+        String value = header(headers, names);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    public Map<String, Object> toMap() {
+        long now = System.nanoTime();
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (KeyState key : keys) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("inFlight", key.inFlight.get());
+            entry.put("requests", key.requests.get());
+            entry.put("successes", key.successes.get());
+            entry.put("rateLimited", key.rateLimited.get());
+            entry.put("errors", key.errors.get());
+            entry.put("limitPerMinute", key.limit > 0 ? key.limit : null);
+            entry.put("remaining", key.remaining >= 0 ? key.remaining : null);
+            entry.put("cooldownRemainingMs", TimeUnit.NANOSECONDS.toMillis(Math.max(0, key.cooldownUntil.get() - now)));
+            result.put(key.label, entry);
+        }
+        return result;
+    }
+
+    private static class KeyState {
+        private final String label;
+        private final String secret;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong successes = new AtomicLong();
+        private final AtomicLong rateLimited = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong cooldownUntil = new AtomicLong(System.nanoTime());
+        private volatile TokenBucket bucket;
+        private volatile int limit;
+        private volatile int remaining = -1;
+
+        KeyState(int index, String secret, int requestsPerMinute) {
+            // Only the tail of the key is ever shown
+            this.label = "key-" + index + " (..." + secret.substring(Math.max(0, secret.length() - 4)) + ")";
+            this.secret = secret;
+            setLimit(requestsPerMinute);
+        }
+
+        /**
+         * 0 if the key may be used now, otherwise the nanoseconds until it may
+         */
+        long tryAcquire(long now) {
+            long cooldown = cooldownUntil.get() - now;
+            if (cooldown > 0) {
+                return cooldown;
+            }
+            TokenBucket current = bucket;
+            return current == null ? 0 : current.tryAcquire(now);
+        }
+
+        void coolDown(long until) {
+            cooldownUntil.accumulateAndGet(until, Math::max);
+        }
+
+        void update(HttpHeaders headers, long now) {
+            int reportedLimit = intHeader(headers, "x-ratelimit-limit", "x-ratelimit-limit-requests");
+            remaining = intHeader(headers, "x-ratelimit-remaining", "x-ratelimit-remaining-requests");
+            if (reportedLimit > 0 && reportedLimit != limit) {
+                setLimit(reportedLimit);
+                // Start the new bucket where the upstream window is, not full
+                for (int used = 0; remaining >= 0 && used < reportedLimit - remaining; used++) {
+                    bucket.tryAcquire(now);
+                }
+            }
+            if (remaining == 0) {
+                long reset = resetNanos(headers);
+                if (reset > 0) {
+                    coolDown(now + reset);
+                }
+            }
+        }
+
+        private void setLimit(int requestsPerMinute) {
+            limit = requestsPerMinute;
+            // A full window of burst, as the upstream counts requests per window
+            bucket = requestsPerMinute > 0 ? new TokenBucket(requestsPerMinute, requestsPerMinute) : null;
+        }
+    }
+}
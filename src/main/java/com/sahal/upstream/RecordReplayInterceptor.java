@@ -0,0 +1,296 @@
+package com.sahal.upstream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records upstream exchanges to a cassette file, or serves them back without the network.
+ *
+ * Sits on the shared RestTemplate, so it covers model calls and summary generation alike.
+ * The mode comes from {@code app.upstream.mode}:
+ * <ul>
+ *   <li>{@code live} - pass-through; the interceptor is not installed</li>
+ *   <li>{@code record} - call upstream and append each exchange to the cassette</li>
+ *   <li>{@code replay} - answer from the cassette, sleeping for the recorded latency times
+ *       {@code latency-scale}</li>
+ * </ul>
+ *
+ * A cassette is gzip-compressed JSON lines, one exchange per line: a SHA-256 of method, path
+ * and request body, the model, status, a few response headers, the body and the observed
+ * latency. Requests are matched by hash. Repeated recordings of the same request are served
+ * in turn. If nothing matches, replay can fall back to the recordings of the same model, so a
+ * load test with new prompts still sees realistic response sizes and timings.
+ */
+@Component
+public class RecordReplayInterceptor implements ClientHttpRequestInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(RecordReplayInterceptor.class);
+    private static final List<String> RECORDED_HEADERS = List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.RETRY_AFTER);
+    private static final String RATE_LIMIT_HEADER_PREFIX = "x-ratelimit-";
+
+    private final Mode mode;
+    private final Path cassette;
+    private final double latencyScale;
+    private final boolean fallbackToModel;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, Recordings> byRequest = new ConcurrentHashMap<>();
+    private final Map<String, Recordings> byModel = new ConcurrentHashMap<>();
+    private Writer writer;
+
+    public RecordReplayInterceptor(@Value("${app.upstream.mode:live}") String mode,
+                                   @Value("${app.upstream.cassette:data/cassettes/upstream.jsonl.gz}") String cassette,
+                                   @Value("${app.upstream.replay.latency-scale:1.0}") double latencyScale,
+                                   @Value("${app.upstream.replay.fallback-to-model:true}") boolean fallbackToModel,
+                                   ObjectMapper objectMapper) {
+        this.mode = Mode.valueOf(mode.toUpperCase(Locale.ROOT));
+        this.cassette = Paths.get(cassette);
+        this.latencyScale = latencyScale;
+        this.fallbackToModel = fallbackToModel;
+        this.objectMapper = objectMapper;
+        if (this.mode == Mode.REPLAY) {
+            loadCassette();
+        }
+    }
+
+    public boolean isActive() {
+        return mode != Mode.LIVE;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        return switch (mode) {
+            case LIVE -> execution.execute(request, body);
+            case RECORD -> record(request, body, execution);
+            case REPLAY -> replay(request, body);
+        };
+    }
+
+    private ClientHttpResponse record(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        long start = System.nanoTime();
+        Exchange exchange;
+        try (ClientHttpResponse response = execution.execute(request, body)) {
+            byte[] responseBody = StreamUtils.copyToByteArray(response.getBody());
+            long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            exchange = new Exchange(requestHash(request, body), modelOf(body), response.getStatusCode().value(),
+                    recordedHeaders(response.getHeaders()), new String(responseBody, StandardCharsets.UTF_8), latencyMs);
+        }
+        append(exchange);
+        return exchange.toResponse();
+    }
+
+    private ClientHttpResponse replay(HttpRequest request, byte[] body) throws IOException {
+        Recordings recordings = byRequest.get(requestHash(request, body));
+        if (recordings == null && fallbackToModel) {
+            recordings = byModel.get(String.valueOf(modelOf(body)));
+        }
+        if (recordings == null) {
+            throw new IOException("No recorded upstream exchange for " + request.getMethod() + " " + request.getURI().getPath());
+        }
+
+        Exchange exchange = recordings.next();
+        long delayMs = Math.round(exchange.latencyMs() * latencyScale);
+        if (delayMs > 0) {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while replaying upstream latency", e);
+            }
+        }
+        return exchange.toResponse();
+    }
+
+    private synchronized void append(Exchange exchange) {
+        try {
+            if (writer == null) {
+                if (cassette.getParent() != null) {
+                    Files.createDirectories(cassette.getParent());
+                }
+                // Each run appends a new gzip member; GZIPInputStream reads concatenated members as one stream
+                GZIPOutputStream gzip = new GZIPOutputStream(Files.newOutputStream(cassette,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND), true);
+                writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8));
+                log.info("Recording upstream exchanges to {}", cassette.toAbsolutePath());
+            }
+            writer.write(objectMapper.writeValueAsString(exchange));
+            writer.write('\n');
+            // Sync flush so a killed recording run keeps everything up to its last exchange
+            writer.flush();
+        } catch (IOException e) {
+            log.warn("Failed to record upstream exchange: {}", e.getMessage());
+        }
+    }
+
+    private void loadCassette() {
+        int count = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(cassette)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = readLine(reader)) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                Exchange exchange = objectMapper.readValue(line, Exchange.class);
+                byRequest.computeIfAbsent(exchange.requestHash(), key -> new Recordings()).exchanges.add(exchange);
+                byModel.computeIfAbsent(String.valueOf(exchange.model()), key -> new Recordings()).exchanges.add(exchange);
+                count++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load upstream cassette " + cassette.toAbsolutePath(), e);
+        }
+        log.info("Replaying {} upstream exchanges ({} distinct requests) from {}", count, byRequest.size(), cassette.toAbsolutePath());
+    }
+
+    // A recording run that was killed leaves a gzip member without its trailer; keep what was flushed
+    private static String readLine(BufferedReader reader) throws IOException {
+        try {
+            return reader.readLine();
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    static String requestHash(HttpRequest request, byte[] body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(request.getMethod().name().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(request.getURI().getPath().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(body);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String modelOf(byte[] body) {
+        if (body.length == 0) {
+            return null;
+        }
+        try {
+            JsonNode model = objectMapper.readTree(body).get("model");
+            return model != null ? model.asText() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static Map<String, String> recordedHeaders(HttpHeaders headers) {
+        Map<String, String> recorded = new LinkedHashMap<>();
+        headers.forEach((name, values) -> {
+            boolean keep = RECORDED_HEADERS.stream().anyMatch(name::equalsIgnoreCase)
+                    || name.toLowerCase(Locale.ROOT).startsWith(RATE_LIMIT_HEADER_PREFIX);
+            if (keep && !values.isEmpty()) {
+                recorded.put(name, values.get(0));
+            }
+        });
+        return recorded;
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    enum Mode {
+        LIVE, RECORD, REPLAY
+    }
+
+    record Exchange(String requestHash, String model, int status, Map<String, String> headers, String body, long latencyMs) {
+
+        ClientHttpResponse toResponse() {
+            return new RecordedResponse(this);
+        }
+    }
+
+    private static class Recordings {
+        private final List<Exchange> exchanges = new ArrayList<>();
+        private final AtomicInteger cursor = new AtomicInteger();
+
+        Exchange next() {
+            return exchanges.get(Math.floorMod(cursor.getAndIncrement(), exchanges.size()));
+        }
+    }
+
+    private static class RecordedResponse implements ClientHttpResponse {
+        private final Exchange exchange;
+        private final InputStream body;
+
+        RecordedResponse(Exchange exchange) {
+            this.exchange = exchange;
+            this.body = new ByteArrayInputStream(exchange.body().getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return HttpStatusCode.valueOf(exchange.status());
+        }
+
+        @Override
+        public String getStatusText() {
+            return "";
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            HttpHeaders headers = new HttpHeaders();
+            exchange.headers().forEach(headers::set);
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
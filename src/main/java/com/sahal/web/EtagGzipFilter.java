@@ -0,0 +1,140 @@
+package com.sahal.web;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip for the polled history and conversation endpoints, which carry strong ETags.
+ *
+ * Tomcat's built-in compression skips responses with a strong ETag, because the compressed
+ * bytes are a different representation. This filter compresses them itself and gives the
+ * gzip representation its own strong ETag ({@code "stamp-gzip"}). Incoming If-None-Match
+ * values are mapped back to the plain ETag so controllers compare against a single stamp.
+ */
+@Component
+public class EtagGzipFilter extends OncePerRequestFilter {
+
+    private static final String GZIP_SUFFIX = "-gzip\"";
+
+    @Value("${server.compression.min-response-size:2048}")
+    private int minResponseSize;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getServletPath();
+        return !"GET".equals(request.getMethod())
+                || !(path.startsWith("/chat/history/") || path.startsWith("/chat/conversations"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (!acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        ContentCachingResponseWrapper cachingResponse = new ContentCachingResponseWrapper(response);
+        filterChain.doFilter(new PlainEtagRequest(request), cachingResponse);
+
+        String etag = cachingResponse.getHeader(HttpHeaders.ETAG);
+        boolean strongEtag = etag != null && etag.startsWith("\"");
+        if (strongEtag && cachingResponse.getStatus() == HttpServletResponse.SC_NOT_MODIFIED) {
+            response.setHeader(HttpHeaders.ETAG, gzipEtag(etag));
+        }
+
+        byte[] body = cachingResponse.getContentAsByteArray();
+        if (!strongEtag || cachingResponse.getStatus() != HttpServletResponse.SC_OK || body.length < minResponseSize) {
+            cachingResponse.copyBodyToResponse();
+            return;
+        }
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body);
+        }
+        response.setHeader(HttpHeaders.ETAG, gzipEtag(etag));
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        response.setContentLength(compressed.size());
+        compressed.writeTo(response.getOutputStream());
+    }
+
+    /**
+     * Whether Accept-Encoding allows gzip: an explicit gzip entry wins over "*", and q=0 refuses it
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        double gzipQuality = -1;
+        double anyQuality = -1;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.regionMatches(true, 0, "q=", 0, 2)) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (name.equalsIgnoreCase("gzip") || name.equalsIgnoreCase("x-gzip")) {
+                gzipQuality = Math.max(gzipQuality, quality);
+            } else if (name.equals("*")) {
+                anyQuality = quality;
+            }
+        }
+        return (gzipQuality >= 0 ? gzipQuality : anyQuality) > 0;
+    }
+
+    private static String gzipEtag(String etag) {
+        return etag.substring(0, etag.length() - 1) + GZIP_SUFFIX;
+    }
+
+    /**
+     * Presents If-None-Match with gzip ETags mapped back to their plain form
+     */
+    private static class PlainEtagRequest extends HttpServletRequestWrapper {
+
+        PlainEtagRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            String value = super.getHeader(name);
+            return HttpHeaders.IF_NONE_MATCH.equalsIgnoreCase(name) && value != null ? toPlain(value) : value;
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            if (!HttpHeaders.IF_NONE_MATCH.equalsIgnoreCase(name)) {
+                return super.getHeaders(name);
+            }
+            return Collections.enumeration(Collections.list(super.getHeaders(name)).stream().map(PlainEtagRequest::toPlain).toList());
+        }
+
+        private static String toPlain(String value) {
+            return value.replace(GZIP_SUFFIX, "\"");
+        }
+    }
+}
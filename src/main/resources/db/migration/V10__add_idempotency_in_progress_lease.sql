@@ -0,0 +1,2 @@
+-- Lease on a running idempotency claim, so a retry can take over a key whose first request died
+ALTER TABLE idempotency_records ADD COLUMN IF NOT EXISTS in_progress_until TIMESTAMP;
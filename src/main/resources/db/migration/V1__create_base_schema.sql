@@ -0,0 +1,18 @@
+-- Tables that predate the versioned migrations. Databases created by Hibernate's ddl-auto
+-- already have them and are baselined at version 0, so every statement here and in the
+-- following migrations must tolerate objects that already exist.
+CREATE TABLE IF NOT EXISTS conversations (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    session_id VARCHAR(255) NOT NULL,
+    created_at TIMESTAMP,
+    CONSTRAINT uk_conversations_session_id UNIQUE (session_id)
+);
+
+CREATE TABLE IF NOT EXISTS messages (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    conversation_id BIGINT REFERENCES conversations(id),
+    role VARCHAR(255) NOT NULL,
+    content TEXT,
+    model_name VARCHAR(255),
+    created_at TIMESTAMP
+);
@@ -1,5 +1,5 @@
 -- Add summary column to conversations table
-ALTER TABLE conversations ADD COLUMN summary TEXT;
+ALTER TABLE conversations ADD COLUMN IF NOT EXISTS summary TEXT;
 
 -- Add index for better performance on summary queries
-CREATE INDEX idx_conversations_summary ON conversations(summary) WHERE summary IS NOT NULL;
+CREATE INDEX IF NOT EXISTS idx_conversations_summary ON conversations(summary) WHERE summary IS NOT NULL;
@@ -0,0 +1,6 @@
+-- Track conversations whose messages were moved to the cold-tier archive
+ALTER TABLE conversations ADD COLUMN IF NOT EXISTS archived BOOLEAN NOT NULL DEFAULT FALSE;
+ALTER TABLE conversations ADD COLUMN IF NOT EXISTS archived_at TIMESTAMP;
+
+-- Partial index for the archival sweep, which only looks at live conversations
+CREATE INDEX IF NOT EXISTS idx_conversations_not_archived ON conversations(id) WHERE archived = FALSE;
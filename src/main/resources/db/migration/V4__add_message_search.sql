@@ -0,0 +1,6 @@
+-- Full-text search over message content. A generated column keeps the vector current on
+-- every insert and content update without any application code.
+ALTER TABLE messages ADD COLUMN IF NOT EXISTS search_vector tsvector
+    GENERATED ALWAYS AS (to_tsvector('english', coalesce(content, ''))) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_messages_search_vector ON messages USING GIN (search_vector);
@@ -0,0 +1,42 @@
+-- Batch evaluation jobs: a list of prompts run against a list of models
+CREATE TABLE IF NOT EXISTS evaluation_jobs (
+    id BIGSERIAL PRIMARY KEY,
+    status VARCHAR(20) NOT NULL,
+    concurrency INTEGER NOT NULL,
+    total_tasks INTEGER NOT NULL,
+    completed_tasks INTEGER NOT NULL DEFAULT 0,
+    failed_tasks INTEGER NOT NULL DEFAULT 0,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    completed_at TIMESTAMP,
+    lease_owner VARCHAR(64),
+    lease_until TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS evaluation_job_prompts (
+    job_id BIGINT NOT NULL REFERENCES evaluation_jobs(id) ON DELETE CASCADE,
+    prompt_index INTEGER NOT NULL,
+    prompt TEXT,
+    PRIMARY KEY (job_id, prompt_index)
+);
+
+CREATE TABLE IF NOT EXISTS evaluation_job_models (
+    job_id BIGINT NOT NULL REFERENCES evaluation_jobs(id) ON DELETE CASCADE,
+    model_index INTEGER NOT NULL,
+    model_name VARCHAR(255),
+    PRIMARY KEY (job_id, model_index)
+);
+
+-- One row per finished (prompt, model) task; doubles as the job checkpoint
+CREATE TABLE IF NOT EXISTS evaluation_results (
+    id BIGSERIAL PRIMARY KEY,
+    job_id BIGINT NOT NULL REFERENCES evaluation_jobs(id) ON DELETE CASCADE,
+    prompt_index INTEGER NOT NULL,
+    model_name VARCHAR(255) NOT NULL,
+    success BOOLEAN NOT NULL,
+    response TEXT,
+    latency_ms BIGINT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT uk_evaluation_results_task UNIQUE (job_id, prompt_index, model_name)
+);
+
+CREATE INDEX IF NOT EXISTS idx_evaluation_jobs_status ON evaluation_jobs(status) WHERE status IN ('PENDING', 'RUNNING');
@@ -0,0 +1,2 @@
+-- Access path for history reads and cursor pagination within a conversation
+CREATE INDEX IF NOT EXISTS idx_messages_conversation_created ON messages(conversation_id, created_at, id);
@@ -0,0 +1,6 @@
+-- Version stamp parts used for ETags on history and details
+ALTER TABLE conversations ADD COLUMN IF NOT EXISTS last_message_id BIGINT;
+ALTER TABLE conversations ADD COLUMN IF NOT EXISTS summary_hash INTEGER NOT NULL DEFAULT 0;
+
+UPDATE conversations c SET last_message_id = (SELECT max(m.id) FROM messages m WHERE m.conversation_id = c.id);
+UPDATE conversations SET summary_hash = hashtext(summary) WHERE summary IS NOT NULL;
@@ -0,0 +1,20 @@
+-- Summaries no longer delete the messages they cover; each checkpoint records how far it reaches
+CREATE TABLE IF NOT EXISTS summary_checkpoints (
+    id BIGSERIAL PRIMARY KEY,
+    conversation_id BIGINT NOT NULL REFERENCES conversations(id) ON DELETE CASCADE,
+    covers_up_to_message_id BIGINT NOT NULL,
+    summary TEXT NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_summary_checkpoints_conversation ON summary_checkpoints(conversation_id, covers_up_to_message_id);
+
+-- Range scans of the messages after a checkpoint
+CREATE INDEX IF NOT EXISTS idx_messages_conversation_id ON messages(conversation_id, id);
+
+-- Existing summaries covered messages that were deleted, so everything still stored comes after them
+INSERT INTO summary_checkpoints (conversation_id, covers_up_to_message_id, summary)
+SELECT c.id, COALESCE((SELECT min(m.id) FROM messages m WHERE m.conversation_id = c.id) - 1, 0), c.summary
+FROM conversations c
+WHERE c.summary IS NOT NULL AND c.summary <> ''
+  AND NOT EXISTS (SELECT 1 FROM summary_checkpoints s WHERE s.conversation_id = c.id);
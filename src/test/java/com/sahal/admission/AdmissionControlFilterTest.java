@@ -0,0 +1,67 @@
+package com.sahal.admission;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AdmissionControlFilterTest {
+
+    @Mock
+    private AdmissionController admissionController;
+
+    private AdmissionControlFilter filter;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        filter = new AdmissionControlFilter(admissionController);
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "trustedProxies", List.of("10.0.0.2"));
+        when(admissionController.admit(any(), any())).thenReturn(AdmissionController.Decision.ADMITTED);
+    }
+
+    @Test
+    void doFilter_ClientIdFromUntrustedAddress_KeysOnRemoteAddress() throws Exception {
+        // Given - a client rotating its own X-Client-Id
+        MockHttpServletRequest request = ask("203.0.113.7", "rotated-client-id");
+
+        // When
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        // Then
+        verify(admissionController).admit("203.0.113.7", "session-1");
+    }
+
+    @Test
+    void doFilter_ClientIdFromTrustedProxy_KeysOnHeader() throws Exception {
+        // Given
+        MockHttpServletRequest request = ask("10.0.0.2", "client-a");
+
+        // When
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        // Then
+        verify(admissionController).admit("client-a", "session-1");
+        verify(admissionController).release();
+    }
+
+    private static MockHttpServletRequest ask(String remoteAddr, String clientId) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/chat/ask");
+        request.setServletPath("/chat/ask");
+        request.setRemoteAddr(remoteAddr);
+        request.addHeader("X-Client-Id", clientId);
+        request.setParameter("sessionId", "session-1");
+        return request;
+    }
+}
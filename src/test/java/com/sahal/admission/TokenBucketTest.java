@@ -0,0 +1,62 @@
+package com.sahal.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void tryAcquire_WithinBurst_Granted() {
+        // Given - 60 per minute, burst of 3
+        TokenBucket bucket = new TokenBucket(60, 3);
+
+        // When / Then
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(0));
+    }
+
+    @Test
+    void tryAcquire_BurstExhausted_ReturnsWaitUntilNextPermit() {
+        // Given
+        TokenBucket bucket = new TokenBucket(60, 3);
+        for (int i = 0; i < 3; i++) {
+            bucket.tryAcquire(0);
+        }
+
+        // When
+        long wait = bucket.tryAcquire(0);
+
+        // Then
+        assertEquals(SECOND, wait);
+    }
+
+    @Test
+    void tryAcquire_AfterRefill_GrantedAgain() {
+        // Given
+        TokenBucket bucket = new TokenBucket(60, 1);
+        assertEquals(0, bucket.tryAcquire(0));
+        assertTrue(bucket.tryAcquire(SECOND / 2) > 0);
+
+        // When / Then
+        assertEquals(0, bucket.tryAcquire(SECOND));
+    }
+
+    @Test
+    void isIdle_OnlyOnceFullyRefilled() {
+        // Given
+        TokenBucket bucket = new TokenBucket(60, 2);
+        assertTrue(bucket.isIdle(0));
+        bucket.tryAcquire(0);
+        bucket.tryAcquire(0);
+
+        // When / Then
+        assertFalse(bucket.isIdle(SECOND));
+        assertTrue(bucket.isIdle(2 * SECOND));
+    }
+}
@@ -0,0 +1,103 @@
+package com.sahal.archive;
+
+import com.sahal.entity.Message;
+import com.sahal.entity.MessageRole;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConversationArchiveStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void append_ThenRead_ReturnsSameMessages() throws Exception {
+        // Given
+        ConversationArchiveStore store = new ConversationArchiveStore(directory.toString(), 1024 * 1024);
+        List<Message> messages = createTestMessages();
+
+        // When
+        store.append(42L, messages);
+        List<Message> archived = store.read(42L).orElseThrow();
+
+        // Then
+        assertEquals(messages.size(), archived.size());
+        for (int i = 0; i < messages.size(); i++) {
+            assertEquals(messages.get(i).getId(), archived.get(i).getId());
+            assertEquals(messages.get(i).getRole(), archived.get(i).getRole());
+            assertEquals(messages.get(i).getContent(), archived.get(i).getContent());
+            assertEquals(messages.get(i).getModelName(), archived.get(i).getModelName());
+            assertEquals(messages.get(i).getCreatedAt(), archived.get(i).getCreatedAt());
+        }
+        store.close();
+    }
+
+    @Test
+    void read_UnknownConversation_ReturnsEmpty() throws Exception {
+        // Given
+        ConversationArchiveStore store = new ConversationArchiveStore(directory.toString(), 1024 * 1024);
+
+        // When / Then
+        assertTrue(store.read(7L).isEmpty());
+        store.close();
+    }
+
+    @Test
+    void reopen_RebuildsIndexFromDisk() throws Exception {
+        // Given
+        ConversationArchiveStore store = new ConversationArchiveStore(directory.toString(), 1024 * 1024);
+        store.append(1L, createTestMessages());
+        store.append(2L, createTestMessages().subList(0, 1));
+        store.remove(1L);
+        store.close();
+
+        // When
+        ConversationArchiveStore reopened = new ConversationArchiveStore(directory.toString(), 1024 * 1024);
+
+        // Then
+        assertFalse(reopened.contains(1L));
+        assertEquals(1, reopened.read(2L).orElseThrow().size());
+        reopened.close();
+    }
+
+    @Test
+    void append_BeyondSegmentSize_RollsToNewSegment() throws Exception {
+        // Given
+        ConversationArchiveStore store = new ConversationArchiveStore(directory.toString(), 64);
+
+        // When
+        for (long id = 1; id <= 3; id++) {
+            store.append(id, createTestMessages());
+        }
+
+        // Then
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(3, files.filter(path -> path.toString().endsWith(".seg")).count());
+        }
+        for (long id = 1; id <= 3; id++) {
+            assertEquals(3, store.read(id).orElseThrow().size());
+        }
+        store.close();
+    }
+
+    private List<Message> createTestMessages() {
+        Message user = new Message(MessageRole.USER, "What is machine learning?");
+        user.setId(1L);
+        user.setCreatedAt(LocalDateTime.of(2025, 1, 1, 10, 0, 0, 123_000_000));
+        Message assistant = new Message(MessageRole.ASSISTANT, "Machine learning lets computers learn from data.", "test-model");
+        assistant.setId(2L);
+        assistant.setCreatedAt(LocalDateTime.of(2025, 1, 1, 10, 0, 5));
+        Message followUp = new Message(MessageRole.USER, "Give me an example — with unicode é");
+        followUp.setId(3L);
+        followUp.setCreatedAt(LocalDateTime.of(2025, 1, 1, 10, 1, 0));
+        return List.of(user, assistant, followUp);
+    }
+}
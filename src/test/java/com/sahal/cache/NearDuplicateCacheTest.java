@@ -0,0 +1,107 @@
+package com.sahal.cache;
+
+import com.sahal.entity.MessageRole;
+import com.sahal.service.ChatContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NearDuplicateCacheTest {
+
+    private static final String MODEL = "deepseek/deepseek-chat-v3.1:free";
+
+    private NearDuplicateCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new NearDuplicateCache(true, 2, 0.95, 0.3, 60, 16000, 1.0, 0.5);
+    }
+
+    @Test
+    void normalize_ExpandsContractionsAndDropsPunctuation() {
+        assertEquals("what is the capital of france", NearDuplicateCache.normalize("What's the capital of France?"));
+        assertEquals("i can not do it", NearDuplicateCache.normalize("I can't   do it!"));
+    }
+
+    @Test
+    void get_RewordedPrompt_ReturnsCachedResponse() {
+        // Given
+        cache.put(MODEL, users("What is the capital of France?"), "Paris");
+
+        // When
+        Optional<String> cached = cache.get(MODEL, users("what's the capital of france"));
+
+        // Then
+        assertEquals(Optional.of("Paris"), cached);
+        assertEquals(1L, cache.getStats().get("hits"));
+        assertEquals(0L, cache.getStats().get("suspectedFalsePositives"));
+    }
+
+    @Test
+    void get_DifferentQuestion_Misses() {
+        // Given
+        cache.put(MODEL, users("What is the capital of France?"), "Paris");
+
+        // When
+        Optional<String> cached = cache.get(MODEL, users("How do I sort a list in Java?"));
+
+        // Then
+        assertTrue(cached.isEmpty());
+    }
+
+    @Test
+    void get_DifferentModelOrHistory_Misses() {
+        // Given
+        cache.put(MODEL, users("What is the capital of France?"), "Paris");
+
+        // When / Then
+        assertTrue(cache.get("x-ai/grok-4-fast:free", users("What is the capital of France?")).isEmpty());
+        assertTrue(cache.get(MODEL, users("Hi", "What is the capital of France?")).isEmpty());
+    }
+
+    @Test
+    void put_BeyondCapacity_EvictsOldest() {
+        // Given
+        cache.put(MODEL, users("first question about rivers"), "a");
+        cache.put(MODEL, users("second question about mountains"), "b");
+
+        // When
+        cache.put(MODEL, users("third question about oceans"), "c");
+
+        // Then
+        assertTrue(cache.get(MODEL, users("first question about rivers")).isEmpty());
+        assertEquals(Optional.of("c"), cache.get(MODEL, users("third question about oceans")));
+        assertEquals(2, cache.getStats().get("entries"));
+        assertEquals(1L, cache.getStats().get("evictions"));
+    }
+
+    @Test
+    void isEligible_OnlyAtLowTemperature() {
+        assertTrue(cache.isEligible(0.2));
+        assertFalse(cache.isEligible(0.7));
+        assertEquals(1L, cache.getStats().get("bypassedByTemperature"));
+    }
+
+    @Test
+    void simHash_SmallEditsStayCloserThanUnrelatedText() {
+        long base = NearDuplicateCache.simHash(NearDuplicateCache.normalize(
+                "Explain the difference between a process and a thread in operating systems"));
+        long edited = NearDuplicateCache.simHash(NearDuplicateCache.normalize(
+                "Explain the difference between a process and a thread in operating systems please"));
+        long unrelated = NearDuplicateCache.simHash(NearDuplicateCache.normalize(
+                "Write a haiku about autumn leaves falling on a quiet pond"));
+
+        assertTrue(Long.bitCount(base ^ edited) < Long.bitCount(base ^ unrelated));
+    }
+
+    private static ChatContext users(String... contents) {
+        ChatContext.Builder context = ChatContext.builder(contents.length);
+        for (String content : contents) {
+            context.add(MessageRole.USER, content);
+        }
+        return context.build();
+    }
+}
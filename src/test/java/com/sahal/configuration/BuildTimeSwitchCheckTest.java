@@ -0,0 +1,70 @@
+package com.sahal.configuration;
+
+import com.sahal.datasource.ReplicaRoutingDataSource;
+import com.sahal.persistence.LogConversationStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BuildTimeSwitchCheckTest {
+
+    @Mock
+    private ApplicationContext context;
+
+    private BuildTimeSwitchCheck check;
+
+    @BeforeEach
+    void setUp() {
+        check = new BuildTimeSwitchCheck(context);
+        ReflectionTestUtils.setField(check, "store", "jpa");
+        ReflectionTestUtils.setField(check, "replicasEnabled", false);
+    }
+
+    @Test
+    void afterSingletonsInstantiated_SwitchesMatchTheBeans_Starts() {
+        // Given
+        ReflectionTestUtils.setField(check, "replicasEnabled", true);
+        when(context.getBeanNamesForType(LogConversationStore.class)).thenReturn(new String[0]);
+        when(context.getBeanNamesForType(ReplicaRoutingDataSource.class)).thenReturn(new String[]{"replicaRoutingDataSource"});
+
+        // When / Then
+        assertDoesNotThrow(check::afterSingletonsInstantiated);
+    }
+
+    @Test
+    void afterSingletonsInstantiated_ReplicasEnabledAfterAnAotBuildWithout_RefusesToStart() {
+        // Given - the compose file turns replicas on for an image built without them
+        ReflectionTestUtils.setField(check, "replicasEnabled", true);
+        when(context.getBeanNamesForType(LogConversationStore.class)).thenReturn(new String[0]);
+        when(context.getBeanNamesForType(ReplicaRoutingDataSource.class)).thenReturn(new String[0]);
+
+        // When
+        IllegalStateException e = assertThrows(IllegalStateException.class, check::afterSingletonsInstantiated);
+
+        // Then
+        assertTrue(e.getMessage().contains("app.datasource.replicas.enabled=true but replica routing is not configured"));
+        assertTrue(e.getMessage().contains("AOT_PROPERTIES"));
+    }
+
+    @Test
+    void afterSingletonsInstantiated_StoreSwitchedAfterTheBuild_RefusesToStart() {
+        // Given
+        ReflectionTestUtils.setField(check, "store", "embedded");
+        when(context.getBeanNamesForType(LogConversationStore.class)).thenReturn(new String[0]);
+        when(context.getBeanNamesForType(ReplicaRoutingDataSource.class)).thenReturn(new String[0]);
+
+        // When
+        IllegalStateException e = assertThrows(IllegalStateException.class, check::afterSingletonsInstantiated);
+
+        // Then
+        assertTrue(e.getMessage().contains("app.persistence.store=embedded but the jpa store is configured"));
+    }
+}
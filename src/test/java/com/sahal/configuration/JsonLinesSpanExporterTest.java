@@ -0,0 +1,119 @@
+package com.sahal.configuration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonLinesSpanExporterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    private Path directory;
+
+    private SdkTracerProvider tracerProvider;
+
+    @AfterEach
+    void tearDown() {
+        if (tracerProvider != null) {
+            tracerProvider.close();
+        }
+    }
+
+    @Test
+    void export_ParentAndChild_WritesOneLinePerSpanLinkedByParentId() throws Exception {
+        // Given
+        Path file = directory.resolve("traces/spans.jsonl");
+        Tracer tracer = tracer(new JsonLinesSpanExporter(objectMapper, file, 1024 * 1024));
+
+        // When
+        Span parent = tracer.spanBuilder("ChatController.ask").startSpan();
+        try (Scope scope = parent.makeCurrent()) {
+            tracer.spanBuilder("model.call").setAttribute("model", "deepseek").startSpan().end();
+        } finally {
+            parent.end();
+        }
+
+        // Then - spans are exported as they end, the child first
+        List<JsonNode> lines = readLines(file);
+        assertEquals(2, lines.size());
+        JsonNode child = lines.get(0);
+        JsonNode root = lines.get(1);
+        assertEquals("model.call", child.get("name").asText());
+        assertEquals("deepseek", child.get("attributes").get("model").asText());
+        assertEquals(root.get("spanId").asText(), child.get("parentSpanId").asText());
+        assertEquals(root.get("traceId").asText(), child.get("traceId").asText());
+        assertTrue(root.get("parentSpanId").isNull());
+    }
+
+    @Test
+    void export_FileReachesLimit_RotatesAndKeepsAtMostTwoFiles() throws Exception {
+        // Given
+        Path file = directory.resolve("spans.jsonl");
+        long maxFileBytes = 1000;
+        Tracer tracer = tracer(new JsonLinesSpanExporter(objectMapper, file, maxFileBytes));
+
+        // When
+        for (int i = 0; i < 40; i++) {
+            tracer.spanBuilder("span-" + i).startSpan().end();
+        }
+
+        // Then
+        Path rotated = directory.resolve("spans.jsonl.1");
+        assertTrue(Files.size(file) <= maxFileBytes);
+        assertTrue(Files.size(rotated) <= maxFileBytes);
+        try (var files = Files.list(directory)) {
+            assertEquals(2, files.count());
+        }
+        List<JsonNode> current = readLines(file);
+        assertEquals("span-39", current.get(current.size() - 1).get("name").asText());
+        assertEquals(readLines(rotated).get(readLines(rotated).size() - 1).get("name").asText(),
+                "span-" + (39 - current.size()));
+    }
+
+    @Test
+    void export_ExistingFile_CountsItsSizeTowardsTheLimit() throws Exception {
+        // Given - a file left by an earlier run, already at the limit
+        Path file = directory.resolve("spans.jsonl");
+        Files.writeString(file, "x".repeat(999) + "\n");
+        Tracer tracer = tracer(new JsonLinesSpanExporter(objectMapper, file, 1000));
+
+        // When
+        tracer.spanBuilder("first").startSpan().end();
+        tracer.spanBuilder("second").startSpan().end();
+
+        // Then - the first span still goes to the old file, which is rotated before the second
+        assertEquals(List.of("second"), readLines(file).stream().map(line -> line.get("name").asText()).toList());
+        assertTrue(Files.readString(directory.resolve("spans.jsonl.1")).startsWith("x".repeat(999)));
+    }
+
+    private Tracer tracer(JsonLinesSpanExporter exporter) {
+        tracerProvider = SdkTracerProvider.builder()
+                .addSpanProcessor(SimpleSpanProcessor.create(exporter))
+                .build();
+        return tracerProvider.get("test");
+    }
+
+    private List<JsonNode> readLines(Path file) throws IOException {
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(file)) {
+            lines.add(objectMapper.readTree(line));
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,166 @@
+package com.sahal.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.sahal.admission.AdmissionController;
+import com.sahal.diagnostics.RequestDiagnostics;
+import com.sahal.dto.HistoryPageResponse;
+import com.sahal.dto.MessageDto;
+import com.sahal.service.ContextPacker;
+import com.sahal.service.ConversationService;
+import com.sahal.service.IdempotencyService;
+import com.sahal.service.ModelCallService;
+import com.sahal.service.ModelHealthStats;
+import com.sahal.service.ModelRouter;
+import com.sahal.upstream.ApiKeyPool;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Response DTOs are written as JSON by default and as Smile or CBOR when the client asks for them
+ */
+@WebMvcTest(ChatController.class)
+@TestPropertySource(properties = "app.admission.enabled=false")
+class ChatControllerContentNegotiationTest {
+
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+    private static final MediaType CBOR = MediaType.parseMediaType("application/cbor");
+
+    private final ObjectMapper json = new ObjectMapper();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private ConversationService conversationService;
+
+    @MockitoBean
+    private ModelCallService modelCallService;
+
+    @MockitoBean
+    private ContextPacker contextPacker;
+
+    @MockitoBean
+    private IdempotencyService idempotencyService;
+
+    @MockitoBean
+    private ModelRouter modelRouter;
+
+    @MockitoBean
+    private ModelHealthStats modelHealthStats;
+
+    @MockitoBean
+    private ApiKeyPool apiKeyPool;
+
+    @MockitoBean
+    private RequestDiagnostics requestDiagnostics;
+
+    @MockitoBean
+    private AdmissionController admissionController;
+
+    @BeforeEach
+    void setUp() {
+        List<MessageDto> messages = List.of(
+                new MessageDto(1L, "user", "What is AI?", "2025-01-01T12:00", null),
+                new MessageDto(2L, "assistant", "A field of computer science", "2025-01-01T12:01", "deepseek/deepseek-chat-v3.1:free"));
+        when(conversationService.getConversationHistoryPage("session-1", null, null, 50))
+                .thenReturn(new HistoryPageResponse("session-1", null, messages, false, null, null));
+    }
+
+    @Test
+    void historyPage_NoAccept_IsJson() throws Exception {
+        // When
+        byte[] body = mockMvc.perform(get("/chat/history/session-1/page"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // Then
+        JsonNode page = json.readTree(body);
+        assertEquals("session-1", page.get("sessionId").asText());
+        assertEquals(2, page.get("messages").size());
+    }
+
+    @Test
+    void historyPage_SmileOrCborAccepted_DecodesToTheJsonTree() throws Exception {
+        // Given
+        JsonNode expected = json.readTree(mockMvc.perform(get("/chat/history/session-1/page").accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsByteArray());
+
+        // When
+        byte[] smile = mockMvc.perform(get("/chat/history/session-1/page").accept(SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+        byte[] cbor = mockMvc.perform(get("/chat/history/session-1/page").accept(CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // Then
+        assertEquals(expected, new SmileMapper().readTree(smile));
+        assertEquals(expected, new CBORMapper().readTree(cbor));
+    }
+
+    @Test
+    void historyPage_SharedEtag_VariesOnAccept() throws Exception {
+        // Given
+        when(conversationService.getVersionStamp("session-1")).thenReturn(Optional.of("7-42-0"));
+
+        // When / Then - a cache must not answer a CBOR request with the JSON body, or the reverse
+        mockMvc.perform(get("/chat/history/session-1/page").accept(CBOR))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"7-42-0\""))
+                .andExpect(header().stringValues("Vary", hasItem("Accept")));
+        mockMvc.perform(get("/chat/history/session-1/page").header("If-None-Match", "\"7-42-0\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().stringValues("Vary", hasItem("Accept")));
+    }
+
+    @Test
+    void ask_RoutedAlias_WritesRoutingRecordInEveryFormat() throws Exception {
+        // Given
+        when(modelRouter.isRoutedAlias("fast")).thenReturn(true);
+        when(modelRouter.choose("fast")).thenReturn(new ModelRouter.Selection("deepseek/deepseek-chat-v3.1:free", "fast", "best-score", 812.4));
+        when(modelCallService.callModel(eq("deepseek/deepseek-chat-v3.1:free"), any(), anyDouble())).thenReturn("Hello");
+
+        // When
+        byte[] jsonBody = mockMvc.perform(post("/chat/ask").param("question", "Hi").param("model", "fast").param("sessionId", "session-1"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsByteArray();
+        byte[] cborBody = mockMvc.perform(post("/chat/ask").param("question", "Hi").param("model", "fast").param("sessionId", "session-1")
+                        .accept(CBOR))
+                .andExpect(content().contentTypeCompatibleWith(CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // Then
+        JsonNode answer = json.readTree(jsonBody);
+        assertEquals("Hello", answer.get("response").asText());
+        assertEquals("fast", answer.get("routing").get("alias").asText());
+        assertEquals("best-score", answer.get("routing").get("reason").asText());
+        assertEquals(812, answer.get("routing").get("score").asLong());
+        assertEquals(answer, new CBORMapper().readTree(cborBody));
+    }
+}
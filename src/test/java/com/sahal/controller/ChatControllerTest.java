@@ -0,0 +1,116 @@
+package com.sahal.controller;
+
+import com.sahal.datasource.ReplicaRoutingDataSource;
+import com.sahal.diagnostics.RequestDiagnostics;
+import com.sahal.dto.ComparisonResponse;
+import com.sahal.entity.Conversation;
+import com.sahal.entity.MessageRole;
+import com.sahal.service.ChatContext;
+import com.sahal.service.ContextPacker;
+import com.sahal.service.ConversationService;
+import com.sahal.service.IdempotencyService;
+import com.sahal.service.ModelCallService;
+import com.sahal.service.ModelHealthStats;
+import com.sahal.service.ModelRouter;
+import com.sahal.upstream.ApiKeyPool;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChatControllerTest {
+
+    private static final String DEEPSEEK = ModelCallService.FREE_MODELS.get(0);
+    private static final String GROK = ModelCallService.FREE_MODELS.get(1);
+    private static final String GEMMA = ModelCallService.FREE_MODELS.get(2);
+
+    @Mock
+    private ConversationService conversationService;
+
+    @Mock
+    private ModelCallService modelCallService;
+
+    @Mock
+    private ContextPacker contextPacker;
+
+    @Mock
+    private IdempotencyService idempotencyService;
+
+    @Mock
+    private ModelRouter modelRouter;
+
+    @Mock
+    private ModelHealthStats modelHealthStats;
+
+    @Mock
+    private ApiKeyPool apiKeyPool;
+
+    @Mock
+    private ObjectProvider<ReplicaRoutingDataSource> replicaRouting;
+
+    private final RequestDiagnostics requestDiagnostics = new RequestDiagnostics(true, 2000, 16, false);
+
+    private ChatController chatController;
+
+    private Conversation conversation;
+
+    @BeforeEach
+    void setUp() {
+        chatController = new ChatController(conversationService, modelCallService, contextPacker, idempotencyService,
+                modelRouter, modelHealthStats, apiKeyPool, replicaRouting, requestDiagnostics);
+        conversation = new Conversation("session-1");
+        when(conversationService.getOrCreateConversation("session-1")).thenReturn(conversation);
+        when(conversationService.getConversationContextForComparison("session-1")).thenReturn(ChatContext.empty());
+        when(contextPacker.budgetFor(any())).thenReturn(4000);
+        when(contextPacker.pack(any(), anyInt())).thenReturn(new ContextPacker.PackedContext(ChatContext.empty(), 0, 0, 0, 0, 0));
+    }
+
+    @Test
+    void ask_Comparison_ReportsUpstreamAndPersistFailuresSeparately() throws Exception {
+        // Given - deepseek fails upstream, grok answers but cannot be stored, gemma succeeds
+        when(modelCallService.callModel(eq(DEEPSEEK), any(), anyDouble())).thenThrow(new IllegalStateException("upstream timeout"));
+        when(modelCallService.callModel(eq(GROK), any(), anyDouble())).thenReturn("grok answer");
+        when(modelCallService.callModel(eq(GEMMA), any(), anyDouble())).thenReturn("gemma answer");
+        // Lenient: the question is stored through the same method with other arguments
+        lenient().doThrow(new IllegalStateException("database down"))
+                .when(conversationService).addMessage(conversation, MessageRole.ASSISTANT, "grok answer", GROK);
+
+        // When
+        ResponseEntity<Object> response = chatController.ask("What is AI?", "all", "session-1", null, false, null,
+                new MockHttpServletResponse());
+
+        // Then
+        List<ComparisonResponse.ModelResponse> models = ((ComparisonResponse) response.getBody()).modelResponses();
+        assertEquals(List.of("error", "persist-error", "success"), models.stream().map(ComparisonResponse.ModelResponse::status).toList());
+        assertEquals("Error: upstream timeout", models.get(0).response());
+        // The answer that could not be stored is still returned
+        assertEquals("grok answer", models.get(1).response());
+        assertEquals(0.0, models.get(0).timing().persistMs());
+        verify(conversationService).addMessage(conversation, MessageRole.ASSISTANT, "gemma answer", GEMMA);
+        verify(conversationService, never()).addMessage(any(), eq(MessageRole.ASSISTANT), any(), eq(DEEPSEEK));
+    }
+
+    @Test
+    void ask_ServerTimingOff_SetsNoHeader() throws Exception {
+        // Given
+        when(modelCallService.callModel(anyString(), any(), anyDouble())).thenReturn("answer");
+        MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+
+        // When
+        chatController.ask("What is AI?", "all", "session-1", null, false, null, servletResponse);
+
+        // Then
+        assertNull(servletResponse.getHeader("Server-Timing"));
+    }
+}
@@ -0,0 +1,148 @@
+package com.sahal.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReplicaRoutingDataSourceTest {
+
+    @Mock
+    private DataSource primary;
+
+    @Mock
+    private DataSource replica;
+
+    @Mock
+    private Connection primaryConnection;
+
+    @Mock
+    private Connection replicaConnection;
+
+    private final ReadYourWrites readYourWrites = new ReadYourWrites(true, 5000);
+
+    private ReplicaRoutingDataSource routing;
+
+    @BeforeEach
+    void setUp() {
+        routing = new ReplicaRoutingDataSource(primary, Map.of("replica-1", replica), readYourWrites, 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    void getConnection_ReadOnlyWithHealthyReplica_UsesReplicaAndWritesUsePrimary() throws SQLException {
+        // Given
+        replicaReportsLag(0);
+        routing.checkReplicas();
+        when(primary.getConnection()).thenReturn(primaryConnection);
+
+        // When
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        Connection read = routing.getConnection();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        Connection write = routing.getConnection();
+
+        // Then
+        assertSame(replicaConnection, read);
+        assertSame(primaryConnection, write);
+    }
+
+    @Test
+    void getConnection_WithCredentials_UsesPrimary() throws SQLException {
+        // Given
+        when(primary.getConnection("report", "secret")).thenReturn(primaryConnection);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        // When
+        Connection connection = routing.getConnection("report", "secret");
+
+        // Then
+        assertSame(primaryConnection, connection);
+        verifyNoInteractions(replica);
+    }
+
+    @Test
+    void getConnection_SessionThatJustWrote_ReadsFromPrimary() throws SQLException {
+        // Given
+        replicaReportsLag(0);
+        routing.checkReplicas();
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        readYourWrites.recordWrite("session-1");
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        // When
+        Connection ownSession;
+        try (ReadYourWrites.Scope scope = readYourWrites.forSession("session-1")) {
+            ownSession = routing.getConnection();
+        }
+        Connection otherSession;
+        try (ReadYourWrites.Scope scope = readYourWrites.forSession("session-2")) {
+            otherSession = routing.getConnection();
+        }
+
+        // Then
+        assertSame(primaryConnection, ownSession);
+        assertSame(replicaConnection, otherSession);
+    }
+
+    @Test
+    void getConnection_LaggingOrUnreachableReplica_FallsBackToPrimary() throws SQLException {
+        // Given - the replica is 5 seconds behind
+        replicaReportsLag(5000);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        // When
+        routing.checkReplicas();
+        Connection whileLagging = routing.getConnection();
+
+        // Then
+        assertSame(primaryConnection, whileLagging);
+        assertEquals(false, replicaStats().get("healthy"));
+
+        // When - caught up, then refusing connections
+        replicaReportsLag(0);
+        routing.checkReplicas();
+        assertEquals(true, replicaStats().get("healthy"));
+        when(replica.getConnection()).thenThrow(new SQLException("connection refused"));
+        Connection whileDown = routing.getConnection();
+
+        // Then
+        assertSame(primaryConnection, whileDown);
+        assertEquals(false, replicaStats().get("healthy"));
+    }
+
+    private void replicaReportsLag(double lagMs) throws SQLException {
+        Statement statement = mock(Statement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        when(replicaConnection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getDouble(1)).thenReturn(lagMs);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> replicaStats() {
+        return (Map<String, Object>) ((Map<String, Object>) routing.toMap().get("replicas")).get("replica-1");
+    }
+}
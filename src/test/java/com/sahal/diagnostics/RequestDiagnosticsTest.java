@@ -0,0 +1,139 @@
+package com.sahal.diagnostics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestDiagnosticsTest {
+
+    @Test
+    void phase_NestedPhases_AttributesTimeToTheInnermostPhase() throws InterruptedException {
+        // Given
+        RequestDiagnostics diagnostics = new RequestDiagnostics(true, 0, 4, true);
+        RequestDiagnostics.RequestTrace trace = diagnostics.begin("/chat/ask", "deepseek", "session-1");
+
+        // When - upstream runs inside context
+        try (RequestDiagnostics.Scope context = diagnostics.phase("context")) {
+            Thread.sleep(20);
+            try (RequestDiagnostics.Scope upstream = diagnostics.phase("upstream")) {
+                Thread.sleep(30);
+            }
+        }
+        diagnostics.end(trace);
+
+        // Then
+        Map<String, Long> phases = trace.phaseNanos();
+        assertEquals(List.of("handler", "context", "upstream"), List.copyOf(phases.keySet()));
+        assertTrue(phases.get("upstream") >= 30_000_000L);
+        assertTrue(phases.get("context") >= 20_000_000L);
+        assertTrue(phases.get("context") < 30_000_000L + 20_000_000L);
+        assertNull(diagnostics.current());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void toMap_InFlightAndModelCalls_ListsOpenRequestsUntilTheyEnd() {
+        // Given
+        RequestDiagnostics diagnostics = new RequestDiagnostics(true, 60_000, 4, true);
+        RequestDiagnostics.RequestTrace trace = diagnostics.begin("/chat/ask", "grok", "session-1");
+        RequestDiagnostics.Scope phase = diagnostics.phase("upstream");
+        RequestDiagnostics.Scope call = diagnostics.modelCall("grok");
+
+        // When
+        Map<String, Object> during = diagnostics.toMap();
+        call.close();
+        phase.close();
+        diagnostics.end(trace);
+        Map<String, Object> after = diagnostics.toMap();
+
+        // Then
+        List<Map<String, Object>> inFlight = (List<Map<String, Object>>) during.get("inFlight");
+        assertEquals(1, inFlight.size());
+        assertEquals("upstream", inFlight.get(0).get("phase"));
+        assertEquals(1, ((Map<String, Object>) during.get("modelInFlight")).get("grok"));
+        assertTrue(((List<?>) after.get("inFlight")).isEmpty());
+        assertEquals(0, ((Map<String, Object>) after.get("modelInFlight")).get("grok"));
+        // Below the threshold, so not kept
+        assertTrue(((List<?>) after.get("slowRequests")).isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void end_MoreSlowRequestsThanTheBuffer_KeepsTheMostRecentNewestFirst() {
+        // Given
+        RequestDiagnostics diagnostics = new RequestDiagnostics(true, 0, 3, true);
+
+        // When
+        for (int i = 1; i <= 5; i++) {
+            diagnostics.end(diagnostics.begin("/chat/ask", "deepseek", "session-" + i));
+        }
+
+        // Then
+        List<Map<String, Object>> slow = (List<Map<String, Object>>) diagnostics.toMap().get("slowRequests");
+        assertEquals(List.of("/chat/ask", "/chat/ask", "/chat/ask"), slow.stream().map(entry -> entry.get("endpoint")).toList());
+        assertEquals(3, slow.stream().map(entry -> entry.get("session")).distinct().count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void toMap_SessionIds_AreListedOnlyAsAStableHash() {
+        // Given
+        RequestDiagnostics diagnostics = new RequestDiagnostics(true, 0, 4, true);
+
+        // When
+        diagnostics.end(diagnostics.begin("/chat/ask", "deepseek", "0f8fad5b-d9cb-469f-a165-70867728950e"));
+        diagnostics.end(diagnostics.begin("/chat/history", null, "0f8fad5b-d9cb-469f-a165-70867728950e"));
+        Map<String, Object> snapshot = diagnostics.toMap();
+
+        // Then
+        List<Map<String, Object>> slow = (List<Map<String, Object>>) snapshot.get("slowRequests");
+        assertFalse(slow.get(0).containsKey("sessionId"));
+        assertEquals(slow.get(0).get("session"), slow.get(1).get("session"));
+        assertEquals(16, ((String) slow.get(0).get("session")).length());
+        assertFalse(snapshot.toString().contains("0f8fad5b"));
+    }
+
+    @Test
+    void serverTiming_RunningRequest_ListsPhasesAndTotal() throws InterruptedException {
+        // Given - the live view is off, but requests are still timed for the header
+        RequestDiagnostics diagnostics = new RequestDiagnostics(false, 0, 4, true);
+        RequestDiagnostics.RequestTrace trace = diagnostics.begin("/chat/ask", "all", "session-1");
+        try (RequestDiagnostics.Scope conversation = diagnostics.phase("conversation")) {
+            Thread.sleep(5);
+        }
+        try (RequestDiagnostics.Scope upstream = diagnostics.phase("upstream.openai/gpt-4o:free")) {
+            Thread.sleep(10);
+        }
+
+        // When
+        String header = diagnostics.serverTiming(trace);
+        diagnostics.end(trace);
+
+        // Then
+        assertTrue(header.matches("handler;dur=\\d+\\.\\d{3}, conversation;dur=\\d+\\.\\d{3}, "
+                + "upstream\\.openai_gpt-4o_free;dur=\\d+\\.\\d{3}, total;dur=\\d+\\.\\d{3}"), header);
+        double upstreamMs = Double.parseDouble(header.replaceAll(".*upstream[^;]*;dur=([0-9.]+),.*", "$1"));
+        assertTrue(upstreamMs >= 10.0);
+        assertTrue(((List<?>) diagnostics.toMap().get("inFlight")).isEmpty());
+        assertNull(new RequestDiagnostics(true, 0, 4, false).serverTiming(trace));
+    }
+
+    @Test
+    void begin_Disabled_TracksNothing() {
+        // Given
+        RequestDiagnostics diagnostics = new RequestDiagnostics(false, 0, 3, false);
+
+        // When
+        RequestDiagnostics.RequestTrace trace = diagnostics.begin("/chat/ask", "deepseek", "session-1");
+        try (RequestDiagnostics.Scope phase = diagnostics.phase("upstream")) {
+            diagnostics.end(trace);
+        }
+
+        // Then
+        assertNull(trace);
+        assertTrue(((List<?>) diagnostics.toMap().get("slowRequests")).isEmpty());
+    }
+}
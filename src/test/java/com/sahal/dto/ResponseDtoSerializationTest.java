@@ -0,0 +1,75 @@
+package com.sahal.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.sahal.entity.Message;
+import com.sahal.entity.MessageRole;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseDtoSerializationTest {
+
+    private final ObjectMapper json = new ObjectMapper();
+
+    @Test
+    void messageDto_Json_KeepsTheMapShape() throws Exception {
+        // Given
+        Message message = new Message(MessageRole.USER, "Hello");
+        message.setId(42L);
+        message.setCreatedAt(LocalDateTime.of(2025, 1, 1, 12, 0));
+
+        // When
+        JsonNode history = json.readTree(json.writeValueAsBytes(MessageDto.of(message)));
+        JsonNode page = json.readTree(json.writeValueAsBytes(MessageDto.withId(message)));
+
+        // Then - no id in the plain history, an explicit null model for user messages
+        assertFalse(history.has("id"));
+        assertEquals("user", history.get("role").asText());
+        assertEquals("2025-01-01T12:00", history.get("timestamp").asText());
+        assertTrue(history.get("model").isNull());
+        assertEquals(42L, page.get("id").asLong());
+    }
+
+    @Test
+    void askResponse_WithoutRouting_OmitsRouting() throws Exception {
+        // When
+        JsonNode plain = json.readTree(json.writeValueAsBytes(new AskResponse("deepseek", "Hi")));
+        JsonNode routed = json.readTree(json.writeValueAsBytes(new AskResponse("deepseek", "Hi", new AskResponse.Routing("fast", "best-score", 812))));
+
+        // Then
+        assertFalse(plain.has("routing"));
+        assertEquals("fast", routed.get("routing").get("alias").asText());
+        assertEquals(812, routed.get("routing").get("score").asLong());
+    }
+
+    @Test
+    void historyPage_BinaryFormats_AreSmallerAndDecodeToTheSameTree() throws Exception {
+        // Given
+        List<MessageDto> messages = new ArrayList<>();
+        for (long i = 1; i <= 200; i++) {
+            messages.add(new MessageDto(i, i % 2 == 0 ? "assistant" : "user", "Message number " + i,
+                    "2025-01-01T12:00:" + (i % 60), i % 2 == 0 ? "deepseek/deepseek-chat-v3.1:free" : null));
+        }
+        HistoryPageResponse page = new HistoryPageResponse("session-1", "Summary", messages, true, 1L, 200L);
+
+        // When
+        byte[] jsonBytes = json.writeValueAsBytes(page);
+        SmileMapper smile = new SmileMapper();
+        CBORMapper cbor = new CBORMapper();
+        byte[] smileBytes = smile.writeValueAsBytes(page);
+        byte[] cborBytes = cbor.writeValueAsBytes(page);
+
+        // Then
+        assertTrue(smileBytes.length < jsonBytes.length, "smile " + smileBytes.length + " vs json " + jsonBytes.length);
+        assertTrue(cborBytes.length < jsonBytes.length, "cbor " + cborBytes.length + " vs json " + jsonBytes.length);
+        assertEquals(json.readTree(jsonBytes), smile.readTree(smileBytes));
+        assertEquals(json.readTree(jsonBytes), cbor.readTree(cborBytes));
+    }
+}
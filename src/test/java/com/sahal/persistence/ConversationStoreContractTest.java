@@ -0,0 +1,233 @@
+package com.sahal.persistence;
+
+import com.sahal.entity.Conversation;
+import com.sahal.entity.Message;
+import com.sahal.entity.MessageRole;
+import com.sahal.entity.SummaryCheckpoint;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Behaviour every ConversationStore must have; each implementation runs it through a subclass
+ */
+abstract class ConversationStoreContractTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    protected abstract ConversationStore store();
+
+    @Test
+    void save_NewConversation_AssignsIdAndIsFoundBySession() {
+        // When
+        Conversation saved = store().save(new Conversation("session-1"));
+
+        // Then
+        assertNotNull(saved.getId());
+        Conversation found = store().findBySessionId("session-1").orElseThrow();
+        assertEquals(saved.getId(), found.getId());
+        assertEquals(saved.getId(), store().findById(saved.getId()).orElseThrow().getId());
+        assertEquals(saved.getId(), store().findViewBySessionId("session-1").orElseThrow().getId());
+        assertTrue(store().findBySessionId("session-2").isEmpty());
+    }
+
+    @Test
+    void save_DuplicateSession_ThrowsDataIntegrityViolation() {
+        // Given
+        store().save(new Conversation("session-1"));
+
+        // When / Then
+        assertThrows(DataIntegrityViolationException.class, () -> store().save(new Conversation("session-1")));
+    }
+
+    @Test
+    void save_SummaryAndArchiveState_AreStored() {
+        // Given
+        Conversation conversation = store().save(new Conversation("session-1"));
+
+        // When
+        conversation.setSummary("User asked about AI");
+        conversation.setArchived(true);
+        conversation.setArchivedAt(START);
+        store().save(conversation);
+
+        // Then
+        assertEquals("User asked about AI", store().findViewBySessionId("session-1").orElseThrow().getSummary());
+        assertTrue(store().findViewBySessionId("session-1").orElseThrow().isArchived());
+        assertEquals(START, store().findBySessionId("session-1").orElseThrow().getArchivedAt());
+    }
+
+    @Test
+    void appendMessage_AssignsIdsAndAdvancesVersionStamps() {
+        // Given
+        Conversation conversation = store().save(new Conversation("session-1"));
+        String stampBefore = store().findStampBySessionId("session-1").orElseThrow().toVersionStamp();
+        String listingBefore = store().getListingVersionStamp();
+
+        // When
+        List<Message> appended = appendMessages(conversation, 3);
+
+        // Then
+        List<Message> messages = store().findMessages(conversation.getId());
+        assertEquals(ids(appended), ids(messages));
+        assertEquals(List.of("Message 0", "Message 1", "Message 2"), messages.stream().map(Message::getContent).toList());
+        assertEquals(MessageRole.ASSISTANT, messages.get(1).getRole());
+        assertEquals("model-a", messages.get(1).getModelName());
+        assertEquals(START.plusSeconds(1), messages.get(1).getCreatedAt());
+        Long lastId = appended.get(2).getId();
+        assertEquals(lastId, store().findStampBySessionId("session-1").orElseThrow().getLastMessageId());
+        assertEquals(lastId, conversation.getLastMessageId());
+        assertNotEquals(stampBefore, store().findStampBySessionId("session-1").orElseThrow().toVersionStamp());
+        assertNotEquals(listingBefore, store().getListingVersionStamp());
+    }
+
+    @Test
+    void findMessagesAfter_ReturnsLaterMessagesOldestFirst() {
+        // Given
+        Conversation conversation = store().save(new Conversation("session-1"));
+        List<Message> appended = appendMessages(conversation, 5);
+
+        // When
+        List<Message> after = store().findMessagesAfter(conversation.getId(), appended.get(1).getId());
+        List<Message> latest = store().findLatestMessagesAfter(conversation.getId(), appended.get(0).getId(), 2);
+        List<Message> latestBounded = store().findLatestMessagesAfter(conversation.getId(), appended.get(3).getId(), 3);
+        List<Message> oldest = store().findOldestMessagesAfter(conversation.getId(), appended.get(0).getId(), 2);
+        List<Message> oldestBounded = store().findOldestMessagesAfter(conversation.getId(), appended.get(3).getId(), 3);
+
+        // Then
+        assertEquals(ids(appended.subList(2, 5)), ids(after));
+        assertEquals(ids(appended.subList(3, 5)), ids(latest));
+        assertEquals(ids(appended.subList(4, 5)), ids(latestBounded));
+        assertEquals(ids(appended.subList(1, 3)), ids(oldest));
+        assertEquals(ids(appended.subList(4, 5)), ids(oldestBounded));
+    }
+
+    @Test
+    void findPages_WalkHistoryInBothDirections() {
+        // Given
+        Conversation conversation = store().save(new Conversation("session-1"));
+        List<Message> appended = appendMessages(conversation, 5);
+        Long conversationId = conversation.getId();
+
+        // When
+        List<Message> newest = store().findPageBefore(conversationId, null, 2);
+        List<Message> older = store().findPageBefore(conversationId, appended.get(3).getId(), 2);
+        List<Message> newer = store().findPageAfter(conversationId, appended.get(1).getId(), 2);
+
+        // Then
+        assertEquals(List.of(appended.get(4).getId(), appended.get(3).getId()), ids(newest));
+        assertEquals(List.of(appended.get(2).getId(), appended.get(1).getId()), ids(older));
+        assertEquals(List.of(appended.get(2).getId(), appended.get(3).getId()), ids(newer));
+        assertTrue(store().findPageAfter(conversationId, appended.get(4).getId(), 2).isEmpty());
+        assertTrue(store().findPageBefore(conversationId, Long.MAX_VALUE, 2).isEmpty());
+    }
+
+    @Test
+    void deleteMessages_RemovesOnlyThoseMessages() {
+        // Given
+        Conversation conversation = store().save(new Conversation("session-1"));
+        Conversation other = store().save(new Conversation("session-2"));
+        appendMessages(conversation, 3);
+        List<Message> kept = appendMessages(other, 2);
+
+        // When
+        store().deleteMessages(conversation, store().findMessages(conversation.getId()));
+
+        // Then
+        assertTrue(store().findMessages(conversation.getId()).isEmpty());
+        assertEquals(ids(kept), ids(store().findMessages(other.getId())));
+        assertTrue(store().findBySessionId("session-1").isPresent());
+    }
+
+    @Test
+    void saveCheckpoint_LatestIsTheOneCoveringMostMessages() {
+        // Given
+        Conversation conversation = store().save(new Conversation("session-1"));
+        List<Message> appended = appendMessages(conversation, 4);
+        store().saveCheckpoint(new SummaryCheckpoint(conversation.getId(), appended.get(1).getId(), "First summary"));
+        SummaryCheckpoint second = store().saveCheckpoint(
+            new SummaryCheckpoint(conversation.getId(), appended.get(3).getId(), "Second summary"));
+
+        // When
+        second.setCoversUpToMessageId(appended.get(2).getId());
+        store().saveCheckpoint(second);
+
+        // Then
+        SummaryCheckpoint latest = store().findLatestCheckpoint(conversation.getId()).orElseThrow();
+        assertEquals("Second summary", latest.getSummary());
+        assertEquals(appended.get(2).getId(), latest.getCoversUpToMessageId());
+        assertEquals(2, store().findCheckpoints(conversation.getId()).size());
+        assertTrue(store().findLatestCheckpoint(conversation.getId() + 1000).isEmpty());
+    }
+
+    @Test
+    void delete_RemovesConversationWithMessagesAndCheckpoints() {
+        // Given
+        Conversation conversation = store().save(new Conversation("session-1"));
+        List<Message> appended = appendMessages(conversation, 2);
+        store().saveCheckpoint(new SummaryCheckpoint(conversation.getId(), appended.get(0).getId(), "Summary"));
+        Conversation other = store().save(new Conversation("session-2"));
+        appendMessages(other, 1);
+
+        // When
+        store().delete(conversation);
+
+        // Then
+        assertTrue(store().findBySessionId("session-1").isEmpty());
+        assertTrue(store().findMessages(conversation.getId()).isEmpty());
+        assertTrue(store().findLatestCheckpoint(conversation.getId()).isEmpty());
+        assertEquals(1, store().findMessages(other.getId()).size());
+        assertEquals(List.of("session-2"), store().findAll().stream().map(Conversation::getSessionId).toList());
+    }
+
+    @Test
+    void findIdleConversationIds_SkipsActiveAndArchivedConversations() {
+        // Given
+        LocalDateTime cutoff = START.plusDays(7);
+        Conversation idle = createdAt("idle", START);
+        appendMessages(idle, 2);
+        Conversation active = createdAt("active", START);
+        Message recent = new Message(MessageRole.USER, "Still here");
+        recent.setCreatedAt(cutoff.plusHours(1));
+        store().appendMessage(active, recent);
+        Conversation archived = createdAt("archived", START);
+        archived.setArchived(true);
+        store().save(archived);
+        Conversation young = createdAt("young", cutoff.plusHours(2));
+
+        // When
+        List<Long> candidates = store().findIdleConversationIds(cutoff, 0L, 10);
+
+        // Then
+        assertEquals(List.of(idle.getId()), candidates);
+        assertTrue(store().findIdleConversationIds(cutoff, idle.getId(), 10).isEmpty());
+        assertFalse(candidates.contains(young.getId()));
+    }
+
+    private Conversation createdAt(String sessionId, LocalDateTime createdAt) {
+        Conversation conversation = new Conversation(sessionId);
+        conversation.setCreatedAt(createdAt);
+        return store().save(conversation);
+    }
+
+    protected List<Message> appendMessages(Conversation conversation, int count) {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Message message = i % 2 == 0
+                    ? new Message(MessageRole.USER, "Message " + i)
+                    : new Message(MessageRole.ASSISTANT, "Message " + i, "model-a");
+            message.setCreatedAt(START.plusSeconds(i));
+            messages.add(store().appendMessage(conversation, message));
+        }
+        return messages;
+    }
+
+    protected static List<Long> ids(List<Message> messages) {
+        return messages.stream().map(Message::getId).toList();
+    }
+}
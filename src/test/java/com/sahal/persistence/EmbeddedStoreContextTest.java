@@ -0,0 +1,94 @@
+package com.sahal.persistence;
+
+import com.sahal.entity.Conversation;
+import com.sahal.entity.MessageRole;
+import com.sahal.service.ConversationService;
+import com.sahal.service.EvaluationJobService;
+import com.sahal.service.IdempotencyService;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The application boots with the embedded store and no database at all
+ */
+@SpringBootTest(properties = {"app.persistence.store=embedded", "app.warmup.enabled=false"})
+@AutoConfigureMockMvc
+class EmbeddedStoreContextTest {
+
+    @TempDir
+    static Path directory;
+
+    @DynamicPropertySource
+    static void directories(DynamicPropertyRegistry registry) {
+        registry.add("app.persistence.embedded.directory", () -> directory.resolve("store").toString());
+        registry.add("app.archive.directory", () -> directory.resolve("archive").toString());
+    }
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Autowired
+    private ConversationService conversationService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void contextLoads_WithoutDataSourceOrJpa() {
+        assertEquals(0, context.getBeanNamesForType(DataSource.class).length);
+        assertEquals(0, context.getBeanNamesForType(EntityManagerFactory.class).length);
+        assertEquals(0, context.getBeanNamesForType(EvaluationJobService.class).length);
+        assertInstanceOf(LogConversationStore.class, context.getBean(ConversationStore.class));
+    }
+
+    @Test
+    void conversation_StoredThroughTransactionalService_IsServedFromTheLog() throws Exception {
+        // Given
+        Conversation conversation = conversationService.getOrCreateConversation("embedded-session");
+        conversationService.addMessage(conversation, MessageRole.USER, "What is AI?", null);
+        conversationService.addMessage(conversation, MessageRole.ASSISTANT, "A field of computer science", "deepseek");
+
+        // When / Then
+        mockMvc.perform(get("/chat/history/embedded-session"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[1].content").value("A field of computer science"));
+    }
+
+    @Test
+    void idempotency_WithoutDatabase_ReplaysFromMemory() {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+        String hash = IdempotencyService.hashRequest("question", "all", "embedded-session");
+
+        // When
+        IdempotencyService.Result first = idempotencyService.execute("embedded-key", hash, () -> Map.of("answer", calls.incrementAndGet()));
+        IdempotencyService.Result second = idempotencyService.execute("embedded-key", hash, () -> Map.of("answer", calls.incrementAndGet()));
+
+        // Then
+        assertEquals(IdempotencyService.Status.EXECUTED, first.status());
+        assertEquals(IdempotencyService.Status.REPLAYED, second.status());
+        assertEquals(1, calls.get());
+    }
+}
@@ -0,0 +1,114 @@
+package com.sahal.persistence;
+
+import com.sahal.entity.Conversation;
+import com.sahal.entity.Message;
+import com.sahal.entity.MessageRole;
+import com.sahal.repository.MessageSearchHit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The contract and the native queries on a real PostgreSQL, with the schema built by the Flyway
+ * migrations from an empty database and the entity mappings validated against it.
+ */
+@DataJpaTest(properties = {
+    "spring.jpa.hibernate.ddl-auto=validate",
+    "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(JpaConversationStore.class)
+class JpaConversationStorePostgresTest extends ConversationStoreContractTest {
+
+    @Autowired
+    private JpaConversationStore store;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionStatus transaction;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        PostgresTestDatabase.register(registry);
+    }
+
+    // As in JpaConversationStoreTest, the inherited contract tests run in a transaction opened here
+    @BeforeEach
+    void beginTransaction() {
+        transaction = transactionManager.getTransaction(TransactionDefinition.withDefaults());
+    }
+
+    @AfterEach
+    void rollbackTransaction() {
+        transactionManager.rollback(transaction);
+    }
+
+    @Override
+    protected ConversationStore store() {
+        return store;
+    }
+
+    @Test
+    void search_RanksMatchesOnTheGeneratedVectorAndPagesByKeyset() {
+        // Given
+        Conversation conversation = store.save(new Conversation("session-1"));
+        store.appendMessage(conversation, new Message(MessageRole.USER, "How do neural networks learn?"));
+        store.appendMessage(conversation, new Message(MessageRole.ASSISTANT, "Networks of neurons adjust weights; neural networks learn by gradient descent.", "model-a"));
+        store.appendMessage(conversation, new Message(MessageRole.USER, "What about decision trees?"));
+
+        // When
+        List<MessageSearchHit> hits = store.search("neural network", Float.MAX_VALUE, Long.MAX_VALUE, 10);
+        List<MessageSearchHit> secondPage = store.search("neural network", hits.get(0).getRank(), hits.get(0).getId(), 10);
+        List<MessageSearchHit> excluded = store.search("neural -gradient", Float.MAX_VALUE, Long.MAX_VALUE, 10);
+
+        // Then
+        assertEquals(2, hits.size());
+        assertTrue(hits.get(0).getRank() >= hits.get(1).getRank());
+        assertTrue(hits.get(0).getSnippet().contains("<mark>neural</mark>"));
+        assertEquals("session-1", hits.get(0).getSessionId());
+        assertEquals(List.of(hits.get(1).getId()), secondPage.stream().map(MessageSearchHit::getId).toList());
+        assertEquals(1, excluded.size());
+        assertEquals("USER", excluded.get(0).getRole());
+    }
+
+    @Test
+    void search_MarkupInContent_IsEscapedAroundTheHighlights() {
+        // Given
+        Conversation conversation = store.save(new Conversation("session-1"));
+        store.appendMessage(conversation, new Message(MessageRole.USER, "Render <img src=x onerror=alert(1)> & explain neural networks"));
+
+        // When
+        List<MessageSearchHit> hits = store.search("neural", Float.MAX_VALUE, Long.MAX_VALUE, 10);
+
+        // Then
+        String snippet = hits.get(0).getSnippet();
+        assertFalse(snippet.contains("<img"));
+        assertTrue(snippet.contains("&lt;img"));
+        assertTrue(snippet.contains("&amp;"));
+        assertTrue(snippet.contains("<mark>neural</mark>"));
+    }
+
+    @Test
+    void tryClusterLock_HeldUntilTheTransactionEnds() {
+        // Given
+        Conversation conversation = store.save(new Conversation("session-1"));
+
+        // When / Then - the advisory lock is reentrant within the transaction holding it
+        assertTrue(store.tryClusterLock(conversation.getId()));
+        assertTrue(store.tryClusterLock(conversation.getId()));
+    }
+}
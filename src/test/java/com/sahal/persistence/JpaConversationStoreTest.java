@@ -0,0 +1,56 @@
+package com.sahal.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+
+/**
+ * The contract against the JPA mappings and queries, on H2 in PostgreSQL mode with the schema
+ * generated from the entities. Search, the advisory lock and the migrations are native PostgreSQL
+ * and are covered by JpaConversationStorePostgresTest.
+ */
+@DataJpaTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:store;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.show-sql=false",
+    "spring.flyway.enabled=false",
+    "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(JpaConversationStore.class)
+class JpaConversationStoreTest extends ConversationStoreContractTest {
+
+    @Autowired
+    private JpaConversationStore store;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionStatus transaction;
+
+    // The test transaction of @DataJpaTest does not cover test methods inherited from the contract,
+    // so each test runs in one opened here, the way ConversationService calls the store
+    @BeforeEach
+    void beginTransaction() {
+        transaction = transactionManager.getTransaction(TransactionDefinition.withDefaults());
+    }
+
+    @AfterEach
+    void rollbackTransaction() {
+        transactionManager.rollback(transaction);
+    }
+
+    @Override
+    protected ConversationStore store() {
+        return store;
+    }
+}
@@ -0,0 +1,216 @@
+package com.sahal.persistence;
+
+import com.sahal.entity.Conversation;
+import com.sahal.entity.Message;
+import com.sahal.entity.MessageRole;
+import com.sahal.entity.SummaryCheckpoint;
+import com.sahal.repository.MessageSearchHit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogConversationStoreTest extends ConversationStoreContractTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path directory;
+
+    private LogConversationStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        store = open();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        store.close();
+    }
+
+    @Override
+    protected ConversationStore store() {
+        return store;
+    }
+
+    @Test
+    void reopen_RebuildsIndexFromLog() throws IOException {
+        // Given
+        Conversation conversation = store.save(new Conversation("session-1"));
+        List<Message> appended = appendMessages(conversation, 4);
+        store.deleteMessages(conversation, appended.subList(0, 1));
+        conversation.setSummary("User asked about AI");
+        store.save(conversation);
+        store.saveCheckpoint(new SummaryCheckpoint(conversation.getId(), appended.get(2).getId(), "User asked about AI"));
+        Conversation deleted = store.save(new Conversation("session-2"));
+        appendMessages(deleted, 2);
+        store.delete(deleted);
+        String listingStamp = store.getListingVersionStamp();
+
+        // When
+        store.close();
+        store = open();
+
+        // Then
+        assertEquals(ids(appended.subList(1, 4)), ids(store.findMessages(conversation.getId())));
+        assertEquals("User asked about AI", store.findViewBySessionId("session-1").orElseThrow().getSummary());
+        assertEquals(appended.get(2).getId(), store.findLatestCheckpoint(conversation.getId()).orElseThrow().getCoversUpToMessageId());
+        assertTrue(store.findBySessionId("session-2").isEmpty());
+        assertEquals(listingStamp, store.getListingVersionStamp());
+        // New ids continue after the ones in the log
+        Message next = store.appendMessage(conversation, new Message(MessageRole.USER, "After restart"));
+        assertTrue(next.getId() > appended.get(3).getId());
+    }
+
+    @Test
+    void reopen_AfterTornWrite_KeepsRecordsBeforeIt() throws IOException {
+        // Given
+        Conversation conversation = store.save(new Conversation("session-1"));
+        List<Message> appended = appendMessages(conversation, 3);
+        store.close();
+        Path segment = segmentFiles().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            // A record header whose body never made it to disk
+            long end = endOfRecords(segment);
+            channel.write(ByteBuffer.allocate(5).putInt(200).put((byte) 2).flip(), end);
+        }
+
+        // When
+        store = open();
+        Message next = store.appendMessage(conversation, new Message(MessageRole.USER, "After crash"));
+        store.close();
+        store = open();
+
+        // Then
+        List<Long> expected = new java.util.ArrayList<>(ids(appended));
+        expected.add(next.getId());
+        assertEquals(expected, ids(store.findMessages(conversation.getId())));
+    }
+
+    @Test
+    void compact_RewritesSegmentsOfDeletedConversations() throws IOException {
+        // Given - enough messages to fill several segments, then most of them deleted
+        Conversation kept = store.save(new Conversation("kept"));
+        List<Message> keptMessages = appendMessages(kept, 3);
+        for (int i = 0; i < 6; i++) {
+            Conversation conversation = store.save(new Conversation("deleted-" + i));
+            appendLongMessages(conversation, 5);
+            store.delete(conversation);
+        }
+        int segmentsBefore = segmentFiles().size();
+
+        // When
+        store.compact();
+
+        // Then
+        assertTrue(segmentFiles().size() < segmentsBefore, "compaction should remove segments");
+        assertEquals(ids(keptMessages), ids(store.findMessages(kept.getId())));
+        store.close();
+        store = open();
+        assertEquals(ids(keptMessages), ids(store.findMessages(kept.getId())));
+        assertEquals(List.of("kept"), store.findAll().stream().map(Conversation::getSessionId).toList());
+    }
+
+    @Test
+    void compact_LiveRecordsMovedOutOfASegment_SurviveReopen() throws IOException {
+        // Given - the first segment holds a kept conversation among mostly deleted ones
+        Conversation kept = store.save(new Conversation("kept"));
+        List<Message> keptMessages = appendMessages(kept, 3);
+        store.saveCheckpoint(new SummaryCheckpoint(kept.getId(), keptMessages.get(1).getId(), "Kept summary"));
+        for (int i = 0; i < 6; i++) {
+            Conversation conversation = store.save(new Conversation("deleted-" + i));
+            appendLongMessages(conversation, 5);
+            store.delete(conversation);
+        }
+        Path firstSegment = segmentFiles().get(0);
+
+        // When
+        store.compact();
+        store.close();
+        store = open();
+
+        // Then - the kept records now live only in their copies
+        assertFalse(Files.exists(firstSegment), "the first segment should have been compacted");
+        assertEquals(ids(keptMessages), ids(store.findMessages(kept.getId())));
+        assertEquals("Kept summary", store.findLatestCheckpoint(kept.getId()).orElseThrow().getSummary());
+        assertEquals(keptMessages.get(1).getId(), store.findLatestCheckpoint(kept.getId()).orElseThrow().getCoversUpToMessageId());
+    }
+
+    @Test
+    void search_MatchesAllTermsByPrefixAndPagesByRank() {
+        // Given
+        Conversation conversation = store.save(new Conversation("session-1"));
+        store.appendMessage(conversation, new Message(MessageRole.USER, "How do neural networks learn?"));
+        store.appendMessage(conversation, new Message(MessageRole.ASSISTANT, "Networks of neurons adjust weights; neural networks learn by gradient descent.", "model-a"));
+        store.appendMessage(conversation, new Message(MessageRole.USER, "What about decision trees?"));
+
+        // When
+        List<MessageSearchHit> hits = store.search("neural network", Float.MAX_VALUE, Long.MAX_VALUE, 10);
+        List<MessageSearchHit> secondPage = store.search("neural network", hits.get(0).getRank(), hits.get(0).getId(), 10);
+        List<MessageSearchHit> excluded = store.search("neural -gradient", Float.MAX_VALUE, Long.MAX_VALUE, 10);
+
+        // Then
+        assertEquals(2, hits.size());
+        assertTrue(hits.get(0).getRank() >= hits.get(1).getRank());
+        assertTrue(hits.get(0).getSnippet().contains("<mark>neural</mark>"));
+        assertEquals("session-1", hits.get(0).getSessionId());
+        assertEquals(List.of(hits.get(1).getId()), secondPage.stream().map(MessageSearchHit::getId).toList());
+        assertEquals(1, excluded.size());
+        assertEquals("USER", excluded.get(0).getRole());
+    }
+
+    @Test
+    void search_MarkupInContent_IsEscapedAroundTheHighlights() {
+        // Given
+        Conversation conversation = store.save(new Conversation("session-1"));
+        store.appendMessage(conversation, new Message(MessageRole.USER, "Render <img src=x onerror=alert(1)> & explain neural networks"));
+
+        // When
+        List<MessageSearchHit> hits = store.search("neural", Float.MAX_VALUE, Long.MAX_VALUE, 10);
+
+        // Then
+        String snippet = hits.get(0).getSnippet();
+        assertFalse(snippet.contains("<img"));
+        assertTrue(snippet.contains("&lt;img"));
+        assertTrue(snippet.contains("&amp;"));
+        assertTrue(snippet.contains("<mark>neural</mark>"));
+    }
+
+    private LogConversationStore open() throws IOException {
+        return new LogConversationStore(directory, SEGMENT_SIZE, false, 0.5);
+    }
+
+    private void appendLongMessages(Conversation conversation, int count) {
+        for (int i = 0; i < count; i++) {
+            store.appendMessage(conversation, new Message(MessageRole.USER, "x".repeat(400)));
+        }
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("segment-")).sorted().toList();
+        }
+    }
+
+    private static long endOfRecords(Path segment) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+        int position = LogSegment.HEADER_SIZE;
+        int length;
+        while ((length = buffer.getInt(position)) != 0) {
+            position += length + LogSegment.RECORD_OVERHEAD;
+        }
+        return position;
+    }
+}
@@ -0,0 +1,38 @@
+package com.sahal.persistence;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.test.context.DynamicPropertyRegistry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * One embedded PostgreSQL for every test class that needs native PostgreSQL, started on first
+ * use and stopped when the JVM exits. Register it from a {@code @DynamicPropertySource}; the
+ * Flyway migrations build the schema once and later contexts find it up to date.
+ */
+public final class PostgresTestDatabase {
+
+    private static EmbeddedPostgres postgres;
+
+    private PostgresTestDatabase() {
+    }
+
+    public static void register(DynamicPropertyRegistry registry) {
+        EmbeddedPostgres database = start();
+        registry.add("spring.datasource.url", () -> database.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "");
+    }
+
+    private static synchronized EmbeddedPostgres start() {
+        if (postgres == null) {
+            try {
+                postgres = EmbeddedPostgres.start();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not start embedded PostgreSQL", e);
+            }
+        }
+        return postgres;
+    }
+}
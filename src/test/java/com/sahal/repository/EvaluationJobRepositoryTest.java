@@ -0,0 +1,99 @@
+package com.sahal.repository;
+
+import com.sahal.entity.EvaluationJob;
+import com.sahal.entity.EvaluationJobStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The job lease as the dispatchers of several nodes see it
+ */
+@DataJpaTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:jobs;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.show-sql=false",
+    "spring.flyway.enabled=false",
+    "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class EvaluationJobRepositoryTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 1, 1, 12, 0);
+    private static final List<EvaluationJobStatus> ACTIVE = List.of(EvaluationJobStatus.PENDING, EvaluationJobStatus.RUNNING);
+
+    @Autowired
+    private EvaluationJobRepository jobRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void claim_LiveLeaseOfAnotherNode_IsRefusedUntilItExpires() {
+        // Given
+        Long jobId = jobRepository.save(new EvaluationJob(List.of("prompt"), List.of("model"), 1)).getId();
+        assertEquals(1, jobRepository.claim(jobId, "node-a", NOW, NOW.plusSeconds(60)));
+
+        // When / Then - node-b only sees the job once node-a's lease has run out
+        assertEquals(List.of(), jobRepository.findClaimableJobIds(ACTIVE, NOW.plusSeconds(30)));
+        assertEquals(0, jobRepository.claim(jobId, "node-b", NOW.plusSeconds(30), NOW.plusSeconds(90)));
+        assertEquals(List.of(jobId), jobRepository.findClaimableJobIds(ACTIVE, NOW.plusSeconds(61)));
+        assertEquals(1, jobRepository.claim(jobId, "node-b", NOW.plusSeconds(61), NOW.plusSeconds(121)));
+
+        // node-a's next renewal fails, which stops its run
+        assertEquals(0, jobRepository.claim(jobId, "node-a", NOW.plusSeconds(62), NOW.plusSeconds(122)));
+        assertEquals(1, jobRepository.claim(jobId, "node-b", NOW.plusSeconds(62), NOW.plusSeconds(122)));
+    }
+
+    @Test
+    void finish_ReleasesTheLeaseAndTheJobIsNotClaimedAgain() {
+        // Given
+        Long jobId = jobRepository.save(new EvaluationJob(List.of("prompt"), List.of("model"), 1)).getId();
+        jobRepository.claim(jobId, "node-a", NOW, NOW.plusSeconds(60));
+
+        // When
+        int finished = jobRepository.finish(jobId, EvaluationJobStatus.COMPLETED, NOW.plusSeconds(10));
+
+        // Then
+        assertEquals(1, finished);
+        assertEquals(EvaluationJobStatus.COMPLETED, jobRepository.findStatusById(jobId));
+        assertEquals(List.of(), jobRepository.findClaimableJobIds(ACTIVE, NOW.plusSeconds(120)));
+        assertEquals(0, jobRepository.claim(jobId, "node-b", NOW.plusSeconds(120), NOW.plusSeconds(180)));
+    }
+
+    @Test
+    void cancel_KeepsConcurrentIncrementsAndLeavesFinishedJobsAlone() {
+        // Given
+        Long running = jobRepository.save(new EvaluationJob(List.of("prompt"), List.of("model-a", "model-b"), 1)).getId();
+        Long completed = jobRepository.save(new EvaluationJob(List.of("prompt"), List.of("model"), 1)).getId();
+        jobRepository.claim(running, "node-a", NOW, NOW.plusSeconds(60));
+        jobRepository.claim(completed, "node-a", NOW, NOW.plusSeconds(60));
+        jobRepository.finish(completed, EvaluationJobStatus.COMPLETED, NOW.plusSeconds(5));
+        jobRepository.recordTaskCompleted(running, true);
+
+        // When
+        int cancelledRunning = jobRepository.cancel(running, NOW.plusSeconds(10));
+        int cancelledCompleted = jobRepository.cancel(completed, NOW.plusSeconds(10));
+
+        // Then
+        assertEquals(1, cancelledRunning);
+        assertEquals(0, cancelledCompleted);
+        assertEquals(EvaluationJobStatus.CANCELLED, jobRepository.findStatusById(running));
+        assertEquals(EvaluationJobStatus.COMPLETED, jobRepository.findStatusById(completed));
+        assertEquals(0, jobRepository.finish(running, EvaluationJobStatus.COMPLETED, NOW.plusSeconds(20)));
+        entityManager.clear();
+        EvaluationJob job = jobRepository.findById(running).orElseThrow();
+        assertEquals(1, job.getCompletedTasks());
+        assertEquals(1, job.getFailedTasks());
+    }
+}
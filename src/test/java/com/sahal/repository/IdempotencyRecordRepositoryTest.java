@@ -0,0 +1,102 @@
+package com.sahal.repository;
+
+import com.sahal.entity.IdempotencyRecord;
+import com.sahal.persistence.PostgresTestDatabase;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The key claim is native PostgreSQL (INSERT ... ON CONFLICT), so it runs on the embedded database
+ */
+@DataJpaTest(properties = {
+    "spring.jpa.hibernate.ddl-auto=validate",
+    "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class IdempotencyRecordRepositoryTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    @Autowired
+    private IdempotencyRecordRepository recordRepository;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        PostgresTestDatabase.register(registry);
+    }
+
+    @Test
+    void claim_LiveKey_IsRefusedAndTheRowKeepsItsOwner() {
+        // Given
+        assertEquals(1, recordRepository.claim("key-1", "hash-a", NOW, NOW.plusMinutes(2), NOW.plusMinutes(60)));
+
+        // When - a second node claims the same key
+        int second = recordRepository.claim("key-1", "hash-b", NOW.plusMinutes(1), NOW.plusMinutes(3), NOW.plusMinutes(61));
+
+        // Then
+        assertEquals(0, second);
+        IdempotencyRecord record = recordRepository.findById("key-1").orElseThrow();
+        assertEquals("hash-a", record.getRequestHash());
+        assertFalse(record.isCompleted());
+    }
+
+    @Test
+    void claim_ExpiredKey_IsTakenOverAsANewClaim() {
+        // Given - a completed record whose TTL has passed but which the sweep has not removed yet
+        recordRepository.claim("key-2", "hash-a", NOW, NOW.plusMinutes(2), NOW.plusMinutes(60));
+        IdempotencyRecord stored = recordRepository.findById("key-2").orElseThrow();
+        stored.setCompleted(true);
+        stored.setResponse("{\"response\":\"old\"}");
+        recordRepository.saveAndFlush(stored);
+
+        // When
+        int claimed = recordRepository.claim("key-2", "hash-b", NOW.plusMinutes(61), NOW.plusMinutes(63), NOW.plusMinutes(121));
+
+        // Then
+        assertEquals(1, claimed);
+        IdempotencyRecord record = recordRepository.findById("key-2").orElseThrow();
+        assertEquals("hash-b", record.getRequestHash());
+        assertFalse(record.isCompleted());
+        assertNull(record.getResponse());
+        assertEquals(NOW.plusMinutes(121), record.getExpiresAt());
+    }
+
+    @Test
+    void claim_UnfinishedPastItsLease_IsTakenOverByARetry() {
+        // Given - the node running the first request died before completing it
+        recordRepository.claim("key-3", "hash-a", NOW, NOW.plusMinutes(2), NOW.plusMinutes(60));
+
+        // When
+        int beforeLapse = recordRepository.claim("key-3", "hash-a", NOW.plusMinutes(1), NOW.plusMinutes(3), NOW.plusMinutes(61));
+        int afterLapse = recordRepository.claim("key-3", "hash-a", NOW.plusMinutes(2), NOW.plusMinutes(4), NOW.plusMinutes(62));
+
+        // Then
+        assertEquals(0, beforeLapse);
+        assertEquals(1, afterLapse);
+        assertEquals(NOW.plusMinutes(4), recordRepository.findById("key-3").orElseThrow().getInProgressUntil());
+    }
+
+    @Test
+    void release_OnlyDropsTheClaimItMade() {
+        // Given - the first claim lapsed and a retry took the key over
+        recordRepository.claim("key-4", "hash-a", NOW, NOW.plusMinutes(2), NOW.plusMinutes(60));
+        recordRepository.claim("key-4", "hash-a", NOW.plusMinutes(3), NOW.plusMinutes(5), NOW.plusMinutes(63));
+
+        // When
+        int stale = recordRepository.release("key-4", NOW.plusMinutes(2));
+        int current = recordRepository.release("key-4", NOW.plusMinutes(5));
+
+        // Then
+        assertEquals(0, stale);
+        assertEquals(1, current);
+        assertTrue(recordRepository.findById("key-4").isEmpty());
+    }
+}
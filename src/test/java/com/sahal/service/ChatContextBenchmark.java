@@ -0,0 +1,98 @@
+package com.sahal.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sahal.entity.Message;
+import com.sahal.entity.MessageRole;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a context from stored messages and serializing it into the upstream request body,
+ * as {@link ChatContext} and as the per-message maps it replaced.
+ *
+ * Run with scripts/context-benchmark.sh; -prof gc reports the bytes allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatContextBenchmark {
+
+    private static final String MODEL = "deepseek/deepseek-chat-v3.1:free";
+
+    @Param({"50", "500"})
+    private int messages;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private List<Message> history;
+    private List<Map<String, String>> maps;
+    private ChatContext context;
+
+    @Setup
+    public void setUp() {
+        history = new ArrayList<>(messages);
+        for (int i = 0; i < messages; i++) {
+            String content = (i % 2 == 0 ? "Question " : "Answer ") + i + ": " + "lorem ipsum dolor sit amet ".repeat(12);
+            history.add(i % 2 == 0
+                    ? new Message(MessageRole.USER, content)
+                    : new Message(MessageRole.ASSISTANT, content, MODEL));
+        }
+        maps = buildMaps();
+        context = buildContext();
+    }
+
+    @Benchmark
+    public List<Map<String, String>> buildMaps() {
+        List<Map<String, String>> result = new ArrayList<>();
+        for (Message msg : history) {
+            result.add(Map.of("role", msg.getRole().name().toLowerCase(), "content", msg.getContent()));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public ChatContext buildContext() {
+        ChatContext.Builder result = ChatContext.builder(history.size());
+        for (Message msg : history) {
+            result.add(msg);
+        }
+        return result.build();
+    }
+
+    @Benchmark
+    public byte[] serializeMaps() throws Exception {
+        return objectMapper.writeValueAsBytes(requestBody(maps));
+    }
+
+    @Benchmark
+    public byte[] serializeContext() throws Exception {
+        return objectMapper.writeValueAsBytes(requestBody(context));
+    }
+
+    private static Map<String, Object> requestBody(Object messages) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", MODEL);
+        requestBody.put("messages", messages);
+        requestBody.put("max_tokens", 1000);
+        requestBody.put("temperature", 0.7);
+        requestBody.put("stream", false);
+        return requestBody;
+    }
+}
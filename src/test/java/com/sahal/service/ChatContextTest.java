@@ -0,0 +1,89 @@
+package com.sahal.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sahal.entity.Message;
+import com.sahal.entity.MessageRole;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatContextTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void serialize_WritesTheSameJsonAsMessageMaps() throws Exception {
+        // Given
+        ChatContext context = ChatContext.builder(3)
+            .add(MessageRole.SYSTEM, "Summary with \"quotes\"")
+            .add(new Message(MessageRole.ASSISTANT, "Hello ✓", "deepseek/deepseek-chat-v3.1:free"))
+            .add(MessageRole.USER, "What is ML?")
+            .build();
+        List<Map<String, String>> maps = new ArrayList<>();
+        for (ChatContext.Turn turn : context) {
+            Map<String, String> message = new LinkedHashMap<>();
+            message.put("role", turn.roleName());
+            message.put("content", turn.content());
+            maps.add(message);
+        }
+
+        // When
+        String json = objectMapper.writeValueAsString(Map.of("messages", context));
+
+        // Then
+        assertEquals(objectMapper.writeValueAsString(Map.of("messages", maps)), json);
+    }
+
+    @Test
+    void append_ToLongestContext_SharesTurnsAndLeavesEarlierContextsUnchanged() {
+        // Given
+        ChatContext first = ChatContext.of(MessageRole.USER, "What is AI?");
+
+        // When
+        ChatContext second = first.append(MessageRole.ASSISTANT, "A field of computer science");
+        ChatContext third = second.append(MessageRole.USER, "Tell me more");
+
+        // Then
+        assertEquals(1, first.size());
+        assertEquals(2, second.size());
+        assertEquals(first, third.prefix(1));
+        assertSame(second.get(1), third.get(1));
+        assertEquals("Tell me more", third.last().content());
+    }
+
+    @Test
+    void append_ToOlderContext_BranchesWithoutOverwritingTheNewerOne() {
+        // Given
+        ChatContext base = ChatContext.of(MessageRole.USER, "What is AI?");
+        ChatContext longer = base.append(MessageRole.ASSISTANT, "deepseek answer");
+
+        // When
+        ChatContext branch = base.append(MessageRole.ASSISTANT, "grok answer");
+
+        // Then
+        assertEquals("deepseek answer", longer.get(1).content());
+        assertEquals("grok answer", branch.get(1).content());
+        assertEquals(longer.prefix(1), branch.prefix(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> base.get(1));
+    }
+
+    @Test
+    void turnOf_Message_SharesModelNameInstances() {
+        // Given
+        Message first = new Message(MessageRole.ASSISTANT, "a", new String("x-ai/grok-4-fast:free"));
+        Message second = new Message(MessageRole.ASSISTANT, "b", new String("x-ai/grok-4-fast:free"));
+
+        // When
+        ChatContext.Turn firstTurn = ChatContext.Turn.of(first);
+        ChatContext.Turn secondTurn = ChatContext.Turn.of(second);
+
+        // Then
+        assertSame(firstTurn.modelName(), secondTurn.modelName());
+        assertSame(first.getContent(), firstTurn.content());
+    }
+}
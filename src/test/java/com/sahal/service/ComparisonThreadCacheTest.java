@@ -0,0 +1,123 @@
+package com.sahal.service;
+
+import com.sahal.entity.Message;
+import com.sahal.entity.MessageRole;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ComparisonThreadCacheTest {
+
+    private static final List<String> MODELS = List.of("deepseek", "grok");
+
+    @Test
+    void threads_PartitionUserMessagesAndEachModelsOwnReplies() {
+        // Given
+        ComparisonThreadCache cache = new ComparisonThreadCache(16, 1);
+        List<Message> history = List.of(
+            message(1, MessageRole.USER, "What is AI?", null),
+            message(2, MessageRole.ASSISTANT, "deepseek answer", "deepseek"),
+            message(3, MessageRole.ASSISTANT, "grok answer", "grok"),
+            message(4, MessageRole.ASSISTANT, "gemma answer", "gemma"),
+            message(5, MessageRole.USER, "Tell me more", null));
+
+        // When
+        Map<String, ChatContext> threads = cache.threads(7L, MODELS, afterId -> history);
+
+        // Then
+        assertEquals(List.of("What is AI?", "deepseek answer", "Tell me more"), contents(threads.get("deepseek")));
+        assertEquals(List.of("What is AI?", "grok answer", "Tell me more"), contents(threads.get("grok")));
+        assertEquals(MessageRole.ASSISTANT, threads.get("grok").get(1).role());
+        assertEquals("grok", threads.get("grok").get(1).modelName());
+        // User turns are shared between the threads
+        assertSame(threads.get("deepseek").get(0), threads.get("grok").get(0));
+    }
+
+    @Test
+    void threads_LaterTurn_OnlyReadsTheOverlapWindowAndNewMessages() {
+        // Given
+        ComparisonThreadCache cache = new ComparisonThreadCache(16, 1);
+        List<Long> reads = new ArrayList<>();
+        cache.threads(7L, MODELS, afterId -> {
+            reads.add(afterId);
+            return List.of(message(1, MessageRole.USER, "What is AI?", null),
+                           message(2, MessageRole.ASSISTANT, "deepseek answer", "deepseek"));
+        });
+
+        // When - the overlap window returns message 2 again
+        Map<String, ChatContext> threads = cache.threads(7L, MODELS, afterId -> {
+            reads.add(afterId);
+            return List.of(message(2, MessageRole.ASSISTANT, "deepseek answer", "deepseek"),
+                           message(3, MessageRole.USER, "Tell me more", null));
+        });
+
+        // Then
+        assertEquals(List.of(0L, 1L), reads);
+        assertEquals(List.of("What is AI?", "deepseek answer", "Tell me more"), contents(threads.get("deepseek")));
+        assertEquals(List.of("What is AI?", "Tell me more"), contents(threads.get("grok")));
+    }
+
+    @Test
+    void threads_MessageCommittedBelowTheLastOneSeen_RebuildsInIdOrder() {
+        // Given - message 3 was inserted before message 4 but committed after it
+        ComparisonThreadCache cache = new ComparisonThreadCache(16, 1);
+        List<Message> committed = new ArrayList<>(List.of(
+            message(1, MessageRole.USER, "What is AI?", null),
+            message(2, MessageRole.ASSISTANT, "deepseek answer", "deepseek"),
+            message(4, MessageRole.ASSISTANT, "grok answer", "grok")));
+        cache.threads(7L, MODELS, afterId -> after(committed, afterId));
+        committed.add(2, message(3, MessageRole.ASSISTANT, "second deepseek answer", "deepseek"));
+        committed.add(message(5, MessageRole.USER, "Tell me more", null));
+        List<Long> reads = new ArrayList<>();
+
+        // When
+        Map<String, ChatContext> threads = cache.threads(7L, MODELS, afterId -> {
+            reads.add(afterId);
+            return after(committed, afterId);
+        });
+
+        // Then
+        assertEquals(List.of(2L, 0L), reads);
+        assertEquals(List.of("What is AI?", "deepseek answer", "second deepseek answer", "Tell me more"),
+            contents(threads.get("deepseek")));
+        assertEquals(List.of("What is AI?", "grok answer", "Tell me more"), contents(threads.get("grok")));
+    }
+
+    @Test
+    void evict_RebuildsThreadsFromTheStart() {
+        // Given
+        ComparisonThreadCache cache = new ComparisonThreadCache(16, 1);
+        cache.threads(7L, MODELS, afterId -> List.of(message(1, MessageRole.USER, "What is AI?", null)));
+
+        // When
+        cache.evict(7L);
+        List<Long> reads = new ArrayList<>();
+        cache.threads(7L, MODELS, afterId -> {
+            reads.add(afterId);
+            return List.of();
+        });
+
+        // Then
+        assertEquals(List.of(0L), reads);
+    }
+
+    private static List<Message> after(List<Message> messages, long afterId) {
+        return messages.stream().filter(msg -> msg.getId() > afterId).toList();
+    }
+
+    private static Message message(long id, MessageRole role, String content, String model) {
+        Message message = new Message(role, content, model);
+        message.setId(id);
+        return message;
+    }
+
+    private static List<String> contents(ChatContext thread) {
+        List<String> contents = new ArrayList<>();
+        thread.forEach(turn -> contents.add(turn.content()));
+        return contents;
+    }
+}
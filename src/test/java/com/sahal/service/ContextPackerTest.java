@@ -0,0 +1,100 @@
+package com.sahal.service;
+
+import com.sahal.entity.MessageRole;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContextPackerTest {
+
+    private ContextPacker contextPacker;
+
+    @BeforeEach
+    void setUp() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("app.context.comparison.budgets.gemma", "50");
+        contextPacker = new ContextPacker(environment);
+        ReflectionTestUtils.setField(contextPacker, "defaultTokenBudget", 4000);
+        ReflectionTestUtils.setField(contextPacker, "verbatimTurns", 2);
+        ReflectionTestUtils.setField(contextPacker, "compactChars", 20);
+    }
+
+    @Test
+    void budgetFor_UsesModelOverrideOrDefault() {
+        assertEquals(50, contextPacker.budgetFor("gemma"));
+        assertEquals(4000, contextPacker.budgetFor("grok"));
+    }
+
+    @Test
+    void pack_WithinBudget_KeepsAllMessagesVerbatim() {
+        // Given
+        ChatContext messages = createUserMessages(3, 10);
+
+        // When
+        ContextPacker.PackedContext packed = contextPacker.pack(messages, 1000);
+
+        // Then
+        assertEquals(messages, packed.messages());
+        assertEquals(0, packed.droppedMessages());
+        assertEquals(0, packed.compactedMessages());
+        assertEquals(0, packed.trimmedTokens());
+    }
+
+    @Test
+    void pack_OverBudget_CompactsOlderAndKeepsNewestVerbatim() {
+        // Given - each message is ~29 tokens, compacted ~10 tokens
+        ChatContext messages = createUserMessages(4, 100);
+
+        // When
+        ContextPacker.PackedContext packed = contextPacker.pack(messages, 80);
+
+        // Then
+        assertEquals(4, packed.messages().size());
+        assertEquals(messages.get(3), packed.messages().get(3));
+        assertEquals(messages.get(2), packed.messages().get(2));
+        assertTrue(packed.messages().get(0).content().endsWith("…"));
+        assertEquals(2, packed.compactedMessages());
+        assertTrue(packed.estimatedTokens() <= 80);
+        assertTrue(packed.trimmedTokens() > 0);
+    }
+
+    @Test
+    void pack_FarOverBudget_DropsOldestMessages() {
+        // Given
+        ChatContext messages = createUserMessages(10, 100);
+
+        // When
+        ContextPacker.PackedContext packed = contextPacker.pack(messages, 60);
+
+        // Then
+        assertEquals(messages.get(9), packed.messages().get(packed.messages().size() - 1));
+        assertEquals(10, packed.messages().size() + packed.droppedMessages());
+        assertTrue(packed.droppedMessages() > 0);
+        assertTrue(packed.estimatedTokens() <= 60);
+    }
+
+    @Test
+    void pack_CurrentQuestionLargerThanBudget_IsStillSent() {
+        // Given
+        ChatContext messages = createUserMessages(2, 400);
+
+        // When
+        ContextPacker.PackedContext packed = contextPacker.pack(messages, 10);
+
+        // Then
+        assertEquals(1, packed.messages().size());
+        assertEquals(messages.get(1), packed.messages().get(0));
+        assertEquals(1, packed.droppedMessages());
+    }
+
+    private ChatContext createUserMessages(int count, int length) {
+        ChatContext.Builder messages = ChatContext.builder(count);
+        for (int i = 0; i < count; i++) {
+            messages.add(MessageRole.USER, String.valueOf((char) ('a' + i)).repeat(length));
+        }
+        return messages.build();
+    }
+}
@@ -0,0 +1,136 @@
+package com.sahal.service;
+
+import com.sahal.archive.ConversationArchiveStore;
+import com.sahal.datasource.ReadYourWrites;
+import com.sahal.dto.HistoryPageResponse;
+import com.sahal.dto.MessageDto;
+import com.sahal.entity.Message;
+import com.sahal.entity.MessageRole;
+import com.sahal.persistence.ConversationStore;
+import com.sahal.repository.ConversationView;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Cursor paging of GET /chat/history/{sessionId}/page in ConversationService
+ */
+@ExtendWith(MockitoExtension.class)
+class ConversationHistoryPageTest {
+
+    @Mock
+    private ConversationStore conversationStore;
+
+    @Mock
+    private ConversationArchiveStore archiveStore;
+
+    @Mock
+    private ReadYourWrites readYourWrites;
+
+    @InjectMocks
+    private ConversationService conversationService;
+
+    @Test
+    void getConversationHistoryPage_NoCursor_ReturnsNewestPageOldestFirst() {
+        // Given - the store returns the newest messages first, one more than the page
+        stubConversation(false);
+        when(conversationStore.findPageBefore(7L, null, 3)).thenReturn(newestFirst(messages(8, 3)));
+
+        // When
+        HistoryPageResponse page = conversationService.getConversationHistoryPage("session-1", null, null, 2);
+
+        // Then
+        assertEquals(List.of(9L, 10L), ids(page));
+        assertTrue(page.hasMore());
+        assertEquals(9L, page.nextBefore());
+        assertEquals(10L, page.nextAfter());
+        assertEquals("Summary", page.summary());
+    }
+
+    @Test
+    void getConversationHistoryPage_AfterCursorAtTheEnd_HasNoMoreAndKeepsCursors() {
+        // Given
+        stubConversation(false);
+        when(conversationStore.findPageAfter(7L, 10L, 3)).thenReturn(messages(11, 1));
+
+        // When
+        HistoryPageResponse page = conversationService.getConversationHistoryPage("session-1", null, 10L, 2);
+
+        // Then
+        assertEquals(List.of(11L), ids(page));
+        assertFalse(page.hasMore());
+        assertEquals(11L, page.nextBefore());
+        assertEquals(11L, page.nextAfter());
+    }
+
+    @Test
+    void getConversationHistoryPage_ArchivedConversation_PagesTheArchivedMessages() {
+        // Given
+        stubConversation(true);
+        when(archiveStore.read(7L)).thenReturn(Optional.of(messages(1, 5)));
+
+        // When
+        HistoryPageResponse page = conversationService.getConversationHistoryPage("session-1", 4L, null, 2);
+
+        // Then
+        assertEquals(List.of(2L, 3L), ids(page));
+        assertTrue(page.hasMore());
+        assertEquals(2L, page.nextBefore());
+        verify(conversationStore, never()).findPageBefore(anyLong(), any(), anyInt());
+    }
+
+    @Test
+    void getConversationHistoryPage_UnknownSession_ReturnsEmptyPageWithoutCreatingIt() {
+        // Given
+        when(conversationStore.findViewBySessionId("missing")).thenReturn(Optional.empty());
+
+        // When
+        HistoryPageResponse page = conversationService.getConversationHistoryPage("missing", null, 5L, 20);
+
+        // Then
+        assertEquals(List.of(), page.messages());
+        assertFalse(page.hasMore());
+        assertNull(page.nextBefore());
+        assertEquals(5L, page.nextAfter());
+        verify(conversationStore, never()).save(any());
+    }
+
+    private void stubConversation(boolean archived) {
+        ConversationView view = mock(ConversationView.class);
+        when(view.getId()).thenReturn(7L);
+        when(view.isArchived()).thenReturn(archived);
+        lenient().when(view.getSummary()).thenReturn("Summary");
+        when(conversationStore.findViewBySessionId("session-1")).thenReturn(Optional.of(view));
+    }
+
+    private static List<Message> messages(long firstId, int count) {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Message message = new Message(i % 2 == 0 ? MessageRole.USER : MessageRole.ASSISTANT, "Message " + (firstId + i));
+            message.setId(firstId + i);
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private static List<Message> newestFirst(List<Message> messages) {
+        List<Message> reversed = new ArrayList<>(messages);
+        Collections.reverse(reversed);
+        return reversed;
+    }
+
+    private static List<Long> ids(HistoryPageResponse page) {
+        return page.messages().stream().map(MessageDto::id).toList();
+    }
+}
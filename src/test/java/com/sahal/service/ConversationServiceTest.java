@@ -0,0 +1,340 @@
+package com.sahal.service;
+
+import com.sahal.archive.ConversationArchiveStore;
+import com.sahal.datasource.ReadYourWrites;
+import com.sahal.diagnostics.RequestDiagnostics;
+import com.sahal.entity.Conversation;
+import com.sahal.entity.Message;
+import com.sahal.entity.MessageRole;
+import com.sahal.entity.SummaryCheckpoint;
+import com.sahal.persistence.ConversationStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ConversationServiceTest {
+
+    @Mock
+    private ConversationStore conversationStore;
+
+    @Mock
+    private SummarizationService summarizationService;
+
+    @Mock
+    private ConversationArchiveStore archiveStore;
+
+    @Mock
+    private SessionLockService sessionLockService;
+
+    @Mock
+    private ComparisonThreadCache comparisonThreadCache;
+
+    @Mock
+    private ReadYourWrites readYourWrites;
+
+    @Spy
+    private RequestDiagnostics requestDiagnostics = new RequestDiagnostics(true, 2000, 16, true);
+
+    @InjectMocks
+    private ConversationService conversationService;
+
+    private Conversation conversation;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(conversationService, "maxContextMessages", 50);
+        ReflectionTestUtils.setField(conversationService, "maxBatchesPerRequest", 100);
+        conversation = new Conversation("session-1");
+        conversation.setId(7L);
+        when(conversationStore.findBySessionId("session-1")).thenReturn(Optional.of(conversation));
+    }
+
+    @Test
+    void getConversationContextForSingleModel_Summarizing_AddsCheckpointWithoutDeletingMessages() {
+        // Given - six messages after no checkpoint
+        List<Message> tail = createTestMessages(1, 6);
+        List<Message> recent = tail.subList(3, 6);
+        when(conversationStore.findLatestCheckpoint(7L)).thenReturn(Optional.empty());
+        when(conversationStore.findLatestMessagesAfter(7L, 0L, 50)).thenReturn(tail);
+        when(conversationStore.findOldestMessagesAfter(7L, 0L, 50)).thenReturn(tail);
+        when(conversationStore.findOldestMessagesAfter(7L, 3L, 50)).thenReturn(recent);
+        when(conversationStore.findLatestMessagesAfter(7L, 3L, 50)).thenReturn(recent);
+        when(summarizationService.shouldSummarize(tail)).thenReturn(true);
+        when(summarizationService.shouldSummarize(recent)).thenReturn(false);
+        when(sessionLockService.tryLock("session-1")).thenReturn(new ReentrantLock());
+        when(sessionLockService.tryClusterLock(7L)).thenReturn(true);
+        when(summarizationService.summarizeConversation(isNull(), anyList()))
+                .thenReturn(new SummarizationService.SummarizationResult("User asked about AI", recent));
+
+        // When
+        conversationService.getConversationContextForSingleModel("session-1", "And now?");
+
+        // Then
+        ArgumentCaptor<SummaryCheckpoint> checkpoint = ArgumentCaptor.forClass(SummaryCheckpoint.class);
+        verify(conversationStore).saveCheckpoint(checkpoint.capture());
+        assertEquals(7L, checkpoint.getValue().getConversationId());
+        assertEquals(3L, checkpoint.getValue().getCoversUpToMessageId());
+        assertEquals("User asked about AI", checkpoint.getValue().getSummary());
+        assertEquals("User asked about AI", conversation.getSummary());
+        verify(summarizationService).buildContextWithSummary("User asked about AI", recent, "And now?");
+        verify(conversationStore, never()).deleteMessages(any(), anyList());
+        verify(conversationStore, never()).delete(any());
+    }
+
+    @Test
+    void getConversationContextForSingleModel_BacklogLongerThanContext_SummarizesOldestFirstInBatches() {
+        // Given - 120 unsummarized messages after the checkpoint, more than one context holds
+        ReflectionTestUtils.setField(conversationService, "maxContextMessages", 4);
+        SummaryCheckpoint checkpoint = new SummaryCheckpoint(7L, 10L, "Earlier summary");
+        List<Message> backlog = createTestMessages(11, 120);
+        when(conversationStore.findLatestCheckpoint(7L)).thenReturn(Optional.of(checkpoint));
+        when(conversationStore.findLatestMessagesAfter(eq(7L), anyLong(), eq(4))).thenAnswer(invocation -> {
+            long after = invocation.getArgument(1);
+            List<Message> later = backlog.stream().filter(msg -> msg.getId() > after).toList();
+            return later.subList(Math.max(0, later.size() - 4), later.size());
+        });
+        when(conversationStore.findOldestMessagesAfter(eq(7L), anyLong(), eq(4))).thenAnswer(invocation -> {
+            long after = invocation.getArgument(1);
+            return backlog.stream().filter(msg -> msg.getId() > after).limit(4).toList();
+        });
+        // Summarize whenever a full batch follows the watermark, keeping the last message of each batch
+        when(summarizationService.shouldSummarize(anyList())).thenAnswer(invocation -> invocation.<List<?>>getArgument(0).size() >= 4);
+        when(summarizationService.summarizeConversation(anyString(), anyList())).thenAnswer(invocation -> {
+            List<Message> batch = invocation.getArgument(1);
+            return new SummarizationService.SummarizationResult(
+                "up to " + batch.get(batch.size() - 2).getId(), batch.subList(batch.size() - 1, batch.size()));
+        });
+        when(sessionLockService.tryLock("session-1")).thenReturn(new ReentrantLock());
+        when(sessionLockService.tryClusterLock(7L)).thenReturn(true);
+
+        // When
+        conversationService.getConversationContextForSingleModel("session-1", "And now?");
+
+        // Then - every batch starts right after the previous watermark, so no message is skipped
+        ArgumentCaptor<SummaryCheckpoint> checkpoints = ArgumentCaptor.forClass(SummaryCheckpoint.class);
+        verify(conversationStore, atLeastOnce()).saveCheckpoint(checkpoints.capture());
+        long previous = 10L;
+        for (SummaryCheckpoint saved : checkpoints.getAllValues()) {
+            assertEquals(previous + 3, saved.getCoversUpToMessageId());
+            assertEquals("up to " + saved.getCoversUpToMessageId(), saved.getSummary());
+            previous = saved.getCoversUpToMessageId();
+        }
+        assertEquals(127L, previous);
+        verify(summarizationService).summarizeConversation(eq("Earlier summary"), eq(backlog.subList(0, 4)));
+        assertEquals("up to 127", conversation.getSummary());
+        verify(conversationStore).save(conversation);
+        verify(summarizationService).buildContextWithSummary("up to 127", backlog.subList(117, 120), "And now?");
+    }
+
+    @Test
+    void getConversationContextForSingleModel_BacklogOverBatchCap_ContinuesFromTheWatermarkOnLaterTurns() {
+        // Given - 40 unsummarized messages, at most two summarization calls per request
+        ReflectionTestUtils.setField(conversationService, "maxContextMessages", 4);
+        ReflectionTestUtils.setField(conversationService, "maxBatchesPerRequest", 2);
+        List<Message> backlog = createTestMessages(1, 40);
+        List<SummaryCheckpoint> saved = new ArrayList<>();
+        when(conversationStore.findLatestCheckpoint(7L)).thenAnswer(invocation ->
+                saved.isEmpty() ? Optional.empty() : Optional.of(saved.get(saved.size() - 1)));
+        when(conversationStore.saveCheckpoint(any())).thenAnswer(invocation -> {
+            saved.add(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+        when(conversationStore.findLatestMessagesAfter(eq(7L), anyLong(), eq(4))).thenAnswer(invocation -> {
+            long after = invocation.getArgument(1);
+            List<Message> later = backlog.stream().filter(msg -> msg.getId() > after).toList();
+            return later.subList(Math.max(0, later.size() - 4), later.size());
+        });
+        when(conversationStore.findOldestMessagesAfter(eq(7L), anyLong(), eq(4))).thenAnswer(invocation -> {
+            long after = invocation.getArgument(1);
+            return backlog.stream().filter(msg -> msg.getId() > after).limit(4).toList();
+        });
+        when(summarizationService.shouldSummarize(anyList())).thenAnswer(invocation -> invocation.<List<?>>getArgument(0).size() >= 4);
+        when(summarizationService.summarizeConversation(any(), anyList())).thenAnswer(invocation -> {
+            List<Message> batch = invocation.getArgument(1);
+            return new SummarizationService.SummarizationResult(
+                "up to " + batch.get(batch.size() - 2).getId(), batch.subList(batch.size() - 1, batch.size()));
+        });
+        when(sessionLockService.tryLock("session-1")).thenAnswer(invocation -> new ReentrantLock());
+        when(sessionLockService.tryClusterLock(7L)).thenReturn(true);
+
+        // When
+        conversationService.getConversationContextForSingleModel("session-1", "First turn");
+        int afterFirstTurn = saved.size();
+        conversationService.getConversationContextForSingleModel("session-1", "Second turn");
+
+        // Then - each turn stops at the cap and the next one starts at the saved watermark
+        assertEquals(2, afterFirstTurn);
+        assertEquals(4, saved.size());
+        verify(summarizationService, times(4)).summarizeConversation(any(), anyList());
+        assertEquals(List.of(3L, 6L, 9L, 12L), saved.stream().map(SummaryCheckpoint::getCoversUpToMessageId).toList());
+        verify(summarizationService).buildContextWithSummary("up to 12", backlog.subList(36, 40), "Second turn");
+    }
+
+    @Test
+    void getConversationContextForSingleModel_BelowThreshold_UsesCheckpointAndMessagesAfterIt() {
+        // Given
+        SummaryCheckpoint checkpoint = new SummaryCheckpoint(7L, 10L, "Earlier summary");
+        List<Message> tail = createTestMessages(11, 2);
+        when(conversationStore.findLatestCheckpoint(7L)).thenReturn(Optional.of(checkpoint));
+        when(conversationStore.findLatestMessagesAfter(7L, 10L, 50)).thenReturn(tail);
+        when(summarizationService.shouldSummarize(anyList())).thenReturn(false);
+        ChatContext expected = ChatContext.of(MessageRole.USER, "And now?");
+        when(summarizationService.buildContextWithSummary("Earlier summary", tail, "And now?")).thenReturn(expected);
+
+        // When
+        ChatContext context = conversationService.getConversationContextForSingleModel("session-1", "And now?");
+
+        // Then
+        assertSame(expected, context);
+        verify(summarizationService, never()).summarizeConversation(any(), anyList());
+        verify(conversationStore, never()).saveCheckpoint(any());
+    }
+
+    @Test
+    void getConversationContextForSingleModel_SummarizationRunningOnThisNode_AnswersFromCurrentState() {
+        // Given
+        List<Message> tail = createTestMessages(1, 6);
+        when(conversationStore.findLatestCheckpoint(7L)).thenReturn(Optional.empty());
+        when(conversationStore.findLatestMessagesAfter(7L, 0L, 50)).thenReturn(tail);
+        when(summarizationService.shouldSummarize(anyList())).thenReturn(true);
+        when(sessionLockService.tryLock("session-1")).thenReturn(null);
+
+        // When
+        conversationService.getConversationContextForSingleModel("session-1", "And now?");
+
+        // Then
+        verify(summarizationService).buildContextWithSummary(null, tail, "And now?");
+        verify(sessionLockService, never()).tryClusterLock(anyLong());
+        verify(summarizationService, never()).summarizeConversation(any(), anyList());
+        verify(conversationStore, never()).saveCheckpoint(any());
+    }
+
+    @Test
+    void getConversationContextForSingleModel_SummarizationRunningOnAnotherNode_ReleasesLocalLock() {
+        // Given
+        List<Message> tail = createTestMessages(1, 6);
+        ReentrantLock sessionLock = new ReentrantLock();
+        when(conversationStore.findLatestCheckpoint(7L)).thenReturn(Optional.empty());
+        when(conversationStore.findLatestMessagesAfter(7L, 0L, 50)).thenReturn(tail);
+        when(summarizationService.shouldSummarize(anyList())).thenReturn(true);
+        when(sessionLockService.tryLock("session-1")).thenAnswer(invocation -> {
+            sessionLock.lock();
+            return sessionLock;
+        });
+        when(sessionLockService.tryClusterLock(7L)).thenReturn(false);
+
+        // When
+        conversationService.getConversationContextForSingleModel("session-1", "And now?");
+
+        // Then
+        verify(summarizationService).buildContextWithSummary(null, tail, "And now?");
+        verify(summarizationService, never()).summarizeConversation(any(), anyList());
+        assertFalse(sessionLock.isLocked());
+    }
+
+    @Test
+    void getConversationContextForSingleModel_CheckpointAddedWhileWaitingForLock_DoesNotSummarizeAgain() {
+        // Given - a concurrent request summarized between the first read and taking the lock
+        List<Message> tail = createTestMessages(1, 6);
+        SummaryCheckpoint fresh = new SummaryCheckpoint(7L, 4L, "Fresh summary");
+        List<Message> freshTail = tail.subList(4, 6);
+        when(conversationStore.findLatestCheckpoint(7L)).thenReturn(Optional.empty()).thenReturn(Optional.of(fresh));
+        when(conversationStore.findLatestMessagesAfter(7L, 0L, 50)).thenReturn(tail);
+        when(conversationStore.findLatestMessagesAfter(7L, 4L, 50)).thenReturn(freshTail);
+        when(summarizationService.shouldSummarize(tail)).thenReturn(true);
+        when(summarizationService.shouldSummarize(freshTail)).thenReturn(false);
+        when(sessionLockService.tryLock("session-1")).thenReturn(new ReentrantLock());
+        when(sessionLockService.tryClusterLock(7L)).thenReturn(true);
+
+        // When
+        conversationService.getConversationContextForSingleModel("session-1", "And now?");
+
+        // Then
+        verify(summarizationService).buildContextWithSummary("Fresh summary", freshTail, "And now?");
+        verify(summarizationService, never()).summarizeConversation(any(), anyList());
+        verify(conversationStore, never()).saveCheckpoint(any());
+    }
+
+    @Test
+    void deleteConversation_RemovesArchiveRecordOnlyAfterCommit() {
+        // Given
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // When
+            conversationService.deleteConversation("session-1");
+
+            // Then - nothing is removed while the transaction may still roll back
+            verify(conversationStore).delete(conversation);
+            verify(archiveStore, never()).remove(anyLong());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            verify(archiveStore).remove(7L);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void getOrCreateConversation_Archived_RestoresAndRemovesArchiveRecordAfterCommit() {
+        // Given
+        conversation.setArchived(true);
+        Message archived = new Message(MessageRole.USER, "Archived question");
+        archived.setId(3L);
+        when(archiveStore.read(7L)).thenReturn(Optional.of(List.of(archived)));
+        when(conversationStore.findCheckpoints(7L)).thenReturn(List.of());
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // When
+            conversationService.getOrCreateConversation("session-1");
+
+            // Then
+            verify(conversationStore).appendMessage(eq(conversation), any(Message.class));
+            assertFalse(conversation.isArchived());
+            verify(archiveStore, never()).remove(anyLong());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            verify(archiveStore).remove(7L);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void getOrCreateConversation_ArchivedOnAnotherNode_FailsAndLeavesConversationArchived() {
+        // Given - the archive record is in another node's directory
+        conversation.setArchived(true);
+        when(archiveStore.read(7L)).thenReturn(Optional.empty());
+
+        // When / Then
+        assertThrows(IllegalStateException.class, () -> conversationService.getOrCreateConversation("session-1"));
+        assertTrue(conversation.isArchived());
+        verify(conversationStore, never()).appendMessage(any(), any());
+        verify(conversationStore, never()).save(conversation);
+    }
+
+    private List<Message> createTestMessages(long firstId, int count) {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Message message = new Message(i % 2 == 0 ? MessageRole.USER : MessageRole.ASSISTANT, "Message " + (firstId + i));
+            message.setId(firstId + i);
+            messages.add(message);
+        }
+        return messages;
+    }
+}
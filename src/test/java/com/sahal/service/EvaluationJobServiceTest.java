@@ -0,0 +1,125 @@
+package com.sahal.service;
+
+import com.sahal.entity.EvaluationJob;
+import com.sahal.entity.EvaluationJobStatus;
+import com.sahal.entity.EvaluationResult;
+import com.sahal.entity.MessageRole;
+import com.sahal.repository.EvaluationJobRepository;
+import com.sahal.repository.EvaluationResultRepository;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class EvaluationJobServiceTest {
+
+    private static final String MODEL_A = "model-a";
+    private static final String MODEL_B = "model-b";
+
+    @Mock
+    private EvaluationJobRepository jobRepository;
+
+    @Mock
+    private EvaluationResultRepository resultRepository;
+
+    @Mock
+    private ModelCallService modelCallService;
+
+    private EvaluationJobService evaluationJobService;
+
+    @BeforeEach
+    void setUp() {
+        evaluationJobService = new EvaluationJobService(jobRepository, resultRepository, modelCallService, ObservationRegistry.NOOP);
+        ReflectionTestUtils.setField(evaluationJobService, "leaseSeconds", 60);
+        ReflectionTestUtils.setField(evaluationJobService, "rateLimitPerMinute", 600_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        evaluationJobService.shutdown();
+    }
+
+    @Test
+    void dispatchJobs_ExpiredLeaseOfAnotherNode_TakesOverAndResumesFromCheckpoint() throws Exception {
+        // Given - a job the previous node got half way through before its lease ran out
+        EvaluationJob job = job(List.of("first prompt", "second prompt"), List.of(MODEL_A, MODEL_B), 2);
+        when(jobRepository.findClaimableJobIds(anyList(), any())).thenReturn(List.of(1L));
+        when(jobRepository.claim(eq(1L), anyString(), any(), any())).thenReturn(1);
+        when(jobRepository.findById(1L)).thenReturn(Optional.of(job));
+        when(resultRepository.findCompletedTasks(1L)).thenReturn(List.of(new Object[]{0, MODEL_A}, new Object[]{0, MODEL_B}));
+        when(modelCallService.callModel(anyString(), any(ChatContext.class))).thenReturn("answer");
+
+        // When
+        evaluationJobService.dispatchJobs();
+
+        // Then
+        verify(jobRepository, timeout(5000)).finish(eq(1L), eq(EvaluationJobStatus.COMPLETED), any());
+        ChatContext secondPrompt = ChatContext.of(MessageRole.USER, "second prompt");
+        verify(modelCallService).callModel(MODEL_A, secondPrompt);
+        verify(modelCallService).callModel(MODEL_B, secondPrompt);
+        verify(modelCallService, times(2)).callModel(anyString(), any(ChatContext.class));
+        verify(resultRepository, times(2)).save(any(EvaluationResult.class));
+    }
+
+    @Test
+    void dispatchJobs_LeaseLostOnRenewal_StopsBeforeTheRemainingTasks() throws Exception {
+        // Given - one task at a time, the first one in flight when the lease is lost
+        EvaluationJob job = job(List.of("prompt"), List.of(MODEL_A, MODEL_B), 1);
+        when(jobRepository.findClaimableJobIds(anyList(), any())).thenReturn(List.of(1L)).thenReturn(List.of());
+        when(jobRepository.claim(eq(1L), anyString(), any(), any())).thenReturn(1, 0);
+        when(jobRepository.findById(1L)).thenReturn(Optional.of(job));
+        when(resultRepository.findCompletedTasks(1L)).thenReturn(List.of());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(modelCallService.callModel(eq(MODEL_A), any(ChatContext.class))).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return "answer";
+        });
+        evaluationJobService.dispatchJobs();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // When - the renewal finds another node holding the lease
+        evaluationJobService.dispatchJobs();
+        release.countDown();
+
+        // Then
+        awaitNoRunningJobs();
+        verify(jobRepository).recordTaskCompleted(1L, false);
+        verify(modelCallService, never()).callModel(eq(MODEL_B), any(ChatContext.class));
+        verify(jobRepository, never()).finish(anyLong(), any(), any());
+    }
+
+    private static EvaluationJob job(List<String> prompts, List<String> models, int concurrency) {
+        EvaluationJob job = new EvaluationJob(prompts, models, concurrency);
+        job.setId(1L);
+        return job;
+    }
+
+    private void awaitNoRunningJobs() throws InterruptedException {
+        Map<?, ?> runningJobs = (Map<?, ?>) ReflectionTestUtils.getField(evaluationJobService, "runningJobs");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!runningJobs.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(runningJobs.isEmpty());
+    }
+}
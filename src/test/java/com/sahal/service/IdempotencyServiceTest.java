@@ -0,0 +1,184 @@
+package com.sahal.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sahal.dto.ErrorResponse;
+import com.sahal.entity.IdempotencyRecord;
+import com.sahal.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class IdempotencyServiceTest {
+
+    @Mock
+    private IdempotencyRecordRepository recordRepository;
+
+    private IdempotencyService idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyService(Optional.of(recordRepository), new ObjectMapper());
+        ReflectionTestUtils.setField(idempotencyService, "ttlMinutes", 60L);
+        ReflectionTestUtils.setField(idempotencyService, "inProgressLeaseSeconds", 120L);
+        ReflectionTestUtils.setField(idempotencyService, "maxEntries", 100);
+        ReflectionTestUtils.setField(idempotencyService, "waitTimeoutMs", 5000L);
+        when(recordRepository.findById(anyString())).thenReturn(Optional.empty());
+        when(recordRepository.claim(anyString(), anyString(), any(), any(), any())).thenReturn(1);
+    }
+
+    @Test
+    void execute_SameKeyTwice_RunsActionOnceAndReplays() {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+        String hash = IdempotencyService.hashRequest("question", "all", null);
+
+        // When
+        IdempotencyService.Result first = idempotencyService.execute("key-1", hash, () -> Map.of("response", "answer " + calls.incrementAndGet()));
+        IdempotencyService.Result second = idempotencyService.execute("key-1", hash, () -> Map.of("response", "answer " + calls.incrementAndGet()));
+
+        // Then
+        assertEquals(IdempotencyService.Status.EXECUTED, first.status());
+        assertEquals(IdempotencyService.Status.REPLAYED, second.status());
+        assertEquals(first.response(), second.response());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void execute_ConcurrentRetry_WaitsForInFlightResult() throws Exception {
+        // Given
+        String hash = IdempotencyService.hashRequest("question", "grok", "session");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Thread firstRequest = new Thread(() -> idempotencyService.execute("key-2", hash, () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Map.of("response", "slow answer");
+        }));
+        firstRequest.start();
+        started.await();
+
+        // When
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            release.countDown();
+        });
+        releaser.start();
+        IdempotencyService.Result retry = idempotencyService.execute("key-2", hash, () -> Map.of("response", "duplicate"));
+        firstRequest.join();
+
+        // Then
+        assertEquals(IdempotencyService.Status.REPLAYED, retry.status());
+        assertEquals("slow answer", ((Map<?, ?>) retry.response()).get("response"));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void execute_SameKeyDifferentRequest_ReturnsMismatch() {
+        // Given
+        idempotencyService.execute("key-3", IdempotencyService.hashRequest("first"), () -> Map.of("response", "ok"));
+
+        // When
+        IdempotencyService.Result result = idempotencyService.execute("key-3", IdempotencyService.hashRequest("second"), () -> Map.of("response", "ok"));
+
+        // Then
+        assertEquals(IdempotencyService.Status.MISMATCH, result.status());
+    }
+
+    @Test
+    void execute_ErrorResponse_IsNotStoredAndRetryRunsAgain() {
+        // Given
+        String hash = IdempotencyService.hashRequest("question");
+        AtomicInteger calls = new AtomicInteger();
+        idempotencyService.execute("key-4", hash, () -> {
+            calls.incrementAndGet();
+            return new ErrorResponse("upstream failed");
+        });
+
+        // When
+        IdempotencyService.Result retry = idempotencyService.execute("key-4", hash, () -> {
+            calls.incrementAndGet();
+            return Map.of("response", "ok");
+        });
+
+        // Then
+        assertEquals(IdempotencyService.Status.EXECUTED, retry.status());
+        assertEquals(2, calls.get());
+        verify(recordRepository).release(eq("key-4"), any());
+    }
+
+    @Test
+    void execute_KeyCompletedOnAnotherNode_ReplaysStoredResponse() {
+        // Given
+        String hash = IdempotencyService.hashRequest("question");
+        IdempotencyRecord record = new IdempotencyRecord("key-5", hash, LocalDateTime.now().plusMinutes(5));
+        record.setCompleted(true);
+        record.setResponse("{\"response\":\"stored\"}");
+        when(recordRepository.claim(eq("key-5"), anyString(), any(), any(), any())).thenReturn(0);
+        when(recordRepository.findById("key-5")).thenReturn(Optional.of(record));
+
+        // When
+        IdempotencyService.Result result = idempotencyService.execute("key-5", hash, () -> Map.of("response", "fresh"));
+
+        // Then
+        assertEquals(IdempotencyService.Status.REPLAYED, result.status());
+        assertEquals("stored", ((Map<?, ?>) result.response()).get("response"));
+    }
+
+    @Test
+    void execute_KeyReleasedBetweenClaimAndRead_ReturnsInProgressWithoutRunning() {
+        // Given - another node's claim wins, then its request fails and deletes the row
+        String hash = IdempotencyService.hashRequest("question");
+        when(recordRepository.claim(eq("key-6"), anyString(), any(), any(), any())).thenReturn(0);
+        AtomicInteger calls = new AtomicInteger();
+
+        // When
+        IdempotencyService.Result result = idempotencyService.execute("key-6", hash, () -> Map.of("response", "answer " + calls.incrementAndGet()));
+
+        // Then
+        assertEquals(IdempotencyService.Status.IN_PROGRESS, result.status());
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    void execute_ActionThrows_ReleasesTheClaimSoARetryRunsAgain() {
+        // Given
+        String hash = IdempotencyService.hashRequest("question");
+        assertThrows(IllegalStateException.class, () -> idempotencyService.execute("key-7", hash, () -> {
+            throw new IllegalStateException("database down");
+        }));
+
+        // When
+        IdempotencyService.Result retry = idempotencyService.execute("key-7", hash, () -> Map.of("response", "ok"));
+
+        // Then
+        assertEquals(IdempotencyService.Status.EXECUTED, retry.status());
+        verify(recordRepository).release(eq("key-7"), any());
+    }
+}
@@ -0,0 +1,62 @@
+package com.sahal.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelRateLimiterTest {
+
+    private static final long INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void reserve_Burst_SpacesCallsByTheInterval() {
+        // Given
+        ModelRateLimiter limiter = new ModelRateLimiter(60, clock::get);
+
+        // When
+        long first = limiter.reserve();
+        long second = limiter.reserve();
+        long third = limiter.reserve();
+
+        // Then
+        assertEquals(0, first);
+        assertEquals(INTERVAL, second);
+        assertEquals(2 * INTERVAL, third);
+    }
+
+    @Test
+    void reserve_AfterTheReservedSlotsPass_RefillsOneSlotPerInterval() {
+        // Given
+        ModelRateLimiter limiter = new ModelRateLimiter(60, clock::get);
+        limiter.reserve();
+        limiter.reserve();
+
+        // When - half an interval after the second slot
+        clock.addAndGet(INTERVAL + INTERVAL / 2);
+        long wait = limiter.reserve();
+
+        // Then
+        assertEquals(INTERVAL / 2, wait);
+    }
+
+    @Test
+    void reserve_AfterLongIdle_DoesNotBankSlots() {
+        // Given
+        ModelRateLimiter limiter = new ModelRateLimiter(60, clock::get);
+        limiter.reserve();
+
+        // When - idle for ten intervals
+        clock.addAndGet(10 * INTERVAL);
+        long first = limiter.reserve();
+        long second = limiter.reserve();
+
+        // Then
+        assertEquals(0, first);
+        assertEquals(INTERVAL, second);
+    }
+}
@@ -0,0 +1,103 @@
+package com.sahal.service;
+
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelRouterTest {
+
+    private static final String DEEPSEEK = ModelCallService.FREE_MODELS.get(0);
+    private static final String GROK = ModelCallService.FREE_MODELS.get(1);
+    private static final String GEMMA = ModelCallService.FREE_MODELS.get(2);
+
+    private ModelHealthStats healthStats;
+    private ModelRouter modelRouter;
+
+    @BeforeEach
+    void setUp() {
+        healthStats = new ModelHealthStats();
+        ReflectionTestUtils.setField(healthStats, "alpha", 0.5);
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("app.routing.aliases.fast", "deepseek=2, grok=1");
+        modelRouter = new ModelRouter(new ModelCallService(null, null, null, healthStats, ObservationRegistry.NOOP, null, null), healthStats, environment);
+        ReflectionTestUtils.setField(modelRouter, "explorationRate", 0.0);
+        ReflectionTestUtils.setField(modelRouter, "maxErrorRate", 0.5);
+    }
+
+    @Test
+    void isRoutedAlias_AutoAndConfiguredAliases() {
+        assertTrue(modelRouter.isRoutedAlias("auto"));
+        assertTrue(modelRouter.isRoutedAlias("FAST"));
+        assertFalse(modelRouter.isRoutedAlias("deepseek"));
+    }
+
+    @Test
+    void choose_Auto_PicksLowestLatencyAndTriesUnseenModelsFirst() {
+        // Given - gemma has no successful call yet
+        healthStats.record(DEEPSEEK, 800, false);
+        healthStats.record(GROK, 300, false);
+
+        // When / Then
+        assertEquals(GEMMA, modelRouter.choose("auto").model());
+
+        healthStats.record(GEMMA, 2000, false);
+        ModelRouter.Selection selection = modelRouter.choose("auto");
+        assertEquals(GROK, selection.model());
+        assertEquals("best-score", selection.reason());
+    }
+
+    @Test
+    void choose_Auto_AvoidsModelsOverErrorThreshold() {
+        // Given - grok is fastest but failing
+        healthStats.record(DEEPSEEK, 800, false);
+        healthStats.record(GEMMA, 900, false);
+        healthStats.record(GROK, 100, false);
+        healthStats.record(GROK, 100, true);
+        healthStats.record(GROK, 100, true);
+
+        // When
+        ModelRouter.Selection selection = modelRouter.choose("auto");
+
+        // Then
+        assertEquals(DEEPSEEK, selection.model());
+        assertTrue(healthStats.snapshot(GROK).errorRate() > 0.5);
+    }
+
+    @Test
+    void choose_AllUnhealthy_PrefersModelsThatAnswerOverModelsThatNeverDid() {
+        // Given - gemma has only failed, the others fail often but do answer
+        healthStats.record(GEMMA, 100, true);
+        healthStats.record(GEMMA, 100, true);
+        healthStats.record(DEEPSEEK, 900, false);
+        healthStats.record(DEEPSEEK, 900, true);
+        healthStats.record(DEEPSEEK, 900, true);
+        healthStats.record(GROK, 800, false);
+        healthStats.record(GROK, 800, true);
+        healthStats.record(GROK, 800, true);
+
+        // When
+        ModelRouter.Selection selection = modelRouter.choose("auto");
+
+        // Then
+        assertEquals(GROK, selection.model());
+        assertEquals("all-unhealthy", selection.reason());
+    }
+
+    @Test
+    void choose_WeightedAlias_AppliesWeights() {
+        // Given - deepseek is slower but carries twice the weight
+        healthStats.record(DEEPSEEK, 500, false);
+        healthStats.record(GROK, 300, false);
+
+        // When
+        ModelRouter.Selection selection = modelRouter.choose("fast");
+
+        // Then
+        assertEquals(DEEPSEEK, selection.model());
+        assertEquals("fast", selection.alias());
+    }
+}
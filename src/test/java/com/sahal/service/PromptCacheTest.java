@@ -0,0 +1,93 @@
+package com.sahal.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sahal.entity.MessageRole;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PromptCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private PromptCache promptCache;
+
+    @BeforeEach
+    void setUp() {
+        promptCache = new PromptCache(List.of("anthropic/", "google/gemini"));
+    }
+
+    @Test
+    void requestMessages_AutomaticCachingModel_ReturnsMessagesUnchanged() {
+        // Given
+        ChatContext messages = conversation();
+
+        // When
+        Object result = promptCache.requestMessages("deepseek/deepseek-chat-v3-0324:free", messages);
+
+        // Then
+        assertSame(messages, result);
+    }
+
+    @Test
+    void requestMessages_CacheControlModel_MarksSystemAndHistoryEnd() throws Exception {
+        // Given
+        ChatContext messages = conversation();
+
+        // When
+        List<Map<String, Object>> result = objectMapper.readValue(
+                objectMapper.writeValueAsBytes(promptCache.requestMessages("anthropic/claude-3.5-haiku", messages)),
+                new TypeReference<>() { });
+
+        // Then
+        assertEquals(4, result.size());
+        assertBreakpoint(result.get(0), "system", "Summary");
+        assertEquals("Hi", result.get(1).get("content"));
+        assertBreakpoint(result.get(2), "assistant", "Hello");
+        // The question changes every turn and is left unmarked
+        assertEquals("What is ML?", result.get(3).get("content"));
+    }
+
+    @Test
+    void record_UsageWithCachedTokens_ReportsTokenWeightedHitRate() throws Exception {
+        // Given
+        String model = "deepseek/deepseek-chat-v3-0324:free";
+
+        // When
+        promptCache.record(model, objectMapper.readTree("{\"prompt_tokens\":100,\"prompt_tokens_details\":{\"cached_tokens\":0}}"));
+        promptCache.record(model, objectMapper.readTree("{\"prompt_tokens\":300,\"prompt_tokens_details\":{\"cached_tokens\":200}}"));
+        promptCache.record(model, objectMapper.readTree("{\"prompt_tokens\":100,\"prompt_cache_hit_tokens\":50}"));
+        promptCache.record(model, null);
+
+        // Then
+        Map<?, ?> stats = (Map<?, ?>) ((Map<?, ?>) promptCache.toMap().get("models")).get(model);
+        assertEquals(3L, stats.get("calls"));
+        assertEquals(2L, stats.get("callsWithCachedPrefix"));
+        assertEquals(500L, stats.get("promptTokens"));
+        assertEquals(250L, stats.get("cachedTokens"));
+        assertEquals(0.5, (double) stats.get("hitRate"), 1e-9);
+        assertEquals(false, stats.get("cacheControlHints"));
+    }
+
+    private static ChatContext conversation() {
+        return ChatContext.builder(4)
+            .add(MessageRole.SYSTEM, "Summary")
+            .add(MessageRole.USER, "Hi")
+            .add(MessageRole.ASSISTANT, "Hello")
+            .add(MessageRole.USER, "What is ML?")
+            .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void assertBreakpoint(Map<String, Object> message, String role, String text) {
+        assertEquals(role, message.get("role"));
+        Map<String, Object> part = ((List<Map<String, Object>>) message.get("content")).get(0);
+        assertEquals(text, part.get("text"));
+        assertEquals(Map.of("type", "ephemeral"), part.get("cache_control"));
+    }
+}
@@ -0,0 +1,93 @@
+package com.sahal.service;
+
+import com.sahal.persistence.ConversationStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SessionLockServiceTest {
+
+    @Mock
+    private ConversationStore conversationStore;
+
+    private SessionLockService sessionLockService;
+
+    @BeforeEach
+    void setUp() {
+        sessionLockService = new SessionLockService(256, conversationStore);
+        ReflectionTestUtils.setField(sessionLockService, "advisoryEnabled", true);
+    }
+
+    @Test
+    void tryLock_SessionHeldByAnotherThread_ReturnsNullInsteadOfWaiting() throws Exception {
+        // Given
+        ReentrantLock held = sessionLockService.tryLock("session-1");
+        assertNotNull(held);
+
+        try {
+            // When
+            ReentrantLock contended = CompletableFuture.supplyAsync(() -> sessionLockService.tryLock("session-1")).get();
+
+            // Then
+            assertNull(contended);
+        } finally {
+            held.unlock();
+        }
+    }
+
+    @Test
+    void tryLock_AfterTheHolderUnlocks_IsGrantedAgain() throws Exception {
+        // Given
+        sessionLockService.tryLock("session-1").unlock();
+
+        // When
+        boolean granted = CompletableFuture.supplyAsync(() -> {
+            ReentrantLock lock = sessionLockService.tryLock("session-1");
+            if (lock == null) {
+                return false;
+            }
+            lock.unlock();
+            return true;
+        }).get();
+
+        // Then
+        assertTrue(granted);
+    }
+
+    @Test
+    void tryClusterLock_Enabled_AsksTheStore() {
+        // Given
+        when(conversationStore.tryClusterLock(7L)).thenReturn(false);
+
+        // When
+        boolean granted = sessionLockService.tryClusterLock(7L);
+
+        // Then
+        assertFalse(granted);
+        verify(conversationStore).tryClusterLock(7L);
+    }
+
+    @Test
+    void tryClusterLock_AdvisoryDisabled_GrantsWithoutTheStore() {
+        // Given
+        ReflectionTestUtils.setField(sessionLockService, "advisoryEnabled", false);
+
+        // When
+        boolean granted = sessionLockService.tryClusterLock(7L);
+
+        // Then
+        assertTrue(granted);
+        verify(conversationStore, never()).tryClusterLock(anyLong());
+    }
+}
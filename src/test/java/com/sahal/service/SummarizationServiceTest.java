@@ -14,7 +14,6 @@ import org.springframework.web.client.RestTemplate;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.util.List;
-import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -34,8 +33,8 @@ class SummarizationServiceTest {
 
     @BeforeEach
     void setUp() {
-        ReflectionTestUtils.setField(summarizationService, "apiKey", "test-api-key");
         ReflectionTestUtils.setField(summarizationService, "baseUrl", "https://test.openrouter.ai/api/v1");
+        ReflectionTestUtils.setField(summarizationService, "batchMessages", 5);
     }
 
     @Test
@@ -133,7 +132,7 @@ class SummarizationServiceTest {
         String currentUserMessage = "What is machine learning?";
 
         // When
-        List<Map<String, String>> context = summarizationService.buildContextWithSummary(
+        ChatContext context = summarizationService.buildContextWithSummary(
             summary, recentMessages, currentUserMessage
         );
 
@@ -142,20 +141,20 @@ class SummarizationServiceTest {
         assertEquals(4, context.size()); // system + 2 recent + current user
         
         // Check system message
-        Map<String, String> systemMessage = context.get(0);
-        assertEquals("system", systemMessage.get("role"));
-        assertTrue(systemMessage.get("content").contains("Past conversation summary"));
-        assertTrue(systemMessage.get("content").contains(summary));
+        ChatContext.Turn systemMessage = context.get(0);
+        assertEquals("system", systemMessage.roleName());
+        assertTrue(systemMessage.content().contains("Past conversation summary"));
+        assertTrue(systemMessage.content().contains(summary));
         
         // Check recent messages
-        Map<String, String> firstRecent = context.get(1);
-        assertEquals("user", firstRecent.get("role"));
-        assertEquals("Test message 0", firstRecent.get("content"));
+        ChatContext.Turn firstRecent = context.get(1);
+        assertEquals("user", firstRecent.roleName());
+        assertEquals("Test message 0", firstRecent.content());
         
         // Check current user message
-        Map<String, String> currentMessage = context.get(3);
-        assertEquals("user", currentMessage.get("role"));
-        assertEquals(currentUserMessage, currentMessage.get("content"));
+        ChatContext.Turn currentMessage = context.get(3);
+        assertEquals("user", currentMessage.roleName());
+        assertEquals(currentUserMessage, currentMessage.content());
     }
 
     @Test
@@ -166,7 +165,7 @@ class SummarizationServiceTest {
         String currentUserMessage = "Hello";
 
         // When
-        List<Map<String, String>> context = summarizationService.buildContextWithSummary(
+        ChatContext context = summarizationService.buildContextWithSummary(
             summary, recentMessages, currentUserMessage
         );
 
@@ -175,8 +174,8 @@ class SummarizationServiceTest {
         assertEquals(2, context.size()); // 1 recent + current user (no system message)
         
         // Check that first message is not a system message
-        Map<String, String> firstMessage = context.get(0);
-        assertNotEquals("system", firstMessage.get("role"));
+        ChatContext.Turn firstMessage = context.get(0);
+        assertNotEquals("system", firstMessage.roleName());
     }
 
     @Test
@@ -187,7 +186,7 @@ class SummarizationServiceTest {
         String currentUserMessage = "Hello";
 
         // When
-        List<Map<String, String>> context = summarizationService.buildContextWithSummary(
+        ChatContext context = summarizationService.buildContextWithSummary(
             summary, recentMessages, currentUserMessage
         );
 
@@ -196,6 +195,50 @@ class SummarizationServiceTest {
         assertEquals(2, context.size()); // 1 recent + current user (no system message)
     }
 
+    @Test
+    void buildContextWithSummary_CurrentMessageAlreadyStored_IsNotRepeated() {
+        // Given - the question is saved before the context is read
+        List<Message> recentMessages = List.of(
+            new Message(MessageRole.USER, "Test message 0"),
+            new Message(MessageRole.ASSISTANT, "Test response 0", "test-model"),
+            new Message(MessageRole.USER, "What is machine learning?")
+        );
+
+        // When
+        ChatContext context = summarizationService.buildContextWithSummary(
+            "User discussed AI.", recentMessages, "What is machine learning?"
+        );
+
+        // Then
+        assertEquals(4, context.size()); // system + 3 stored messages
+        assertEquals("What is machine learning?", context.get(3).content());
+    }
+
+    @Test
+    void buildContextWithSummary_NextTurn_ExtendsPreviousPrompt() {
+        // Given
+        String summary = "User discussed AI.";
+        List<Message> firstTurn = List.of(
+            new Message(MessageRole.USER, "Test message 0"),
+            new Message(MessageRole.ASSISTANT, "Test response 0", "test-model"),
+            new Message(MessageRole.USER, "Test message 1")
+        );
+        List<Message> secondTurn = List.of(
+            firstTurn.get(0), firstTurn.get(1), firstTurn.get(2),
+            new Message(MessageRole.ASSISTANT, "Test response 1", "test-model"),
+            new Message(MessageRole.USER, "Test message 2")
+        );
+
+        // When
+        ChatContext first = summarizationService.buildContextWithSummary(summary, firstTurn, "Test message 1");
+        ChatContext second = summarizationService.buildContextWithSummary(summary, secondTurn, "Test message 2");
+
+        // Then - the second prompt starts with the first one, so its prefix can be served from cache
+        assertEquals(first, second.prefix(first.size()));
+        assertEquals(first.size() + 2, second.size());
+        assertTrue(second.get(0).content().endsWith(summary));
+    }
+
     private List<Message> createTestMessages(int count) {
         return List.of(
             new Message(MessageRole.USER, "Test message 0"),
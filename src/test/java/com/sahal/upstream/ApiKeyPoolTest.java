@@ -0,0 +1,99 @@
+package com.sahal.upstream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApiKeyPoolTest {
+
+    private static final URI COMPLETIONS = URI.create("https://openrouter.ai/api/v1/chat/completions");
+
+    @Test
+    void intercept_RateLimitedKey_RetriesOnAnotherKeyAndCoolsDown() throws IOException {
+        // Given - the first key used answers 429
+        ApiKeyPool pool = new ApiKeyPool("sk-aaaa,sk-bbbb", "unused", 0, 30000, 0);
+        List<String> authorizations = new ArrayList<>();
+        ClientHttpRequestExecution upstream = (request, body) -> {
+            String authorization = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+            authorizations.add(authorization);
+            if (authorization.endsWith("sk-aaaa")) {
+                MockClientHttpResponse limited = new MockClientHttpResponse(new byte[0], HttpStatus.TOO_MANY_REQUESTS);
+                limited.getHeaders().set(HttpHeaders.RETRY_AFTER, "60");
+                return limited;
+            }
+            return new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+        };
+
+        // When
+        ClientHttpResponse first = pool.intercept(post(), new byte[0], upstream);
+        ClientHttpResponse second = pool.intercept(post(), new byte[0], upstream);
+
+        // Then - the 429 was retried on the other key, which then serves alone
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        assertEquals(HttpStatus.OK, second.getStatusCode());
+        assertEquals(List.of("Bearer sk-aaaa", "Bearer sk-bbbb", "Bearer sk-bbbb"), authorizations);
+        Map<String, Object> limitedKey = keyStats(pool, "key-1 (...aaaa)");
+        assertEquals(1L, limitedKey.get("rateLimited"));
+        assertTrue((Long) limitedKey.get("cooldownRemainingMs") > TimeUnit.SECONDS.toMillis(50));
+        assertEquals(2L, keyStats(pool, "key-2 (...bbbb)").get("successes"));
+    }
+
+    @Test
+    void intercept_QuotaFromHeaders_LimitsKeyAndFailsWhenPoolIsExhausted() throws IOException {
+        // Given - a single key that reports a limit of 2 requests per minute
+        ApiKeyPool pool = new ApiKeyPool("", "sk-only", 0, 30000, 0);
+        ClientHttpRequestExecution upstream = (request, body) -> {
+            MockClientHttpResponse response = new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+            response.getHeaders().set("X-RateLimit-Limit", "2");
+            response.getHeaders().set("X-RateLimit-Remaining", "1");
+            return response;
+        };
+
+        // When
+        pool.intercept(post(), new byte[0], upstream);
+        pool.intercept(post(), new byte[0], upstream);
+
+        // Then - the third request within the minute finds no permit
+        assertThrows(IOException.class, () -> pool.intercept(post(), new byte[0], upstream));
+        assertEquals(2, keyStats(pool, "key-1 (...only)").get("limitPerMinute"));
+        assertEquals(1, keyStats(pool, "key-1 (...only)").get("remaining"));
+    }
+
+    @Test
+    void resetNanos_ParsesEpochAndDurationForms() {
+        // Given
+        HttpHeaders epochMillis = new HttpHeaders();
+        epochMillis.set("X-RateLimit-Reset", String.valueOf(System.currentTimeMillis() + 10_000));
+        HttpHeaders duration = new HttpHeaders();
+        duration.set("x-ratelimit-reset-requests", "1m30s");
+
+        // When / Then
+        long fromEpoch = ApiKeyPool.resetNanos(epochMillis);
+        assertTrue(fromEpoch > TimeUnit.SECONDS.toNanos(9) && fromEpoch <= TimeUnit.SECONDS.toNanos(10));
+        assertEquals(TimeUnit.SECONDS.toNanos(90), ApiKeyPool.resetNanos(duration));
+        assertEquals(-1, ApiKeyPool.resetNanos(new HttpHeaders()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> keyStats(ApiKeyPool pool, String label) {
+        return (Map<String, Object>) pool.toMap().get(label);
+    }
+
+    private static MockClientHttpRequest post() {
+        return new MockClientHttpRequest(HttpMethod.POST, COMPLETIONS);
+    }
+}
@@ -0,0 +1,96 @@
+package com.sahal.upstream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordReplayInterceptorTest {
+
+    private static final URI COMPLETIONS = URI.create("https://openrouter.ai/api/v1/chat/completions");
+
+    @TempDir
+    Path tempDir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void replay_ServesRecordedExchangeWithoutCallingUpstream() throws IOException {
+        // Given - one exchange recorded
+        String cassette = tempDir.resolve("upstream.jsonl.gz").toString();
+        RecordReplayInterceptor recorder = new RecordReplayInterceptor("record", cassette, 1.0, false, objectMapper);
+        byte[] request = body("deepseek", "What is AI?");
+        try (ClientHttpResponse recorded = recorder.intercept(post(), request, upstream("{\"answer\":\"AI is...\"}"))) {
+            assertEquals("{\"answer\":\"AI is...\"}", read(recorded));
+        }
+        recorder.close();
+
+        // When
+        RecordReplayInterceptor replayer = new RecordReplayInterceptor("replay", cassette, 0.0, false, objectMapper);
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        ClientHttpResponse replayed = replayer.intercept(post(), request, (req, b) -> {
+            upstreamCalls.incrementAndGet();
+            throw new IOException("network disabled");
+        });
+
+        // Then
+        assertEquals(HttpStatus.OK, replayed.getStatusCode());
+        assertEquals("{\"answer\":\"AI is...\"}", read(replayed));
+        assertEquals("application/json", replayed.getHeaders().getFirst("Content-Type"));
+        assertEquals(0, upstreamCalls.get());
+    }
+
+    @Test
+    void replay_UnknownRequest_FallsBackToSameModelOrFails() throws IOException {
+        // Given
+        String cassette = tempDir.resolve("upstream.jsonl.gz").toString();
+        RecordReplayInterceptor recorder = new RecordReplayInterceptor("record", cassette, 1.0, false, objectMapper);
+        recorder.intercept(post(), body("deepseek", "What is AI?"), upstream("{\"answer\":\"recorded\"}")).close();
+        recorder.close();
+
+        // When
+        RecordReplayInterceptor withFallback = new RecordReplayInterceptor("replay", cassette, 0.0, true, objectMapper);
+        RecordReplayInterceptor exactOnly = new RecordReplayInterceptor("replay", cassette, 0.0, false, objectMapper);
+        byte[] unknown = body("deepseek", "Something never recorded");
+
+        // Then
+        assertEquals("{\"answer\":\"recorded\"}", read(withFallback.intercept(post(), unknown, null)));
+        assertThrows(IOException.class, () -> withFallback.intercept(post(), body("gemma", "Something never recorded"), null));
+        assertThrows(IOException.class, () -> exactOnly.intercept(post(), unknown, null));
+    }
+
+    private static MockClientHttpRequest post() {
+        return new MockClientHttpRequest(HttpMethod.POST, COMPLETIONS);
+    }
+
+    private static byte[] body(String model, String question) {
+        return ("{\"model\":\"" + model + "\",\"messages\":[{\"role\":\"user\",\"content\":\"" + question + "\"}]}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static ClientHttpRequestExecution upstream(String responseBody) {
+        return (request, body) -> {
+            MockClientHttpResponse response = new MockClientHttpResponse(responseBody.getBytes(StandardCharsets.UTF_8), HttpStatus.OK);
+            response.getHeaders().set("Content-Type", "application/json");
+            return response;
+        };
+    }
+
+    private static String read(ClientHttpResponse response) throws IOException {
+        return StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8);
+    }
+}
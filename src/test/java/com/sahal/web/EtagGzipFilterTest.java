@@ -0,0 +1,179 @@
+package com.sahal.web;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EtagGzipFilterTest {
+
+    private static final String ETAG = "\"7-42-0\"";
+    private static final String BODY = "[{\"role\":\"user\",\"content\":\"" + "lorem ipsum ".repeat(400) + "\"}]";
+
+    private EtagGzipFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new EtagGzipFilter();
+        ReflectionTestUtils.setField(filter, "minResponseSize", 2048);
+    }
+
+    @Test
+    void doFilter_LargeHistoryWithStrongEtag_CompressesWithItsOwnEtag() throws Exception {
+        // Given
+        MockHttpServletRequest request = historyRequest("gzip, deflate");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // When
+        filter.doFilter(request, response, new MockFilterChain(new HistoryServlet(BODY)));
+
+        // Then
+        assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("\"7-42-0-gzip\"", response.getHeader(HttpHeaders.ETAG));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeader(HttpHeaders.VARY));
+        assertTrue(response.getContentAsByteArray().length < BODY.length() / 4);
+        assertEquals(BODY, gunzip(response.getContentAsByteArray()));
+    }
+
+    @Test
+    void doFilter_IfNoneMatchWithGzipEtag_ControllerSeesPlainEtagAndAnswersNotModified() throws Exception {
+        // Given
+        MockHttpServletRequest request = historyRequest("gzip");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"7-42-0-gzip\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // When
+        filter.doFilter(request, response, new MockFilterChain(new HistoryServlet(BODY)));
+
+        // Then
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+        assertEquals("\"7-42-0-gzip\"", response.getHeader(HttpHeaders.ETAG));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void doFilter_BodyBelowMinimumSize_IsSentUncompressed() throws Exception {
+        // Given
+        MockHttpServletRequest request = historyRequest("gzip");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // When
+        filter.doFilter(request, response, new MockFilterChain(new HistoryServlet("[]")));
+
+        // Then
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(ETAG, response.getHeader(HttpHeaders.ETAG));
+        assertEquals("[]", response.getContentAsString());
+    }
+
+    @Test
+    void doFilter_ClientWithoutGzip_GetsPlainBodyAndEtag() throws Exception {
+        // Given
+        MockHttpServletRequest request = historyRequest(null);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // When
+        filter.doFilter(request, response, new MockFilterChain(new HistoryServlet(BODY)));
+
+        // Then
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(ETAG, response.getHeader(HttpHeaders.ETAG));
+        assertEquals(BODY, response.getContentAsString());
+    }
+
+    @Test
+    void doFilter_GzipRefusedWithZeroQuality_GetsPlainBody() throws Exception {
+        // Given
+        MockHttpServletRequest request = historyRequest("gzip;q=0, identity");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // When
+        filter.doFilter(request, response, new MockFilterChain(new HistoryServlet(BODY)));
+
+        // Then
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(ETAG, response.getHeader(HttpHeaders.ETAG));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeader(HttpHeaders.VARY));
+        assertEquals(BODY, response.getContentAsString());
+    }
+
+    @Test
+    void acceptsGzip_HonoursQualityValuesAndWildcard() {
+        assertTrue(EtagGzipFilter.acceptsGzip("gzip"));
+        assertTrue(EtagGzipFilter.acceptsGzip("deflate, GZIP;q=0.5"));
+        assertTrue(EtagGzipFilter.acceptsGzip("*"));
+        assertFalse(EtagGzipFilter.acceptsGzip("gzip;q=0"));
+        assertFalse(EtagGzipFilter.acceptsGzip("gzip; q=0.0, *"));
+        assertFalse(EtagGzipFilter.acceptsGzip("*;q=0"));
+        assertFalse(EtagGzipFilter.acceptsGzip("br, deflate"));
+        assertFalse(EtagGzipFilter.acceptsGzip(null));
+    }
+
+    @Test
+    void doFilter_OtherEndpoint_IsLeftToTheContainer() throws Exception {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/chat/ask");
+        request.setServletPath("/chat/ask");
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // When
+        filter.doFilter(request, response, new MockFilterChain(new HistoryServlet(BODY)));
+
+        // Then
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertNull(response.getHeader(HttpHeaders.VARY));
+        assertEquals(BODY, response.getContentAsString());
+    }
+
+    private static MockHttpServletRequest historyRequest(String acceptEncoding) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/chat/history/session-1");
+        request.setServletPath("/chat/history/session-1");
+        if (acceptEncoding != null) {
+            request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        return request;
+    }
+
+    private static String gunzip(byte[] bytes) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Stands in for the controller: strong ETag, 304 when If-None-Match carries it
+     */
+    private static class HistoryServlet extends HttpServlet {
+
+        private final String body;
+
+        HistoryServlet(String body) {
+            this.body = body;
+        }
+
+        @Override
+        protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            response.setHeader(HttpHeaders.ETAG, ETAG);
+            if (ETAG.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            response.setContentType("application/json");
+            response.getOutputStream().write(body.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}